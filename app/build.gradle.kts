@@ -1,3 +1,7 @@
+import groovy.json.JsonSlurper
+import java.io.ByteArrayOutputStream
+import java.io.DataOutputStream
+
 plugins {
 
     id("com.android.application")
@@ -5,6 +9,79 @@ plugins {
 
 }
 
+/**
+ * Genera el catálogo binario de la Pokédex (assets/pokedex.bin) a partir de app/catalog/pokedex.json.
+ * El formato está descrito en BundledPokedexCatalog; los códigos de tipo siguen PokemonTypes.
+ */
+abstract class GeneratePokedexCatalogTask : DefaultTask() {
+
+    @get:InputFile
+    abstract val source: RegularFileProperty
+
+    @get:OutputDirectory
+    abstract val outputDir: DirectoryProperty
+
+    @TaskAction
+    fun generate() {
+        val typeCodes = listOf(
+            "normal", "fighting", "flying", "poison", "ground", "rock",
+            "bug", "ghost", "steel", "fire", "water", "grass",
+            "electric", "psychic", "ice", "dragon", "dark", "fairy"
+        )
+        @Suppress("UNCHECKED_CAST")
+        val entries = JsonSlurper().parse(source.get().asFile) as List<Map<String, Any>>
+
+        val headerSize = 24
+        val recordSize = 16
+        val recordsOffset = headerSize
+        val indexOffset = recordsOffset + entries.size * recordSize
+        val stringsOffset = indexOffset + entries.size * 4
+
+        val strings = ByteArrayOutputStream()
+        val bytes = ByteArrayOutputStream()
+        DataOutputStream(bytes).use { out ->
+            out.writeInt(0x504B4458) // "PKDX"
+            out.writeShort(1)
+            out.writeShort(recordSize)
+            out.writeInt(entries.size)
+            out.writeInt(recordsOffset)
+            out.writeInt(indexOffset)
+            out.writeInt(stringsOffset)
+
+            for (entry in entries) {
+                val id = (entry["id"] as Number).toInt()
+                val name = (entry["name"] as String).toByteArray(Charsets.UTF_8)
+                val types = (entry["types"] as List<*>).map { typeCodes.indexOf(it as String) }
+                require(types.isNotEmpty() && types.none { it < 0 }) { "Tipo desconocido en el Pokémon $id" }
+                require(name.size <= 255) { "Nombre demasiado largo en el Pokémon $id" }
+                out.writeShort(id)
+                out.writeShort((entry["spriteId"] as Number?)?.toInt() ?: id)
+                out.writeByte(types[0])
+                out.writeByte(types.getOrElse(1) { 0xFF })
+                out.writeShort((entry["weight"] as Number).toInt())
+                out.writeShort((entry["height"] as Number).toInt())
+                out.writeInt(strings.size())
+                out.writeByte(name.size)
+                out.writeByte(0)
+                strings.write(name)
+            }
+
+            entries.mapIndexed { index, entry -> (entry["id"] as Number).toInt() to index }
+                .sortedBy { it.first }
+                .forEach { (id, index) ->
+                    out.writeShort(id)
+                    out.writeShort(index)
+                }
+
+            strings.writeTo(out)
+        }
+
+        val output = outputDir.get().file("pokedex.bin").asFile
+        output.parentFile.mkdirs()
+        output.writeBytes(bytes.toByteArray())
+    }
+}
+
 android {
     namespace = "com.lopezgagonuria_pmdm.u3"
     compileSdk = 34
@@ -17,9 +94,15 @@ android {
         versionName = "1.0"
 
         testInstrumentationRunner = "androidx.test.runner.AndroidJUnitRunner"
+
+        // Secciones de PipelineTrace: constante de compilación, así que en release se eliminan.
+        buildConfigField("boolean", "TRACING", "false")
     }
 
     buildTypes {
+        debug {
+            buildConfigField("boolean", "TRACING", "true")
+        }
         release {
             isMinifyEnabled = false
             proguardFiles(
@@ -32,9 +115,30 @@ android {
         sourceCompatibility = JavaVersion.VERSION_11
         targetCompatibility = JavaVersion.VERSION_11
     }
+    androidResources {
+        // El catálogo binario se proyecta en memoria, así que no se puede comprimir en el APK.
+        noCompress += "bin"
+    }
+    testOptions {
+        // Las pruebas de carga de CapturedStoreLoadTest solo se ejecutan con -PloadTests=true.
+        unitTests.all {
+            it.systemProperty("loadTests", project.findProperty("loadTests") ?: "false")
+        }
+    }
     buildFeatures{
         viewBinding=true
         dataBinding=true // Habilita también Data Binding
+        buildConfig=true
+    }
+}
+
+val generatePokedexCatalog = tasks.register<GeneratePokedexCatalogTask>("generatePokedexCatalog") {
+    source.set(layout.projectDirectory.file("catalog/pokedex.json"))
+}
+
+androidComponents {
+    onVariants { variant ->
+        variant.sources.assets?.addGeneratedSourceDirectory(generatePokedexCatalog, GeneratePokedexCatalogTask::outputDir)
     }
 }
 
@@ -62,7 +166,16 @@ dependencies {
     implementation(libs.constraintlayout)
     implementation(libs.navigation.fragment)
     implementation(libs.navigation.ui)
+    implementation(libs.work.runtime)
+    implementation(libs.lifecycle.viewmodel)
+    implementation(libs.lifecycle.livedata)
+    implementation(libs.asynclayoutinflater)
+    implementation(libs.recyclerview)
+    implementation(libs.tracing)
     testImplementation(libs.junit)
     androidTestImplementation(libs.ext.junit)
     androidTestImplementation(libs.espresso.core)
+    androidTestImplementation(libs.fragment.testing)
+    androidTestImplementation(libs.mockwebserver)
+    debugImplementation(libs.fragment.testing.manifest)
 }
@@ -0,0 +1,406 @@
+package com.lopezgagonuria_pmdm.u3;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import android.content.Context;
+import android.os.SystemClock;
+import android.util.Log;
+import android.view.View;
+import androidx.annotation.NonNull;
+import androidx.fragment.app.testing.FragmentScenario;
+import androidx.lifecycle.ViewModelProvider;
+import androidx.recyclerview.widget.RecyclerView;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import okhttp3.HttpUrl;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Prueba de carga de extremo a extremo de la Pokédex. Un {@link MockWebServer} local imita los
+ * recursos "pokemon" y "pokemon/{id}" de la PokeAPI con latencia, límite de ancho de banda y
+ * errores inyectados, {@link RetrofitClient} apunta a él y se abre {@link PokedexFragment} varias
+ * veces en frío. Para cada perfil de red se escriben en el log (etiqueta "PokedexLoadHarness") el
+ * tiempo hasta la primera fila, el tiempo hasta que todas las filas visibles tienen sus tipos y el
+ * número de peticiones, como p50 y p99 de las ejecuciones.
+ *
+ * <p>Cada ejecución empieza sin la Pokédex en memoria y sin leer los catálogos locales, de modo
+ * que mide el camino de red. Las peticiones que no son de la Pokédex (especies, sprites) no se
+ * imitan: el servidor responde 404 a las primeras y los sprites siguen yendo a su servidor.
+ */
+@RunWith(AndroidJUnit4.class)
+public class PokedexLoadHarnessTest {
+
+    private static final String TAG = "PokedexLoadHarness";
+
+    // Ejecuciones por perfil de red.
+    private static final int RUNS = 10;
+
+    // Tiempo máximo de una ejecución.
+    private static final long TIMEOUT_MS = 30_000;
+
+    // Una ejecución se da por terminada si el servidor lleva este tiempo sin recibir peticiones.
+    // Es mayor que el tiempo máximo de la sincronización de capturados de PokedexViewModel (10 s),
+    // para no cortar una ejecución que todavía puede mostrar filas.
+    private static final long IDLE_MS = 12_000;
+
+    // Intervalo entre comprobaciones de la lista.
+    private static final long POLL_MS = 5;
+
+    // Pokémon del servidor de pruebas, como en la PokeAPI.
+    private static final int TOTAL_POKEMON = 1025;
+
+    // Movimientos de relleno de cada respuesta de detalles, para acercar su tamaño al real.
+    private static final int DETAIL_MOVES = 60;
+
+    private static final long SEED = 42;
+
+    /**
+     * Condiciones de red simuladas por el servidor.
+     */
+    private static final class NetworkProfile {
+        final String name;
+        final long latencyMs;
+        final long jitterMs;
+        final long bytesPerSecond; // 0 sin límite
+        final double errorRate;
+
+        NetworkProfile(String name, long latencyMs, long jitterMs, long bytesPerSecond, double errorRate) {
+            this.name = name;
+            this.latencyMs = latencyMs;
+            this.jitterMs = jitterMs;
+            this.bytesPerSecond = bytesPerSecond;
+            this.errorRate = errorRate;
+        }
+    }
+
+    /**
+     * Servidor que imita la PokeAPI: genera las respuestas de forma determinista y aplica el
+     * perfil de red a cada una.
+     */
+    private static final class PokeApiDispatcher extends Dispatcher {
+        private final NetworkProfile profile;
+        private final String baseUrl;
+        private final Random random = new Random(SEED);
+
+        final AtomicInteger listRequests = new AtomicInteger();
+        final AtomicInteger detailRequests = new AtomicInteger();
+        final AtomicInteger otherRequests = new AtomicInteger();
+        final AtomicInteger listErrors = new AtomicInteger();
+        final AtomicInteger errors = new AtomicInteger();
+        final AtomicLong lastRequestAt = new AtomicLong();
+
+        PokeApiDispatcher(NetworkProfile profile, String baseUrl) {
+            this.profile = profile;
+            this.baseUrl = baseUrl;
+        }
+
+        void resetCounters() {
+            listRequests.set(0);
+            detailRequests.set(0);
+            otherRequests.set(0);
+            listErrors.set(0);
+            errors.set(0);
+            lastRequestAt.set(SystemClock.elapsedRealtime());
+        }
+
+        @NonNull
+        @Override
+        public MockResponse dispatch(@NonNull RecordedRequest request) {
+            lastRequestAt.set(SystemClock.elapsedRealtime());
+            HttpUrl url = request.getRequestUrl();
+            List<String> segments = url.pathSegments();
+            String resource = segments.size() > 2 ? segments.get(2) : "";
+            boolean list = "pokemon".equals(resource) && segments.size() == 3;
+            boolean details = "pokemon".equals(resource) && segments.size() == 4;
+
+            long delayMs;
+            boolean fail;
+            synchronized (random) {
+                delayMs = profile.latencyMs + (profile.jitterMs > 0 ? (long) (random.nextDouble() * (profile.jitterMs + 1)) : 0);
+                fail = profile.errorRate > 0 && random.nextDouble() < profile.errorRate;
+            }
+
+            MockResponse response;
+            try {
+                if (list) {
+                    listRequests.incrementAndGet();
+                    response = new MockResponse().setBody(listBody(url));
+                } else if (details) {
+                    detailRequests.incrementAndGet();
+                    response = new MockResponse().setBody(detailsBody(Integer.parseInt(segments.get(3))));
+                } else {
+                    otherRequests.incrementAndGet();
+                    return new MockResponse().setResponseCode(404);
+                }
+            } catch (JSONException | NumberFormatException e) {
+                return new MockResponse().setResponseCode(400);
+            }
+            if (fail) {
+                errors.incrementAndGet();
+                if (list) {
+                    listErrors.incrementAndGet();
+                }
+                response = new MockResponse().setResponseCode(503);
+            }
+            response.setHeader("Content-Type", "application/json; charset=utf-8");
+            response.setHeadersDelay(delayMs, TimeUnit.MILLISECONDS);
+            if (profile.bytesPerSecond > 0) {
+                // El cuerpo se envía en trozos cada 100 ms.
+                response.throttleBody(Math.max(1, profile.bytesPerSecond / 10), 100, TimeUnit.MILLISECONDS);
+            }
+            return response;
+        }
+
+        private String listBody(HttpUrl url) throws JSONException {
+            int offset = parseOrDefault(url.queryParameter("offset"), 0);
+            int limit = parseOrDefault(url.queryParameter("limit"), 20);
+            JSONArray results = new JSONArray();
+            for (int id = offset + 1; id <= Math.min(TOTAL_POKEMON, offset + limit); id++) {
+                results.put(new JSONObject()
+                        .put("name", "pokemon-" + id)
+                        .put("url", baseUrl + "pokemon/" + id + "/"));
+            }
+            return new JSONObject()
+                    .put("count", TOTAL_POKEMON)
+                    .put("next", offset + limit < TOTAL_POKEMON
+                            ? baseUrl + "pokemon?offset=" + (offset + limit) + "&limit=" + limit : JSONObject.NULL)
+                    .put("previous", JSONObject.NULL)
+                    .put("results", results)
+                    .toString();
+        }
+
+        private String detailsBody(int id) throws JSONException {
+            // Cada Pokémon tiene siempre los mismos datos, sea cual sea el orden de las peticiones.
+            Random fixture = new Random(SEED * 31 + id);
+            JSONArray types = new JSONArray();
+            int typeCount = fixture.nextBoolean() ? 2 : 1;
+            for (int slot = 1; slot <= typeCount; slot++) {
+                int code = fixture.nextInt(PokemonTypes.COUNT);
+                types.put(new JSONObject()
+                        .put("slot", slot)
+                        .put("type", new JSONObject()
+                                .put("name", PokemonTypes.nameOf(code))
+                                .put("url", baseUrl + "type/" + (code + 1) + "/")));
+            }
+            JSONArray moves = new JSONArray();
+            for (int i = 0; i < DETAIL_MOVES; i++) {
+                int move = 1 + fixture.nextInt(900);
+                moves.put(new JSONObject()
+                        .put("move", new JSONObject()
+                                .put("name", "move-" + move)
+                                .put("url", baseUrl + "move/" + move + "/")));
+            }
+            return new JSONObject()
+                    .put("id", id)
+                    .put("name", "pokemon-" + id)
+                    .put("weight", 1 + fixture.nextInt(9_999))
+                    .put("height", 1 + fixture.nextInt(200))
+                    .put("types", types)
+                    .put("moves", moves)
+                    .toString();
+        }
+
+        private static int parseOrDefault(String value, int defaultValue) {
+            try {
+                return value != null ? Integer.parseInt(value) : defaultValue;
+            } catch (NumberFormatException e) {
+                return defaultValue;
+            }
+        }
+    }
+
+    /**
+     * Valores de una métrica en las distintas ejecuciones.
+     */
+    private static final class Stats {
+        final String name;
+        final List<Long> values = new ArrayList<>();
+
+        Stats(String name) {
+            this.name = name;
+        }
+
+        void add(long value) {
+            values.add(value);
+        }
+
+        String summary(String unit) {
+            if (values.isEmpty()) {
+                return String.format("%-22s sin datos", name);
+            }
+            List<Long> sorted = new ArrayList<>(values);
+            Collections.sort(sorted);
+            return String.format("%-22s n=%-3d p50=%6d %s  p99=%6d %s",
+                    name, sorted.size(), percentile(sorted, 50), unit, percentile(sorted, 99), unit);
+        }
+
+        private static long percentile(List<Long> sorted, int percentile) {
+            int index = (int) Math.ceil(percentile / 100.0 * sorted.size()) - 1;
+            return sorted.get(Math.max(0, Math.min(sorted.size() - 1, index)));
+        }
+    }
+
+    private MockWebServer server;
+
+    @After
+    public void tearDown() throws Exception {
+        // La Pokédex descargada del servidor de pruebas no debe llegar a otras pruebas.
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(
+                () -> PokedexRepository.getInstance(context).resetForTesting(false));
+        RetrofitClient.setBaseUrl(RetrofitClient.BASE_URL);
+        if (server != null) {
+            server.shutdown();
+        }
+    }
+
+    @Test
+    public void fastNetwork() throws Exception {
+        Result result = run(new NetworkProfile("rápida", 20, 10, 0, 0));
+        assertEquals("Ejecuciones sin filas en una red sin errores", 0, result.failed);
+        assertEquals("Ejecuciones sin todos los tipos en una red sin errores", 0, result.incomplete);
+    }
+
+    @Test
+    public void slowNetwork() throws Exception {
+        // Parecida a una conexión 3G: mucha latencia y unos 64 KB/s.
+        Result result = run(new NetworkProfile("lenta", 300, 100, 64 * 1024, 0));
+        assertEquals("Ejecuciones sin filas en una red sin errores", 0, result.failed);
+        assertEquals("Ejecuciones sin todos los tipos en una red sin errores", 0, result.incomplete);
+    }
+
+    @Test
+    public void lossyNetwork() throws Exception {
+        // El 5 % de las respuestas son errores 503; no se exige que todas las ejecuciones terminen.
+        Result result = run(new NetworkProfile("con pérdidas", 150, 50, 256 * 1024, 0.05));
+        assertTrue("Ninguna ejecución ha cargado la Pokédex", result.completed + result.incomplete > 0);
+    }
+
+    /**
+     * Resultado de las ejecuciones de un perfil.
+     */
+    private static final class Result {
+        int completed;  // con la primera fila y todos los tipos visibles
+        int incomplete; // con filas pero sin todos los tipos
+        int failed;     // sin ninguna fila
+    }
+
+    /**
+     * Abre la Pokédex {@link #RUNS} veces con un perfil de red y escribe las métricas en el log.
+     */
+    private Result run(NetworkProfile profile) throws Exception {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        server = new MockWebServer();
+        server.start();
+        String baseUrl = server.url("/api/v2/").toString();
+        PokeApiDispatcher dispatcher = new PokeApiDispatcher(profile, baseUrl);
+        server.setDispatcher(dispatcher);
+        RetrofitClient.setBaseUrl(baseUrl);
+
+        Stats firstRow = new Stats("primera fila");
+        Stats allTypes = new Stats("tipos visibles");
+        Stats listRequests = new Stats("peticiones lista");
+        Stats detailRequests = new Stats("peticiones detalles");
+        Stats otherRequests = new Stats("otras peticiones");
+        Stats errors = new Stats("errores inyectados");
+        Result result = new Result();
+
+        for (int i = 0; i < RUNS; i++) {
+            dispatcher.resetCounters();
+            InstrumentationRegistry.getInstrumentation().runOnMainSync(
+                    () -> PokedexRepository.getInstance(context).resetForTesting(true));
+
+            long start = SystemClock.elapsedRealtime();
+            long firstRowAt = -1;
+            long allTypesAt = -1;
+            try (FragmentScenario<PokedexFragment> scenario =
+                         FragmentScenario.launchInContainer(PokedexFragment.class, null, R.style.Theme_U3)) {
+                boolean[] sample = new boolean[2];
+                while (true) {
+                    scenario.onFragment(fragment -> probe(fragment, sample));
+                    long now = SystemClock.elapsedRealtime();
+                    if (sample[0] && firstRowAt < 0) {
+                        firstRowAt = now - start;
+                    }
+                    if (sample[1]) {
+                        allTypesAt = now - start;
+                        break;
+                    }
+                    boolean listFailed = firstRowAt < 0 && dispatcher.listErrors.get() > 0;
+                    boolean idle = now - dispatcher.lastRequestAt.get() > IDLE_MS;
+                    if (listFailed || idle || now - start > TIMEOUT_MS) {
+                        break;
+                    }
+                    SystemClock.sleep(POLL_MS);
+                }
+            }
+
+            if (firstRowAt < 0) {
+                result.failed++;
+            } else if (allTypesAt < 0) {
+                result.incomplete++;
+                firstRow.add(firstRowAt);
+            } else {
+                result.completed++;
+                firstRow.add(firstRowAt);
+                allTypes.add(allTypesAt);
+            }
+            listRequests.add(dispatcher.listRequests.get());
+            detailRequests.add(dispatcher.detailRequests.get());
+            otherRequests.add(dispatcher.otherRequests.get());
+            errors.add(dispatcher.errors.get());
+        }
+
+        Log.i(TAG, String.format("Red %s: latencia %d+%d ms, %s, %.0f %% de errores; %d ejecuciones: "
+                        + "%d completas, %d sin todos los tipos, %d sin filas",
+                profile.name, profile.latencyMs, profile.jitterMs,
+                profile.bytesPerSecond > 0 ? (profile.bytesPerSecond / 1024) + " KB/s" : "sin límite",
+                profile.errorRate * 100, RUNS, result.completed, result.incomplete, result.failed));
+        Log.i(TAG, firstRow.summary("ms"));
+        Log.i(TAG, allTypes.summary("ms"));
+        for (Stats stats : new Stats[]{listRequests, detailRequests, otherRequests, errors}) {
+            Log.i(TAG, stats.summary("  "));
+        }
+        return result;
+    }
+
+    /**
+     * Comprueba en el hilo principal si la lista muestra alguna fila y si todas las filas
+     * visibles tienen ya sus tipos dibujados.
+     */
+    private static void probe(PokedexFragment fragment, boolean[] sample) {
+        RecyclerView recyclerView = fragment.requireView().findViewById(R.id.recyclerPokemon);
+        List<PokemonDetails> pokemonList =
+                new ViewModelProvider(fragment).get(PokedexViewModel.class).getPokemonList();
+        sample[0] = recyclerView.getVisibility() == View.VISIBLE && recyclerView.getChildCount() > 0;
+        if (!sample[0] || recyclerView.hasPendingAdapterUpdates() || recyclerView.isLayoutRequested()) {
+            sample[1] = false;
+            return;
+        }
+        boolean loaded = true;
+        for (int i = 0; i < recyclerView.getChildCount() && loaded; i++) {
+            int position = recyclerView.getChildAdapterPosition(recyclerView.getChildAt(i));
+            if (position != RecyclerView.NO_POSITION && position < pokemonList.size()) {
+                loaded = pokemonList.get(position).isFullyLoaded();
+            }
+        }
+        sample[1] = loaded;
+    }
+}
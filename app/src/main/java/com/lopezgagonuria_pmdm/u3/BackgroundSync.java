@@ -0,0 +1,93 @@
+package com.lopezgagonuria_pmdm.u3;
+
+import android.content.Context;
+import android.util.Log;
+import androidx.preference.PreferenceManager;
+import androidx.work.BackoffPolicy;
+import androidx.work.Constraints;
+import androidx.work.ExistingPeriodicWorkPolicy;
+import androidx.work.NetworkType;
+import androidx.work.PeriodicWorkRequest;
+import androidx.work.WorkManager;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Programa los trabajos periódicos de sincronización en segundo plano con WorkManager.
+ * El catálogo con los detalles solo se descarga con red no medida y el dispositivo cargando;
+ * los capturados, que ocupan poco, con cualquier conexión.
+ */
+public final class BackgroundSync {
+
+    // Clave de la preferencia con el intervalo de sincronización, en horas.
+    public static final String PREF_SYNC_INTERVAL_HOURS = "sync_interval_hours";
+
+    // Intervalo de sincronización por defecto, en horas.
+    static final String DEFAULT_SYNC_INTERVAL_HOURS = "12";
+
+    private static final String CATALOG_WORK = "catalog_sync";
+    private static final String CAPTURED_WORK = "captured_sync";
+    private static final String TAG = "BackgroundSync";
+
+    private BackgroundSync() {
+        // Clase de utilidad, no se instancia.
+    }
+
+    /**
+     * Programa los trabajos, manteniendo los ya programados si no ha cambiado la configuración.
+     *
+     * @param context Contexto de la aplicación.
+     */
+    public static void schedule(Context context) {
+        enqueue(context, ExistingPeriodicWorkPolicy.KEEP);
+    }
+
+    /**
+     * Vuelve a programar los trabajos con la configuración actual, por ejemplo al cambiar
+     * el intervalo en los ajustes.
+     *
+     * @param context Contexto de la aplicación.
+     */
+    public static void reschedule(Context context) {
+        enqueue(context, ExistingPeriodicWorkPolicy.UPDATE);
+    }
+
+    private static void enqueue(Context context, ExistingPeriodicWorkPolicy policy) {
+        Context appContext = context.getApplicationContext();
+        long intervalHours = getIntervalHours(appContext);
+        long backoffMinutes = appContext.getResources().getInteger(R.integer.sync_backoff_minutes);
+
+        Constraints catalogConstraints = new Constraints.Builder()
+                .setRequiredNetworkType(NetworkType.UNMETERED)
+                .setRequiresCharging(true)
+                .build();
+        PeriodicWorkRequest catalogRequest = new PeriodicWorkRequest.Builder(
+                CatalogSyncWorker.class, intervalHours, TimeUnit.HOURS)
+                .setConstraints(catalogConstraints)
+                .setBackoffCriteria(BackoffPolicy.EXPONENTIAL, backoffMinutes, TimeUnit.MINUTES)
+                .build();
+
+        Constraints capturedConstraints = new Constraints.Builder()
+                .setRequiredNetworkType(NetworkType.CONNECTED)
+                .build();
+        PeriodicWorkRequest capturedRequest = new PeriodicWorkRequest.Builder(
+                CapturedSyncWorker.class, intervalHours, TimeUnit.HOURS)
+                .setConstraints(capturedConstraints)
+                .setBackoffCriteria(BackoffPolicy.EXPONENTIAL, backoffMinutes, TimeUnit.MINUTES)
+                .build();
+
+        WorkManager workManager = WorkManager.getInstance(appContext);
+        workManager.enqueueUniquePeriodicWork(CATALOG_WORK, policy, catalogRequest);
+        workManager.enqueueUniquePeriodicWork(CAPTURED_WORK, policy, capturedRequest);
+        Log.d(TAG, "Sincronización programada cada " + intervalHours + " h");
+    }
+
+    private static long getIntervalHours(Context context) {
+        String value = PreferenceManager.getDefaultSharedPreferences(context)
+                .getString(PREF_SYNC_INTERVAL_HOURS, DEFAULT_SYNC_INTERVAL_HOURS);
+        try {
+            return Math.max(1, Long.parseLong(value));
+        } catch (NumberFormatException e) {
+            return Long.parseLong(DEFAULT_SYNC_INTERVAL_HOURS);
+        }
+    }
+}
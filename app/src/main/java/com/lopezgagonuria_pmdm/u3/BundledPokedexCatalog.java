@@ -0,0 +1,184 @@
+package com.lopezgagonuria_pmdm.u3;
+
+import android.content.Context;
+import android.content.res.AssetFileDescriptor;
+import android.util.Log;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Catálogo binario de la Pokédex incluido en el APK (assets/pokedex.bin). Lo genera la tarea
+ * de Gradle {@code generatePokedexCatalog} a partir de {@code app/catalog/pokedex.json}. El
+ * fichero se proyecta en memoria y los registros se leen por su posición, sin analizarlo, de
+ * modo que la Pokédex está completa en el primer arranque sin ninguna petición a la red.
+ *
+ * <p>Formato (big-endian):
+ * <pre>
+ *   Cabecera (24 bytes):
+ *     int   magic ("PKDX")
+ *     short versión
+ *     short tamaño de registro (16)
+ *     int   número de registros
+ *     int   posición de los registros
+ *     int   posición del índice
+ *     int   posición de la tabla de cadenas
+ *   Registro (16 bytes):
+ *     u16 id, u16 id del sprite, u8 tipo 1, u8 tipo 2 ({@link PokemonTypes#NONE} si no tiene),
+ *     u16 peso, u16 altura, u32 posición del nombre en la tabla de cadenas,
+ *     u8 longitud del nombre, u8 reservado
+ *   Índice: por cada registro, u16 id y u16 número de registro, ordenados por id.
+ *   Tabla de cadenas: nombres en UTF-8, uno detrás de otro.
+ * </pre>
+ */
+public final class BundledPokedexCatalog {
+
+    static final String ASSET_NAME = "pokedex.bin";
+
+    private static final int MAGIC = 0x504B4458; // "PKDX"
+    private static final int VERSION = 1;
+    private static final int RECORD_SIZE = 16;
+    private static final int INDEX_ENTRY_SIZE = 4;
+    private static final String TAG = "BundledPokedexCatalog";
+
+    private final ByteBuffer buffer;
+    private final int count;
+    private final int recordsOffset;
+    private final int indexOffset;
+    private final int stringsOffset;
+
+    private BundledPokedexCatalog(ByteBuffer buffer) {
+        this.buffer = buffer;
+        this.count = buffer.getInt(8);
+        this.recordsOffset = buffer.getInt(12);
+        this.indexOffset = buffer.getInt(16);
+        this.stringsOffset = buffer.getInt(20);
+    }
+
+    /**
+     * Proyecta en memoria el catálogo incluido en el APK. Hace E/S de disco, no se debe
+     * llamar desde el hilo principal.
+     *
+     * @param context Contexto para acceder a los assets.
+     * @return El catálogo, o null si no existe o no es válido.
+     */
+    public static BundledPokedexCatalog open(Context context) {
+        // El asset se guarda sin comprimir (noCompress en build.gradle.kts) para poder proyectarlo.
+        try (AssetFileDescriptor descriptor = context.getAssets().openFd(ASSET_NAME);
+             FileInputStream in = descriptor.createInputStream();
+             FileChannel channel = in.getChannel()) {
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY,
+                    descriptor.getStartOffset(), descriptor.getLength());
+            if (buffer.getInt(0) != MAGIC || buffer.getShort(4) != VERSION || buffer.getShort(6) != RECORD_SIZE) {
+                Log.e(TAG, "Formato del catálogo no reconocido");
+                return null;
+            }
+            return new BundledPokedexCatalog(buffer);
+        } catch (IOException | RuntimeException e) {
+            Log.e(TAG, "No se pudo abrir el catálogo incluido", e);
+            return null;
+        }
+    }
+
+    /**
+     * Obtiene el número de Pokémon del catálogo.
+     *
+     * @return Número de registros.
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Obtiene el ID del Pokémon de un registro sin construir el objeto.
+     *
+     * @param index Número de registro.
+     * @return ID del Pokémon.
+     */
+    public int getId(int index) {
+        return buffer.getShort(recordsOffset + index * RECORD_SIZE) & 0xFFFF;
+    }
+
+    /**
+     * Busca en el índice el registro de un Pokémon.
+     *
+     * @param id ID del Pokémon.
+     * @return Número de registro, o -1 si no está en el catálogo.
+     */
+    public int indexOf(int id) {
+        int low = 0;
+        int high = count - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int entry = indexOffset + middle * INDEX_ENTRY_SIZE;
+            int middleId = buffer.getShort(entry) & 0xFFFF;
+            if (middleId < id) {
+                low = middle + 1;
+            } else if (middleId > id) {
+                high = middle - 1;
+            } else {
+                return buffer.getShort(entry + 2) & 0xFFFF;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Construye el Pokémon de un registro.
+     *
+     * @param index Número de registro.
+     * @return Pokémon con todos sus datos estáticos.
+     */
+    public PokemonDetails get(int index) {
+        int record = recordsOffset + index * RECORD_SIZE;
+        int id = buffer.getShort(record) & 0xFFFF;
+        int spriteId = buffer.getShort(record + 2) & 0xFFFF;
+
+        byte[] nameBytes = new byte[buffer.get(record + 14) & 0xFF];
+        int nameOffset = stringsOffset + buffer.getInt(record + 10);
+        for (int i = 0; i < nameBytes.length; i++) {
+            nameBytes[i] = buffer.get(nameOffset + i);
+        }
+
+        // Los códigos de tipo del catálogo son los de PokemonTypes, con 0xFF como NONE.
+        return new PokemonDetails(
+                id,
+                new String(nameBytes, StandardCharsets.UTF_8),
+                buffer.getShort(record + 6) & 0xFFFF,
+                buffer.getShort(record + 8) & 0xFFFF,
+                spriteId,
+                buffer.get(record + 4) & 0xFF,
+                buffer.get(record + 5) & 0xFF
+        );
+    }
+
+    /**
+     * Busca un Pokémon por su ID.
+     *
+     * @param id ID del Pokémon.
+     * @return El Pokémon, o null si no está en el catálogo.
+     */
+    public PokemonDetails findById(int id) {
+        int index = indexOf(id);
+        return index >= 0 ? get(index) : null;
+    }
+
+    /**
+     * Construye los primeros Pokémon del catálogo, en el orden de la Pokédex.
+     *
+     * @param limit Número máximo de Pokémon.
+     * @return Lista de Pokémon.
+     */
+    public List<PokemonDetails> readAll(int limit) {
+        int total = Math.min(limit, count);
+        List<PokemonDetails> pokemonList = new ArrayList<>(total);
+        for (int i = 0; i < total; i++) {
+            pokemonList.add(get(i));
+        }
+        return pokemonList;
+    }
+}
@@ -4,30 +4,55 @@ import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
+import android.widget.ImageView;
+import android.widget.TextView;
 import androidx.annotation.NonNull;
+import androidx.core.content.ContextCompat;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.RecyclerView;
 import com.bumptech.glide.Glide;
 import com.lopezgagonuria_pmdm.u3.databinding.ItemCapturadoBinding;
+import com.lopezgagonuria_pmdm.u3.databinding.ItemPokemonGridBinding;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * Adapter para manejar y mostrar una lista de Pokémon capturados en un RecyclerView.
  */
-public class CapturadosAdapter extends RecyclerView.Adapter<CapturadosAdapter.CapturadosViewHolder> {
+public class CapturadosAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
+
+    // Cambio parcial que solo afecta al resaltado de la selección
+    private static final Object PAYLOAD_SELECTION = new Object();
+
+    // Hilo en el que se calculan las diferencias entre listas, fuera del hilo principal
+    private static final ExecutorService DIFF_EXECUTOR = Executors.newSingleThreadExecutor();
 
     // Lista de Pokémon capturados que se mostrarán
     private List<PokemonDetails> pokemonList;
     // Listener para manejar eventos de clic y eliminación
     private final OnPokemonClickListener listener;
+    // Pool compartido con las vistas infladas por adelantado, o null para inflarlas aquí
+    private PokemonViewPool viewPool;
+    // Indica si se muestra en cuadrícula
+    private boolean grid;
+    // IDs de los Pokémon seleccionados, o vacío fuera del modo de selección
+    private Set<String> selectedIds = Collections.emptySet();
+    // Número de la última lista recibida: las diferencias de una lista anterior se descartan
+    private int maxGeneration;
 
     /**
      * Constructor para inicializar la lista de Pokémon y el listener.
      *
-     * @param pokemonList Lista de objetos PokemonDetails.
+     * @param pokemonList Lista inicial de objetos PokemonDetails (se copia).
      * @param listener Listener para manejar eventos de clic y eliminar.
      */
     public CapturadosAdapter(List<PokemonDetails> pokemonList, OnPokemonClickListener listener) {
-        this.pokemonList = pokemonList;
+        this.pokemonList = new ArrayList<>(pokemonList);
         this.listener = listener;
     }
 
@@ -42,6 +67,13 @@ public class CapturadosAdapter extends RecyclerView.Adapter<CapturadosAdapter.Ca
          */
         void onPokemonClick(PokemonDetails pokemon);
 
+        /**
+         * Método para manejar la pulsación larga en un Pokémon, que inicia la selección múltiple.
+         *
+         * @param pokemon Objeto PokemonDetails pulsado.
+         */
+        void onPokemonLongClick(PokemonDetails pokemon);
+
         /**
          * Método para manejar el evento de clic en el botón de eliminar.
          *
@@ -51,19 +83,161 @@ public class CapturadosAdapter extends RecyclerView.Adapter<CapturadosAdapter.Ca
     }
 
     /**
-     * Método que infla el diseño de los elementos del RecyclerView utilizando ViewBinding.
+     * Configura el modo de la lista y el pool del que se toman las vistas.
+     *
+     * @param viewPool Pool compartido, o null.
+     * @param grid true para mostrar la cuadrícula.
+     */
+    public void setLayout(PokemonViewPool viewPool, boolean grid) {
+        this.viewPool = viewPool;
+        this.grid = grid;
+    }
+
+    /**
+     * Configura el conjunto de Pokémon seleccionados, que se resaltan al enlazar cada fila.
+     *
+     * @param selectedIds IDs seleccionados (el adaptador no lo modifica).
+     */
+    public void setSelection(Set<String> selectedIds) {
+        this.selectedIds = selectedIds;
+    }
+
+    /**
+     * Sustituye la lista mostrada. Solo se notifican las filas que cambian, de modo que
+     * liberar muchos Pokémon a la vez es un único cálculo de diferencias. El cálculo se hace
+     * en segundo plano y la lista cambia al terminar, en el hilo principal; si mientras tanto
+     * llega otra lista, el resultado se descarta.
+     *
+     * @param newList Nueva lista de Pokémon capturados (se copia).
+     */
+    public void submitList(List<PokemonDetails> newList) {
+        int generation = ++maxGeneration;
+        List<PokemonDetails> oldList = pokemonList;
+        List<PokemonDetails> copy = new ArrayList<>(newList);
+        if (oldList.isEmpty() || copy.isEmpty()) {
+            // Sin filas en una de las dos listas no hay nada que comparar.
+            pokemonList = copy;
+            if (!oldList.isEmpty()) {
+                notifyItemRangeRemoved(0, oldList.size());
+            } else if (!copy.isEmpty()) {
+                notifyItemRangeInserted(0, copy.size());
+            }
+            return;
+        }
+        DIFF_EXECUTOR.execute(() -> {
+            // Las dos listas son copias que no se modifican, así que se pueden leer aquí.
+            DiffUtil.DiffResult diff = DiffUtil.calculateDiff(new DiffCallback(oldList, copy));
+            Futures.MAIN.execute(() -> {
+                if (generation != maxGeneration) {
+                    return;
+                }
+                pokemonList = copy;
+                diff.dispatchUpdatesTo(this);
+            });
+        });
+    }
+
+    /**
+     * Compara dos versiones de la lista: un Pokémon es el mismo si tiene el mismo ID, y solo se
+     * vuelve a enlazar si cambia su nombre o su sprite.
+     */
+    static class DiffCallback extends DiffUtil.Callback {
+        private final List<PokemonDetails> oldList;
+        private final List<PokemonDetails> newList;
+
+        DiffCallback(List<PokemonDetails> oldList, List<PokemonDetails> newList) {
+            this.oldList = oldList;
+            this.newList = newList;
+        }
+
+        @Override
+        public int getOldListSize() {
+            return oldList.size();
+        }
+
+        @Override
+        public int getNewListSize() {
+            return newList.size();
+        }
+
+        @Override
+        public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
+            return oldList.get(oldItemPosition).getNumber() == newList.get(newItemPosition).getNumber();
+        }
+
+        @Override
+        public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
+            PokemonDetails oldPokemon = oldList.get(oldItemPosition);
+            PokemonDetails newPokemon = newList.get(newItemPosition);
+            return Objects.equals(oldPokemon.getName(), newPokemon.getName())
+                    && oldPokemon.getSpriteId() == newPokemon.getSpriteId();
+        }
+    }
+
+    /**
+     * Obtiene el Pokémon de una posición.
+     *
+     * @param position Posición en la lista.
+     * @return Pokémon mostrado en esa posición.
+     */
+    public PokemonDetails getItem(int position) {
+        return pokemonList.get(position);
+    }
+
+    /**
+     * Devuelve el tipo de vista: el propio diseño, de modo que las celdas de la cuadrícula se
+     * comparten con la Pokédex a través del pool.
+     *
+     * @param position Posición del elemento.
+     * @return Diseño de la fila o de la celda.
+     */
+    @Override
+    public int getItemViewType(int position) {
+        return grid ? R.layout.item_pokemon_grid : R.layout.item_capturado;
+    }
+
+    /**
+     * Método que infla el diseño de los elementos del RecyclerView utilizando ViewBinding,
+     * o toma uno ya inflado del pool.
      *
      * @param parent El ViewGroup padre al que se añadirá la vista.
-     * @param viewType Tipo de vista (no usado aquí, ya que todas las vistas son iguales).
-     * @return Una instancia de CapturadosViewHolder con el diseño inflado.
+     * @param viewType Diseño de la fila o de la celda.
+     * @return Una instancia de CapturadosViewHolder o de PokemonGridViewHolder.
      */
     @NonNull
     @Override
-    public CapturadosViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
-        // Infla el diseño de cada elemento utilizando el binding generado automáticamente
-        ItemCapturadoBinding binding = ItemCapturadoBinding.inflate(
-                LayoutInflater.from(parent.getContext()), parent, false);
-        return new CapturadosViewHolder(binding);
+    public RecyclerView.ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        View view = viewPool != null
+                ? viewPool.obtain(viewType, parent)
+                : LayoutInflater.from(parent.getContext()).inflate(viewType, parent, false);
+        if (viewType == R.layout.item_pokemon_grid) {
+            return new PokemonGridViewHolder(ItemPokemonGridBinding.bind(view));
+        }
+        // Enlaza el diseño de cada elemento utilizando el binding generado automáticamente
+        return new CapturadosViewHolder(ItemCapturadoBinding.bind(view));
+    }
+
+    /**
+     * Vuelve a enlazar solo el resaltado de las filas, tras cambiar la selección.
+     *
+     * @param holder El ViewHolder que contiene la vista para el elemento.
+     * @param position La posición del elemento en la lista.
+     * @param payloads Cambios parciales pendientes.
+     */
+    @Override
+    public void onBindViewHolder(@NonNull RecyclerView.ViewHolder holder, int position, @NonNull List<Object> payloads) {
+        if (payloads.isEmpty() || !payloads.stream().allMatch(payload -> payload == PAYLOAD_SELECTION)) {
+            onBindViewHolder(holder, position);
+            return;
+        }
+        bindSelection(holder, pokemonList.get(position));
+    }
+
+    /**
+     * Avisa de que ha cambiado la selección, sin volver a enlazar el resto de cada fila.
+     */
+    public void notifySelectionChanged() {
+        notifyItemRangeChanged(0, getItemCount(), PAYLOAD_SELECTION);
     }
 
     /**
@@ -73,29 +247,65 @@ public class CapturadosAdapter extends RecyclerView.Adapter<CapturadosAdapter.Ca
      * @param position La posición del elemento en la lista.
      */
     @Override
-    public void onBindViewHolder(@NonNull CapturadosViewHolder holder, int position) {
+    public void onBindViewHolder(@NonNull RecyclerView.ViewHolder holder, int position) {
+        PipelineTrace.begin("bind:capturados");
+        try {
+            bindPokemon(holder, position);
+        } finally {
+            PipelineTrace.end();
+        }
+    }
+
+    private void bindPokemon(RecyclerView.ViewHolder holder, int position) {
         // Obtiene el Pokémon correspondiente a la posición
         PokemonDetails pokemon = pokemonList.get(position);
 
         // Log para depuración: muestra el nombre y la URL del sprite del Pokémon
         Log.d("CapturadosAdapter", "Pokemon: " + pokemon.getName() + ", Sprite URL: " + pokemon.getSpriteUrl());
 
-        // Vincula el nombre del Pokémon al TextView correspondiente
-        holder.binding.pokemonName.setText(pokemon.getName());
+        TextView nameView;
+        ImageView imageView;
+        View deleteButton;
+        if (holder instanceof PokemonGridViewHolder) {
+            ItemPokemonGridBinding binding = ((PokemonGridViewHolder) holder).binding;
+            nameView = binding.pokemonName;
+            imageView = binding.pokemonSprite;
+            deleteButton = binding.deleteButton;
+            // La celda puede venir de la Pokédex: se deja en su estado normal.
+            binding.typeIcon1.setVisibility(View.GONE);
+            binding.typeIcon2.setVisibility(View.GONE);
+            binding.deleteButton.setVisibility(View.VISIBLE);
+            holder.itemView.setEnabled(true);
+            holder.itemView.setOnHoverListener(null);
+        } else {
+            ItemCapturadoBinding binding = ((CapturadosViewHolder) holder).binding;
+            nameView = binding.pokemonName;
+            imageView = binding.pokemonImage;
+            deleteButton = binding.deleteButton;
+        }
+        bindSelection(holder, pokemon);
+
+        // Vincula el nombre del Pokémon, en el idioma activo, al TextView correspondiente
+        nameView.setText(LocalizedSpeciesCache.getInstance(holder.itemView.getContext()).getName(pokemon));
 
         // Utiliza Glide para cargar la imagen del Pokémon desde su URL
         if (pokemon.getSpriteUrl() != null && !pokemon.getSpriteUrl().isEmpty()) {
-            holder.binding.pokemonImage.setVisibility(View.VISIBLE);
-            Glide.with(holder.binding.pokemonImage.getContext())
-                    .load(pokemon.getSpriteUrl())
-                    .into(holder.binding.pokemonImage);
+            imageView.setVisibility(View.VISIBLE);
+            PipelineTrace.begin("bind:glide");
+            try {
+                Glide.with(imageView.getContext())
+                        .load(LoadingPolicy.getInstance(imageView.getContext()).getImageUrl(pokemon.getSpriteUrl(), false))
+                        .into(imageView);
+            } finally {
+                PipelineTrace.end();
+            }
         } else {
             // Si no hay imagen, oculta el ImageView
-            holder.binding.pokemonImage.setVisibility(View.GONE);
+            imageView.setVisibility(View.GONE);
         }
 
         // Configura el botón de eliminar para que llame al método correspondiente del listener
-        holder.binding.deleteButton.setOnClickListener(v -> {
+        deleteButton.setOnClickListener(v -> {
             if (listener != null) {
                 listener.onDeletePokemon(pokemon);
             }
@@ -103,11 +313,37 @@ public class CapturadosAdapter extends RecyclerView.Adapter<CapturadosAdapter.Ca
 
         // Configura el clic en todo el elemento para que llame al método de clic del listener
         holder.itemView.setOnClickListener(v -> {
-            if (listener != null) {
-                PokemonDetails selectedPokemon = pokemonList.get(holder.getAdapterPosition());
-                listener.onPokemonClick(selectedPokemon);
+            int adapterPosition = holder.getBindingAdapterPosition();
+            if (listener != null && adapterPosition != RecyclerView.NO_POSITION) {
+                listener.onPokemonClick(pokemonList.get(adapterPosition));
             }
         });
+
+        // La pulsación larga inicia la selección múltiple
+        holder.itemView.setOnLongClickListener(v -> {
+            int adapterPosition = holder.getBindingAdapterPosition();
+            if (listener != null && adapterPosition != RecyclerView.NO_POSITION) {
+                listener.onPokemonLongClick(pokemonList.get(adapterPosition));
+                return true;
+            }
+            return false;
+        });
+    }
+
+    /**
+     * Resalta la fila si el Pokémon está seleccionado.
+     */
+    private void bindSelection(RecyclerView.ViewHolder holder, PokemonDetails pokemon) {
+        boolean selected = selectedIds.contains(pokemon.getId());
+        int color = ContextCompat.getColor(holder.itemView.getContext(),
+                selected ? R.color.selected_cardview : R.color.yellow_cardview);
+        if (holder instanceof PokemonGridViewHolder) {
+            // La celda puede venir de la Pokédex, que cambia el fondo entero.
+            holder.itemView.setBackgroundColor(color);
+        } else {
+            ((CapturadosViewHolder) holder).binding.getRoot().setCardBackgroundColor(color);
+        }
+        holder.itemView.setActivated(selected);
     }
 
     /**
@@ -0,0 +1,465 @@
+package com.lopezgagonuria_pmdm.u3;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.net.ConnectivityManager;
+import android.net.Network;
+import android.net.NetworkCapabilities;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import android.widget.Toast;
+import androidx.annotation.NonNull;
+import com.google.firebase.auth.FirebaseAuth;
+import com.google.firebase.auth.FirebaseUser;
+import com.google.firebase.firestore.FirebaseFirestoreException;
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Cola persistente de operaciones de captura y liberación pendientes de enviar a Firestore
+ * (a través del {@link CapturedStore} de la aplicación).
+ * La interfaz aplica cada operación de forma optimista y la encola aquí; la cola se guarda en
+ * disco para sobrevivir a la muerte del proceso y se envía en orden, en lotes, cuando hay
+ * conexión. Si Firestore rechaza una operación de forma definitiva, se deshace y se avisa al
+ * usuario.
+ */
+public final class CapturadosOutbox {
+
+    /**
+     * Tipo de operación encolada.
+     */
+    public enum Type {
+        CAPTURE,
+        RELEASE
+    }
+
+    /**
+     * Operación pendiente de enviar a Firestore.
+     */
+    public static class Operation {
+
+        // Número de secuencia que fija el orden de envío.
+        long seq;
+
+        // Tipo de operación.
+        Type type;
+
+        // Usuario propietario de la partición en la que se escribe.
+        String uid;
+
+        // Pokémon afectado.
+        PokemonDetails pokemon;
+
+        // Hora del dispositivo al encolarla, en milisegundos. Es 0 en las importaciones, que
+        // no cuentan en la línea temporal de capturas.
+        long time;
+
+        // Hora (ms) antes de la que no se envía, para poder deshacerla; 0 si se envía ya.
+        long holdUntil;
+
+        // En las liberaciones, hora de la captura que deshacen, o 0 si esa captura no cuenta
+        // en la línea temporal (importada o anterior a ella); entonces la liberación tampoco.
+        long capturedAt;
+
+        public Type getType() {
+            return type;
+        }
+
+        public PokemonDetails getPokemon() {
+            return pokemon;
+        }
+    }
+
+    /**
+     * Interfaz para recibir las operaciones que se han deshecho por un error definitivo.
+     */
+    public interface OnRollbackListener {
+        /**
+         * Método llamado en el hilo principal cuando una operación se ha descartado.
+         *
+         * @param operation Operación descartada.
+         */
+        void onRollback(Operation operation);
+    }
+
+    // Espera antes de reintentar un envío que ha fallado por un error temporal.
+    private static final long RETRY_DELAY_MS = 30_000;
+
+    private static final String PREFS_NAME = "capturados_outbox";
+    private static final String KEY_OPERATIONS = "operations";
+    private static final String KEY_NEXT_SEQ = "next_seq";
+    private static final String TAG = "CapturadosOutbox";
+
+    private static CapturadosOutbox instance;
+
+    private final Context appContext;
+    private final SharedPreferences prefs;
+    private final Gson gson = new Gson();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final List<OnRollbackListener> listeners = new CopyOnWriteArrayList<>();
+
+    // Operaciones pendientes, en orden de envío. Solo se accede desde el hilo principal.
+    private final List<Operation> pending;
+
+    // Indica si hay un lote en curso.
+    private boolean flushing;
+
+    // Operaciones del lote en curso, que ya no se pueden retirar de la cola.
+    private List<Operation> inFlight = Collections.emptyList();
+
+    // Vuelve a intentar el envío cuando termina el plazo de la primera operación.
+    private final Runnable flushWhenHeld = this::flush;
+
+    // Número máximo de operaciones del siguiente lote. Se reduce a la mitad cada vez que
+    // Firestore rechaza un lote, hasta aislar la operación rechazada.
+    private int batchLimit = CapturedStore.MAX_BATCH_SIZE;
+
+    /**
+     * Obtiene la instancia única de la cola.
+     *
+     * @param context Contexto de la aplicación.
+     * @return Instancia de la cola.
+     */
+    public static synchronized CapturadosOutbox getInstance(Context context) {
+        if (instance == null) {
+            instance = new CapturadosOutbox(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private CapturadosOutbox(Context appContext) {
+        this.appContext = appContext;
+        this.prefs = appContext.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        this.pending = load();
+        registerNetworkCallback();
+    }
+
+    /**
+     * Encola la captura de un Pokémon y trata de enviarla.
+     *
+     * @param pokemon Pokémon capturado.
+     */
+    public void enqueueCapture(PokemonDetails pokemon) {
+        enqueue(Type.CAPTURE, Collections.singletonList(pokemon), 0);
+    }
+
+    /**
+     * Encola la liberación de un Pokémon y trata de enviarla.
+     *
+     * @param pokemon Pokémon liberado.
+     */
+    public void enqueueRelease(PokemonDetails pokemon) {
+        enqueue(Type.RELEASE, Collections.singletonList(pokemon), 0);
+    }
+
+    /**
+     * Encola la liberación de varios Pokémon a la vez, sin enviarla hasta que termine el plazo
+     * para deshacerla. Se guardan con una sola escritura, así que sobreviven a la muerte del
+     * proceso durante el plazo, y al enviarse juntas van en el mismo lote de Firestore.
+     *
+     * @param pokemonList Pokémon liberados.
+     * @param undoWindowMs Plazo para deshacerlas con {@link #cancel(List)}, en milisegundos.
+     * @return Operaciones encoladas.
+     */
+    public List<Operation> enqueueReleases(List<PokemonDetails> pokemonList, long undoWindowMs) {
+        return enqueue(Type.RELEASE, pokemonList, undoWindowMs);
+    }
+
+    /**
+     * Retira de la cola operaciones que todavía no se han enviado, por ejemplo al deshacer
+     * unas liberaciones durante su plazo.
+     *
+     * @param operations Operaciones a retirar.
+     * @return Operaciones retiradas; las que ya van en un lote en curso no se pueden retirar.
+     */
+    public List<Operation> cancel(List<Operation> operations) {
+        List<Operation> cancelled = new ArrayList<>();
+        for (Operation operation : operations) {
+            if (!inFlight.contains(operation) && pending.remove(operation)) {
+                cancelled.add(operation);
+            }
+        }
+        if (!cancelled.isEmpty()) {
+            save();
+            flush(); // Lo que estaba detrás de ellas ya se puede enviar.
+        }
+        return cancelled;
+    }
+
+    /**
+     * Obtiene el tipo de la última operación pendiente del usuario actual para un Pokémon.
+     *
+     * @param pokemonId ID del Pokémon.
+     * @return Tipo de la última operación pendiente, o null si no hay ninguna.
+     */
+    public Type getPendingType(String pokemonId) {
+        String uid = currentUid();
+        for (int i = pending.size() - 1; i >= 0; i--) {
+            Operation operation = pending.get(i);
+            if (operation.uid.equals(uid) && operation.pokemon.getId().equals(pokemonId)) {
+                return operation.type;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Obtiene los Pokémon del usuario actual cuya última operación pendiente es una captura,
+     * para mostrarlos aunque Firestore todavía no los tenga. Cada Pokémon aparece una sola vez, aunque tenga
+     * varias operaciones pendientes (por ejemplo, captura, liberación y captura).
+     *
+     * @return Lista de Pokémon capturados pendientes de enviar.
+     */
+    public List<PokemonDetails> getPendingCaptures() {
+        // Solo cuenta la última operación de cada Pokémon.
+        // Las operaciones de otro usuario que sigan en la cola no son suyas.
+        String uid = currentUid();
+        Map<String, Operation> lastById = new LinkedHashMap<>();
+        for (Operation operation : pending) {
+            if (operation.uid.equals(uid)) {
+                lastById.put(operation.pokemon.getId(), operation);
+            }
+        }
+        List<PokemonDetails> captures = new ArrayList<>();
+        for (Operation operation : lastById.values()) {
+            if (operation.type == Type.CAPTURE) {
+                captures.add(operation.pokemon);
+            }
+        }
+        return captures;
+    }
+
+    public void addOnRollbackListener(OnRollbackListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeOnRollbackListener(OnRollbackListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Envía en orden las operaciones pendientes, en lotes, si hay conexión.
+     */
+    public void flush() {
+        if (flushing || pending.isEmpty() || !isOnline()) {
+            return;
+        }
+        List<Operation> batchOperations = nextBatch();
+        if (batchOperations.isEmpty()) {
+            // La primera operación está en su plazo para deshacerla: se reintenta al terminar.
+            // También cubre las que quedaron en plazo al morir el proceso.
+            long delay = pending.get(0).holdUntil - System.currentTimeMillis();
+            mainHandler.removeCallbacks(flushWhenHeld);
+            mainHandler.postDelayed(flushWhenHeld, Math.max(delay, 0));
+            return;
+        }
+        flushing = true;
+        inFlight = batchOperations;
+        CapturedStoreProvider.get(appContext).commit(batchOperations, new CapturedStore.Callback<Void>() {
+            @Override
+            public void onSuccess(Void result) {
+                mainHandler.post(() -> {
+                    Log.d(TAG, "Lote enviado: " + batchOperations.size() + " operaciones");
+                    pending.removeAll(batchOperations);
+                    save();
+                    CapturedSync.getInstance(appContext).applyConfirmed(batchOperations);
+                    flushing = false;
+                    inFlight = Collections.emptyList();
+                    if (batchOperations.size() < batchLimit) {
+                        // La cola se ha vaciado y la operación rechazada, si la había, ya no está.
+                        batchLimit = CapturedStore.MAX_BATCH_SIZE;
+                    }
+                    flush(); // Continúa con el siguiente lote, si lo hay.
+                });
+            }
+
+            @Override
+            public void onError(Exception e) {
+                mainHandler.post(() -> {
+                    flushing = false;
+                    inFlight = Collections.emptyList();
+                    if (isPermanentFailure(e) && batchOperations.size() > 1) {
+                        // Se busca la operación rechazada enviando el lote por mitades; las
+                        // válidas se confirman y solo se deshace la que Firestore rechaza sola.
+                        Log.w(TAG, "Lote de " + batchOperations.size() + " operaciones rechazado, se divide: " + e.getMessage());
+                        batchLimit = batchOperations.size() / 2;
+                        flush();
+                    } else if (isPermanentFailure(e)) {
+                        Log.e(TAG, "Operación rechazada por Firestore, se deshace", e);
+                        pending.removeAll(batchOperations);
+                        save();
+                        rollback(batchOperations);
+                        batchLimit = CapturedStore.MAX_BATCH_SIZE;
+                        flush();
+                    } else {
+                        Log.w(TAG, "Error temporal al enviar el lote, se reintentará: " + e.getMessage());
+                        mainHandler.postDelayed(CapturadosOutbox.this::flush, RETRY_DELAY_MS);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Toma las primeras operaciones pendientes que caben en un lote, como mucho
+     * {@link #batchLimit}. Cada operación que cuenta en la línea temporal añade al lote la
+     * escritura de su marca, y cada usuario y mes con operaciones la de su documento.
+     */
+    private List<Operation> nextBatch() {
+        List<Operation> batch = new ArrayList<>();
+        Set<String> months = new HashSet<>();
+        int writes = 0;
+        long now = System.currentTimeMillis();
+        for (Operation operation : pending) {
+            // Se respeta el orden: nada se envía por delante de una operación en su plazo.
+            if (batch.size() == batchLimit || operation.holdUntil > now) {
+                break;
+            }
+            boolean counts = CaptureTimeline.counts(operation);
+            String month = counts ? operation.uid + "/" + CaptureTimeline.monthId(operation.time) : null;
+            boolean newMonth = month != null && !months.contains(month);
+            int operationWrites = 1 + (counts ? 1 : 0) + (newMonth ? 1 : 0);
+            if (writes + operationWrites > CapturedStore.MAX_BATCH_SIZE) {
+                break;
+            }
+            batch.add(operation);
+            writes += operationWrites;
+            if (newMonth) {
+                months.add(month);
+            }
+        }
+        return batch;
+    }
+
+    private List<Operation> enqueue(Type type, List<PokemonDetails> pokemonList, long holdMs) {
+        List<Operation> operations = new ArrayList<>();
+        FirebaseUser user = FirebaseAuth.getInstance().getCurrentUser();
+        if (user == null) {
+            Log.e(TAG, "No se puede encolar la operación sin usuario.");
+            return operations;
+        }
+        long nextSeq = prefs.getLong(KEY_NEXT_SEQ, 0);
+        long now = System.currentTimeMillis();
+        for (PokemonDetails pokemon : pokemonList) {
+            if (pokemon.getId() == null) {
+                Log.e(TAG, "No se puede encolar la operación sin ID de Pokémon.");
+                continue;
+            }
+            Operation operation = new Operation();
+            operation.seq = nextSeq++;
+            operation.type = type;
+            operation.uid = user.getUid();
+            operation.pokemon = pokemon;
+            operation.time = now;
+            operation.holdUntil = holdMs > 0 ? now + holdMs : 0;
+            if (type == Type.RELEASE) {
+                operation.capturedAt = findCapturedAt(operation.uid, pokemon.getId());
+            }
+            pending.add(operation);
+            operations.add(operation);
+        }
+        prefs.edit().putLong(KEY_NEXT_SEQ, nextSeq).apply();
+        save();
+        flush();
+        return operations;
+    }
+
+    /**
+     * Busca la hora de la captura vigente de un Pokémon: la de su última captura pendiente o,
+     * si no hay ninguna, la del estado sincronizado.
+     */
+    private long findCapturedAt(String uid, String pokemonId) {
+        for (int i = pending.size() - 1; i >= 0; i--) {
+            Operation operation = pending.get(i);
+            if (operation.uid.equals(uid) && operation.pokemon.getId().equals(pokemonId)) {
+                return operation.type == Type.CAPTURE ? operation.time : 0;
+            }
+        }
+        return CapturedSync.getInstance(appContext).getCapturedAt(pokemonId);
+    }
+
+    private static String currentUid() {
+        FirebaseUser user = FirebaseAuth.getInstance().getCurrentUser();
+        return user != null ? user.getUid() : null;
+    }
+
+    /**
+     * Avisa a los listeners y al usuario de las operaciones descartadas.
+     */
+    private void rollback(List<Operation> operations) {
+        for (Operation operation : operations) {
+            for (OnRollbackListener listener : listeners) {
+                listener.onRollback(operation);
+            }
+        }
+        Toast.makeText(appContext, appContext.getString(R.string.outbox_rollback, operations.size()),
+                Toast.LENGTH_LONG).show();
+    }
+
+    /**
+     * Indica si el error no se va a resolver reintentando.
+     */
+    private boolean isPermanentFailure(Exception e) {
+        if (!(e instanceof FirebaseFirestoreException)) {
+            return false;
+        }
+        switch (((FirebaseFirestoreException) e).getCode()) {
+            case PERMISSION_DENIED:
+            case INVALID_ARGUMENT:
+            case NOT_FOUND:
+            case FAILED_PRECONDITION:
+            case OUT_OF_RANGE:
+            case UNAUTHENTICATED:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private boolean isOnline() {
+        ConnectivityManager connectivityManager = appContext.getSystemService(ConnectivityManager.class);
+        if (connectivityManager == null) {
+            return true;
+        }
+        NetworkCapabilities capabilities = connectivityManager.getNetworkCapabilities(connectivityManager.getActiveNetwork());
+        return capabilities != null && capabilities.hasCapability(NetworkCapabilities.NET_CAPABILITY_INTERNET);
+    }
+
+    /**
+     * Reintenta el envío en cuanto vuelve la conexión.
+     */
+    private void registerNetworkCallback() {
+        ConnectivityManager connectivityManager = appContext.getSystemService(ConnectivityManager.class);
+        if (connectivityManager == null) {
+            return;
+        }
+        connectivityManager.registerDefaultNetworkCallback(new ConnectivityManager.NetworkCallback() {
+            @Override
+            public void onAvailable(@NonNull Network network) {
+                mainHandler.post(CapturadosOutbox.this::flush);
+            }
+        });
+    }
+
+    private List<Operation> load() {
+        String json = prefs.getString(KEY_OPERATIONS, null);
+        if (json == null) {
+            return new ArrayList<>();
+        }
+        List<Operation> operations = gson.fromJson(json, new TypeToken<List<Operation>>() {}.getType());
+        return operations != null ? operations : new ArrayList<>();
+    }
+
+    private void save() {
+        prefs.edit().putString(KEY_OPERATIONS, gson.toJson(pending)).apply();
+    }
+}
@@ -0,0 +1,376 @@
+package com.lopezgagonuria_pmdm.u3;
+
+import android.app.Application;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Parcelable;
+import android.util.Log;
+import androidx.annotation.NonNull;
+import androidx.lifecycle.AndroidViewModel;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Estado de la pantalla de capturados. Sobrevive a los cambios de pestaña y de configuración:
+ * al volver a la pantalla la lista se rehace con el estado en memoria de {@link CapturedSync}
+ * y de la cola de operaciones, y Firestore solo se consulta si ese estado ha caducado.
+ * También guarda la selección múltiple y las liberaciones que todavía se pueden deshacer.
+ */
+public class CapturadosViewModel extends AndroidViewModel {
+
+    // Tiempo durante el que se puede deshacer una liberación antes de enviarla.
+    public static final int UNDO_WINDOW_MS = 5000;
+
+    /**
+     * Liberaciones hechas de una vez, con las posiciones que ocupaban en la lista.
+     */
+    private static final class UndoableRelease {
+
+        final List<CapturadosOutbox.Operation> operations;
+
+        // Posición de cada Pokémon en la lista al liberarlo, por ID.
+        final Map<String, Integer> positions;
+
+        UndoableRelease(List<CapturadosOutbox.Operation> operations, Map<String, Integer> positions) {
+            this.operations = operations;
+            this.positions = positions;
+        }
+    }
+
+    private static final String TAG = "CapturadosViewModel";
+
+    // Lista mostrada.
+    private final List<PokemonDetails> pokemonCapturadosList = new ArrayList<>();
+
+    // Se emite con una copia de la lista cada vez que cambia su contenido.
+    private final MutableLiveData<List<PokemonDetails>> captured = new MutableLiveData<>();
+
+    // Número de Pokémon seleccionados (0 fuera del modo de selección).
+    private final MutableLiveData<Integer> selectionCount = new MutableLiveData<>(0);
+
+    // Número de liberaciones que se pueden deshacer, o null si no hay ninguna.
+    private final MutableLiveData<Integer> undoableCount = new MutableLiveData<>();
+
+    // Último error pendiente de mostrar, o null.
+    private final MutableLiveData<String> error = new MutableLiveData<>();
+
+    private final CapturadosOutbox outbox;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    // IDs de los Pokémon seleccionados.
+    private final Set<String> selectedIds = new HashSet<>();
+
+    // Liberaciones que todavía se pueden deshacer, de la más antigua a la más reciente. Ya
+    // están en la cola de operaciones, que no las envía hasta que termina su plazo.
+    private final List<UndoableRelease> undoableReleases = new ArrayList<>();
+
+    // Da por terminado el plazo para deshacer las liberaciones.
+    private final Runnable expireUndo = this::expireUndo;
+
+    // Posición de desplazamiento guardada al destruir la vista.
+    private Parcelable listState;
+
+    // Listener que deshace en la lista las operaciones rechazadas por Firestore.
+    private final CapturadosOutbox.OnRollbackListener rollbackListener = operation -> {
+        PokemonDetails pokemon = operation.getPokemon();
+        pokemonCapturadosList.removeIf(p -> p.getId().equals(pokemon.getId()));
+        if (operation.getType() == CapturadosOutbox.Type.RELEASE) {
+            pokemonCapturadosList.add(pokemon); // La liberación falló: el Pokémon sigue capturado.
+        }
+        publish();
+    };
+
+    public CapturadosViewModel(@NonNull Application application) {
+        super(application);
+        outbox = CapturadosOutbox.getInstance(application);
+        outbox.addOnRollbackListener(rollbackListener);
+    }
+
+    public LiveData<List<PokemonDetails>> getCaptured() {
+        return captured;
+    }
+
+    public LiveData<Integer> getSelectionCount() {
+        return selectionCount;
+    }
+
+    public LiveData<Integer> getUndoableCount() {
+        return undoableCount;
+    }
+
+    public LiveData<String> getError() {
+        return error;
+    }
+
+    /**
+     * Carga la lista de capturados. Si el estado en memoria está al día se muestra sin
+     * ninguna lectura; si no, se muestra el estado local y se piden solo los cambios.
+     */
+    public void load() {
+        CapturedSync capturedSync = CapturedSync.getInstance(getApplication());
+        if (capturedSync.isFresh()) {
+            show(capturedSync.getCached());
+            return;
+        }
+        capturedSync.sync(new CapturedSync.Listener() {
+            @Override
+            public void onCapturedChanged(List<PokemonDetails> capturedList, boolean fromServer) {
+                show(capturedList);
+            }
+
+            @Override
+            public void onError(Exception e) {
+                Log.e(TAG, "Error al leer datos de Firestore", e);
+                error.setValue("Error al leer datos de Firestore");
+            }
+        });
+    }
+
+    /**
+     * Quita de la lista los Pokémon liberados y encola la liberación. La cola la guarda en el
+     * momento, de modo que no se pierde aunque muera el proceso, pero no la envía hasta que
+     * termina el plazo para deshacerla; las liberaciones encoladas juntas van en un solo lote.
+     *
+     * @param released Pokémon liberados.
+     */
+    public void release(List<PokemonDetails> released) {
+        if (released.isEmpty()) {
+            return;
+        }
+        Map<String, Integer> positions = new HashMap<>();
+        for (int i = 0; i < pokemonCapturadosList.size(); i++) {
+            positions.put(pokemonCapturadosList.get(i).getId(), i);
+        }
+        Map<String, Integer> releasedPositions = new HashMap<>();
+        for (PokemonDetails pokemon : released) {
+            Integer position = positions.get(pokemon.getId());
+            releasedPositions.put(pokemon.getId(), position != null ? position : pokemonCapturadosList.size());
+        }
+        pokemonCapturadosList.removeIf(p -> releasedPositions.containsKey(p.getId()));
+        selectedIds.removeAll(releasedPositions.keySet());
+        selectionCount.setValue(selectedIds.size());
+        publish();
+
+        List<CapturadosOutbox.Operation> operations = outbox.enqueueReleases(released, UNDO_WINDOW_MS);
+        undoableReleases.add(new UndoableRelease(operations, releasedPositions));
+        Log.d(TAG, "Liberaciones encoladas en un lote: " + operations.size());
+
+        mainHandler.removeCallbacks(expireUndo);
+        mainHandler.postDelayed(expireUndo, UNDO_WINDOW_MS);
+        undoableCount.setValue(countUndoable());
+    }
+
+    /**
+     * Deshace las liberaciones que todavía no se han enviado y devuelve cada Pokémon a la
+     * posición que ocupaba en la lista.
+     */
+    public void undoRelease() {
+        if (undoableReleases.isEmpty()) {
+            return;
+        }
+        // De la más reciente a la más antigua, para que cada posición se refiera a la lista
+        // tal como estaba al hacer esa liberación.
+        for (int i = undoableReleases.size() - 1; i >= 0; i--) {
+            UndoableRelease release = undoableReleases.get(i);
+            List<CapturadosOutbox.Operation> cancelled = outbox.cancel(release.operations);
+            cancelled.sort((a, b) -> Integer.compare(
+                    release.positions.get(a.getPokemon().getId()), release.positions.get(b.getPokemon().getId())));
+            for (CapturadosOutbox.Operation operation : cancelled) {
+                int position = release.positions.get(operation.getPokemon().getId());
+                pokemonCapturadosList.add(Math.min(position, pokemonCapturadosList.size()), operation.getPokemon());
+            }
+        }
+        expireUndo();
+        publish();
+    }
+
+    /**
+     * Quita un Pokémon de la lista sin encolar nada, porque ya lo ha liberado otra pantalla.
+     *
+     * @param pokemon Pokémon liberado.
+     */
+    public void removeFromList(PokemonDetails pokemon) {
+        if (pokemonCapturadosList.removeIf(p -> p.getId().equals(pokemon.getId()))) {
+            publish();
+        }
+    }
+
+    /**
+     * Indica si hay algún Pokémon seleccionado.
+     *
+     * @return true en el modo de selección.
+     */
+    public boolean isSelecting() {
+        return !selectedIds.isEmpty();
+    }
+
+    /**
+     * Obtiene los IDs seleccionados. El adaptador los consulta al enlazar cada fila.
+     *
+     * @return Conjunto de IDs (no se debe modificar).
+     */
+    public Set<String> getSelectedIds() {
+        return selectedIds;
+    }
+
+    /**
+     * Selecciona o deja de seleccionar un Pokémon.
+     *
+     * @param pokemon Pokémon pulsado.
+     */
+    public void toggleSelection(PokemonDetails pokemon) {
+        if (!selectedIds.remove(pokemon.getId())) {
+            selectedIds.add(pokemon.getId());
+        }
+        selectionCount.setValue(selectedIds.size());
+    }
+
+    /**
+     * Selecciona todos los Pokémon de la lista.
+     */
+    public void selectAll() {
+        for (PokemonDetails pokemon : pokemonCapturadosList) {
+            selectedIds.add(pokemon.getId());
+        }
+        selectionCount.setValue(selectedIds.size());
+    }
+
+    /**
+     * Añade a la selección todos los Pokémon que tienen un tipo.
+     *
+     * @param typeName Nombre del tipo en la API (por ejemplo, "fire").
+     */
+    public void selectByType(String typeName) {
+        for (PokemonDetails pokemon : pokemonCapturadosList) {
+            List<String> typeNames = pokemon.getTypeNames();
+            if (typeNames != null && typeNames.contains(typeName)) {
+                selectedIds.add(pokemon.getId());
+            }
+        }
+        selectionCount.setValue(selectedIds.size());
+    }
+
+    /**
+     * Sale del modo de selección.
+     */
+    public void clearSelection() {
+        if (selectedIds.isEmpty()) {
+            return;
+        }
+        selectedIds.clear();
+        selectionCount.setValue(0);
+    }
+
+    /**
+     * Obtiene los Pokémon seleccionados, en el orden de la lista.
+     *
+     * @return Lista de Pokémon seleccionados.
+     */
+    public List<PokemonDetails> getSelected() {
+        List<PokemonDetails> selected = new ArrayList<>();
+        for (PokemonDetails pokemon : pokemonCapturadosList) {
+            if (selectedIds.contains(pokemon.getId())) {
+                selected.add(pokemon);
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * Obtiene los tipos presentes en la lista, en orden de aparición.
+     *
+     * @return Nombres de los tipos en la API.
+     */
+    public List<String> getTypesInList() {
+        Set<String> types = new LinkedHashSet<>();
+        for (PokemonDetails pokemon : pokemonCapturadosList) {
+            List<String> typeNames = pokemon.getTypeNames();
+            if (typeNames != null) {
+                types.addAll(typeNames);
+            }
+        }
+        return new ArrayList<>(types);
+    }
+
+    /**
+     * Marca el último error como ya mostrado.
+     */
+    public void clearError() {
+        error.setValue(null);
+    }
+
+    /**
+     * Guarda la posición de desplazamiento de la lista.
+     *
+     * @param state Estado del LayoutManager.
+     */
+    public void setListState(Parcelable state) {
+        listState = state;
+    }
+
+    /**
+     * Obtiene y olvida la posición de desplazamiento guardada.
+     *
+     * @return Estado del LayoutManager, o null si no hay ninguno.
+     */
+    public Parcelable consumeListState() {
+        Parcelable state = listState;
+        listState = null;
+        return state;
+    }
+
+    /**
+     * Termina el plazo para deshacer: la cola ya envía por su cuenta las liberaciones.
+     */
+    private void expireUndo() {
+        mainHandler.removeCallbacks(expireUndo);
+        undoableReleases.clear();
+        undoableCount.setValue(null);
+    }
+
+    private int countUndoable() {
+        int count = 0;
+        for (UndoableRelease release : undoableReleases) {
+            count += release.operations.size();
+        }
+        return count;
+    }
+
+    /**
+     * Rehace la lista con los capturados y las operaciones que aún no se han enviado.
+     */
+    private void show(List<PokemonDetails> capturedList) {
+        pokemonCapturadosList.clear();
+        if (capturedList != null) {
+            for (PokemonDetails capturedPokemon : capturedList) {
+                if (outbox.getPendingType(capturedPokemon.getId()) == null) {
+                    pokemonCapturadosList.add(capturedPokemon);
+                }
+            }
+        }
+        // Las capturas aún no enviadas se muestran igualmente; las liberaciones pendientes no.
+        pokemonCapturadosList.addAll(outbox.getPendingCaptures());
+        publish();
+    }
+
+    /**
+     * Emite una copia de la lista, para que el adaptador calcule las diferencias con la anterior.
+     */
+    private void publish() {
+        captured.setValue(new ArrayList<>(pokemonCapturadosList));
+    }
+
+    @Override
+    protected void onCleared() {
+        // Las liberaciones ya están en la cola, que las envía aunque la pantalla desaparezca.
+        mainHandler.removeCallbacks(expireUndo);
+        outbox.removeOnRollbackListener(rollbackListener);
+    }
+}
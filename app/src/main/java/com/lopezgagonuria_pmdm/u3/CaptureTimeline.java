@@ -0,0 +1,343 @@
+package com.lopezgagonuria_pmdm.u3;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Historial de capturas de un usuario, a partir de contadores agregados por mes. Cada mes es un
+ * documento pequeño con las capturas y liberaciones de cada día y las capturas de cada tipo por
+ * día; se escriben en el mismo lote que las capturas y liberaciones, así que la línea temporal
+ * se obtiene leyendo un documento por mes con actividad en lugar de recorrer toda la colección
+ * de capturados.
+ *
+ * <p>Las semanas (de lunes a domingo) y la primera captura de cada tipo se calculan a partir de
+ * los contadores diarios. Los días se toman en la zona horaria del dispositivo al encolar la
+ * operación. El documento de Firestore lo lee y escribe {@link CaptureTimelineMapper}; aquí
+ * solo {@link #fromOperations(List)} depende de otra clase de la aplicación, las operaciones
+ * de {@link CapturadosOutbox}.
+ */
+public final class CaptureTimeline {
+
+    /**
+     * Contadores de un mes.
+     */
+    public static final class Month {
+
+        // ID del mes, "aaaa-MM", que es también el ID del documento.
+        public final String id;
+
+        // Capturas y liberaciones por día del mes (índice 1 a 31).
+        private final int[] captures = new int[32];
+        private final int[] releases = new int[32];
+
+        // Capturas por tipo y día del mes.
+        private final Map<String, int[]> typeCaptures = new TreeMap<>();
+
+        public Month(String id) {
+            this.id = id;
+        }
+
+        /**
+         * Suma capturas de un día.
+         *
+         * @param day Día del mes.
+         * @param count Número de capturas.
+         */
+        public void addCaptures(int day, int count) {
+            captures[day] += count;
+        }
+
+        /**
+         * Suma liberaciones de un día.
+         *
+         * @param day Día del mes.
+         * @param count Número de liberaciones.
+         */
+        public void addReleases(int day, int count) {
+            releases[day] += count;
+        }
+
+        /**
+         * Suma capturas de un tipo en un día.
+         *
+         * @param type Nombre del tipo.
+         * @param day Día del mes.
+         * @param count Número de capturas.
+         */
+        public void addTypeCaptures(String type, int day, int count) {
+            int[] days = typeCaptures.get(type);
+            if (days == null) {
+                days = new int[32];
+                typeCaptures.put(type, days);
+            }
+            days[day] += count;
+        }
+
+        /**
+         * Suma los contadores de otro mes, por ejemplo los de un lote.
+         *
+         * @param other Contadores a sumar.
+         */
+        public void add(Month other) {
+            for (int day = 1; day <= 31; day++) {
+                captures[day] += other.captures[day];
+                releases[day] += other.releases[day];
+            }
+            for (Map.Entry<String, int[]> entry : other.typeCaptures.entrySet()) {
+                for (int day = 1; day <= 31; day++) {
+                    if (entry.getValue()[day] != 0) {
+                        addTypeCaptures(entry.getKey(), day, entry.getValue()[day]);
+                    }
+                }
+            }
+        }
+
+        public int getCaptures(int day) {
+            return captures[day];
+        }
+
+        public int getReleases(int day) {
+            return releases[day];
+        }
+
+        public int getTypeCaptures(String type, int day) {
+            int[] days = typeCaptures.get(type);
+            return days != null ? days[day] : 0;
+        }
+
+        /**
+         * Obtiene los tipos con alguna captura este mes.
+         *
+         * @return Nombres de los tipos, en orden alfabético.
+         */
+        public List<String> getTypes() {
+            return new ArrayList<>(typeCaptures.keySet());
+        }
+    }
+
+    /**
+     * Capturas y liberaciones de un día o de una semana.
+     */
+    public static final class Period {
+
+        // Inicio del periodo, en milisegundos.
+        public final long startMillis;
+
+        public final int captures;
+        public final int releases;
+
+        Period(long startMillis, int captures, int releases) {
+            this.startMillis = startMillis;
+            this.captures = captures;
+            this.releases = releases;
+        }
+    }
+
+    // Meses por ID.
+    private final Map<String, Month> months = new TreeMap<>();
+
+    /**
+     * Crea la línea temporal a partir de los meses leídos.
+     *
+     * @param months Contadores de cada mes con actividad.
+     */
+    public CaptureTimeline(List<Month> months) {
+        for (Month month : months) {
+            this.months.put(month.id, month);
+        }
+    }
+
+    /**
+     * Obtiene el ID del mes de una hora.
+     *
+     * @param timeMillis Hora en milisegundos.
+     * @return ID del mes, "aaaa-MM".
+     */
+    public static String monthId(long timeMillis) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(timeMillis);
+        return String.format(Locale.ROOT, "%04d-%02d", calendar.get(Calendar.YEAR), calendar.get(Calendar.MONTH) + 1);
+    }
+
+    /**
+     * Obtiene el día del mes de una hora.
+     *
+     * @param timeMillis Hora en milisegundos.
+     * @return Día del mes, de 1 a 31.
+     */
+    public static int dayOfMonth(long timeMillis) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(timeMillis);
+        return calendar.get(Calendar.DAY_OF_MONTH);
+    }
+
+    /**
+     * Agrupa por usuario y mes los contadores de un lote de operaciones. Solo suman las que
+     * cumplen {@link #counts(CapturadosOutbox.Operation)}.
+     *
+     * @param operations Operaciones del lote.
+     * @return Contadores por usuario y, dentro de cada uno, por ID de mes.
+     */
+    public static Map<String, Map<String, Month>> fromOperations(List<CapturadosOutbox.Operation> operations) {
+        Map<String, Map<String, Month>> byUser = new HashMap<>();
+        for (CapturadosOutbox.Operation operation : operations) {
+            if (!counts(operation)) {
+                continue;
+            }
+            Map<String, Month> userMonths = byUser.get(operation.uid);
+            if (userMonths == null) {
+                userMonths = new TreeMap<>();
+                byUser.put(operation.uid, userMonths);
+            }
+            String id = monthId(operation.time);
+            Month month = userMonths.get(id);
+            if (month == null) {
+                month = new Month(id);
+                userMonths.put(id, month);
+            }
+            int day = dayOfMonth(operation.time);
+            if (operation.type == CapturadosOutbox.Type.CAPTURE) {
+                month.addCaptures(day, 1);
+                for (String type : operation.pokemon.getTypeNames()) {
+                    month.addTypeCaptures(type, day, 1);
+                }
+            } else {
+                month.addReleases(day, 1);
+            }
+        }
+        return byUser;
+    }
+
+    /**
+     * Indica si una operación cuenta en la línea temporal. Las que no tienen hora (las
+     * importaciones) no cuentan, y las liberaciones de esas capturas tampoco, para que capturas
+     * y liberaciones sigan emparejadas.
+     *
+     * @param operation Operación de la cola.
+     * @return true si suma a algún contador.
+     */
+    public static boolean counts(CapturadosOutbox.Operation operation) {
+        return operation.time > 0
+                && (operation.type == CapturadosOutbox.Type.CAPTURE || operation.capturedAt > 0);
+    }
+
+    /**
+     * Obtiene la clave de una operación que cuenta en la línea temporal, con la que se marca
+     * como ya contada. La hora y el número de secuencia la distinguen de las de otros
+     * dispositivos, y no cambia si el lote se reenvía.
+     *
+     * @param operation Operación con hora.
+     * @return Clave de la operación.
+     */
+    public static String operationKey(CapturadosOutbox.Operation operation) {
+        return operation.time + "-" + operation.seq;
+    }
+
+    /**
+     * Obtiene las capturas y liberaciones de los últimos días.
+     *
+     * @param nowMillis Hora actual.
+     * @param count Número de días, incluido el actual.
+     * @return Días del más reciente al más antiguo.
+     */
+    public List<Period> getDays(long nowMillis, int count) {
+        List<Period> days = new ArrayList<>(count);
+        Calendar calendar = startOfDay(nowMillis);
+        for (int i = 0; i < count; i++) {
+            Month month = months.get(monthId(calendar.getTimeInMillis()));
+            int day = calendar.get(Calendar.DAY_OF_MONTH);
+            days.add(new Period(calendar.getTimeInMillis(),
+                    month != null ? month.getCaptures(day) : 0,
+                    month != null ? month.getReleases(day) : 0));
+            calendar.add(Calendar.DAY_OF_MONTH, -1);
+        }
+        return days;
+    }
+
+    /**
+     * Obtiene las capturas y liberaciones de las últimas semanas, de lunes a domingo.
+     *
+     * @param nowMillis Hora actual.
+     * @param count Número de semanas, incluida la actual.
+     * @return Semanas de la más reciente a la más antigua.
+     */
+    public List<Period> getWeeks(long nowMillis, int count) {
+        List<Period> weeks = new ArrayList<>(count);
+        Calendar calendar = startOfDay(nowMillis);
+        while (calendar.get(Calendar.DAY_OF_WEEK) != Calendar.MONDAY) {
+            calendar.add(Calendar.DAY_OF_MONTH, -1);
+        }
+        for (int i = 0; i < count; i++) {
+            long start = calendar.getTimeInMillis();
+            int captures = 0;
+            int releases = 0;
+            for (Period day : getDays(endOfWeek(start), 7)) {
+                captures += day.captures;
+                releases += day.releases;
+            }
+            weeks.add(new Period(start, captures, releases));
+            calendar.add(Calendar.DAY_OF_MONTH, -7);
+        }
+        return weeks;
+    }
+
+    /**
+     * Obtiene el primer día en que se capturó un Pokémon de cada tipo.
+     *
+     * @return Inicio del día de la primera captura por tipo, en orden de primera captura.
+     */
+    public Map<String, Long> getFirstCaptureByType() {
+        Map<String, Long> firstByType = new LinkedHashMap<>();
+        // Los meses están en orden, así que basta el primer día con capturas de cada tipo.
+        for (Month month : months.values()) {
+            for (int day = 1; day <= 31; day++) {
+                for (String type : month.getTypes()) {
+                    if (month.getTypeCaptures(type, day) > 0 && !firstByType.containsKey(type)) {
+                        firstByType.put(type, dayStart(month.id, day));
+                    }
+                }
+            }
+        }
+        return Collections.unmodifiableMap(firstByType);
+    }
+
+    /**
+     * Indica si no hay ninguna captura ni liberación registrada.
+     *
+     * @return true si la línea temporal está vacía.
+     */
+    public boolean isEmpty() {
+        return months.isEmpty();
+    }
+
+    private static Calendar startOfDay(long timeMillis) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(timeMillis);
+        calendar.set(Calendar.HOUR_OF_DAY, 0);
+        calendar.set(Calendar.MINUTE, 0);
+        calendar.set(Calendar.SECOND, 0);
+        calendar.set(Calendar.MILLISECOND, 0);
+        return calendar;
+    }
+
+    private static long endOfWeek(long weekStartMillis) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(weekStartMillis);
+        calendar.add(Calendar.DAY_OF_MONTH, 6);
+        return calendar.getTimeInMillis();
+    }
+
+    private static long dayStart(String monthId, int day) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.clear();
+        calendar.set(Integer.parseInt(monthId.substring(0, 4)), Integer.parseInt(monthId.substring(5, 7)) - 1, day);
+        return calendar.getTimeInMillis();
+    }
+}
@@ -0,0 +1,149 @@
+package com.lopezgagonuria_pmdm.u3;
+
+import android.os.Bundle;
+import android.text.format.DateUtils;
+import android.util.Log;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.LinearLayout;
+import android.widget.Toast;
+import androidx.annotation.NonNull;
+import androidx.fragment.app.Fragment;
+import com.google.firebase.auth.FirebaseAuth;
+import com.google.firebase.auth.FirebaseUser;
+import com.lopezgagonuria_pmdm.u3.databinding.FragmentCaptureTimelineBinding;
+import com.lopezgagonuria_pmdm.u3.databinding.ItemTimelineRowBinding;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Fragmento con el historial de capturas del usuario: capturas por día y por semana y la
+ * primera captura de cada tipo. Solo lee los documentos de contadores mensuales de
+ * {@link CaptureTimeline}, no la colección de capturados.
+ */
+public class CaptureTimelineFragment extends Fragment {
+
+    // Días y semanas que se muestran.
+    private static final int DAYS = 14;
+    private static final int WEEKS = 8;
+
+    private static final String TAG = "CaptureTimelineFragment";
+
+    // View Binding para acceder a las vistas del diseño de forma segura.
+    private FragmentCaptureTimelineBinding binding;
+
+    /**
+     * Método que infla la vista del fragmento y lanza la lectura del historial.
+     *
+     * @param inflater Inflador para las vistas.
+     * @param container Contenedor padre.
+     * @param savedInstanceState Estado guardado del fragmento.
+     * @return La vista raíz del fragmento.
+     */
+    @Override
+    public View onCreateView(@NonNull LayoutInflater inflater, ViewGroup container, Bundle savedInstanceState) {
+        binding = FragmentCaptureTimelineBinding.inflate(inflater, container, false);
+        loadTimeline();
+        return binding.getRoot();
+    }
+
+    @Override
+    public void onDestroyView() {
+        super.onDestroyView();
+        binding = null;
+    }
+
+    /**
+     * Lee los contadores del usuario y los muestra.
+     */
+    private void loadTimeline() {
+        FirebaseUser user = FirebaseAuth.getInstance().getCurrentUser();
+        if (user == null) {
+            binding.emptyView.setVisibility(View.VISIBLE);
+            return;
+        }
+        binding.progressBar.setVisibility(View.VISIBLE);
+        CapturedStore capturedStore = CapturedStoreProvider.get(requireContext());
+        CapturedStore.<CaptureTimeline>toFuture(callback -> capturedStore.readTimeline(user.getUid(), callback))
+                .whenCompleteAsync((timeline, error) -> {
+                    if (binding == null) {
+                        return; // La vista se ha destruido mientras tanto.
+                    }
+                    binding.progressBar.setVisibility(View.GONE);
+                    if (error != null) {
+                        Log.e(TAG, "Error al leer el historial de capturas", Futures.unwrap(error));
+                        Toast.makeText(requireContext(), R.string.timeline_error, Toast.LENGTH_SHORT).show();
+                        return;
+                    }
+                    showTimeline(timeline);
+                }, Futures.MAIN);
+    }
+
+    private void showTimeline(CaptureTimeline timeline) {
+        if (timeline.isEmpty()) {
+            binding.emptyView.setVisibility(View.VISIBLE);
+            return;
+        }
+        binding.timelineContent.setVisibility(View.VISIBLE);
+        long now = System.currentTimeMillis();
+
+        List<CaptureTimeline.Period> days = timeline.getDays(now, DAYS);
+        int maxDay = maxCaptures(days);
+        binding.daysContainer.removeAllViews();
+        for (CaptureTimeline.Period day : days) {
+            String label = DateUtils.formatDateTime(requireContext(), day.startMillis,
+                    DateUtils.FORMAT_SHOW_WEEKDAY | DateUtils.FORMAT_SHOW_DATE | DateUtils.FORMAT_ABBREV_ALL);
+            addRow(binding.daysContainer, label, day.captures, maxDay, formatCount(day));
+        }
+
+        List<CaptureTimeline.Period> weeks = timeline.getWeeks(now, WEEKS);
+        int maxWeek = maxCaptures(weeks);
+        binding.weeksContainer.removeAllViews();
+        for (CaptureTimeline.Period week : weeks) {
+            String start = DateUtils.formatDateTime(requireContext(), week.startMillis,
+                    DateUtils.FORMAT_SHOW_DATE | DateUtils.FORMAT_ABBREV_MONTH);
+            addRow(binding.weeksContainer, getString(R.string.timeline_week_of, start), week.captures, maxWeek,
+                    formatCount(week));
+        }
+
+        binding.typesContainer.removeAllViews();
+        for (Map.Entry<String, Long> entry : timeline.getFirstCaptureByType().entrySet()) {
+            String date = DateUtils.formatDateTime(requireContext(), entry.getValue(),
+                    DateUtils.FORMAT_SHOW_DATE | DateUtils.FORMAT_SHOW_YEAR | DateUtils.FORMAT_ABBREV_MONTH);
+            // Sin barra: solo interesa la fecha.
+            addRow(binding.typesContainer, entry.getKey(), 0, 0, date);
+        }
+    }
+
+    /**
+     * Añade una fila con una barra proporcional al máximo de la sección.
+     */
+    private void addRow(LinearLayout container, String label, int value, int max, String valueText) {
+        ItemTimelineRowBinding row = ItemTimelineRowBinding.inflate(getLayoutInflater(), container, false);
+        row.label.setText(label);
+        if (max > 0) {
+            row.bar.setMax(max);
+            row.bar.setProgress(value);
+        } else {
+            row.bar.setVisibility(View.INVISIBLE);
+        }
+        row.value.setText(valueText);
+        container.addView(row.getRoot());
+    }
+
+    private String formatCount(CaptureTimeline.Period period) {
+        if (period.releases > 0) {
+            return getString(R.string.timeline_count_with_releases, period.captures, period.releases);
+        }
+        return String.valueOf(period.captures);
+    }
+
+    private static int maxCaptures(List<CaptureTimeline.Period> periods) {
+        int max = 0;
+        for (CaptureTimeline.Period period : periods) {
+            max = Math.max(max, period.captures);
+        }
+        return max;
+    }
+}
@@ -0,0 +1,147 @@
+package com.lopezgagonuria_pmdm.u3;
+
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FieldValue;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Convierte los contadores mensuales de {@link CaptureTimeline} al documento que se guarda en
+ * "usuarios/{uid}/linea_temporal/{aaaa-MM}" y viceversa.
+ *
+ * <p>Esquema del documento (las claves de los días son "01" a "31"):
+ * <pre>
+ *   captures : mapa día → capturas
+ *   releases : mapa día → liberaciones
+ *   types    : mapa tipo → (mapa día → capturas de ese tipo)
+ * </pre>
+ * Los contadores solo se modifican con incrementos del servidor combinados con
+ * {@code SetOptions.merge()}, de modo que dos dispositivos pueden escribir el mismo mes a la vez
+ * sin leerlo antes. Un incremento no se puede repetir sin contar dos veces, así que cada
+ * operación que suma deja además una marca en "usuarios/{uid}/linea_temporal_ops/{clave}",
+ * escrita en la misma transacción: si al reenviar un lote la marca ya existe, sus incrementos
+ * no se vuelven a aplicar.
+ */
+public final class CaptureTimelineMapper {
+
+    // Nombres de los campos del documento.
+    static final String FIELD_CAPTURES = "captures";
+    static final String FIELD_RELEASES = "releases";
+    static final String FIELD_TYPES = "types";
+
+    // Campos de las marcas de operaciones ya contadas.
+    static final String FIELD_MARKER_TYPE = "type";
+    static final String FIELD_MARKER_MONTH = "month";
+
+    private CaptureTimelineMapper() {
+        // Clase de utilidad, no se instancia.
+    }
+
+    /**
+     * Genera los incrementos de un mes para escribirlos con {@code SetOptions.merge()}.
+     *
+     * @param delta Contadores que se suman.
+     * @return Mapa con un incremento por cada contador distinto de cero.
+     */
+    public static Map<String, Object> toIncrements(CaptureTimeline.Month delta) {
+        Map<String, Object> captures = new HashMap<>();
+        Map<String, Object> releases = new HashMap<>();
+        Map<String, Object> types = new HashMap<>();
+        for (int day = 1; day <= 31; day++) {
+            if (delta.getCaptures(day) != 0) {
+                captures.put(dayKey(day), FieldValue.increment(delta.getCaptures(day)));
+            }
+            if (delta.getReleases(day) != 0) {
+                releases.put(dayKey(day), FieldValue.increment(delta.getReleases(day)));
+            }
+        }
+        for (String type : delta.getTypes()) {
+            Map<String, Object> days = new HashMap<>();
+            for (int day = 1; day <= 31; day++) {
+                if (delta.getTypeCaptures(type, day) != 0) {
+                    days.put(dayKey(day), FieldValue.increment(delta.getTypeCaptures(type, day)));
+                }
+            }
+            types.put(type, days);
+        }
+
+        Map<String, Object> data = new HashMap<>();
+        if (!captures.isEmpty()) {
+            data.put(FIELD_CAPTURES, captures);
+        }
+        if (!releases.isEmpty()) {
+            data.put(FIELD_RELEASES, releases);
+        }
+        if (!types.isEmpty()) {
+            data.put(FIELD_TYPES, types);
+        }
+        return data;
+    }
+
+    /**
+     * Reconstruye los contadores de un mes a partir de su documento.
+     *
+     * @param document Documento leído de Firestore.
+     * @return Contadores del mes; los campos que falten cuentan como cero.
+     */
+    public static CaptureTimeline.Month fromSnapshot(DocumentSnapshot document) {
+        CaptureTimeline.Month month = new CaptureTimeline.Month(document.getId());
+        for (Map.Entry<Integer, Integer> entry : readDays(document.get(FIELD_CAPTURES)).entrySet()) {
+            month.addCaptures(entry.getKey(), entry.getValue());
+        }
+        for (Map.Entry<Integer, Integer> entry : readDays(document.get(FIELD_RELEASES)).entrySet()) {
+            month.addReleases(entry.getKey(), entry.getValue());
+        }
+        Object rawTypes = document.get(FIELD_TYPES);
+        if (rawTypes instanceof Map) {
+            for (Map.Entry<?, ?> type : ((Map<?, ?>) rawTypes).entrySet()) {
+                for (Map.Entry<Integer, Integer> entry : readDays(type.getValue()).entrySet()) {
+                    month.addTypeCaptures(String.valueOf(type.getKey()), entry.getKey(), entry.getValue());
+                }
+            }
+        }
+        return month;
+    }
+
+    /**
+     * Genera la marca de una operación ya contada.
+     *
+     * @param operation Operación que suma a la línea temporal.
+     * @return Mapa con el tipo de operación y el mes al que sumó.
+     */
+    public static Map<String, Object> toMarker(CapturadosOutbox.Operation operation) {
+        Map<String, Object> data = new HashMap<>();
+        data.put(FIELD_MARKER_TYPE, operation.type.name());
+        data.put(FIELD_MARKER_MONTH, CaptureTimeline.monthId(operation.time));
+        return data;
+    }
+
+    private static String dayKey(int day) {
+        return String.format(Locale.ROOT, "%02d", day);
+    }
+
+    /**
+     * Lee un mapa día → contador, ignorando las claves que no son un día válido.
+     */
+    private static Map<Integer, Integer> readDays(Object rawDays) {
+        Map<Integer, Integer> days = new HashMap<>();
+        if (!(rawDays instanceof Map)) {
+            return days;
+        }
+        for (Map.Entry<?, ?> entry : ((Map<?, ?>) rawDays).entrySet()) {
+            if (!(entry.getValue() instanceof Number)) {
+                continue;
+            }
+            try {
+                int day = Integer.parseInt(String.valueOf(entry.getKey()));
+                if (day >= 1 && day <= 31) {
+                    days.put(day, ((Number) entry.getValue()).intValue());
+                }
+            } catch (NumberFormatException e) {
+                // Clave desconocida: se ignora.
+            }
+        }
+        return days;
+    }
+}
@@ -0,0 +1,250 @@
+package com.lopezgagonuria_pmdm.u3;
+
+import android.util.Log;
+import com.google.firebase.Timestamp;
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FieldValue;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Convierte los Pokémon capturados entre {@link PokemonDetails} y el esquema compacto que se
+ * guarda en Firestore. El documento solo contiene los datos necesarios para reconstruir el
+ * Pokémon: el ID es el propio ID del documento y la URL del sprite se genera a partir de él.
+ *
+ * <p>Esquema actual (versión 3):
+ * <pre>
+ *   v         : número de versión del esquema
+ *   name      : nombre del Pokémon
+ *   types     : lista con los nombres de los tipos, en orden de slot
+ *   weight    : peso
+ *   height    : altura
+ *   updatedAt : hora del servidor de la última escritura
+ *   capturedAt: hora del dispositivo al capturarlo (no existe en las capturas importadas ni
+ *               en las anteriores a la línea temporal)
+ *   deleted   : true si el Pokémon se ha liberado (lápida sin el resto de campos)
+ * </pre>
+ * Los documentos sin campo "v" son de la versión 1 (el bean completo serializado por reflexión)
+ * y los de la versión 2 no tienen "updatedAt"; ambos se actualizan de forma perezosa la primera
+ * vez que se leen.
+ */
+public final class CapturedPokemonMapper {
+
+    // Versión actual del esquema de los documentos de capturados.
+    public static final int SCHEMA_VERSION = 3;
+
+    // Nombres de los campos del documento.
+    static final String FIELD_VERSION = "v";
+    static final String FIELD_NAME = "name";
+    static final String FIELD_TYPES = "types";
+    static final String FIELD_WEIGHT = "weight";
+    static final String FIELD_HEIGHT = "height";
+    static final String FIELD_UPDATED_AT = "updatedAt";
+    static final String FIELD_DELETED = "deleted";
+    static final String FIELD_CAPTURED_AT = "capturedAt";
+
+    private static final String TAG = "CapturedPokemonMapper";
+
+    private CapturedPokemonMapper() {
+        // Clase de utilidad, no se instancia.
+    }
+
+    /**
+     * Genera el documento compacto de un Pokémon capturado.
+     *
+     * @param pokemon Pokémon a guardar.
+     * @return Mapa con los campos del esquema actual.
+     */
+    public static Map<String, Object> toMap(PokemonDetails pokemon) {
+        Map<String, Object> data = new HashMap<>();
+        data.put(FIELD_VERSION, SCHEMA_VERSION);
+        data.put(FIELD_NAME, pokemon.getName());
+        data.put(FIELD_TYPES, pokemon.getTypeNames());
+        data.put(FIELD_WEIGHT, pokemon.getWeight());
+        data.put(FIELD_HEIGHT, pokemon.getHeight());
+        data.put(FIELD_DELETED, false);
+        data.put(FIELD_UPDATED_AT, FieldValue.serverTimestamp());
+        return data;
+    }
+
+    /**
+     * Genera el documento compacto de un Pokémon recién capturado, con la hora de la captura.
+     *
+     * @param pokemon Pokémon a guardar.
+     * @param capturedAtMillis Hora de la captura en milisegundos, o 0 si no se conoce.
+     * @return Mapa con los campos del esquema actual.
+     */
+    public static Map<String, Object> toMap(PokemonDetails pokemon, long capturedAtMillis) {
+        Map<String, Object> data = toMap(pokemon);
+        if (capturedAtMillis > 0) {
+            data.put(FIELD_CAPTURED_AT, new Timestamp(new Date(capturedAtMillis)));
+        }
+        return data;
+    }
+
+    /**
+     * Genera la lápida que sustituye al documento de un Pokémon liberado, para que los
+     * clientes que sincronizan por cambios se enteren de la liberación.
+     *
+     * @return Mapa con la marca de borrado y la hora del servidor.
+     */
+    public static Map<String, Object> toTombstone() {
+        Map<String, Object> data = new HashMap<>();
+        data.put(FIELD_VERSION, SCHEMA_VERSION);
+        data.put(FIELD_DELETED, true);
+        data.put(FIELD_UPDATED_AT, FieldValue.serverTimestamp());
+        return data;
+    }
+
+    /**
+     * Genera solo los campos que se completan al cargar los detalles desde la API,
+     * para escribirlos con una actualización parcial en lugar de reescribir el documento.
+     *
+     * @param pokemon Pokémon con los detalles ya cargados.
+     * @return Mapa con tipos, peso y altura.
+     */
+    public static Map<String, Object> toDetailsUpdate(PokemonDetails pokemon) {
+        Map<String, Object> data = new HashMap<>();
+        data.put(FIELD_VERSION, SCHEMA_VERSION);
+        data.put(FIELD_TYPES, pokemon.getTypeNames());
+        data.put(FIELD_WEIGHT, pokemon.getWeight());
+        data.put(FIELD_HEIGHT, pokemon.getHeight());
+        data.put(FIELD_UPDATED_AT, FieldValue.serverTimestamp());
+        return data;
+    }
+
+    /**
+     * Indica si el documento es la lápida de un Pokémon liberado.
+     *
+     * @param document Documento leído de Firestore.
+     * @return true si el Pokémon se ha liberado.
+     */
+    public static boolean isTombstone(DocumentSnapshot document) {
+        return Boolean.TRUE.equals(document.getBoolean(FIELD_DELETED));
+    }
+
+    /**
+     * Obtiene la hora del servidor de la última escritura del documento.
+     *
+     * @param document Documento leído de Firestore.
+     * @return Hora de la última escritura, o null si el documento es antiguo o aún no se ha
+     *         confirmado en el servidor.
+     */
+    public static Timestamp getUpdatedAt(DocumentSnapshot document) {
+        return document.getTimestamp(FIELD_UPDATED_AT);
+    }
+
+    /**
+     * Obtiene la hora del dispositivo a la que se capturó el Pokémon.
+     *
+     * @param document Documento leído de Firestore.
+     * @return Hora de la captura en milisegundos, o 0 si no cuenta en la línea temporal.
+     */
+    public static long getCapturedAtMillis(DocumentSnapshot document) {
+        Timestamp capturedAt = document.getTimestamp(FIELD_CAPTURED_AT);
+        return capturedAt != null ? capturedAt.toDate().getTime() : 0;
+    }
+
+    /**
+     * Reconstruye un Pokémon capturado a partir de su documento, sea cual sea su versión.
+     *
+     * @param document Documento leído de Firestore.
+     * @return El Pokémon capturado, o null si es una lápida, no tiene nombre o su ID no es numérico.
+     */
+    public static PokemonDetails fromSnapshot(DocumentSnapshot document) {
+        if (isTombstone(document)) {
+            return null;
+        }
+        String name = document.getString(FIELD_NAME);
+        if (name == null) {
+            return null;
+        }
+
+        int id = PokemonDetails.parseId(document.getId());
+        if (id < 0) {
+            Log.w(TAG, "Documento de capturado con ID no numérico: " + document.getId());
+            return null;
+        }
+        // Las versiones antiguas del esquema podían guardar las medidas como double.
+        return PokemonDetails.fromTypeNames(id, name, (int) Math.round(getDouble(document, FIELD_WEIGHT)),
+                (int) Math.round(getDouble(document, FIELD_HEIGHT)), readTypes(document.get(FIELD_TYPES)));
+    }
+
+    /**
+     * Indica si el documento está guardado con un esquema anterior al actual.
+     *
+     * @param document Documento leído de Firestore.
+     * @return true si hay que actualizarlo.
+     */
+    public static boolean needsUpgrade(DocumentSnapshot document) {
+        Long version = document.getLong(FIELD_VERSION);
+        return version == null || version < SCHEMA_VERSION;
+    }
+
+    /**
+     * Reescribe con el esquema actual un documento antiguo que ya se ha leído,
+     * eliminando los campos que ya no se guardan y conservando la hora de captura. Se hace en
+     * una transacción que vuelve a leer el documento, para no resucitar un Pokémon liberado
+     * desde otro dispositivo después de la lectura.
+     *
+     * @param document Documento leído de Firestore.
+     * @param pokemon Pokémon ya reconstruido a partir de ese documento.
+     */
+    public static void upgradeIfNeeded(DocumentSnapshot document, PokemonDetails pokemon) {
+        if (pokemon == null || !needsUpgrade(document)) {
+            return;
+        }
+        DocumentReference reference = document.getReference();
+        reference.getFirestore().runTransaction(transaction -> {
+            DocumentSnapshot current = transaction.get(reference);
+            if (!current.exists() || isTombstone(current) || !needsUpgrade(current)) {
+                return null;
+            }
+            PokemonDetails upgraded = fromSnapshot(current);
+            if (upgraded != null) {
+                transaction.set(reference, toMap(upgraded, getCapturedAtMillis(current)));
+            }
+            return null;
+        })
+                .addOnSuccessListener(result -> Log.d(TAG, "Documento actualizado al esquema " + SCHEMA_VERSION + ": " + reference.getId()))
+                .addOnFailureListener(e -> Log.e(TAG, "Error al actualizar el esquema del documento " + reference.getId(), e));
+    }
+
+    /**
+     * Lee los tipos tanto del esquema actual (lista de nombres) como del antiguo
+     * (lista de objetos {slot, type: {name, url}}).
+     */
+    private static List<String> readTypes(Object rawTypes) {
+        List<String> types = new ArrayList<>();
+        if (!(rawTypes instanceof List)) {
+            return types;
+        }
+        for (Object rawType : (List<?>) rawTypes) {
+            String typeName = null;
+            if (rawType instanceof String) {
+                typeName = (String) rawType;
+            } else if (rawType instanceof Map) {
+                Object nested = ((Map<?, ?>) rawType).get("type");
+                if (nested instanceof Map && ((Map<?, ?>) nested).get("name") instanceof String) {
+                    typeName = (String) ((Map<?, ?>) nested).get("name");
+                }
+            }
+            if (typeName != null) {
+                types.add(typeName);
+            }
+        }
+        return types;
+    }
+
+    /**
+     * Lee un campo numérico del documento, devolviendo 0 si no existe.
+     */
+    private static double getDouble(DocumentSnapshot document, String field) {
+        Double value = document.getDouble(field);
+        return value != null ? value : 0;
+    }
+}
@@ -0,0 +1,216 @@
+package com.lopezgagonuria_pmdm.u3;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Almacén remoto de los Pokémon capturados de cada usuario. {@link CapturedSync},
+ * {@link CapturadosOutbox}, {@link CapturedTransferWorker} y la pantalla de detalles solo
+ * acceden a los capturados a través de esta interfaz, de modo que se puede sustituir Firestore
+ * ({@link FirestoreCapturedStore}) por otra implementación, como el almacén en memoria de las
+ * pruebas de carga. La implementación activa se obtiene con {@link CapturedStoreProvider}.
+ *
+ * <p>Los lotes se escriben con las operaciones de {@link CapturadosOutbox}, y la cola espera que
+ * los errores permanentes lleguen como {@code FirebaseFirestoreException}, así que otra
+ * implementación debe usar esos mismos tipos. Cada documento tiene una hora de modificación
+ * (segundos y nanosegundos) que fija el orden de los cambios; las liberaciones dejan una
+ * lápida con su hora para que la sincronización por cambios las vea.
+ */
+public interface CapturedStore {
+
+    // Número máximo de escrituras de un lote, el mismo que admite una transacción de Firestore.
+    int MAX_BATCH_SIZE = 500;
+
+    /**
+     * Interfaz para recibir el resultado de una operación asíncrona.
+     *
+     * @param <T> Tipo del resultado.
+     */
+    interface Callback<T> {
+        /**
+         * Método llamado cuando la operación termina correctamente.
+         *
+         * @param result Resultado de la operación.
+         */
+        void onSuccess(T result);
+
+        /**
+         * Método llamado si la operación falla.
+         *
+         * @param e Error de la operación.
+         */
+        void onError(Exception e);
+    }
+
+    /**
+     * Operación asíncrona que se puede esperar con {@link #await(Call)} o convertir en un
+     * futuro con {@link #toFuture(Call)}.
+     *
+     * @param <T> Tipo del resultado.
+     */
+    interface Call<T> {
+        void run(Callback<T> callback);
+    }
+
+    /**
+     * Cambio de un documento de capturados.
+     */
+    final class Change {
+        // ID del Pokémon, que es el ID del documento.
+        public final String id;
+
+        // Pokémon capturado, o null si el documento es una lápida o no se puede leer.
+        public final PokemonDetails pokemon;
+
+        // true si el documento es la lápida de un Pokémon liberado.
+        public final boolean deleted;
+
+        // Hora de la última escritura en el servidor, o 0 si no se conoce.
+        public final long updatedAtSeconds;
+        public final int updatedAtNanos;
+
+        // true si la hora es definitiva (el servidor ya ha confirmado la escritura).
+        public final boolean confirmed;
+
+        // Hora del dispositivo al capturarlo, o 0 si la captura no cuenta en la línea temporal.
+        public final long capturedAtMillis;
+
+        public Change(String id, PokemonDetails pokemon, boolean deleted,
+                      long updatedAtSeconds, int updatedAtNanos, boolean confirmed, long capturedAtMillis) {
+            this.id = id;
+            this.pokemon = pokemon;
+            this.deleted = deleted;
+            this.updatedAtSeconds = updatedAtSeconds;
+            this.updatedAtNanos = updatedAtNanos;
+            this.confirmed = confirmed;
+            this.capturedAtMillis = capturedAtMillis;
+        }
+
+        /**
+         * Indica si se conoce la hora de la última escritura.
+         *
+         * @return true si el cambio tiene hora.
+         */
+        public boolean hasUpdatedAt() {
+            return updatedAtSeconds > 0 || updatedAtNanos > 0;
+        }
+    }
+
+    /**
+     * Resultado de una lectura de cambios.
+     */
+    final class ChangeSet {
+        // Documentos modificados, en orden de hora de modificación.
+        public final List<Change> changes;
+
+        // true si el resultado viene del servidor y no de una caché local.
+        public final boolean fromServer;
+
+        public ChangeSet(List<Change> changes, boolean fromServer) {
+            this.changes = changes;
+            this.fromServer = fromServer;
+        }
+    }
+
+    /**
+     * Lee los documentos de un usuario modificados desde una hora, incluidas las lápidas.
+     * Con una hora 0 se lee la colección completa.
+     *
+     * @param uid Usuario.
+     * @param sinceSeconds Hora desde la que se leen los cambios (segundos), inclusive.
+     * @param sinceNanos Nanosegundos de esa hora.
+     * @param serverOnly true para no aceptar un resultado de la caché local.
+     * @param callback Recibe los cambios.
+     */
+    void readChanges(String uid, long sinceSeconds, int sinceNanos, boolean serverOnly, Callback<ChangeSet> callback);
+
+    /**
+     * Lee una página de documentos en orden de ID, incluidas las lápidas.
+     *
+     * @param uid Usuario.
+     * @param afterId Último ID de la página anterior, o null para empezar.
+     * @param limit Número máximo de documentos.
+     * @param callback Recibe la página; si tiene menos de {@code limit} documentos es la última.
+     */
+    void readPage(String uid, String afterId, int limit, Callback<List<Change>> callback);
+
+    /**
+     * Cuenta los documentos de un usuario, incluidas las lápidas.
+     *
+     * @param uid Usuario.
+     * @param callback Recibe el número de documentos.
+     */
+    void count(String uid, Callback<Long> callback);
+
+    /**
+     * Escribe de forma atómica un lote de capturas y liberaciones. En el mismo lote se suman
+     * los contadores de la línea temporal ({@link CaptureTimeline}) de las operaciones que
+     * cuentan, una sola vez aunque el lote se reenvíe. Las capturas sin hora (importadas)
+     * conservan la hora de captura del documento que ya exista.
+     *
+     * @param operations Operaciones; junto con la marca de cada una que cuenta en la línea
+     *                   temporal y un documento de la línea temporal por usuario y mes, como
+     *                   mucho {@link #MAX_BATCH_SIZE} escrituras.
+     * @param callback Recibe null al confirmarse el lote.
+     */
+    void commit(List<CapturadosOutbox.Operation> operations, Callback<Void> callback);
+
+    /**
+     * Guarda los detalles cargados de la API (tipos, peso y altura) de un Pokémon capturado,
+     * sin reescribir el resto del documento.
+     *
+     * @param uid Usuario.
+     * @param pokemon Pokémon con los detalles ya cargados.
+     * @param callback Recibe null al guardarse.
+     */
+    void updateDetails(String uid, PokemonDetails pokemon, Callback<Void> callback);
+
+    /**
+     * Lee la línea temporal de capturas de un usuario: un documento de contadores por mes con
+     * actividad.
+     *
+     * @param uid Usuario.
+     * @param callback Recibe la línea temporal.
+     */
+    void readTimeline(String uid, Callback<CaptureTimeline> callback);
+
+    /**
+     * Convierte una operación en un futuro, para combinarla con las peticiones a la API en
+     * {@link Futures}. El futuro se completa en el hilo en el que responde el almacén (el
+     * principal, en el caso de Firestore).
+     *
+     * @param call Operación a ejecutar.
+     * @param <T> Tipo del resultado.
+     * @return Futuro con el resultado de la operación.
+     */
+    static <T> CompletableFuture<T> toFuture(Call<T> call) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        call.run(new Callback<T>() {
+            @Override
+            public void onSuccess(T value) {
+                future.complete(value);
+            }
+
+            @Override
+            public void onError(Exception e) {
+                future.completeExceptionally(e);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Espera el resultado de una operación. Solo para hilos en segundo plano: el resultado no
+     * se puede entregar en el mismo hilo que espera.
+     *
+     * @param call Operación a ejecutar.
+     * @param <T> Tipo del resultado.
+     * @return Resultado de la operación.
+     * @throws ExecutionException si la operación falla.
+     * @throws InterruptedException si se interrumpe la espera.
+     */
+    static <T> T await(Call<T> call) throws ExecutionException, InterruptedException {
+        return toFuture(call).get();
+    }
+}
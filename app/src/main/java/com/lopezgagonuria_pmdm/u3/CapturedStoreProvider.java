@@ -0,0 +1,44 @@
+package com.lopezgagonuria_pmdm.u3;
+
+import android.content.Context;
+
+/**
+ * Proporciona el {@link CapturedStore} de la aplicación: Firestore por defecto, o el que se
+ * haya fijado con {@link #set(CapturedStore)} antes del primer uso, por ejemplo uno en memoria
+ * en las pruebas.
+ */
+public final class CapturedStoreProvider {
+
+    // Almacén en uso.
+    private static volatile CapturedStore store;
+
+    private CapturedStoreProvider() {
+        // Clase de utilidad, no se instancia.
+    }
+
+    /**
+     * Obtiene el almacén de capturados, creando el de Firestore la primera vez.
+     *
+     * @param context Contexto de la aplicación.
+     * @return Almacén de capturados.
+     */
+    public static CapturedStore get(Context context) {
+        if (store == null) {
+            synchronized (CapturedStoreProvider.class) {
+                if (store == null) { // Verificación doble para inicialización segura.
+                    store = new FirestoreCapturedStore(context);
+                }
+            }
+        }
+        return store;
+    }
+
+    /**
+     * Sustituye el almacén de capturados.
+     *
+     * @param capturedStore Almacén que se usará a partir de ahora.
+     */
+    public static void set(CapturedStore capturedStore) {
+        store = capturedStore;
+    }
+}
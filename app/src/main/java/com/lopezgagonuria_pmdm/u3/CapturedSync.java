@@ -0,0 +1,400 @@
+package com.lopezgagonuria_pmdm.u3;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.AtomicFile;
+import android.util.Log;
+import com.google.firebase.auth.FirebaseAuth;
+import com.google.firebase.auth.FirebaseUser;
+import com.google.gson.Gson;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sincroniza por cambios los Pokémon capturados del usuario. Guarda en local el estado y la
+ * marca de agua (la mayor hora de servidor ya aplicada) y solo pide a Firestore los documentos
+ * modificados desde entonces, incluidas las lápidas de los liberados. El coste de cada
+ * sincronización depende del número de cambios, no del tamaño de la colección.
+ */
+public final class CapturedSync {
+
+    /**
+     * Interfaz para recibir el estado de los capturados.
+     */
+    public interface Listener {
+        /**
+         * Método llamado en el hilo principal con el estado actual: primero el guardado en
+         * local (si existe) y después el resultante de aplicar los cambios del servidor.
+         *
+         * @param captured Lista de Pokémon capturados.
+         * @param fromServer true si ya incluye los cambios del servidor.
+         */
+        void onCapturedChanged(List<PokemonDetails> captured, boolean fromServer);
+
+        /**
+         * Método llamado si no se han podido leer los cambios del servidor.
+         *
+         * @param e Error de Firestore.
+         */
+        void onError(Exception e);
+    }
+
+    /**
+     * Estado local de los capturados de un usuario.
+     */
+    static class State {
+        // Marca de agua: hora del servidor del último cambio aplicado (0 si nunca se ha sincronizado).
+        long watermarkSeconds;
+        int watermarkNanos;
+
+        // Pokémon capturados por ID, en orden de captura.
+        LinkedHashMap<String, PokemonDetails> captured = new LinkedHashMap<>();
+
+        // Hora de captura de los que cuentan en la línea temporal, por ID.
+        HashMap<String, Long> capturedAt = new HashMap<>();
+    }
+
+    // Margen con el que se repite la consulta antes de la marca de agua, para no perder
+    // escrituras confirmadas con una hora algo anterior a la última vista. Aplicarlas dos
+    // veces no tiene efecto.
+    private static final long OVERLAP_SECONDS = 60;
+
+    // Tiempo durante el que el estado recién sincronizado se considera al día y las
+    // pantallas lo vuelven a mostrar sin consultar a Firestore.
+    public static final long FRESH_FOR_MS = 5 * 60 * 1000;
+
+    private static final String TAG = "CapturedSync";
+
+    private static CapturedSync instance;
+
+    private final Context appContext;
+    private final Gson gson = new Gson();
+    private final ExecutorService diskExecutor = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    // Estado en memoria del usuario actual; se protege con el propio objeto CapturedSync.
+    private String stateUid;
+    private State state;
+
+    // Momento (SystemClock.elapsedRealtime) de la última sincronización con el servidor, o 0.
+    private long lastServerSyncAt;
+
+    // Métricas de sincronización.
+    private final AtomicLong localHits = new AtomicLong();
+    private final AtomicLong fullSyncs = new AtomicLong();
+    private final AtomicLong deltaSyncs = new AtomicLong();
+    private final AtomicLong documentsReceived = new AtomicLong();
+
+    /**
+     * Obtiene la instancia única del sincronizador.
+     *
+     * @param context Contexto de la aplicación.
+     * @return Instancia del sincronizador.
+     */
+    public static synchronized CapturedSync getInstance(Context context) {
+        if (instance == null) {
+            instance = new CapturedSync(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private CapturedSync(Context appContext) {
+        this.appContext = appContext;
+    }
+
+    /**
+     * Obtiene los capturados del usuario actual si ya están en memoria.
+     *
+     * @return Lista de capturados, o null si todavía no se han cargado.
+     */
+    public synchronized List<PokemonDetails> getCached() {
+        FirebaseUser user = FirebaseAuth.getInstance().getCurrentUser();
+        if (user == null || state == null || !user.getUid().equals(stateUid)) {
+            return null;
+        }
+        return new ArrayList<>(state.captured.values());
+    }
+
+    /**
+     * Obtiene la hora a la que se capturó un Pokémon, si la captura cuenta en la línea temporal.
+     *
+     * @param pokemonId ID del Pokémon.
+     * @return Hora de la captura en milisegundos, o 0 si no se conoce o no cuenta (por ejemplo,
+     *         las importadas).
+     */
+    public synchronized long getCapturedAt(String pokemonId) {
+        FirebaseUser user = FirebaseAuth.getInstance().getCurrentUser();
+        if (user == null || state == null || !user.getUid().equals(stateUid)) {
+            return 0;
+        }
+        Long capturedAt = state.capturedAt.get(pokemonId);
+        return capturedAt != null ? capturedAt : 0;
+    }
+
+    /**
+     * Indica si el estado en memoria se ha sincronizado con el servidor hace poco, de modo que
+     * se puede mostrar sin volver a consultar a Firestore.
+     *
+     * @return true si la última sincronización es de hace menos de {@link #FRESH_FOR_MS}.
+     */
+    public synchronized boolean isFresh() {
+        return lastServerSyncAt > 0 && state != null
+                && SystemClock.elapsedRealtime() - lastServerSyncAt < FRESH_FOR_MS;
+    }
+
+    /**
+     * Aplica al estado en memoria las operaciones que Firestore ya ha confirmado, para que
+     * sigan visibles sin esperar a la siguiente sincronización. Aplicarlas de nuevo cuando
+     * lleguen del servidor no tiene efecto.
+     *
+     * @param operations Operaciones confirmadas.
+     */
+    synchronized void applyConfirmed(List<CapturadosOutbox.Operation> operations) {
+        if (state == null) {
+            return; // Se cargará completo en la próxima sincronización.
+        }
+        boolean changed = false;
+        for (CapturadosOutbox.Operation operation : operations) {
+            if (!operation.uid.equals(stateUid)) {
+                continue;
+            }
+            String id = operation.getPokemon().getId();
+            if (operation.getType() == CapturadosOutbox.Type.CAPTURE) {
+                state.captured.put(id, operation.getPokemon());
+                setCapturedAt(state, id, operation.time);
+            } else {
+                state.captured.remove(id);
+                state.capturedAt.remove(id);
+            }
+            changed = true;
+        }
+        if (changed) {
+            String uid = stateUid;
+            State local = state;
+            diskExecutor.execute(() -> {
+                synchronized (this) {
+                    saveState(uid, local);
+                }
+            });
+        }
+    }
+
+    /**
+     * Entrega el estado local y después aplica los cambios del servidor desde la marca de agua.
+     * Sin usuario no hay capturados, así que se entrega directamente una lista vacía como
+     * estado del servidor. Se debe llamar desde el hilo principal.
+     *
+     * @param listener Listener que recibe el estado.
+     */
+    public void sync(Listener listener) {
+        FirebaseUser user = FirebaseAuth.getInstance().getCurrentUser();
+        if (user == null) {
+            mainHandler.post(() -> listener.onCapturedChanged(new ArrayList<>(), true));
+            return;
+        }
+        String uid = user.getUid();
+        diskExecutor.execute(() -> {
+            long[] since;
+            synchronized (this) {
+                State local = loadState(uid);
+                if (!local.captured.isEmpty() || hasWatermark(local)) {
+                    localHits.incrementAndGet();
+                    List<PokemonDetails> snapshot = new ArrayList<>(local.captured.values());
+                    mainHandler.post(() -> listener.onCapturedChanged(snapshot, false));
+                }
+                since = readFrom(local);
+            }
+            CapturedStoreProvider.get(appContext).readChanges(uid, since[0], (int) since[1], false,
+                    new CapturedStore.Callback<CapturedStore.ChangeSet>() {
+                        @Override
+                        public void onSuccess(CapturedStore.ChangeSet changeSet) {
+                            diskExecutor.execute(() -> {
+                                List<PokemonDetails> captured = applyAndSave(uid, changeSet);
+                                mainHandler.post(() -> listener.onCapturedChanged(captured, true));
+                            });
+                        }
+
+                        @Override
+                        public void onError(Exception e) {
+                            mainHandler.post(() -> listener.onError(e));
+                        }
+                    });
+        });
+    }
+
+    /**
+     * Aplica de forma síncrona los cambios del servidor. Solo para hilos en segundo plano,
+     * como los trabajos de WorkManager.
+     *
+     * @throws ExecutionException si falla la consulta a Firestore.
+     * @throws InterruptedException si se interrumpe la espera.
+     */
+    public void syncBlocking() throws ExecutionException, InterruptedException {
+        FirebaseUser user = FirebaseAuth.getInstance().getCurrentUser();
+        if (user == null) {
+            return;
+        }
+        String uid = user.getUid();
+        long[] since;
+        synchronized (this) {
+            since = readFrom(loadState(uid));
+        }
+        CapturedStore capturedStore = CapturedStoreProvider.get(appContext);
+        CapturedStore.ChangeSet changeSet = CapturedStore.await(
+                callback -> capturedStore.readChanges(uid, since[0], (int) since[1], true, callback));
+        applyAndSave(uid, changeSet);
+    }
+
+    /**
+     * Olvida el estado en memoria, por ejemplo al cerrar sesión. El estado en disco se
+     * conserva para la próxima vez que el mismo usuario inicie sesión.
+     */
+    public synchronized void clear() {
+        lastServerSyncAt = 0;
+        state = null;
+        stateUid = null;
+    }
+
+    /**
+     * Calcula desde qué hora se leen los cambios: desde el principio la primera vez y, después,
+     * desde la marca de agua menos el margen.
+     *
+     * @return Segundos y nanosegundos de la hora, o 0 para leer la colección completa.
+     */
+    private long[] readFrom(State local) {
+        if (!hasWatermark(local)) {
+            fullSyncs.incrementAndGet();
+            return new long[]{0, 0};
+        }
+        deltaSyncs.incrementAndGet();
+        return new long[]{Math.max(0, local.watermarkSeconds - OVERLAP_SECONDS), local.watermarkNanos};
+    }
+
+    /**
+     * Aplica los cambios recibidos al estado local, avanza la marca de agua y lo guarda.
+     */
+    private synchronized List<PokemonDetails> applyAndSave(String uid, CapturedStore.ChangeSet changeSet) {
+        PipelineTrace.begin("sync:merge");
+        State local;
+        try {
+            local = loadState(uid);
+            documentsReceived.addAndGet(changeSet.changes.size());
+            merge(local, changeSet);
+
+            if (changeSet.fromServer) {
+                lastServerSyncAt = SystemClock.elapsedRealtime();
+            }
+            saveState(uid, local);
+        } finally {
+            PipelineTrace.end();
+        }
+        Log.d(TAG, "Cambios aplicados: " + changeSet.changes.size() + " documentos. Métricas -> local: " + localHits.get()
+                + ", completas: " + fullSyncs.get() + ", por cambios: " + deltaSyncs.get()
+                + ", documentos recibidos: " + documentsReceived.get());
+        return new ArrayList<>(local.captured.values());
+    }
+
+    /**
+     * Aplica unos cambios a un estado: añade o sustituye los capturados, quita los liberados y
+     * avanza la marca de agua con las horas confirmadas por el servidor. La marca de agua solo
+     * sale de horas del servidor: si todavía no ha llegado ningún documento con hora, se queda
+     * a 0 y la siguiente sincronización vuelve a leer la colección completa (vacía o con
+     * documentos antiguos, que se actualizan al leerlos y pasan a tener hora). Con la hora del
+     * dispositivo, un reloj adelantado más que el margen haría perder cambios para siempre.
+     * No usa Android, así que se puede probar en la JVM.
+     *
+     * @param local Estado a modificar.
+     * @param changeSet Cambios leídos del almacén.
+     */
+    static void merge(State local, CapturedStore.ChangeSet changeSet) {
+        for (CapturedStore.Change change : changeSet.changes) {
+            if (change.deleted) {
+                local.captured.remove(change.id);
+                local.capturedAt.remove(change.id);
+            } else if (change.pokemon != null) {
+                local.captured.put(change.id, change.pokemon);
+                setCapturedAt(local, change.id, change.capturedAtMillis);
+            }
+            // Solo las horas confirmadas por el servidor pueden avanzar la marca de agua.
+            if (changeSet.fromServer && change.confirmed && change.hasUpdatedAt()
+                    && isAfterWatermark(local, change.updatedAtSeconds, change.updatedAtNanos)) {
+                local.watermarkSeconds = change.updatedAtSeconds;
+                local.watermarkNanos = change.updatedAtNanos;
+            }
+        }
+    }
+
+    private static void setCapturedAt(State local, String id, long capturedAtMillis) {
+        if (capturedAtMillis > 0) {
+            local.capturedAt.put(id, capturedAtMillis);
+        } else {
+            local.capturedAt.remove(id);
+        }
+    }
+
+    private static boolean hasWatermark(State local) {
+        return local.watermarkSeconds > 0 || local.watermarkNanos > 0;
+    }
+
+    private static boolean isAfterWatermark(State local, long seconds, int nanos) {
+        return seconds > local.watermarkSeconds
+                || (seconds == local.watermarkSeconds && nanos > local.watermarkNanos);
+    }
+
+    private synchronized State loadState(String uid) {
+        if (state != null && uid.equals(stateUid)) {
+            return state;
+        }
+        State loaded = null;
+        AtomicFile file = stateFile(uid);
+        if (file.getBaseFile().exists()) {
+            try (FileInputStream in = file.openRead();
+                 Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8)) {
+                loaded = gson.fromJson(reader, State.class);
+            } catch (IOException | RuntimeException e) {
+                Log.e(TAG, "Error al leer el estado local de capturados", e);
+            }
+        }
+        state = loaded != null ? loaded : new State();
+        stateUid = uid;
+        return state;
+    }
+
+    private void saveState(String uid, State local) {
+        AtomicFile file = stateFile(uid);
+        FileOutputStream out = null;
+        try {
+            out = file.startWrite();
+            Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+            gson.toJson(local, writer);
+            writer.flush();
+            file.finishWrite(out);
+        } catch (IOException | RuntimeException e) {
+            Log.e(TAG, "Error al guardar el estado local de capturados", e);
+            if (out != null) {
+                file.failWrite(out);
+            }
+        }
+    }
+
+    private AtomicFile stateFile(String uid) {
+        return new AtomicFile(new File(appContext.getFilesDir(), "captured_" + uid + ".json"));
+    }
+}
@@ -0,0 +1,41 @@
+package com.lopezgagonuria_pmdm.u3;
+
+import android.content.Context;
+import android.util.Log;
+import androidx.annotation.NonNull;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+import com.google.firebase.auth.FirebaseAuth;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Trabajo en segundo plano que aplica al estado local los cambios del servidor en los
+ * Pokémon capturados del usuario, que es lo que leen las pantallas.
+ */
+public class CapturedSyncWorker extends Worker {
+
+    private static final String TAG = "CapturedSyncWorker";
+
+    public CapturedSyncWorker(@NonNull Context context, @NonNull WorkerParameters params) {
+        super(context, params);
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        if (FirebaseAuth.getInstance().getCurrentUser() == null) {
+            return Result.success(); // Sin usuario no hay nada que sincronizar.
+        }
+        try {
+            CapturedSync.getInstance(getApplicationContext()).syncBlocking();
+            Log.d(TAG, "Capturados sincronizados");
+            return Result.success();
+        } catch (ExecutionException e) {
+            Log.w(TAG, "Error al sincronizar los capturados: " + e.getMessage());
+            return Result.retry();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Result.retry();
+        }
+    }
+}
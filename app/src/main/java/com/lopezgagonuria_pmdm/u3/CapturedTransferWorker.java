@@ -0,0 +1,414 @@
+package com.lopezgagonuria_pmdm.u3;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.SharedPreferences;
+import android.net.Uri;
+import android.os.ParcelFileDescriptor;
+import android.util.Log;
+import androidx.annotation.NonNull;
+import androidx.work.Constraints;
+import androidx.work.Data;
+import androidx.work.ExistingWorkPolicy;
+import androidx.work.NetworkType;
+import androidx.work.OneTimeWorkRequest;
+import androidx.work.WorkManager;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+import com.google.firebase.auth.FirebaseAuth;
+import com.google.firebase.auth.FirebaseUser;
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import java.io.BufferedReader;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Trabajo que exporta los Pokémon capturados del usuario a un fichero JSON Lines comprimido
+ * con gzip (un Pokémon por línea) o los importa desde uno. Las dos direcciones trabajan por
+ * páginas: la exportación lee de Firestore {@link #PAGE_SIZE} documentos cada vez y los añade
+ * al fichero, y la importación lee el fichero línea a línea y lo escribe en lotes, así que la
+ * memoria usada no depende del tamaño de la colección.
+ *
+ * <p>Tras cada página o lote se guarda el progreso. Si el trabajo se interrumpe, WorkManager lo
+ * vuelve a lanzar y continúa desde ahí: la exportación recorta el fichero hasta la última página
+ * completa y sigue después del último ID escrito (cada página es un miembro gzip independiente,
+ * que los lectores de gzip leen como un único flujo), y la importación salta las líneas ya
+ * escritas. Volver a escribir un lote a medias no tiene efecto.
+ */
+public class CapturedTransferWorker extends Worker {
+
+    /**
+     * Línea del fichero: los mismos datos que el documento de Firestore.
+     */
+    static class Entry {
+        String id;
+        String name;
+        List<String> types;
+        double weight;
+        double height;
+    }
+
+    // Datos de entrada y de progreso del trabajo.
+    public static final String KEY_MODE = "mode";
+    public static final String KEY_URI = "uri";
+    public static final String KEY_DONE = "done";
+    public static final String KEY_TOTAL = "total";
+    public static final String KEY_PERCENT = "percent";
+
+    // Modos del trabajo, que también son los nombres únicos en WorkManager.
+    public static final String MODE_EXPORT = "captured_export";
+    public static final String MODE_IMPORT = "captured_import";
+
+    // Documentos que se leen de Firestore en cada página de la exportación.
+    static final int PAGE_SIZE = 500;
+
+    // Preferencias con el progreso de la última exportación e importación.
+    private static final String PREFS_NAME = "captured_transfer";
+    private static final String KEY_UID = "uid";
+    private static final String KEY_COMMITTED_BYTES = "committed_bytes";
+    private static final String KEY_LAST_ID = "last_id";
+
+    private static final String TAG = "CapturedTransferWorker";
+
+    private final Gson gson = new Gson();
+
+    public CapturedTransferWorker(@NonNull Context context, @NonNull WorkerParameters params) {
+        super(context, params);
+    }
+
+    /**
+     * Programa la exportación de los capturados al fichero elegido por el usuario.
+     *
+     * @param context Contexto.
+     * @param uri Documento creado con el selector de ficheros del sistema.
+     */
+    public static void startExport(Context context, Uri uri) {
+        start(context, MODE_EXPORT, uri, Intent.FLAG_GRANT_READ_URI_PERMISSION | Intent.FLAG_GRANT_WRITE_URI_PERMISSION);
+    }
+
+    /**
+     * Programa la importación de los capturados desde el fichero elegido por el usuario.
+     *
+     * @param context Contexto.
+     * @param uri Documento abierto con el selector de ficheros del sistema.
+     */
+    public static void startImport(Context context, Uri uri) {
+        start(context, MODE_IMPORT, uri, Intent.FLAG_GRANT_READ_URI_PERMISSION);
+    }
+
+    private static void start(Context context, String mode, Uri uri, int permissionFlags) {
+        Context appContext = context.getApplicationContext();
+        // El permiso sobre el fichero debe sobrevivir al proceso para poder continuar después.
+        try {
+            appContext.getContentResolver().takePersistableUriPermission(uri, permissionFlags);
+        } catch (SecurityException e) {
+            Log.w(TAG, "No se ha podido conservar el permiso sobre el fichero: " + e.getMessage());
+        }
+        OneTimeWorkRequest request = new OneTimeWorkRequest.Builder(CapturedTransferWorker.class)
+                .setConstraints(new Constraints.Builder()
+                        .setRequiredNetworkType(NetworkType.CONNECTED)
+                        .build())
+                .setInputData(new Data.Builder()
+                        .putString(KEY_MODE, mode)
+                        .putString(KEY_URI, uri.toString())
+                        .build())
+                .build();
+        // Un fichero nuevo sustituye al trabajo anterior del mismo modo; su progreso se descarta.
+        WorkManager.getInstance(appContext).enqueueUniqueWork(mode, ExistingWorkPolicy.REPLACE, request);
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        FirebaseUser user = FirebaseAuth.getInstance().getCurrentUser();
+        String mode = getInputData().getString(KEY_MODE);
+        String uriString = getInputData().getString(KEY_URI);
+        if (user == null || mode == null || uriString == null) {
+            return Result.failure();
+        }
+        SharedPreferences progress = getProgressPrefs(mode);
+        if (!uriString.equals(progress.getString(KEY_URI, null)) || !user.getUid().equals(progress.getString(KEY_UID, null))) {
+            // Otro fichero u otro usuario: se empieza de cero.
+            progress.edit().clear()
+                    .putString(KEY_URI, uriString)
+                    .putString(KEY_UID, user.getUid())
+                    .commit();
+        }
+
+        Uri uri = Uri.parse(uriString);
+        CapturedStore capturedStore = CapturedStoreProvider.get(getApplicationContext());
+        try {
+            Result result = MODE_EXPORT.equals(mode)
+                    ? export(uri, capturedStore, user.getUid(), progress)
+                    : importFrom(uri, capturedStore, user.getUid(), progress);
+            if (result instanceof Result.Success) {
+                progress.edit().clear().commit();
+            }
+            return result;
+        } catch (ExecutionException e) {
+            Log.w(TAG, "Error de Firestore, se continuará más tarde: " + e.getMessage());
+            return Result.retry();
+        } catch (IOException | SecurityException e) {
+            Log.e(TAG, "Error al acceder al fichero", e);
+            return Result.failure();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Result.retry();
+        }
+    }
+
+    /**
+     * Exporta la colección página a página, en orden de ID, continuando tras la última página
+     * completa si la exportación anterior se interrumpió.
+     */
+    private Result export(Uri uri, CapturedStore capturedStore, String uid, SharedPreferences progress)
+            throws IOException, ExecutionException, InterruptedException {
+        long total = CapturedStore.<Long>await(callback -> capturedStore.count(uid, callback));
+        long done = progress.getLong(KEY_DONE, 0);
+        String lastId = progress.getString(KEY_LAST_ID, null);
+        long committedBytes = progress.getLong(KEY_COMMITTED_BYTES, 0);
+
+        ContentResolver resolver = getApplicationContext().getContentResolver();
+        try (ParcelFileDescriptor descriptor = resolver.openFileDescriptor(uri, "rw")) {
+            if (descriptor == null) {
+                throw new IOException("No se puede abrir el fichero " + uri);
+            }
+            FileOutputStream out = new FileOutputStream(descriptor.getFileDescriptor());
+            FileChannel channel = out.getChannel();
+            // Se descarta lo escrito después de la última página completa.
+            channel.truncate(committedBytes);
+            channel.position(committedBytes);
+            reportProgress(done, total);
+
+            while (true) {
+                if (isStopped()) {
+                    return Result.retry();
+                }
+                String afterId = lastId;
+                List<CapturedStore.Change> page = CapturedStore.await(
+                        callback -> capturedStore.readPage(uid, afterId, PAGE_SIZE, callback));
+                if (page.isEmpty()) {
+                    break;
+                }
+
+                // Cada página es un miembro gzip completo. Al cerrar el escritor se termina el
+                // miembro y se libera su Deflater, pero el envoltorio no cierra el fichero.
+                OutputStream member = new FilterOutputStream(out) {
+                    @Override
+                    public void write(byte[] buffer, int offset, int length) throws IOException {
+                        out.write(buffer, offset, length);
+                    }
+
+                    @Override
+                    public void close() throws IOException {
+                        flush();
+                    }
+                };
+                try (Writer writer = new OutputStreamWriter(new GZIPOutputStream(member), StandardCharsets.UTF_8)) {
+                    for (CapturedStore.Change change : page) {
+                        if (change.pokemon != null) {
+                            writer.write(gson.toJson(toEntry(change.pokemon)));
+                            writer.write('\n');
+                            done++;
+                        }
+                    }
+                }
+                out.flush();
+                out.getFD().sync();
+
+                lastId = page.get(page.size() - 1).id;
+                progress.edit()
+                        .putString(KEY_LAST_ID, lastId)
+                        .putLong(KEY_COMMITTED_BYTES, channel.position())
+                        .putLong(KEY_DONE, done)
+                        .commit();
+                reportProgress(done, total);
+                if (page.size() < PAGE_SIZE) {
+                    break;
+                }
+            }
+        }
+        Log.d(TAG, "Exportación terminada: " + done + " Pokémon");
+        return Result.success(new Data.Builder().putString(KEY_MODE, MODE_EXPORT).putLong(KEY_DONE, done).build());
+    }
+
+    /**
+     * Importa el fichero línea a línea, en lotes de hasta {@link CapturedStore#MAX_BATCH_SIZE}
+     * escrituras, saltando las líneas ya importadas si la importación anterior se interrumpió.
+     */
+    private Result importFrom(Uri uri, CapturedStore capturedStore, String uid, SharedPreferences progress)
+            throws IOException, ExecutionException, InterruptedException {
+        ContentResolver resolver = getApplicationContext().getContentResolver();
+        long fileSize = -1;
+        try (ParcelFileDescriptor descriptor = resolver.openFileDescriptor(uri, "r")) {
+            if (descriptor != null) {
+                fileSize = descriptor.getStatSize();
+            }
+        }
+
+        long done = progress.getLong(KEY_DONE, 0);
+        int skipped = 0;
+        InputStream raw = resolver.openInputStream(uri);
+        if (raw == null) {
+            throw new IOException("No se puede abrir el fichero " + uri);
+        }
+        CountingInputStream counting = new CountingInputStream(raw);
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new GZIPInputStream(counting), StandardCharsets.UTF_8))) {
+            // Las líneas ya importadas se leen sin volver a escribirlas.
+            for (long i = 0; i < done; i++) {
+                if (reader.readLine() == null) {
+                    break;
+                }
+            }
+
+            List<CapturadosOutbox.Operation> chunk = new ArrayList<>(CapturedStore.MAX_BATCH_SIZE);
+            long lines = done;
+            String line;
+            while (true) {
+                line = reader.readLine();
+                if (line != null) {
+                    lines++;
+                    PokemonDetails pokemon = parse(line);
+                    if (pokemon != null) {
+                        // Sin hora: no cuenta en la línea temporal y no sustituye la hora de
+                        // captura de un Pokémon que ya estuviera capturado.
+                        CapturadosOutbox.Operation operation = new CapturadosOutbox.Operation();
+                        operation.type = CapturadosOutbox.Type.CAPTURE;
+                        operation.uid = uid;
+                        operation.pokemon = pokemon;
+                        chunk.add(operation);
+                    } else {
+                        skipped++;
+                    }
+                }
+                if (chunk.size() == CapturedStore.MAX_BATCH_SIZE || (line == null && !chunk.isEmpty())) {
+                    if (isStopped()) {
+                        return Result.retry();
+                    }
+                    List<CapturadosOutbox.Operation> batch = new ArrayList<>(chunk);
+                    CapturedStore.<Void>await(callback -> capturedStore.commit(batch, callback));
+                    chunk.clear();
+                    done = lines;
+                    progress.edit().putLong(KEY_DONE, done).commit();
+                    reportProgress(done, fileSize > 0 ? counting.count * 100 / fileSize : -1);
+                }
+                if (line == null) {
+                    break;
+                }
+            }
+        }
+
+        // Los documentos importados llevan hora del servidor, así que la sincronización por
+        // cambios los incorpora al estado local.
+        CapturedSync.getInstance(getApplicationContext()).syncBlocking();
+        Log.d(TAG, "Importación terminada: " + done + " líneas, " + skipped + " no válidas");
+        return Result.success(new Data.Builder().putString(KEY_MODE, MODE_IMPORT).putLong(KEY_DONE, done).build());
+    }
+
+    /**
+     * Publica el progreso: en la exportación, el total es el número de documentos de la
+     * colección (incluidas las lápidas, que no se exportan); en la importación, el porcentaje
+     * del fichero leído.
+     */
+    private void reportProgress(long done, long totalOrPercent) {
+        Data.Builder data = new Data.Builder().putLong(KEY_DONE, done);
+        if (MODE_EXPORT.equals(getInputData().getString(KEY_MODE))) {
+            data.putLong(KEY_TOTAL, totalOrPercent);
+        } else {
+            data.putLong(KEY_PERCENT, totalOrPercent);
+        }
+        setProgressAsync(data.build());
+    }
+
+    private SharedPreferences getProgressPrefs(String mode) {
+        return getApplicationContext().getSharedPreferences(PREFS_NAME + "_" + mode, Context.MODE_PRIVATE);
+    }
+
+    static Entry toEntry(PokemonDetails pokemon) {
+        Entry entry = new Entry();
+        entry.id = pokemon.getId();
+        entry.name = pokemon.getName();
+        entry.types = pokemon.getTypeNames();
+        entry.weight = pokemon.getWeight();
+        entry.height = pokemon.getHeight();
+        return entry;
+    }
+
+    /**
+     * Convierte una línea del fichero en un Pokémon.
+     *
+     * @return El Pokémon, o null si la línea no es válida.
+     */
+    private PokemonDetails parse(String line) {
+        if (line.trim().isEmpty()) {
+            return null;
+        }
+        Entry entry;
+        try {
+            entry = gson.fromJson(line, Entry.class);
+        } catch (JsonParseException e) {
+            Log.w(TAG, "Línea no válida: " + e.getMessage());
+            return null;
+        }
+        int id = entry != null ? PokemonDetails.parseId(entry.id) : -1;
+        if (id < 0 || entry.name == null) {
+            return null;
+        }
+        // Las copias exportadas antes podían llevar las medidas con decimales.
+        return PokemonDetails.fromTypeNames(id, entry.name, (int) Math.round(entry.weight),
+                (int) Math.round(entry.height), entry.types);
+    }
+
+    /**
+     * Flujo que cuenta los bytes comprimidos leídos, para calcular el progreso.
+     */
+    private static class CountingInputStream extends FilterInputStream {
+        long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int value = super.read();
+            if (value >= 0) {
+                count++;
+            }
+            return value;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = super.read(buffer, offset, length);
+            if (read > 0) {
+                count += read;
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+    }
+}
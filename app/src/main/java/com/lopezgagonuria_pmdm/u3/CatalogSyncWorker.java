@@ -0,0 +1,114 @@
+package com.lopezgagonuria_pmdm.u3;
+
+import android.content.Context;
+import android.util.Log;
+import androidx.annotation.NonNull;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import retrofit2.HttpException;
+
+/**
+ * Trabajo en segundo plano que descarga el catálogo de la Pokédex y los detalles de cada
+ * Pokémon (tipos, peso y altura) y los guarda en {@link LocalPokedexStore}. Los Pokémon que ya
+ * están en el catálogo incluido en el APK se toman de él, así que solo se piden a la API los
+ * detalles de las entradas nuevas.
+ */
+public class CatalogSyncWorker extends Worker {
+
+    private static final String TAG = "CatalogSyncWorker";
+
+    // Tiempo máximo para descargar todos los detalles que faltan.
+    private static final long SYNC_TIMEOUT_SECONDS = 120;
+
+    // Peticiones de detalles lanzadas. Se cancelan estas y no las etapas derivadas con
+    // handle(), porque cancelar una etapa derivada no corta la petición HTTP.
+    private final List<CompletableFuture<PokemonDetails>> calls =
+            Collections.synchronizedList(new ArrayList<>());
+
+    public CatalogSyncWorker(@NonNull Context context, @NonNull WorkerParameters params) {
+        super(context, params);
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        PokemonApiService apiService = RetrofitClient.getRetrofitInstance().create(PokemonApiService.class);
+        try {
+            PokemonResponse list = Futures.await(apiService.getPokemonList(0, PokedexRepository.PAGE_SIZE));
+
+            // Las entradas nuevas se piden todas a la vez (OkHttp limita las conexiones por
+            // servidor) y se esperan en un único punto.
+            BundledPokedexCatalog bundled = BundledPokedexCatalog.open(getApplicationContext());
+            List<CompletableFuture<PokemonDetails>> entries = new ArrayList<>();
+            int requested = 0;
+            for (PokemonResponse.Result result : list.getResults()) {
+                if (isStopped()) {
+                    return Result.retry();
+                }
+                PokemonDetails pokemon = result.toBasicPokemonDetails();
+                PokemonDetails known = bundled != null ? bundled.findById(pokemon.getNumber()) : null;
+                if (known != null) {
+                    entries.add(CompletableFuture.completedFuture(known));
+                    continue;
+                }
+                requested++;
+                CompletableFuture<PokemonDetails> call = apiService.getPokemonDetails(pokemon.getId());
+                calls.add(call);
+                entries.add(call.handle((details, error) -> {
+                    if (error == null) {
+                        return pokemon.withDetails(details);
+                    }
+                    if (Futures.unwrap(error) instanceof HttpException) {
+                        return pokemon; // Sin detalles en la API: se guarda la entrada básica.
+                    }
+                    throw new CompletionException(Futures.unwrap(error));
+                }));
+            }
+            if (isStopped()) {
+                return Result.retry();
+            }
+            List<PokemonDetails> catalog = Futures.await(
+                    Futures.withTimeout(Futures.allAsList(entries), SYNC_TIMEOUT_SECONDS, TimeUnit.SECONDS));
+            if (isStopped()) {
+                return Result.retry();
+            }
+
+            if (!new LocalPokedexStore(getApplicationContext()).write(catalog)) {
+                return Result.retry();
+            }
+            Log.d(TAG, "Catálogo sincronizado: " + catalog.size() + " Pokémon, " + requested + " pedidos a la API");
+            return Result.success();
+        } catch (HttpException e) {
+            Log.w(TAG, "Error al obtener el catálogo: " + e.message());
+            return Result.retry();
+        } catch (IOException e) {
+            Log.w(TAG, "Error de red al sincronizar el catálogo: " + e.getMessage());
+            return Result.retry();
+        } finally {
+            // Tras un error o el tiempo máximo no deben quedar peticiones en curso.
+            cancelCalls();
+        }
+    }
+
+    @Override
+    public void onStopped() {
+        super.onStopped();
+        cancelCalls();
+    }
+
+    private void cancelCalls() {
+        synchronized (calls) {
+            for (CompletableFuture<PokemonDetails> call : calls) {
+                call.cancel(true);
+            }
+            calls.clear();
+        }
+    }
+}
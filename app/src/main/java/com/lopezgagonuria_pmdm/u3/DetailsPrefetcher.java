@@ -0,0 +1,204 @@
+package com.lopezgagonuria_pmdm.u3;
+
+import android.content.Context;
+import android.util.Log;
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+import com.bumptech.glide.Glide;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Carga los detalles (tipos, peso y altura) de los Pokémon según lo que se ve en la lista.
+ * Las filas visibles tienen la máxima prioridad, después se adelantan las siguientes filas en
+ * la dirección del desplazamiento y se cancelan las peticiones de filas que han quedado lejos.
+ * Así los iconos de tipo están listos cuando aparece la fila sin descargar toda la Pokédex.
+ */
+public class DetailsPrefetcher extends RecyclerView.OnScrollListener {
+
+    // Distancia, en filas fuera de la ventana de interés, a partir de la cual se cancela una petición.
+    private static final int CANCEL_DISTANCE = 20;
+
+    private static final String TAG = "DetailsPrefetcher";
+
+    private final Context appContext;
+    private final List<PokemonDetails> pokemonList;
+    private final RecyclerView.Adapter<?> adapter;
+    private final PokemonApiService apiService;
+
+    // Guarda los detalles recibidos en la Pokédex compartida.
+    private final PokedexRepository repository;
+
+    // Decide cuántas filas se adelantan y cuántas peticiones se hacen a la vez según la red.
+    private final LoadingPolicy loadingPolicy;
+
+    // Posiciones pendientes, de mayor a menor prioridad.
+    private final List<Integer> queue = new ArrayList<>();
+
+    // Peticiones en curso por posición.
+    private final Map<Integer, CompletableFuture<PokemonDetails>> inFlight = new HashMap<>();
+
+    // IDs de los Pokémon cuyos detalles han fallado. No se vuelven a pedir al desplazar la
+    // lista, solo tras el próximo refresh().
+    private final Set<String> failedIds = new HashSet<>();
+
+    private RecyclerView recyclerView;
+
+    // Dirección del último desplazamiento: true hacia abajo.
+    private boolean scrollingDown = true;
+
+    /**
+     * Constructor del prefetcher.
+     *
+     * @param context Contexto de la aplicación.
+     * @param pokemonList Lista mostrada por el adaptador.
+     * @param adapter Adaptador a notificar cuando llegan los detalles de una fila.
+     */
+    public DetailsPrefetcher(Context context, List<PokemonDetails> pokemonList, RecyclerView.Adapter<?> adapter) {
+        this.appContext = context.getApplicationContext();
+        this.pokemonList = pokemonList;
+        this.adapter = adapter;
+        this.apiService = RetrofitClient.getRetrofitInstance().create(PokemonApiService.class);
+        this.repository = PokedexRepository.getInstance(context);
+        this.loadingPolicy = LoadingPolicy.getInstance(context);
+    }
+
+    /**
+     * Empieza a seguir el desplazamiento de la lista.
+     *
+     * @param recyclerView Lista con un LinearLayoutManager.
+     */
+    public void attach(RecyclerView recyclerView) {
+        this.recyclerView = recyclerView;
+        recyclerView.addOnScrollListener(this);
+    }
+
+    /**
+     * Deja de seguir la lista y cancela todas las peticiones en curso.
+     */
+    public void detach() {
+        if (recyclerView != null) {
+            recyclerView.removeOnScrollListener(this);
+            recyclerView = null;
+        }
+        queue.clear();
+        for (CompletableFuture<PokemonDetails> request : inFlight.values()) {
+            request.cancel(true);
+        }
+        inFlight.clear();
+    }
+
+    /**
+     * Recalcula las prioridades con la posición actual de la lista, por ejemplo tras cargar
+     * los datos, y vuelve a intentar las filas que fallaron. Se debe llamar desde el hilo
+     * principal.
+     */
+    public void refresh() {
+        failedIds.clear();
+        updatePriorities();
+    }
+
+    @Override
+    public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+        if (dy != 0) {
+            scrollingDown = dy > 0;
+        }
+        updatePriorities();
+    }
+
+    private void updatePriorities() {
+        if (recyclerView == null || !(recyclerView.getLayoutManager() instanceof LinearLayoutManager)) {
+            return;
+        }
+        LinearLayoutManager layoutManager = (LinearLayoutManager) recyclerView.getLayoutManager();
+        int first = layoutManager.findFirstVisibleItemPosition();
+        int last = layoutManager.findLastVisibleItemPosition();
+        if (first == RecyclerView.NO_POSITION || last == RecyclerView.NO_POSITION) {
+            // Todavía no hay filas dispuestas: se empieza por la primera pantalla.
+            first = 0;
+            last = Math.min(pokemonList.size(), PokedexRepository.PRELOADED_SPRITES) - 1;
+        }
+        reprioritize(first, last);
+    }
+
+    /**
+     * Reconstruye la cola: primero las filas visibles, después las siguientes en la dirección
+     * del desplazamiento. Cancela las peticiones de filas demasiado alejadas.
+     */
+    private void reprioritize(int first, int last) {
+        queue.clear();
+        int prefetchAhead = loadingPolicy.getPrefetchAhead();
+        for (int position = first; position <= last; position++) {
+            enqueueIfNeeded(position);
+        }
+        for (int i = 1; i <= prefetchAhead; i++) {
+            enqueueIfNeeded(scrollingDown ? last + i : first - i);
+        }
+
+        int windowStart = (scrollingDown ? first : first - prefetchAhead) - CANCEL_DISTANCE;
+        int windowEnd = (scrollingDown ? last + prefetchAhead : last) + CANCEL_DISTANCE;
+        Iterator<Map.Entry<Integer, CompletableFuture<PokemonDetails>>> iterator = inFlight.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Integer, CompletableFuture<PokemonDetails>> entry = iterator.next();
+            if (entry.getKey() < windowStart || entry.getKey() > windowEnd) {
+                entry.getValue().cancel(true);
+                iterator.remove();
+            }
+        }
+        drain();
+    }
+
+    private void enqueueIfNeeded(int position) {
+        if (position < 0 || position >= pokemonList.size() || inFlight.containsKey(position)) {
+            return;
+        }
+        PokemonDetails pokemon = pokemonList.get(position);
+        if (!pokemon.isFullyLoaded() && pokemon.getNumber() > 0 && !failedIds.contains(pokemon.getId())) {
+            queue.add(position);
+        }
+    }
+
+    /**
+     * Lanza las peticiones de la cola, en orden de prioridad, hasta el límite de concurrencia.
+     */
+    private void drain() {
+        int maxInFlight = loadingPolicy.getMaxDetailRequests();
+        while (inFlight.size() < maxInFlight && !queue.isEmpty()) {
+            int position = queue.remove(0);
+            PokemonDetails pokemon = pokemonList.get(position);
+            // La fila todavía no visible necesitará también su sprite.
+            Glide.with(appContext).load(loadingPolicy.getImageUrl(pokemon.getSpriteUrl(), false)).preload();
+            PipelineTrace.beginAsync("fetch:details", pokemon.getNumber());
+            CompletableFuture<PokemonDetails> request = apiService.getPokemonDetails(pokemon.getId());
+            inFlight.put(position, request);
+            request.whenCompleteAsync((details, error) -> {
+                // También llega aquí una petición cancelada, así que la sección siempre se cierra.
+                PipelineTrace.endAsync("fetch:details", pokemon.getNumber());
+                if (inFlight.get(position) != request) {
+                    return; // Cancelada o sustituida mientras tanto.
+                }
+                inFlight.remove(position);
+                if (error == null) {
+                    // Los Pokémon son inmutables: la fila pasa a ser uno nuevo con los detalles.
+                    PokemonDetails updated = pokemon.withDetails(details);
+                    repository.updatePokemon(position, updated);
+                    if (position < pokemonList.size() && pokemonList.get(position) == pokemon) {
+                        pokemonList.set(position, updated);
+                        adapter.notifyItemChanged(position);
+                    }
+                } else {
+                    Log.e(TAG, "Error al obtener detalles: " + Futures.unwrap(error).getMessage());
+                    failedIds.add(pokemon.getId());
+                }
+                drain();
+            }, Futures.MAIN);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.lopezgagonuria_pmdm.u3;
+
+import com.google.gson.annotations.SerializedName;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Clase que representa una cadena evolutiva obtenida de la API (evolution-chain/{id}).
+ * Una misma cadena la comparten todas las especies que pertenecen a ella.
+ */
+public class EvolutionChain {
+
+    // ID de la cadena evolutiva.
+    private int id;
+
+    // Primer eslabón de la cadena.
+    private ChainLink chain;
+
+    /**
+     * Clase interna que representa un eslabón de la cadena: una especie y sus evoluciones.
+     */
+    public static class ChainLink {
+
+        // Especie de este eslabón.
+        private PokemonSpecies.NamedResource species;
+
+        // Especies en las que evoluciona (varias si la evolución se ramifica).
+        @SerializedName("evolves_to")
+        private List<ChainLink> evolvesTo;
+
+        public PokemonSpecies.NamedResource getSpecies() {
+            return species;
+        }
+
+        public List<ChainLink> getEvolvesTo() {
+            return evolvesTo;
+        }
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public ChainLink getChain() {
+        return chain;
+    }
+
+    /**
+     * Obtiene las especies de la cadena agrupadas por etapa: la primera lista contiene la
+     * especie base, la segunda sus evoluciones, y así sucesivamente.
+     *
+     * @return Lista de etapas con los nombres de sus especies.
+     */
+    public List<List<PokemonSpecies.NamedResource>> getStages() {
+        List<List<PokemonSpecies.NamedResource>> stages = new ArrayList<>();
+        List<ChainLink> current = new ArrayList<>();
+        if (chain != null) {
+            current.add(chain);
+        }
+        while (!current.isEmpty()) {
+            List<PokemonSpecies.NamedResource> stage = new ArrayList<>();
+            List<ChainLink> next = new ArrayList<>();
+            for (ChainLink link : current) {
+                stage.add(link.getSpecies());
+                if (link.getEvolvesTo() != null) {
+                    next.addAll(link.getEvolvesTo());
+                }
+            }
+            stages.add(stage);
+            current = next;
+        }
+        return stages;
+    }
+}
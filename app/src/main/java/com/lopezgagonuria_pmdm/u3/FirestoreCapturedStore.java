@@ -0,0 +1,182 @@
+package com.lopezgagonuria_pmdm.u3;
+
+import android.content.Context;
+import com.google.firebase.Timestamp;
+import com.google.firebase.firestore.AggregateSource;
+import com.google.firebase.firestore.CollectionReference;
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FieldPath;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.Query;
+import com.google.firebase.firestore.QuerySnapshot;
+import com.google.firebase.firestore.SetOptions;
+import com.google.firebase.firestore.Source;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Implementación de {@link CapturedStore} sobre Firestore: cada usuario guarda sus capturas en
+ * "usuarios/{uid}/capturados" con el esquema de {@link CapturedPokemonMapper}. Los resultados se
+ * entregan en el hilo principal, como los listeners de las tareas de Firestore.
+ */
+public final class FirestoreCapturedStore implements CapturedStore {
+
+    private final Context appContext;
+
+    public FirestoreCapturedStore(Context context) {
+        this.appContext = context.getApplicationContext();
+    }
+
+    @Override
+    public void readChanges(String uid, long sinceSeconds, int sinceNanos, boolean serverOnly, Callback<ChangeSet> callback) {
+        Query query = collection(uid);
+        if (sinceSeconds > 0 || sinceNanos > 0) {
+            query = query
+                    .whereGreaterThanOrEqualTo(CapturedPokemonMapper.FIELD_UPDATED_AT, new Timestamp(sinceSeconds, sinceNanos))
+                    .orderBy(CapturedPokemonMapper.FIELD_UPDATED_AT);
+        }
+        Query changes = query;
+        // La primera lectura espera a que se copie la colección antigua, si hay que hacerlo; si
+        // la copia falla se lee igualmente y se reintenta la próxima vez. Los documentos
+        // copiados llevan hora del servidor, así que una lectura posterior por cambios los ve.
+        UserCapturados.migrateLegacyCollection(appContext, FirestoreProvider.get(appContext), uid)
+                .addOnCompleteListener(migration -> {
+                    int cookie = PipelineTrace.nextCookie();
+                    PipelineTrace.beginAsync("fetch:firestore-changes", cookie);
+                    changes.get(serverOnly ? Source.SERVER : Source.DEFAULT)
+                            .addOnCompleteListener(task -> PipelineTrace.endAsync("fetch:firestore-changes", cookie))
+                            .addOnSuccessListener(result -> callback.onSuccess(toChangeSet(result)))
+                            .addOnFailureListener(callback::onError);
+                });
+    }
+
+    @Override
+    public void readPage(String uid, String afterId, int limit, Callback<List<Change>> callback) {
+        Query page = collection(uid).orderBy(FieldPath.documentId()).limit(limit);
+        if (afterId != null) {
+            page = page.startAfter(afterId);
+        }
+        page.get(Source.SERVER)
+                .addOnSuccessListener(result -> callback.onSuccess(toChangeSet(result).changes))
+                .addOnFailureListener(callback::onError);
+    }
+
+    @Override
+    public void count(String uid, Callback<Long> callback) {
+        collection(uid).count().get(AggregateSource.SERVER)
+                .addOnSuccessListener(snapshot -> callback.onSuccess(snapshot.getCount()))
+                .addOnFailureListener(callback::onError);
+    }
+
+    @Override
+    public void commit(List<CapturadosOutbox.Operation> operations, Callback<Void> callback) {
+        FirebaseFirestore firestore = FirestoreProvider.get(appContext);
+        // Es una transacción y no un WriteBatch para poder leer antes las marcas de las
+        // operaciones que suman a la línea temporal: si el lote ya se aplicó en un intento
+        // anterior, sus incrementos no se repiten.
+        firestore.runTransaction(transaction -> {
+            List<CapturadosOutbox.Operation> uncounted = new ArrayList<>();
+            for (CapturadosOutbox.Operation operation : operations) {
+                if (CaptureTimeline.counts(operation)
+                        && !transaction.get(markerRef(firestore, operation)).exists()) {
+                    uncounted.add(operation);
+                }
+            }
+
+            for (CapturadosOutbox.Operation operation : operations) {
+                CollectionReference capturadosRef = UserCapturados.getCollection(firestore, operation.uid);
+                if (operation.type == CapturadosOutbox.Type.CAPTURE && operation.time == 0) {
+                    // Las capturas sin hora (importadas) se combinan con el documento que ya
+                    // exista, para no borrar la hora de una captura anterior.
+                    transaction.set(capturadosRef.document(operation.pokemon.getId()),
+                            CapturedPokemonMapper.toMap(operation.pokemon), SetOptions.merge());
+                } else if (operation.type == CapturadosOutbox.Type.CAPTURE) {
+                    transaction.set(capturadosRef.document(operation.pokemon.getId()),
+                            CapturedPokemonMapper.toMap(operation.pokemon, operation.time));
+                } else {
+                    // La liberación deja una lápida para que la sincronización por cambios la detecte.
+                    transaction.set(capturadosRef.document(operation.pokemon.getId()), CapturedPokemonMapper.toTombstone());
+                }
+            }
+            // Los contadores se suman en la misma transacción, con incrementos del servidor: se
+            // confirman o se descartan junto con las capturas, las liberaciones y sus marcas.
+            for (CapturadosOutbox.Operation operation : uncounted) {
+                transaction.set(markerRef(firestore, operation), CaptureTimelineMapper.toMarker(operation));
+            }
+            for (Map.Entry<String, Map<String, CaptureTimeline.Month>> user : CaptureTimeline.fromOperations(uncounted).entrySet()) {
+                CollectionReference timelineRef = UserCapturados.getTimelineCollection(firestore, user.getKey());
+                for (CaptureTimeline.Month delta : user.getValue().values()) {
+                    transaction.set(timelineRef.document(delta.id), CaptureTimelineMapper.toIncrements(delta), SetOptions.merge());
+                }
+            }
+            return null;
+        })
+                .addOnSuccessListener(result -> callback.onSuccess(null))
+                .addOnFailureListener(callback::onError);
+    }
+
+    @Override
+    public void updateDetails(String uid, PokemonDetails pokemon, Callback<Void> callback) {
+        collection(uid).document(pokemon.getId())
+                .set(CapturedPokemonMapper.toDetailsUpdate(pokemon), SetOptions.merge())
+                .addOnSuccessListener(callback::onSuccess)
+                .addOnFailureListener(callback::onError);
+    }
+
+    @Override
+    public void readTimeline(String uid, Callback<CaptureTimeline> callback) {
+        UserCapturados.getTimelineCollection(FirestoreProvider.get(appContext), uid).get()
+                .addOnSuccessListener(result -> {
+                    List<CaptureTimeline.Month> months = new ArrayList<>(result.size());
+                    for (DocumentSnapshot document : result.getDocuments()) {
+                        months.add(CaptureTimelineMapper.fromSnapshot(document));
+                    }
+                    callback.onSuccess(new CaptureTimeline(months));
+                })
+                .addOnFailureListener(callback::onError);
+    }
+
+    private static DocumentReference markerRef(FirebaseFirestore firestore, CapturadosOutbox.Operation operation) {
+        return UserCapturados.getTimelineMarkers(firestore, operation.uid)
+                .document(CaptureTimeline.operationKey(operation));
+    }
+
+    private CollectionReference collection(String uid) {
+        return UserCapturados.getCollection(FirestoreProvider.get(appContext), uid);
+    }
+
+    /**
+     * Convierte el resultado de una consulta en cambios. Los documentos leídos del servidor con
+     * un esquema antiguo se actualizan de paso.
+     */
+    private static ChangeSet toChangeSet(QuerySnapshot result) {
+        PipelineTrace.begin("sync:map");
+        try {
+            return mapChanges(result);
+        } finally {
+            PipelineTrace.end();
+        }
+    }
+
+    private static ChangeSet mapChanges(QuerySnapshot result) {
+        boolean fromServer = !result.getMetadata().isFromCache();
+        List<Change> changes = new ArrayList<>(result.size());
+        for (DocumentSnapshot document : result.getDocuments()) {
+            boolean deleted = CapturedPokemonMapper.isTombstone(document);
+            PokemonDetails pokemon = deleted ? null : CapturedPokemonMapper.fromSnapshot(document);
+            if (pokemon != null && fromServer) {
+                CapturedPokemonMapper.upgradeIfNeeded(document, pokemon);
+            }
+            Timestamp updatedAt = CapturedPokemonMapper.getUpdatedAt(document);
+            // Solo las horas confirmadas por el servidor pueden avanzar la marca de agua.
+            boolean confirmed = fromServer && updatedAt != null && !document.getMetadata().hasPendingWrites();
+            changes.add(new Change(document.getId(), pokemon, deleted,
+                    updatedAt != null ? updatedAt.getSeconds() : 0,
+                    updatedAt != null ? updatedAt.getNanoseconds() : 0,
+                    confirmed, pokemon != null ? CapturedPokemonMapper.getCapturedAtMillis(document) : 0));
+        }
+        return new ChangeSet(changes, fromServer);
+    }
+}
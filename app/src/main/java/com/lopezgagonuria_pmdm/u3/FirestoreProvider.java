@@ -0,0 +1,74 @@
+package com.lopezgagonuria_pmdm.u3;
+
+import android.content.Context;
+import android.util.Log;
+import androidx.preference.PreferenceManager;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.FirebaseFirestoreSettings;
+import com.google.firebase.firestore.PersistentCacheSettings;
+
+/**
+ * Proporciona la instancia de Firestore de la aplicación con la caché persistente configurada
+ * explícitamente. Los ajustes solo se pueden aplicar antes del primer uso de Firestore, por eso
+ * todas las clases deben obtener la instancia desde aquí.
+ */
+public final class FirestoreProvider {
+
+    // Clave de la preferencia con el tamaño máximo de la caché local, en MB.
+    public static final String PREF_CACHE_SIZE_MB = "firestore_cache_mb";
+
+    // Tamaño de caché por defecto, en MB.
+    static final String DEFAULT_CACHE_SIZE_MB = "50";
+
+    // Tamaño mínimo que admite Firestore para la caché persistente, en MB.
+    private static final long MIN_CACHE_SIZE_MB = 1;
+
+    private static final String TAG = "FirestoreProvider";
+
+    // Instancia configurada de Firestore.
+    private static volatile FirebaseFirestore firestore;
+
+    private FirestoreProvider() {
+        // Clase de utilidad, no se instancia.
+    }
+
+    /**
+     * Obtiene la instancia de Firestore, aplicando los ajustes de caché la primera vez.
+     *
+     * @param context Contexto para leer el tamaño de caché configurado.
+     * @return Instancia de Firestore configurada.
+     */
+    public static FirebaseFirestore get(Context context) {
+        if (firestore == null) {
+            synchronized (FirestoreProvider.class) {
+                if (firestore == null) { // Verificación doble para inicialización segura.
+                    FirebaseFirestore instance = FirebaseFirestore.getInstance();
+                    long cacheSizeBytes = getCacheSizeMb(context) * 1024 * 1024;
+                    instance.setFirestoreSettings(new FirebaseFirestoreSettings.Builder()
+                            .setLocalCacheSettings(PersistentCacheSettings.newBuilder()
+                                    .setSizeBytes(cacheSizeBytes)
+                                    .build())
+                            .build());
+                    Log.d(TAG, "Caché persistente de Firestore configurada: " + cacheSizeBytes + " bytes");
+                    firestore = instance;
+                }
+            }
+        }
+        return firestore;
+    }
+
+    /**
+     * Lee el tamaño de caché configurado en las preferencias. Los cambios se aplican
+     * en el siguiente arranque de la aplicación.
+     */
+    private static long getCacheSizeMb(Context context) {
+        String value = PreferenceManager.getDefaultSharedPreferences(context.getApplicationContext())
+                .getString(PREF_CACHE_SIZE_MB, DEFAULT_CACHE_SIZE_MB);
+        try {
+            return Math.max(MIN_CACHE_SIZE_MB, Long.parseLong(value));
+        } catch (NumberFormatException e) {
+            Log.e(TAG, "Tamaño de caché no válido: " + value);
+            return Long.parseLong(DEFAULT_CACHE_SIZE_MB);
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.lopezgagonuria_pmdm.u3;
+
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.concurrent.CompletableFuture;
+import retrofit2.Call;
+import retrofit2.CallAdapter;
+import retrofit2.Callback;
+import retrofit2.HttpException;
+import retrofit2.Response;
+import retrofit2.Retrofit;
+
+/**
+ * Adaptador de Retrofit para los métodos de {@link PokemonApiService} que devuelven
+ * {@code CompletableFuture<T>}. La petición se lanza al llamar al método y el futuro:
+ * <ul>
+ *   <li>se completa con el cuerpo de la respuesta si es correcta;</li>
+ *   <li>falla con {@link HttpException} si la API responde con un error, o con
+ *   {@link IOException} si la respuesta llega vacía o no se puede conectar;</li>
+ *   <li>cancela la petición HTTP si se cancela.</li>
+ * </ul>
+ * Los futuros se completan en el hilo de OkHttp, así que las etapas que tocan la interfaz se
+ * deben encadenar con el ejecutor del hilo principal (ver {@link Futures}).
+ */
+public final class FutureCallAdapterFactory extends CallAdapter.Factory {
+
+    private FutureCallAdapterFactory() {
+    }
+
+    /**
+     * Crea el adaptador.
+     *
+     * @return Adaptador para registrar en Retrofit.
+     */
+    public static FutureCallAdapterFactory create() {
+        return new FutureCallAdapterFactory();
+    }
+
+    @Override
+    public CallAdapter<?, ?> get(Type returnType, Annotation[] annotations, Retrofit retrofit) {
+        if (getRawType(returnType) != CompletableFuture.class) {
+            return null;
+        }
+        if (!(returnType instanceof ParameterizedType)) {
+            throw new IllegalStateException("CompletableFuture debe indicar el tipo de la respuesta, por ejemplo CompletableFuture<PokemonDetails>");
+        }
+        return new BodyCallAdapter<>(getParameterUpperBound(0, (ParameterizedType) returnType));
+    }
+
+    /**
+     * Convierte una llamada en un futuro con el cuerpo de la respuesta.
+     */
+    private static final class BodyCallAdapter<R> implements CallAdapter<R, CompletableFuture<R>> {
+        private final Type responseType;
+
+        BodyCallAdapter(Type responseType) {
+            this.responseType = responseType;
+        }
+
+        @Override
+        public Type responseType() {
+            return responseType;
+        }
+
+        @Override
+        public CompletableFuture<R> adapt(Call<R> call) {
+            CompletableFuture<R> future = new CompletableFuture<R>() {
+                @Override
+                public boolean cancel(boolean mayInterruptIfRunning) {
+                    // Nadie va a leer la respuesta: se corta también la descarga.
+                    call.cancel();
+                    return super.cancel(mayInterruptIfRunning);
+                }
+            };
+            call.enqueue(new Callback<R>() {
+                @Override
+                public void onResponse(Call<R> call, Response<R> response) {
+                    if (!response.isSuccessful()) {
+                        future.completeExceptionally(new HttpException(response));
+                    } else if (response.body() == null) {
+                        future.completeExceptionally(new IOException("Respuesta vacía de " + call.request().url()));
+                    } else {
+                        future.complete(response.body());
+                    }
+                }
+
+                @Override
+                public void onFailure(Call<R> call, Throwable t) {
+                    future.completeExceptionally(t);
+                }
+            });
+            return future;
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package com.lopezgagonuria_pmdm.u3;
+
+import android.os.Handler;
+import android.os.Looper;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Utilidades para componer las cargas con {@link CompletableFuture}: las peticiones a la API
+ * (con {@link FutureCallAdapterFactory}) y las operaciones de Firestore (con
+ * {@link CapturedStore#toFuture}) se convierten en futuros que se lanzan en paralelo y se
+ * esperan en un único punto, con un tiempo máximo. Así una carga tarda lo que su etapa más
+ * lenta y no la suma de todas.
+ *
+ * <p>{@code orTimeout} y {@code completeOnTimeout} no existen hasta Android 12, por eso el
+ * tiempo máximo se implementa aquí.
+ */
+public final class Futures {
+
+    private static final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    // Ejecuta las etapas en el hilo principal, para las que actualizan la interfaz.
+    public static final Executor MAIN = mainHandler::post;
+
+    // Hilo que vence los tiempos máximos.
+    private static volatile ScheduledExecutorService timeoutScheduler;
+
+    private Futures() {
+        // Clase de utilidad, no se instancia.
+    }
+
+    /**
+     * Devuelve un futuro que falla con {@link TimeoutException} si el original no termina a
+     * tiempo. Al vencer se cancela el original, lo que también corta su petición HTTP.
+     *
+     * @param future Futuro original.
+     * @param timeout Tiempo máximo.
+     * @param unit Unidad del tiempo máximo.
+     * @param <T> Tipo del resultado.
+     * @return Futuro con el mismo resultado o con el error de tiempo agotado.
+     */
+    public static <T> CompletableFuture<T> withTimeout(CompletableFuture<T> future, long timeout, TimeUnit unit) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        ScheduledFuture<?> timer = getTimeoutScheduler().schedule(() -> {
+            if (result.completeExceptionally(new TimeoutException("Sin respuesta en " + unit.toMillis(timeout) + " ms"))) {
+                future.cancel(true);
+            }
+        }, timeout, unit);
+        future.whenComplete((value, error) -> {
+            timer.cancel(false);
+            if (error != null) {
+                result.completeExceptionally(unwrap(error));
+            } else {
+                result.complete(value);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Espera a todos los futuros y devuelve sus resultados en el mismo orden. Si uno falla,
+     * el resultado falla con su error y se cancelan los demás; si se cancela el resultado, se
+     * cancelan todos.
+     *
+     * @param futures Futuros a esperar.
+     * @param <T> Tipo de los resultados.
+     * @return Futuro con la lista de resultados.
+     */
+    public static <T> CompletableFuture<List<T>> allAsList(List<CompletableFuture<T>> futures) {
+        CompletableFuture<?>[] array = futures.toArray(new CompletableFuture<?>[0]);
+        for (CompletableFuture<T> future : futures) {
+            future.whenComplete((value, error) -> {
+                if (error != null) {
+                    for (CompletableFuture<T> other : futures) {
+                        other.cancel(true);
+                    }
+                }
+            });
+        }
+        CompletableFuture<List<T>> all = CompletableFuture.allOf(array).thenApply(ignored -> {
+            List<T> results = new ArrayList<>(futures.size());
+            for (CompletableFuture<T> future : futures) {
+                results.add(future.join());
+            }
+            return results;
+        });
+        // Si se cancela el resultado (por ejemplo, al agotarse el tiempo) se cancelan todos.
+        all.whenComplete((results, error) -> {
+            if (all.isCancelled()) {
+                for (CompletableFuture<T> future : futures) {
+                    future.cancel(true);
+                }
+            }
+        });
+        return all;
+    }
+
+    /**
+     * Espera un futuro desde un hilo en segundo plano. Las respuestas de error de la API se
+     * lanzan tal cual ({@link retrofit2.HttpException}) y el resto de errores como
+     * {@link IOException}.
+     *
+     * @param future Futuro a esperar.
+     * @param <T> Tipo del resultado.
+     * @return Resultado del futuro.
+     * @throws IOException si falla la conexión, se agota el tiempo o se interrumpe la espera.
+     */
+    public static <T> T await(CompletableFuture<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Espera interrumpida");
+        } catch (CancellationException e) {
+            throw new InterruptedIOException("Petición cancelada");
+        } catch (ExecutionException e) {
+            Throwable cause = unwrap(e);
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * Obtiene el error original de un futuro fallido, sin los envoltorios que añaden las
+     * etapas encadenadas.
+     *
+     * @param error Error recibido en una etapa.
+     * @return Error original.
+     */
+    public static Throwable unwrap(Throwable error) {
+        while ((error instanceof CompletionException || error instanceof ExecutionException) && error.getCause() != null) {
+            error = error.getCause();
+        }
+        return error;
+    }
+
+    private static ScheduledExecutorService getTimeoutScheduler() {
+        if (timeoutScheduler == null) {
+            synchronized (Futures.class) {
+                if (timeoutScheduler == null) {
+                    timeoutScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                        Thread thread = new Thread(runnable, "Futures-timeout");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                }
+            }
+        }
+        return timeoutScheduler;
+    }
+}
@@ -0,0 +1,311 @@
+package com.lopezgagonuria_pmdm.u3;
+
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.net.Network;
+import android.net.NetworkCapabilities;
+import android.os.SystemClock;
+import android.util.Log;
+import androidx.annotation.NonNull;
+import java.io.IOException;
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.BufferedSource;
+import okio.ForwardingSource;
+import okio.Okio;
+
+/**
+ * Decide cuánto se carga y con qué calidad según la red. Combina el tipo de conexión y si es de
+ * pago (datos móviles, ahorro de datos activado) con el rendimiento medido en nuestras propias
+ * peticiones a la API, y elige un nivel:
+ * <ul>
+ *   <li>{@link Tier#LITE}: redes de pago o lentas. Páginas pequeñas, pocas filas adelantadas,
+ *   dos peticiones a la vez y sprites pequeños.</li>
+ *   <li>{@link Tier#NORMAL}: el comportamiento de siempre.</li>
+ *   <li>{@link Tier#FULL}: redes sin coste y rápidas. Más filas adelantadas y peticiones, y el
+ *   arte oficial en lugar del sprite pequeño.</li>
+ * </ul>
+ * Los valores se consultan cada vez que se usan, de modo que un cambio de red se nota en la
+ * siguiente petición.
+ */
+public final class LoadingPolicy {
+
+    /**
+     * Nivel de carga.
+     */
+    public enum Tier { LITE, NORMAL, FULL }
+
+    // Por debajo de este rendimiento, en kbit/s, la conexión se considera lenta.
+    private static final int SLOW_KBPS = 400;
+
+    // A partir de este rendimiento, en kbit/s, una conexión sin coste se considera rápida.
+    private static final int FAST_KBPS = 5_000;
+
+    // Las respuestas más pequeñas miden sobre todo la latencia y no se usan para el rendimiento.
+    private static final long MIN_SAMPLE_BYTES = 4 * 1024;
+
+    // Peso de cada nueva medida en la media del rendimiento.
+    private static final double SAMPLE_WEIGHT = 0.3;
+
+    // Las medidas más antiguas que esto ya no representan la red actual.
+    private static final long SAMPLE_MAX_AGE_MS = 5 * 60 * 1000;
+
+    private static final String SPRITE_PREFIX = "https://raw.githubusercontent.com/PokeAPI/sprites/master/sprites/pokemon/";
+    private static final String ARTWORK_PREFIX = SPRITE_PREFIX + "other/official-artwork/";
+
+    private static final String TAG = "LoadingPolicy";
+
+    // Rendimiento medido en las peticiones a la API (kbit/s, 0 sin medidas) y hora de la última medida.
+    private static volatile double observedKbps;
+    private static volatile long observedAt;
+
+    private static LoadingPolicy instance;
+
+    private final ConnectivityManager connectivityManager;
+
+    // Capacidades de la red por defecto, o null si no hay red.
+    private volatile NetworkCapabilities capabilities;
+
+    // Red por defecto actual, para olvidar el rendimiento medido al cambiar de red.
+    private volatile Network network;
+
+    // Último nivel calculado, para registrar los cambios.
+    private volatile Tier lastTier;
+
+    /**
+     * Obtiene la instancia única de la política.
+     *
+     * @param context Contexto de la aplicación.
+     * @return Instancia de la política.
+     */
+    public static synchronized LoadingPolicy getInstance(Context context) {
+        if (instance == null) {
+            instance = new LoadingPolicy(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private LoadingPolicy(Context appContext) {
+        connectivityManager = (ConnectivityManager) appContext.getSystemService(Context.CONNECTIVITY_SERVICE);
+        if (connectivityManager == null) {
+            return;
+        }
+        network = connectivityManager.getActiveNetwork();
+        capabilities = network != null ? connectivityManager.getNetworkCapabilities(network) : null;
+        connectivityManager.registerDefaultNetworkCallback(new ConnectivityManager.NetworkCallback() {
+            @Override
+            public void onCapabilitiesChanged(@NonNull Network changed, @NonNull NetworkCapabilities networkCapabilities) {
+                if (!changed.equals(network)) {
+                    // Otra red: lo medido en la anterior ya no sirve.
+                    network = changed;
+                    observedKbps = 0;
+                }
+                capabilities = networkCapabilities;
+            }
+
+            @Override
+            public void onLost(@NonNull Network lost) {
+                if (lost.equals(network)) {
+                    network = null;
+                    capabilities = null;
+                }
+            }
+        });
+    }
+
+    /**
+     * Calcula el nivel de carga con el estado actual de la red.
+     *
+     * @return Nivel de carga.
+     */
+    public Tier getTier() {
+        NetworkCapabilities current = capabilities;
+        Tier tier;
+        if (current == null) {
+            // Sin información de la red se mantiene el comportamiento de siempre.
+            tier = Tier.NORMAL;
+        } else {
+            boolean metered = !current.hasCapability(NetworkCapabilities.NET_CAPABILITY_NOT_METERED)
+                    || connectivityManager.getRestrictBackgroundStatus()
+                    == ConnectivityManager.RESTRICT_BACKGROUND_STATUS_ENABLED;
+            int kbps = estimateKbps(current);
+            if (metered || (kbps > 0 && kbps < SLOW_KBPS)) {
+                tier = Tier.LITE;
+            } else if (kbps >= FAST_KBPS) {
+                tier = Tier.FULL;
+            } else {
+                tier = Tier.NORMAL;
+            }
+        }
+        if (tier != lastTier) {
+            lastTier = tier;
+            Log.d(TAG, "Nivel de carga: " + tier);
+        }
+        return tier;
+    }
+
+    /**
+     * Obtiene el número de Pokémon que se piden en cada página de la lista.
+     *
+     * @return Tamaño de página.
+     */
+    public int getPageSize() {
+        return getTier() == Tier.LITE ? 50 : PokedexRepository.PAGE_SIZE;
+    }
+
+    /**
+     * Obtiene el número de filas cuyos detalles se adelantan en la dirección del desplazamiento.
+     *
+     * @return Número de filas.
+     */
+    public int getPrefetchAhead() {
+        switch (getTier()) {
+            case LITE:
+                return 3;
+            case FULL:
+                return 20;
+            default:
+                return 10;
+        }
+    }
+
+    /**
+     * Obtiene el número máximo de peticiones de detalles simultáneas.
+     *
+     * @return Número de peticiones.
+     */
+    public int getMaxDetailRequests() {
+        switch (getTier()) {
+            case LITE:
+                return 2;
+            case FULL:
+                return 6;
+            default:
+                return 4;
+        }
+    }
+
+    /**
+     * Obtiene el número máximo de especies que se descargan en cada precarga de los textos
+     * traducidos. En {@link Tier#LITE} no se precargan: cada texto llega al abrir su Pokémon.
+     *
+     * @return Número de especies.
+     */
+    public int getMaxLocalizedPrefetch() {
+        switch (getTier()) {
+            case LITE:
+                return 0;
+            case FULL:
+                return Integer.MAX_VALUE;
+            default:
+                return 50;
+        }
+    }
+
+    /**
+     * Obtiene la URL de la imagen que se debe cargar para un Pokémon: el arte oficial en
+     * {@link Tier#FULL} (y en las imágenes grandes en {@link Tier#NORMAL}), o el sprite pequeño.
+     * Las URL que no siguen el formato de la PokeAPI se devuelven sin cambios.
+     *
+     * @param spriteUrl URL del sprite pequeño.
+     * @param large true si la imagen se muestra a gran tamaño, como en la pantalla de detalles.
+     * @return URL de la imagen a cargar.
+     */
+    public String getImageUrl(String spriteUrl, boolean large) {
+        if (spriteUrl == null || !spriteUrl.startsWith(SPRITE_PREFIX)
+                || spriteUrl.indexOf('/', SPRITE_PREFIX.length()) >= 0) {
+            return spriteUrl;
+        }
+        Tier tier = getTier();
+        if (tier == Tier.FULL || (tier == Tier.NORMAL && large)) {
+            return ARTWORK_PREFIX + spriteUrl.substring(SPRITE_PREFIX.length());
+        }
+        return spriteUrl;
+    }
+
+    /**
+     * Crea el interceptor que mide el rendimiento de las respuestas de la API. Se añade como
+     * interceptor de red del cliente HTTP compartido, así que solo ve las que llegan de la red.
+     * Se mide desde que llegan las cabeceras, de modo que la latencia de la petición (DNS,
+     * conexión y espera al servidor) no rebaja el rendimiento de las respuestas pequeñas.
+     *
+     * @return Interceptor de medida.
+     */
+    static Interceptor throughputInterceptor() {
+        return chain -> {
+            Response response = chain.proceed(chain.request());
+            ResponseBody body = response.body();
+            if (body == null) {
+                return response;
+            }
+            long start = SystemClock.elapsedRealtime();
+            return response.newBuilder().body(new MeasuredBody(body, start)).build();
+        };
+    }
+
+    private static int estimateKbps(NetworkCapabilities current) {
+        double observed = observedKbps;
+        if (observed > 0 && SystemClock.elapsedRealtime() - observedAt < SAMPLE_MAX_AGE_MS) {
+            return (int) observed;
+        }
+        // Sin medidas recientes se usa la estimación del sistema para la red, si la hay.
+        return current.getLinkDownstreamBandwidthKbps();
+    }
+
+    private static synchronized void addSample(long bytes, long elapsedMs) {
+        if (bytes < MIN_SAMPLE_BYTES) {
+            return;
+        }
+        double kbps = bytes * 8.0 / Math.max(1, elapsedMs);
+        observedKbps = observedKbps > 0 ? observedKbps + SAMPLE_WEIGHT * (kbps - observedKbps) : kbps;
+        observedAt = SystemClock.elapsedRealtime();
+    }
+
+    /**
+     * Cuerpo de respuesta que cuenta los bytes leídos y registra el rendimiento al terminar.
+     */
+    private static final class MeasuredBody extends ResponseBody {
+        private final ResponseBody delegate;
+        private final BufferedSource source;
+        private long bytes;
+        private boolean recorded;
+
+        MeasuredBody(ResponseBody delegate, long start) {
+            this.delegate = delegate;
+            this.source = Okio.buffer(new ForwardingSource(delegate.source()) {
+                @Override
+                public long read(@NonNull Buffer sink, long byteCount) throws IOException {
+                    long read = super.read(sink, byteCount);
+                    if (read == -1) {
+                        if (!recorded) {
+                            recorded = true;
+                            addSample(bytes, SystemClock.elapsedRealtime() - start);
+                        }
+                    } else {
+                        bytes += read;
+                    }
+                    return read;
+                }
+            });
+        }
+
+        @Override
+        public MediaType contentType() {
+            return delegate.contentType();
+        }
+
+        @Override
+        public long contentLength() {
+            return delegate.contentLength();
+        }
+
+        @NonNull
+        @Override
+        public BufferedSource source() {
+            return source;
+        }
+    }
+}
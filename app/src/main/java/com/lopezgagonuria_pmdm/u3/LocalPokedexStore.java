@@ -0,0 +1,87 @@
+package com.lopezgagonuria_pmdm.u3;
+
+import android.content.Context;
+import android.util.AtomicFile;
+import android.util.Log;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+/**
+ * Almacenamiento local del catálogo de la Pokédex con los detalles de cada Pokémon.
+ * Lo escriben los trabajos de sincronización en segundo plano y lo leen las pantallas,
+ * de modo que la red queda fuera del camino crítico del usuario. Se guarda con
+ * {@link PokemonCodec}, más compacto y rápido de leer que el JSON que se usaba antes.
+ */
+public final class LocalPokedexStore {
+
+    private static final String FILE_NAME = "pokedex_catalog.bin";
+    private static final String LEGACY_FILE_NAME = "pokedex_catalog.json";
+    private static final String TAG = "LocalPokedexStore";
+
+    private final AtomicFile file;
+    private final File legacyFile;
+
+    /**
+     * Constructor del almacenamiento local.
+     *
+     * @param context Contexto para acceder a los ficheros de la aplicación.
+     */
+    public LocalPokedexStore(Context context) {
+        File filesDir = context.getApplicationContext().getFilesDir();
+        this.file = new AtomicFile(new File(filesDir, FILE_NAME));
+        this.legacyFile = new File(filesDir, LEGACY_FILE_NAME);
+    }
+
+    /**
+     * Lee el catálogo guardado. Hace E/S de disco, no se debe llamar desde el hilo principal.
+     *
+     * @return Lista de Pokémon guardada, o null si todavía no hay catálogo.
+     */
+    public List<PokemonDetails> read() {
+        if (!file.getBaseFile().exists()) {
+            return null;
+        }
+        try (FileInputStream in = file.openRead();
+             InputStream buffered = new BufferedInputStream(in)) {
+            return PokemonCodec.readList(buffered);
+        } catch (IOException | RuntimeException e) {
+            Log.e(TAG, "Error al leer el catálogo local", e);
+            return null;
+        }
+    }
+
+    /**
+     * Guarda el catálogo de forma atómica. Hace E/S de disco, no se debe llamar desde el
+     * hilo principal.
+     *
+     * @param pokemonList Lista de Pokémon a guardar.
+     * @return true si se ha guardado correctamente.
+     */
+    public boolean write(List<PokemonDetails> pokemonList) {
+        FileOutputStream out = null;
+        try {
+            out = file.startWrite();
+            BufferedOutputStream buffered = new BufferedOutputStream(out);
+            PokemonCodec.writeList(buffered, pokemonList);
+            buffered.flush();
+            file.finishWrite(out);
+            // El catálogo en JSON de versiones anteriores ya no se lee.
+            if (legacyFile.exists() && !legacyFile.delete()) {
+                Log.w(TAG, "No se pudo borrar el catálogo antiguo");
+            }
+            return true;
+        } catch (IOException | RuntimeException e) {
+            Log.e(TAG, "Error al guardar el catálogo local", e);
+            if (out != null) {
+                file.failWrite(out);
+            }
+            return false;
+        }
+    }
+}
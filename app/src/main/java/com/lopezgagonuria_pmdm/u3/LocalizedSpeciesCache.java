@@ -0,0 +1,299 @@
+package com.lopezgagonuria_pmdm.u3;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.AtomicFile;
+import android.util.Log;
+import androidx.preference.PreferenceManager;
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import retrofit2.HttpException;
+
+/**
+ * Caché por idioma de los nombres traducidos y las descripciones de la Pokédex de cada especie.
+ * Una especie de la API trae los textos de todos los idiomas, así que cada descarga rellena a
+ * la vez la caché de todos los idiomas de la aplicación. La caché se guarda en disco y se
+ * precarga en segundo plano para el idioma activo; al cambiar de idioma las listas se vuelven
+ * a dibujar desde la caché sin recargar los datos.
+ */
+public final class LocalizedSpeciesCache {
+
+    /**
+     * Interfaz para saber cuándo hay que volver a dibujar los nombres.
+     */
+    public interface OnNamesChangedListener {
+        /**
+         * Método llamado en el hilo principal cuando llegan nombres nuevos o cambia el idioma.
+         */
+        void onNamesChanged();
+    }
+
+    /**
+     * Textos de una especie en un idioma.
+     */
+    static class Entry {
+        String name;
+        String flavorText;
+    }
+
+    // Idiomas de la aplicación (valores de la preferencia "language").
+    private static final String[] LANGUAGES = {"es", "en"};
+
+    // Número de especies descargadas entre cada guardado y aviso durante la precarga.
+    private static final int PREFETCH_BATCH = 25;
+
+    private static final String FILE_NAME = "species_texts.json";
+    private static final String TAG = "LocalizedSpeciesCache";
+
+    private static LocalizedSpeciesCache instance;
+
+    private final Context appContext;
+    private final AtomicFile file;
+    private final Gson gson = new Gson();
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final List<OnNamesChangedListener> listeners = new CopyOnWriteArrayList<>();
+
+    // Textos por idioma y por ID de especie; se protege con el propio objeto.
+    private Map<String, Map<String, Entry>> entries;
+
+    // Idioma activo.
+    private volatile String language;
+
+    // Indica si hay una precarga en curso.
+    private volatile boolean prefetching;
+
+    /**
+     * Obtiene la instancia única de la caché.
+     *
+     * @param context Contexto de la aplicación.
+     * @return Instancia de la caché.
+     */
+    public static synchronized LocalizedSpeciesCache getInstance(Context context) {
+        if (instance == null) {
+            instance = new LocalizedSpeciesCache(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private LocalizedSpeciesCache(Context appContext) {
+        this.appContext = appContext;
+        this.file = new AtomicFile(new File(appContext.getFilesDir(), FILE_NAME));
+        this.language = PreferenceManager.getDefaultSharedPreferences(appContext).getString("language", "en");
+        executor.execute(() -> {
+            loadFromDisk();
+            mainHandler.post(this::notifyListeners);
+        });
+    }
+
+    /**
+     * Obtiene el nombre del Pokémon en el idioma activo.
+     *
+     * @param pokemon Pokémon.
+     * @return Nombre traducido, o el nombre de la API si todavía no está en la caché.
+     */
+    public String getName(PokemonDetails pokemon) {
+        Entry entry = getEntry(pokemon.getId());
+        return entry != null && entry.name != null ? entry.name : pokemon.getName();
+    }
+
+    /**
+     * Obtiene la descripción de la Pokédex en el idioma activo.
+     *
+     * @param pokemonId ID del Pokémon.
+     * @return Descripción, o null si todavía no está en la caché.
+     */
+    public String getFlavorText(String pokemonId) {
+        Entry entry = getEntry(pokemonId);
+        return entry != null ? entry.flavorText : null;
+    }
+
+    /**
+     * Guarda los textos de una especie ya descargada, por ejemplo en la pantalla de detalles.
+     *
+     * @param species Especie descargada.
+     */
+    public void remember(PokemonSpecies species) {
+        store(species);
+        executor.execute(this::saveToDisk);
+        notifyListeners();
+    }
+
+    /**
+     * Cambia el idioma activo, avisa para volver a dibujar desde la caché y precarga lo que
+     * falte del nuevo idioma.
+     *
+     * @param newLanguage Código del idioma ("es" o "en").
+     * @param pokemonList Pokémon cuyos textos se deben precargar.
+     */
+    public void setLanguage(String newLanguage, List<PokemonDetails> pokemonList) {
+        language = newLanguage;
+        notifyListeners();
+        prefetch(pokemonList);
+    }
+
+    /**
+     * Descarga en segundo plano, una a una, las especies que faltan en el idioma activo, como
+     * mucho las que permita {@link LoadingPolicy#getMaxLocalizedPrefetch()} para la red actual.
+     *
+     * @param pokemonList Pokémon cuyos textos se deben precargar.
+     */
+    public void prefetch(List<PokemonDetails> pokemonList) {
+        int limit = LoadingPolicy.getInstance(appContext).getMaxLocalizedPrefetch();
+        if (pokemonList == null || prefetching || limit == 0) {
+            return;
+        }
+        prefetching = true;
+        List<String> ids = new ArrayList<>();
+        for (PokemonDetails pokemon : pokemonList) {
+            ids.add(pokemon.getId());
+        }
+        executor.execute(() -> {
+            PokemonApiService apiService = RetrofitClient.getRetrofitInstance().create(PokemonApiService.class);
+            int downloaded = 0;
+            int requested = 0;
+            try {
+                for (String id : ids) {
+                    if (requested == limit) {
+                        break;
+                    }
+                    if (id == null || getEntry(id) != null) {
+                        continue;
+                    }
+                    requested++;
+                    PokemonSpecies species;
+                    try {
+                        species = Futures.await(apiService.getPokemonSpecies(id));
+                    } catch (HttpException e) {
+                        continue; // Especie sin datos en la API: se salta.
+                    }
+                    store(species);
+                    downloaded++;
+                    if (downloaded % PREFETCH_BATCH == 0) {
+                        saveToDisk();
+                        mainHandler.post(this::notifyListeners);
+                    }
+                }
+            } catch (IOException e) {
+                Log.w(TAG, "Precarga de textos interrumpida: " + e.getMessage());
+            } finally {
+                prefetching = false;
+            }
+            if (downloaded > 0) {
+                saveToDisk();
+                mainHandler.post(this::notifyListeners);
+            }
+            Log.d(TAG, "Textos precargados para '" + language + "': " + downloaded + " especies descargadas");
+        });
+    }
+
+    public void addOnNamesChangedListener(OnNamesChangedListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeOnNamesChangedListener(OnNamesChangedListener listener) {
+        listeners.remove(listener);
+    }
+
+    private synchronized Entry getEntry(String pokemonId) {
+        if (entries == null || pokemonId == null) {
+            return null;
+        }
+        Map<String, Entry> byId = entries.get(language);
+        return byId != null ? byId.get(pokemonId) : null;
+    }
+
+    /**
+     * Guarda los textos de la especie en la caché de todos los idiomas de la aplicación.
+     */
+    private synchronized void store(PokemonSpecies species) {
+        if (entries == null) {
+            entries = new HashMap<>();
+        }
+        String id = String.valueOf(species.getId());
+        for (String entryLanguage : LANGUAGES) {
+            Entry entry = new Entry();
+            entry.name = species.getLocalizedName(entryLanguage);
+            entry.flavorText = species.getFlavorText(entryLanguage);
+            Map<String, Entry> byId = entries.get(entryLanguage);
+            if (byId == null) {
+                byId = new HashMap<>();
+                entries.put(entryLanguage, byId);
+            }
+            byId.put(id, entry);
+        }
+    }
+
+    private void notifyListeners() {
+        for (OnNamesChangedListener listener : listeners) {
+            listener.onNamesChanged();
+        }
+    }
+
+    private void loadFromDisk() {
+        Map<String, Map<String, Entry>> loaded = null;
+        if (file.getBaseFile().exists()) {
+            try (FileInputStream in = file.openRead();
+                 Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8)) {
+                loaded = gson.fromJson(reader, new TypeToken<Map<String, Map<String, Entry>>>() {}.getType());
+            } catch (IOException | RuntimeException e) {
+                Log.e(TAG, "Error al leer la caché de textos", e);
+            }
+        }
+        synchronized (this) {
+            if (loaded != null) {
+                // Lo descargado mientras se leía el disco tiene prioridad.
+                if (entries != null) {
+                    for (Map.Entry<String, Map<String, Entry>> byLanguage : entries.entrySet()) {
+                        Map<String, Entry> target = loaded.get(byLanguage.getKey());
+                        if (target == null) {
+                            loaded.put(byLanguage.getKey(), byLanguage.getValue());
+                        } else {
+                            target.putAll(byLanguage.getValue());
+                        }
+                    }
+                }
+                entries = loaded;
+            } else if (entries == null) {
+                entries = new HashMap<>();
+            }
+        }
+    }
+
+    private void saveToDisk() {
+        String json;
+        synchronized (this) {
+            json = gson.toJson(entries);
+        }
+        FileOutputStream out = null;
+        try {
+            out = file.startWrite();
+            Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+            writer.write(json);
+            writer.flush();
+            file.finishWrite(out);
+        } catch (IOException e) {
+            Log.e(TAG, "Error al guardar la caché de textos", e);
+            if (out != null) {
+                file.failWrite(out);
+            }
+        }
+    }
+}
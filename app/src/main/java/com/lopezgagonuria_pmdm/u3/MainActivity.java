@@ -1,11 +1,14 @@
 package com.lopezgagonuria_pmdm.u3;
+import android.content.Context;
 import android.content.Intent;
-import android.content.SharedPreferences;
 import android.content.res.Configuration;
 import android.os.Bundle;
+import android.view.Menu;
 import androidx.annotation.NonNull;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.navigation.NavController;
+import androidx.navigation.NavDestination;
+import androidx.navigation.NavGraph;
 import androidx.navigation.fragment.NavHostFragment;
 import androidx.navigation.ui.AppBarConfiguration;
 import androidx.navigation.ui.NavigationUI;
@@ -14,7 +17,6 @@ import com.firebase.ui.auth.AuthUI;
 import com.google.android.gms.tasks.OnCompleteListener;
 import com.google.android.gms.tasks.Task;
 import com.google.android.material.bottomnavigation.BottomNavigationView;
-import com.google.firebase.FirebaseApp;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseUser;
 import com.lopezgagonuria_pmdm.u3.databinding.ActivityMainBinding;
@@ -22,33 +24,40 @@ import java.util.Locale;
 public class MainActivity extends AppCompatActivity {
     // Variable para View Binding que conecta las vistas de activity_main.xml con esta clase
     private ActivityMainBinding binding;
+    // Controlador de navegación, para volver a traducir los títulos al cambiar de idioma.
+    private NavController navController;
+    // Vistas de las listas compartidas entre la Pokédex y los capturados.
+    private PokemonViewPool viewPool;
+    @Override
+    protected void attachBaseContext(Context newBase) {
+        // Aplica el idioma seleccionado al contexto base, antes de inflar ninguna vista,
+        // en lugar de modificar la configuración de los recursos ya creados.
+        super.attachBaseContext(applyPreferences(newBase));
+    }
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState); // Llama al método base para configurar la actividad.
-        // Aplicar el idioma seleccionado Lo hago mejor desde ScreenSettingsFragment
-       /* SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(this);
-        String languageCode = prefs.getString("language", "en"); // "en" como valor predeterminado
-        Locale locale = new Locale(languageCode);
-        Locale.setDefault(locale);
-        Configuration config = new Configuration();
-        config.setLocale(locale);
-        getResources().updateConfiguration(config, getResources().getDisplayMetrics());*/
-        applyPreferences();
-        FirebaseApp.initializeApp(this);
-        // Inicializa los servicios de Firebase necesarios para la aplicación.
-        // Configura View Binding para inflar el diseño de la actividad de forma segura.
-        binding = ActivityMainBinding.inflate(getLayoutInflater());
-        // Establece la vista raíz del diseño inflado como la vista principal de la actividad.
-        setContentView(binding.getRoot());
-        // Configura la Toolbar utilizando la referencia del archivo XML proporcionada por View Binding.
-        setSupportActionBar(binding.toolbar);
         // Obtiene el usuario actualmente autenticado con Firebase Authentication.
         FirebaseUser user = FirebaseAuth.getInstance().getCurrentUser();
         if (user == null) {
-            // Si no hay un usuario autenticado, redirige al loginActivity.
+            // Si no hay un usuario autenticado, redirige al loginActivity sin inflar el diseño.
             goToLoginActivity();
             return; // Termina la ejecución del método para evitar errores posteriores.
         }
+        StartupTrace.phase("MainActivity.inflate", () -> {
+            // Configura View Binding para inflar el diseño de la actividad de forma segura.
+            binding = ActivityMainBinding.inflate(getLayoutInflater());
+            // Establece la vista raíz del diseño inflado como la vista principal de la actividad.
+            setContentView(binding.getRoot());
+        });
+        StartupTrace.reportFirstFrame(this);
+        // Infla en segundo plano las filas de las primeras pantallas de la lista.
+        viewPool = new PokemonViewPool(this);
+        viewPool.preInflate();
+        // Configura la Toolbar utilizando la referencia del archivo XML proporcionada por View Binding.
+        setSupportActionBar(binding.toolbar);
+        // Reenvía las capturas y liberaciones que quedaron pendientes en una sesión anterior.
+        CapturadosOutbox.getInstance(this).flush();
         // Acceso al BottomNavigationView desde View Binding.
         BottomNavigationView bottomNavigationView = binding.bottomNavigation;
         // Obtiene el NavHostFragment usando View Binding (si está directamente en activity_main.xml).
@@ -59,17 +68,59 @@ public class MainActivity extends AppCompatActivity {
             throw new IllegalStateException("NavHostFragment no encontrado. Verifica el diseño XML.");
         }
         // Obtiene el controlador de navegación (NavController) del NavHostFragment.
-        NavController navController = navHostFragment.getNavController();
+        navController = navHostFragment.getNavController();
         //navController.navigate(R.id.action_nav_ajustes_to_preferenceScreen);
         // Configura AppBarConfiguration para manejar la navegación en los fragmentos principales.
         AppBarConfiguration appBarConfiguration = new AppBarConfiguration.Builder(
-                R.id.nav_capturados, R.id.nav_pokedex, R.id.preferenceScreen
+                R.id.nav_capturados, R.id.nav_pokedex, R.id.nav_timeline, R.id.preferenceScreen
         ).build();
         // Vincula la Toolbar con el NavController y AppBarConfiguration.
         NavigationUI.setupWithNavController(binding.toolbar, navController, appBarConfiguration);
         // Vincula el BottomNavigationView con el NavController para sincronizar la navegación.
         NavigationUI.setupWithNavController(bottomNavigationView, navController);
     }
+    /**
+     * Vuelve a traducir los títulos de la navegación después de cambiar de idioma, sin recrear
+     * la actividad ni los fragmentos (y por tanto sin volver a cargar sus datos).
+     */
+    public void onLanguageChanged() {
+        if (binding == null || navController == null) {
+            return;
+        }
+        Menu menu = binding.bottomNavigation.getMenu();
+        menu.findItem(R.id.nav_pokedex).setTitle(R.string.pokedex);
+        menu.findItem(R.id.nav_capturados).setTitle(R.string.my_pokemons);
+        menu.findItem(R.id.nav_timeline).setTitle(R.string.timeline);
+        menu.findItem(R.id.preferenceScreen).setTitle(R.string.settings);
+
+        NavGraph graph = navController.getGraph();
+        setDestinationLabel(graph, R.id.nav_pokedex, R.string.pok_dex);
+        setDestinationLabel(graph, R.id.nav_capturados, R.string.Captured);
+        setDestinationLabel(graph, R.id.nav_timeline, R.string.timeline_title);
+        setDestinationLabel(graph, R.id.preferenceScreen, R.string.settings_menu_bottom);
+
+        NavDestination current = navController.getCurrentDestination();
+        if (current != null && current.getLabel() != null) {
+            binding.toolbar.setTitle(current.getLabel());
+        }
+    }
+
+    private void setDestinationLabel(NavGraph graph, int destinationId, int labelResId) {
+        NavDestination destination = graph.findNode(destinationId);
+        if (destination != null) {
+            destination.setLabel(getString(labelResId));
+        }
+    }
+
+    /**
+     * Obtiene el pool de vistas compartido por las listas de esta actividad.
+     *
+     * @return Pool de vistas, o null si la actividad no ha llegado a mostrar su diseño.
+     */
+    public PokemonViewPool getViewPool() {
+        return viewPool;
+    }
+
     // Método para cerrar sesión en Firebase y redirigir al loginActivity.
     private void logout() {
         AuthUI.getInstance() // Obtiene una instancia del cliente de autenticación.
@@ -82,19 +133,19 @@ public class MainActivity extends AppCompatActivity {
                     }
                 });
     }
-    private void applyPreferences() {
+    private static Context applyPreferences(Context base) {
         // Leer idioma de las preferencias
-        String languageCode = PreferenceManager.getDefaultSharedPreferences(this)
+        String languageCode = PreferenceManager.getDefaultSharedPreferences(base)
                 .getString("language", "en"); // "en" por defecto
-        updateLocale(languageCode);
+        return updateLocale(base, languageCode);
     }
 
-    private void updateLocale(String languageCode) {
+    private static Context updateLocale(Context base, String languageCode) {
         Locale locale = new Locale(languageCode);
         Locale.setDefault(locale);
-        Configuration config = new Configuration();
+        Configuration config = new Configuration(base.getResources().getConfiguration());
         config.setLocale(locale);
-        getResources().updateConfiguration(config, getResources().getDisplayMetrics());
+        return base.createConfigurationContext(config);
     }
 
     // Método para redirigir al loginActivity.
@@ -106,6 +157,9 @@ public class MainActivity extends AppCompatActivity {
     @Override
     protected void onDestroy() {
         super.onDestroy(); // Llama al método base para manejar la destrucción de la actividad.
+        if (viewPool != null) {
+            viewPool.release(); // Las vistas guardadas usan el contexto de esta actividad.
+        }
         binding = null; // Establece el objeto de binding en null para evitar fugas de memoria.
     }
 }
\ No newline at end of file
@@ -0,0 +1,101 @@
+package com.lopezgagonuria_pmdm.u3;
+
+import androidx.tracing.Trace;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Secciones de traza del camino de los datos, visibles en una grabación de Perfetto/systrace:
+ * peticiones a la API y a Firestore ("fetch:"), conversión de las respuestas ("parse:"),
+ * sincronización de los capturados ("sync:") y pintado de las listas ("bind:").
+ *
+ * <p>Las secciones normales miden un trabajo en el hilo actual y deben cerrarse con
+ * {@link #end()} en un bloque finally. Las asíncronas miden una petición en curso, que empieza
+ * y termina en hilos distintos, y se identifican por el ID del Pokémon o por
+ * {@link #nextCookie()}.
+ *
+ * <p>Solo se emiten en las compilaciones debug: {@link BuildConfig#TRACING} es una constante,
+ * así que en release el compilador elimina el cuerpo de los métodos y no se construye ningún
+ * nombre de sección.
+ */
+public final class PipelineTrace {
+
+    // Constante de compilación, true solo en debug.
+    static final boolean ENABLED = BuildConfig.TRACING;
+
+    // Identificadores de las secciones asíncronas que no tienen un Pokémon asociado.
+    private static final AtomicInteger cookies = new AtomicInteger();
+
+    private PipelineTrace() {
+        // Clase de utilidad, no se instancia.
+    }
+
+    /**
+     * Abre una sección en el hilo actual.
+     *
+     * @param section Nombre de la sección, por ejemplo "bind:pokedex".
+     */
+    public static void begin(String section) {
+        if (ENABLED) {
+            Trace.beginSection(section);
+        }
+    }
+
+    /**
+     * Abre una sección en el hilo actual con un detalle en el nombre.
+     *
+     * @param section Nombre de la sección.
+     * @param detail Detalle que se añade al nombre, por ejemplo el tipo convertido.
+     */
+    public static void begin(String section, String detail) {
+        if (ENABLED) {
+            Trace.beginSection(section + " " + detail);
+        }
+    }
+
+    /**
+     * Cierra la última sección abierta en el hilo actual.
+     */
+    public static void end() {
+        if (ENABLED) {
+            Trace.endSection();
+        }
+    }
+
+    /**
+     * Abre una sección asíncrona, por ejemplo al lanzar una petición.
+     *
+     * @param section Nombre de la sección, por ejemplo "fetch:details".
+     * @param cookie ID del Pokémon, o un valor de {@link #nextCookie()}.
+     */
+    public static void beginAsync(String section, int cookie) {
+        if (ENABLED) {
+            Trace.beginAsyncSection(asyncName(section, cookie), cookie);
+        }
+    }
+
+    /**
+     * Cierra una sección asíncrona abierta con {@link #beginAsync(String, int)}.
+     *
+     * @param section Nombre de la sección.
+     * @param cookie El mismo valor con el que se abrió.
+     */
+    public static void endAsync(String section, int cookie) {
+        if (ENABLED) {
+            Trace.endAsyncSection(asyncName(section, cookie), cookie);
+        }
+    }
+
+    /**
+     * Obtiene un identificador nuevo para una sección asíncrona sin Pokémon asociado.
+     *
+     * @return Identificador.
+     */
+    public static int nextCookie() {
+        return ENABLED ? cookies.incrementAndGet() : 0;
+    }
+
+    private static String asyncName(String section, int cookie) {
+        // El identificador va también en el nombre para verlo en la grabación.
+        return section + " #" + cookie;
+    }
+}
@@ -0,0 +1,31 @@
+package com.lopezgagonuria_pmdm.u3;
+
+import android.app.Application;
+import androidx.preference.PreferenceManager;
+import com.bumptech.glide.Glide;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Clase Application que prepara en segundo plano los servicios que no hacen falta para
+ * dibujar la primera pantalla (Firestore, Glide, Retrofit, preferencias y la sincronización
+ * periódica), de forma que el hilo principal quede libre durante el arranque.
+ */
+public class PokedexApplication extends Application {
+
+    // Hilo único para las tareas de inicialización en segundo plano.
+    private static final ExecutorService initExecutor = Executors.newSingleThreadExecutor();
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        // FirebaseApp lo inicializa automáticamente su ContentProvider antes de llegar aquí.
+        initExecutor.execute(() -> {
+            StartupTrace.phase("prefs", () -> PreferenceManager.getDefaultSharedPreferences(this));
+            StartupTrace.phase("firestore", () -> FirestoreProvider.get(this));
+            StartupTrace.phase("retrofit", () -> RetrofitClient.getRetrofitInstance().create(PokemonApiService.class));
+            StartupTrace.phase("glide", () -> Glide.get(this));
+            StartupTrace.phase("workmanager", () -> BackgroundSync.schedule(this));
+        });
+    }
+}
@@ -0,0 +1,366 @@
+package com.lopezgagonuria_pmdm.u3;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import androidx.annotation.NonNull;
+import androidx.annotation.VisibleForTesting;
+import com.bumptech.glide.Glide;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import okhttp3.Request;
+import retrofit2.HttpException;
+
+/**
+ * Capa de datos compartida por las pantallas de la aplicación. Guarda en memoria la primera
+ * página de la Pokédex y pone en marcha la sincronización de los capturados, de modo que se
+ * puedan precargar mientras el usuario inicia sesión y la pantalla principal los muestre
+ * directamente en su primer frame.
+ */
+public final class PokedexRepository {
+
+    /**
+     * Interfaz para recibir la lista de la Pokédex.
+     */
+    public interface OnPokedexLoadedListener {
+        /**
+         * Método llamado con la lista de Pokémon cargada. Si la Pokédex llega de la red por
+         * páginas se llama una vez por página, cada vez con la lista completa hasta entonces.
+         *
+         * @param pokemonList Lista de Pokémon (compartida, no se debe modificar su estructura).
+         */
+        void onLoaded(List<PokemonDetails> pokemonList);
+
+        /**
+         * Método llamado si no se ha podido cargar la lista.
+         *
+         * @param message Descripción del error.
+         */
+        void onError(String message);
+    }
+
+    // Tamaño de la primera página de la Pokédex.
+    static final int PAGE_SIZE = 150;
+
+    // Número de sprites que se precargan, suficientes para llenar la primera pantalla.
+    static final int PRELOADED_SPRITES = 12;
+
+    private static final String TAG = "PokedexRepository";
+
+    private static PokedexRepository instance;
+
+    private final Context appContext;
+
+    // Catálogo guardado por la sincronización en segundo plano.
+    private final LocalPokedexStore localStore;
+
+    // Hilo para leer el catálogo local sin bloquear el hilo principal.
+    private final ExecutorService diskExecutor = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    // Decide el tamaño de las páginas que se piden a la red.
+    private final LoadingPolicy loadingPolicy;
+
+    // Primera página de la Pokédex, o null si todavía no se ha cargado.
+    private List<PokemonDetails> pokedex;
+
+    // Listeners esperando a la petición de la Pokédex en curso.
+    private final List<OnPokedexLoadedListener> pendingListeners = new ArrayList<>();
+
+    // Indica si hay una petición de la Pokédex en curso.
+    private boolean pokedexLoading;
+
+    // Indica si ya se ha precalentado la conexión con la API.
+    private volatile boolean preconnected;
+
+    // Indica si se ignoran los catálogos locales y la Pokédex se pide siempre a la red.
+    private boolean networkOnly;
+
+    /**
+     * Obtiene la instancia única del repositorio. Solo se debe usar desde el hilo principal.
+     *
+     * @param context Contexto de la aplicación.
+     * @return Instancia del repositorio.
+     */
+    public static synchronized PokedexRepository getInstance(Context context) {
+        if (instance == null) {
+            instance = new PokedexRepository(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private PokedexRepository(Context appContext) {
+        this.appContext = appContext;
+        this.localStore = new LocalPokedexStore(appContext);
+        this.loadingPolicy = LoadingPolicy.getInstance(appContext);
+    }
+
+    /**
+     * Empieza a cargar de forma especulativa los datos de la pantalla principal mientras se
+     * muestra el inicio de sesión: abre la conexión con la API, pide la primera página de la
+     * Pokédex y precarga los primeros sprites.
+     */
+    public void warmUp() {
+        preconnect();
+        loadPokedex(new OnPokedexLoadedListener() {
+            @Override
+            public void onLoaded(List<PokemonDetails> pokemonList) {
+                preloadSprites(pokemonList);
+            }
+
+            @Override
+            public void onError(String message) {
+                Log.w(TAG, "No se pudo precargar la Pokédex: " + message);
+            }
+        });
+    }
+
+    /**
+     * Carga la Pokédex. Si ya está en memoria se entrega de inmediato, y si hay una
+     * petición en curso el listener se une a ella en lugar de repetirla. Primero se lee el
+     * catálogo guardado por la sincronización en segundo plano, después el incluido en el APK
+     * y solo si no hay ninguno se recurre a la red.
+     *
+     * @param listener Listener que recibe la lista.
+     */
+    public void loadPokedex(OnPokedexLoadedListener listener) {
+        if (pokedex != null) {
+            listener.onLoaded(pokedex);
+            if (!pokedexLoading) {
+                return;
+            }
+            // Todavía llegan páginas: el listener recibirá también las siguientes.
+        }
+        pendingListeners.add(listener);
+        if (pokedexLoading) {
+            return;
+        }
+        pokedexLoading = true;
+
+        if (networkOnly) {
+            loadPokedexFromNetwork();
+            return;
+        }
+
+        diskExecutor.execute(() -> {
+            List<PokemonDetails> stored;
+            PipelineTrace.begin("parse:catalog");
+            try {
+                stored = localStore.read();
+                if (stored == null || stored.isEmpty()) {
+                    // Sin catálogo sincronizado se usa el incluido en el APK.
+                    BundledPokedexCatalog bundled = BundledPokedexCatalog.open(appContext);
+                    stored = bundled != null ? bundled.readAll(PAGE_SIZE) : null;
+                }
+            } finally {
+                PipelineTrace.end();
+            }
+            List<PokemonDetails> catalog = stored;
+            mainHandler.post(() -> {
+                if (catalog != null && !catalog.isEmpty()) {
+                    pokedexLoading = false;
+                    pokedex = Collections.unmodifiableList(catalog);
+                    deliverPokedex();
+                } else {
+                    loadPokedexFromNetwork();
+                }
+            });
+        });
+    }
+
+    /**
+     * Olvida la Pokédex en memoria. Con networkOnly las siguientes cargas la piden a la red sin
+     * leer los catálogos locales, para medir la carga en frío contra un servidor de pruebas; las
+     * pruebas lo vuelven a desactivar al terminar.
+     *
+     * @param networkOnly true para no leer los catálogos locales.
+     */
+    @VisibleForTesting
+    void resetForTesting(boolean networkOnly) {
+        this.networkOnly = networkOnly;
+        pokedex = null;
+        pokedexLoading = false;
+        pendingListeners.clear();
+        preconnected = false;
+    }
+
+    /**
+     * Descarga la Pokédex cuando todavía no hay catálogo local.
+     */
+    private void loadPokedexFromNetwork() {
+        loadPokedexPage(0);
+    }
+
+    /**
+     * Descarga la siguiente página de la Pokédex, con el tamaño que permita la red, y la añade a
+     * las anteriores. Cada página se entrega en cuanto llega, para que la lista se pueda mostrar
+     * sin esperar al resto, y se sigue hasta tener {@link #PAGE_SIZE} Pokémon. Si falla una
+     * página que no es la primera se da por buena la lista que ya se tiene.
+     *
+     * @param offset Número de Pokémon de las páginas anteriores, que ya están en {@link #pokedex}.
+     */
+    private void loadPokedexPage(int offset) {
+        int limit = Math.min(loadingPolicy.getPageSize(), PAGE_SIZE - offset);
+        PokemonApiService apiService = RetrofitClient.getRetrofitInstance().create(PokemonApiService.class);
+        // La página se identifica en la traza por su primer Pokémon.
+        PipelineTrace.beginAsync("fetch:page", offset);
+        apiService.getPokemonList(offset, limit).whenCompleteAsync((response, error) -> {
+            PipelineTrace.endAsync("fetch:page", offset);
+            if (error != null) {
+                onPageFailed(describeError(Futures.unwrap(error)));
+                return;
+            }
+            List<PokemonResponse.Result> results = response.getResults();
+            // Se parte de la lista actual para conservar los detalles ya recibidos.
+            List<PokemonDetails> loaded = new ArrayList<>(offset + results.size());
+            if (pokedex != null) {
+                loaded.addAll(pokedex);
+            }
+            // Los detalles de cada fila los pide DetailsPrefetcher según se van viendo.
+            for (PokemonResponse.Result result : results) {
+                loaded.add(result.toBasicPokemonDetails());
+            }
+            pokedex = Collections.unmodifiableList(loaded);
+            if (results.size() < limit || loaded.size() >= PAGE_SIZE) {
+                pokedexLoading = false;
+                deliverPokedex();
+            } else {
+                deliverPage();
+                loadPokedexPage(loaded.size());
+            }
+        }, Futures.MAIN);
+    }
+
+    private void onPageFailed(String message) {
+        pokedexLoading = false;
+        if (pokedex != null) {
+            Log.w(TAG, message + " (se queda con " + pokedex.size() + " Pokémon)");
+            deliverPokedex();
+        } else {
+            deliverError(message);
+        }
+    }
+
+    /**
+     * Describe el error de una petición a la API con los mismos mensajes que se muestran al usuario.
+     *
+     * @param error Error del futuro, ya desenvuelto.
+     * @return Mensaje del error.
+     */
+    static String describeError(Throwable error) {
+        if (error instanceof HttpException) {
+            return "Error al obtener datos de la API: " + ((HttpException) error).message();
+        }
+        return "Error al conectar con la API: " + error.getMessage();
+    }
+
+    /**
+     * Sustituye un Pokémon de la Pokédex por su versión con los detalles cargados, para que no
+     * se vuelvan a pedir al volver a la pantalla. Los Pokémon son inmutables, así que se copia
+     * la lista en lugar de modificar la que ya tienen los listeners.
+     *
+     * @param position Posición del Pokémon en la Pokédex.
+     * @param updated Pokémon con los detalles.
+     */
+    public void updatePokemon(int position, PokemonDetails updated) {
+        if (pokedex == null || position < 0 || position >= pokedex.size()
+                || pokedex.get(position).getNumber() != updated.getNumber()) {
+            return;
+        }
+        List<PokemonDetails> copy = new ArrayList<>(pokedex);
+        copy.set(position, updated);
+        pokedex = Collections.unmodifiableList(copy);
+    }
+
+    /**
+     * Obtiene la Pokédex si ya está cargada.
+     *
+     * @return Lista de Pokémon, o null si todavía no se ha cargado.
+     */
+    public List<PokemonDetails> getCachedPokedex() {
+        return pokedex;
+    }
+
+    /**
+     * Carga los capturados del usuario en cuanto se ha autenticado, para que la Pokédex
+     * pueda marcarlos sin esperar a Firestore.
+     */
+    public void prefetchCaptured() {
+        CapturedSync.getInstance(appContext).sync(new CapturedSync.Listener() {
+            @Override
+            public void onCapturedChanged(List<PokemonDetails> captured, boolean fromServer) {
+                Log.d(TAG, "Capturados precargados: " + captured.size());
+            }
+
+            @Override
+            public void onError(Exception e) {
+                Log.w(TAG, "No se pudieron precargar los capturados: " + e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Resuelve el DNS y abre la conexión TLS con la API con una petición HEAD, para que la
+     * conexión quede en el pool del cliente HTTP compartido.
+     */
+    private void preconnect() {
+        if (preconnected) {
+            return;
+        }
+        preconnected = true;
+        Request request = new Request.Builder().url(RetrofitClient.getBaseUrl()).head().build();
+        RetrofitClient.getHttpClient().newCall(request).enqueue(new okhttp3.Callback() {
+            @Override
+            public void onFailure(@NonNull okhttp3.Call call, @NonNull IOException e) {
+                preconnected = false;
+                Log.w(TAG, "No se pudo precalentar la conexión: " + e.getMessage());
+            }
+
+            @Override
+            public void onResponse(@NonNull okhttp3.Call call, @NonNull okhttp3.Response response) {
+                response.close();
+            }
+        });
+    }
+
+    /**
+     * Precarga en la caché de Glide los sprites de la primera pantalla.
+     */
+    private void preloadSprites(List<PokemonDetails> pokemonList) {
+        int count = Math.min(PRELOADED_SPRITES, pokemonList.size());
+        for (int i = 0; i < count; i++) {
+            Glide.with(appContext).load(loadingPolicy.getImageUrl(pokemonList.get(i).getSpriteUrl(), false)).preload();
+        }
+    }
+
+    /**
+     * Entrega una página intermedia sin dar por terminada la carga.
+     */
+    private void deliverPage() {
+        for (OnPokedexLoadedListener listener : new ArrayList<>(pendingListeners)) {
+            listener.onLoaded(pokedex);
+        }
+    }
+
+    private void deliverPokedex() {
+        List<OnPokedexLoadedListener> listeners = new ArrayList<>(pendingListeners);
+        pendingListeners.clear();
+        for (OnPokedexLoadedListener listener : listeners) {
+            listener.onLoaded(pokedex);
+        }
+    }
+
+    private void deliverError(String message) {
+        Log.e(TAG, message);
+        List<OnPokedexLoadedListener> listeners = new ArrayList<>(pendingListeners);
+        pendingListeners.clear();
+        for (OnPokedexLoadedListener listener : listeners) {
+            listener.onError(message);
+        }
+    }
+}
@@ -0,0 +1,321 @@
+package com.lopezgagonuria_pmdm.u3;
+
+import android.app.Application;
+import android.os.Parcelable;
+import android.util.Log;
+import androidx.annotation.NonNull;
+import androidx.lifecycle.AndroidViewModel;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Estado de la pantalla de la Pokédex. Sobrevive a los cambios de pestaña y de configuración,
+ * así que al volver a la pantalla la lista se vuelve a enlazar sin pedir nada: la Pokédex sale
+ * de {@link PokedexRepository} y los capturados solo se sincronizan si su estado ha caducado.
+ */
+public class PokedexViewModel extends AndroidViewModel {
+
+    private static final String TAG = "PokedexViewModel";
+
+    // Tiempo máximo de espera a los cambios de Firestore antes de avisar del error. Si llegan
+    // más tarde se aplican igualmente.
+    private static final long SYNC_TIMEOUT_SECONDS = 10;
+
+    // Lista mostrada. El adaptador la usa directamente.
+    private final List<PokemonDetails> pokemonList = new ArrayList<>();
+
+    // IDs de los Pokémon capturados. Los Pokémon son inmutables, así que el estado de captura
+    // se guarda aparte y el adaptador lo consulta al pintar cada fila.
+    private final Set<String> capturedIds = new HashSet<>();
+
+    // Se emite cada vez que cambia el contenido de la lista.
+    private final MutableLiveData<List<PokemonDetails>> pokemon = new MutableLiveData<>();
+
+    // Se emite con la posición de la lista que ha cambiado por una captura rechazada.
+    private final MutableLiveData<Integer> changedPosition = new MutableLiveData<>();
+
+    // Último error pendiente de mostrar, o null.
+    private final MutableLiveData<String> error = new MutableLiveData<>();
+
+    private final CapturadosOutbox outbox;
+
+    // Posición de desplazamiento guardada al destruir la vista.
+    private Parcelable listState;
+
+    // Indica si hay una carga en curso.
+    private boolean loading;
+
+    // Listener que deshace en la lista las capturas rechazadas por Firestore.
+    private final CapturadosOutbox.OnRollbackListener rollbackListener = operation -> {
+        for (int i = 0; i < pokemonList.size(); i++) {
+            PokemonDetails pokemon = pokemonList.get(i);
+            if (pokemon.getId().equals(operation.getPokemon().getId())) {
+                if (operation.getType() == CapturadosOutbox.Type.RELEASE) {
+                    capturedIds.add(pokemon.getId());
+                } else {
+                    capturedIds.remove(pokemon.getId());
+                }
+                changedPosition.setValue(i);
+                return;
+            }
+        }
+    };
+
+    public PokedexViewModel(@NonNull Application application) {
+        super(application);
+        outbox = CapturadosOutbox.getInstance(application);
+        outbox.addOnRollbackListener(rollbackListener);
+    }
+
+    public LiveData<List<PokemonDetails>> getPokemon() {
+        return pokemon;
+    }
+
+    public LiveData<Integer> getChangedPosition() {
+        return changedPosition;
+    }
+
+    public LiveData<String> getError() {
+        return error;
+    }
+
+    /**
+     * Obtiene la lista mostrada, que el adaptador comparte con el ViewModel.
+     *
+     * @return Lista de Pokémon.
+     */
+    public List<PokemonDetails> getPokemonList() {
+        return pokemonList;
+    }
+
+    /**
+     * Obtiene los IDs de los Pokémon capturados, que el adaptador comparte con el ViewModel.
+     *
+     * @return IDs de los capturados.
+     */
+    public Set<String> getCapturedIds() {
+        return capturedIds;
+    }
+
+    /**
+     * Carga los datos de la pantalla. Si ya están cargados y los capturados están al día no
+     * hace ninguna lectura; si los capturados han caducado solo pide los cambios.
+     */
+    public void load() {
+        if (loading) {
+            return;
+        }
+        CapturedSync capturedSync = CapturedSync.getInstance(getApplication());
+        if (!pokemonList.isEmpty()) {
+            List<PokemonDetails> captured = capturedSync.getCached();
+            if (captured != null) {
+                applyCaptured(captured, capturedSync.isFresh());
+                pokemon.setValue(pokemonList);
+            }
+            if (!capturedSync.isFresh()) {
+                syncCaptured();
+            }
+            return;
+        }
+
+        loading = true;
+        Log.d(TAG, "Cargando datos de la API y sincronizando...");
+        // Los capturados se piden a Firestore a la vez que la Pokédex, pero ninguna de las dos
+        // cargas espera a la otra: la Pokédex se muestra en cuanto llega con los capturados que
+        // haya en ese momento, y el estado local y el del servidor se aplican sobre la lista
+        // cuando llegan.
+        loadPokedex().whenCompleteAsync((loaded, e) -> {
+            loading = false;
+            if (e != null) {
+                String message = Futures.unwrap(e).getMessage();
+                Log.e(TAG, message);
+                error.setValue(message);
+            }
+        }, Futures.MAIN);
+        if (!capturedSync.isFresh()) {
+            syncCaptured();
+        }
+    }
+
+    /**
+     * Marca un Pokémon como capturado y encola la captura en Firestore.
+     *
+     * @param selected Pokémon capturado.
+     * @return Posición del Pokémon en la lista, o -1 si no está.
+     */
+    public int capture(PokemonDetails selected) {
+        if (selected.getNumber() <= 0) {
+            return -1;
+        }
+        capturedIds.add(selected.getId());
+        // La captura se aplica ya en la interfaz y la cola la envía a Firestore.
+        outbox.enqueueCapture(selected);
+        return pokemonList.indexOf(selected);
+    }
+
+    /**
+     * Marca el último error como ya mostrado.
+     */
+    public void clearError() {
+        error.setValue(null);
+    }
+
+    /**
+     * Guarda la posición de desplazamiento de la lista.
+     *
+     * @param state Estado del LayoutManager.
+     */
+    public void setListState(Parcelable state) {
+        listState = state;
+    }
+
+    /**
+     * Obtiene y olvida la posición de desplazamiento guardada.
+     *
+     * @return Estado del LayoutManager, o null si no hay ninguno.
+     */
+    public Parcelable consumeListState() {
+        Parcelable state = listState;
+        listState = null;
+        return state;
+    }
+
+    /**
+     * Carga la Pokédex y muestra cada entrega en cuanto llega, con los capturados conocidos en
+     * ese momento.
+     *
+     * @return Futuro que termina con la primera lista recibida.
+     */
+    private CompletableFuture<List<PokemonDetails>> loadPokedex() {
+        CompletableFuture<List<PokemonDetails>> first = new CompletableFuture<>();
+        PokedexRepository.getInstance(getApplication()).loadPokedex(new PokedexRepository.OnPokedexLoadedListener() {
+            @Override
+            public void onLoaded(List<PokemonDetails> loaded) {
+                CapturedSync capturedSync = CapturedSync.getInstance(getApplication());
+                showPokedex(loaded, capturedSync.getCached(), capturedSync.isFresh());
+                first.complete(loaded);
+            }
+
+            @Override
+            public void onError(String message) {
+                first.completeExceptionally(new IOException(message));
+            }
+        });
+        return first;
+    }
+
+    /**
+     * Pide los cambios de los capturados a Firestore. El estado local y después el del servidor
+     * se aplican a la lista en cuanto llegan; si la lista aún está vacía, la Pokédex los recoge
+     * de {@link CapturedSync#getCached()} al mostrarse.
+     */
+    private void syncCaptured() {
+        Log.d(TAG, "Sincronizando datos con Firestore...");
+        CapturedSync capturedSync = CapturedSync.getInstance(getApplication());
+        CompletableFuture<List<PokemonDetails>> synced = CapturedStore.toFuture(callback -> capturedSync.sync(new CapturedSync.Listener() {
+            @Override
+            public void onCapturedChanged(List<PokemonDetails> captured, boolean fromServer) {
+                if (!pokemonList.isEmpty()) {
+                    applyCaptured(captured, fromServer);
+                    pokemon.setValue(pokemonList);
+                }
+                if (fromServer) {
+                    callback.onSuccess(captured);
+                }
+            }
+
+            @Override
+            public void onError(Exception e) {
+                callback.onError(e);
+            }
+        }));
+        // El tiempo máximo solo decide cuándo avisar del error: el listener sigue registrado y
+        // aplica el estado del servidor aunque llegue después.
+        Futures.withTimeout(synced, SYNC_TIMEOUT_SECONDS, TimeUnit.SECONDS).whenCompleteAsync((captured, e) -> {
+            if (e != null) {
+                onSyncError(e);
+            }
+        }, Futures.MAIN);
+    }
+
+    private void onSyncError(Throwable e) {
+        Log.e(TAG, "Error al sincronizar con Firestore", Futures.unwrap(e));
+        error.setValue("Error al sincronizar datos con Firestore");
+    }
+
+    /**
+     * Muestra la Pokédex con los capturados aplicados.
+     *
+     * @param loaded Lista completa de la Pokédex hasta ahora.
+     * @param captured Capturados, o null si todavía no hay ningún estado.
+     * @param authoritative true si los capturados ya incluyen los cambios del servidor.
+     */
+    private void showPokedex(List<PokemonDetails> loaded, List<PokemonDetails> captured, boolean authoritative) {
+        pokemonList.clear();
+        pokemonList.addAll(loaded);
+        if (captured != null) {
+            applyCaptured(captured, authoritative);
+        }
+        pokemon.setValue(pokemonList);
+        // Precargar los nombres y descripciones en el idioma activo.
+        LocalizedSpeciesCache.getInstance(getApplication()).prefetch(loaded);
+    }
+
+    /**
+     * Marca como capturados los Pokémon presentes en el estado de capturados y aprovecha sus
+     * detalles para las filas que todavía no los tienen.
+     *
+     * @param captured Lista de Pokémon capturados.
+     * @param authoritative true si el estado ya incluye los cambios del servidor y sustituye al actual.
+     */
+    private void applyCaptured(List<PokemonDetails> captured, boolean authoritative) {
+        PipelineTrace.begin("sync:apply-captured");
+        try {
+            markCaptured(captured, authoritative);
+        } finally {
+            PipelineTrace.end();
+        }
+    }
+
+    private void markCaptured(List<PokemonDetails> captured, boolean authoritative) {
+        Map<String, PokemonDetails> capturedById = new HashMap<>();
+        for (PokemonDetails capturedPokemon : captured) {
+            capturedById.put(capturedPokemon.getId(), capturedPokemon);
+        }
+        for (int i = 0; i < pokemonList.size(); i++) {
+            PokemonDetails pokemon = pokemonList.get(i);
+            PokemonDetails capturedPokemon = capturedById.get(pokemon.getId());
+            CapturadosOutbox.Type pendingType = outbox.getPendingType(pokemon.getId());
+            if (pendingType != null) {
+                // Las operaciones aún no enviadas prevalecen sobre lo leído de Firestore.
+                if (pendingType == CapturadosOutbox.Type.CAPTURE) {
+                    capturedIds.add(pokemon.getId());
+                } else {
+                    capturedIds.remove(pokemon.getId());
+                }
+            } else if (capturedPokemon != null) {
+                capturedIds.add(pokemon.getId());
+            } else if (authoritative) {
+                capturedIds.remove(pokemon.getId());
+            }
+            if (capturedPokemon != null && capturedPokemon.isFullyLoaded() && !pokemon.isFullyLoaded()) {
+                // Los detalles guardados con la captura evitan pedirlos a la API.
+                pokemonList.set(i, capturedPokemon);
+            }
+        }
+    }
+
+    @Override
+    protected void onCleared() {
+        outbox.removeOnRollbackListener(rollbackListener);
+    }
+}
@@ -1,34 +1,42 @@
 package com.lopezgagonuria_pmdm.u3;
 
-import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.MotionEvent;
 import android.view.View;
 import android.view.ViewGroup;
+import android.widget.ImageView;
+import android.widget.TextView;
 import android.widget.Toast;
 import androidx.annotation.NonNull;
 import androidx.core.content.ContextCompat;
 import androidx.recyclerview.widget.RecyclerView;
 import com.bumptech.glide.Glide;
-import com.google.firebase.firestore.CollectionReference;
 import com.lopezgagonuria_pmdm.u3.databinding.ItemPokemonBinding;
+import com.lopezgagonuria_pmdm.u3.databinding.ItemPokemonGridBinding;
 import java.util.List;
+import java.util.Set;
 
 /**
  * Adaptador para mostrar una lista de Pokémon en un RecyclerView.
  * Proporciona funcionalidad para manejar eventos de clic, visualización de información
- * y actualización de estado en Firestore.
+ * y actualización del estado de captura.
  */
-public class PokemonAdapter extends RecyclerView.Adapter<PokemonAdapter.PokemonViewHolder> {
+public class PokemonAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
 
     // Lista de Pokémon a mostrar.
     private final List<PokemonDetails> pokemonList;
 
+    // IDs de los Pokémon capturados, compartidos con el ViewModel.
+    private final Set<String> capturedIds;
+
     // Listener para manejar eventos de clic en los elementos.
     private final OnPokemonClickListener listener;
 
-    // Referencia a la colección "capturados" en Firestore.
-    private final CollectionReference capturadosRef;
+    // Pool compartido con las vistas infladas por adelantado, o null para inflarlas aquí.
+    private PokemonViewPool viewPool;
+
+    // Indica si se muestra en cuadrícula.
+    private boolean grid;
 
     /**
      * Interfaz para manejar clics en los elementos del RecyclerView.
@@ -46,28 +54,56 @@ public class PokemonAdapter extends RecyclerView.Adapter<PokemonAdapter.PokemonV
      * Constructor del adaptador.
      *
      * @param pokemonList Lista de Pokémon a mostrar.
-     * @param listener Listener para manejar clics en los elementos.
-     * @param capturadosRef Referencia a la colección "capturados" en Firestore.
+     * @param capturedIds IDs de los Pokémon capturados.
+     * @param listener Listener para manejar clics en los elementos (se encarga de guardar la captura).
      */
-    public PokemonAdapter(List<PokemonDetails> pokemonList, OnPokemonClickListener listener, CollectionReference capturadosRef) {
+    public PokemonAdapter(List<PokemonDetails> pokemonList, Set<String> capturedIds, OnPokemonClickListener listener) {
         this.pokemonList = pokemonList;
+        this.capturedIds = capturedIds;
         this.listener = listener;
-        this.capturadosRef = capturadosRef;
     }
 
     /**
-     * Método que infla el diseño de cada elemento del RecyclerView.
+     * Configura el modo de la lista y el pool del que se toman las vistas.
+     *
+     * @param viewPool Pool compartido, o null.
+     * @param grid true para mostrar la cuadrícula.
+     */
+    public void setLayout(PokemonViewPool viewPool, boolean grid) {
+        this.viewPool = viewPool;
+        this.grid = grid;
+    }
+
+    /**
+     * Devuelve el tipo de vista: el propio diseño, para que no coincida con el de otros
+     * adaptadores que comparten el pool.
+     *
+     * @param position Posición del elemento.
+     * @return Diseño de la fila o de la celda.
+     */
+    @Override
+    public int getItemViewType(int position) {
+        return grid ? R.layout.item_pokemon_grid : R.layout.item_pokemon;
+    }
+
+    /**
+     * Método que infla el diseño de cada elemento del RecyclerView, o toma uno ya inflado.
      *
      * @param parent ViewGroup padre.
-     * @param viewType Tipo de vista (no usado aquí).
-     * @return Una instancia de PokemonViewHolder.
+     * @param viewType Diseño de la fila o de la celda.
+     * @return Una instancia de PokemonViewHolder o de PokemonGridViewHolder.
      */
     @NonNull
     @Override
-    public PokemonViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
-        // Usamos View Binding para inflar el layout
-        ItemPokemonBinding binding = ItemPokemonBinding.inflate(LayoutInflater.from(parent.getContext()), parent, false);
-        return new PokemonViewHolder(binding);
+    public RecyclerView.ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        View view = viewPool != null
+                ? viewPool.obtain(viewType, parent)
+                : LayoutInflater.from(parent.getContext()).inflate(viewType, parent, false);
+        if (viewType == R.layout.item_pokemon_grid) {
+            return new PokemonGridViewHolder(ItemPokemonGridBinding.bind(view));
+        }
+        // Usamos View Binding para acceder al layout
+        return new PokemonViewHolder(ItemPokemonBinding.bind(view));
     }
 
     /**
@@ -77,47 +113,84 @@ public class PokemonAdapter extends RecyclerView.Adapter<PokemonAdapter.PokemonV
      * @param position Posición del elemento en la lista.
      */
     @Override
-    public void onBindViewHolder(@NonNull PokemonViewHolder holder, int position) {
+    public void onBindViewHolder(@NonNull RecyclerView.ViewHolder holder, int position) {
+        PipelineTrace.begin("bind:pokedex");
+        try {
+            bindPokemon(holder, position);
+        } finally {
+            PipelineTrace.end();
+        }
+    }
+
+    private void bindPokemon(RecyclerView.ViewHolder holder, int position) {
         PokemonDetails pokemon = pokemonList.get(position);
 
-        // Configurar el nombre del Pokémon.
-        holder.binding.pokemonName.setText(pokemon.getName());
+        TextView nameView;
+        ImageView spriteView;
+        ImageView typeIcon1;
+        ImageView typeIcon2;
+        if (holder instanceof PokemonGridViewHolder) {
+            ItemPokemonGridBinding binding = ((PokemonGridViewHolder) holder).binding;
+            nameView = binding.pokemonName;
+            spriteView = binding.pokemonSprite;
+            typeIcon1 = binding.typeIcon1;
+            typeIcon2 = binding.typeIcon2;
+            // La celda puede venir de la lista de capturados, con su selección múltiple.
+            binding.deleteButton.setVisibility(View.GONE);
+            binding.pokemonSprite.setVisibility(View.VISIBLE);
+            holder.itemView.setOnLongClickListener(null);
+            holder.itemView.setActivated(false);
+        } else {
+            ItemPokemonBinding binding = ((PokemonViewHolder) holder).binding;
+            nameView = binding.pokemonName;
+            spriteView = binding.pokemonSprite;
+            typeIcon1 = binding.typeIcon1;
+            typeIcon2 = binding.typeIcon2;
+        }
 
-        // Cargar el sprite del Pokémon usando Glide.
-        Glide.with(holder.itemView.getContext())
-                .load(pokemon.getSpriteUrl())
-                .into(holder.binding.pokemonSprite);
+        // Configurar el nombre del Pokémon en el idioma activo.
+        nameView.setText(LocalizedSpeciesCache.getInstance(holder.itemView.getContext()).getName(pokemon));
+
+        // Cargar el sprite del Pokémon usando Glide, con la resolución que permita la red.
+        PipelineTrace.begin("bind:glide");
+        try {
+            Glide.with(holder.itemView.getContext())
+                    .load(LoadingPolicy.getInstance(holder.itemView.getContext()).getImageUrl(pokemon.getSpriteUrl(), false))
+                    .into(spriteView);
+        } finally {
+            PipelineTrace.end();
+        }
 
         // Configurar los iconos de tipo.
-        List<PokemonDetails.Type> types = pokemon.getTypes();
-        if (types != null && !types.isEmpty()) {
+        int typeCount = pokemon.getTypeCount();
+        if (typeCount > 0) {
             // Configuración del primer tipo.
-            String typeName1 = types.get(0).getType().getName();
+            String typeName1 = PokemonTypes.nameOf(pokemon.getTypeCode(0));
             int typeImageResId1 = getTypeImageResId(typeName1);
-            holder.binding.typeIcon1.setImageResource(typeImageResId1);
-            holder.binding.typeIcon1.setVisibility(View.VISIBLE);
+            typeIcon1.setImageResource(typeImageResId1);
+            typeIcon1.setVisibility(View.VISIBLE);
 
-            if (types.size() > 1) {
+            if (typeCount > 1) {
                 // Configuración del segundo tipo (si existe).
-                String typeName2 = types.get(1).getType().getName();
+                String typeName2 = PokemonTypes.nameOf(pokemon.getTypeCode(1));
                 int typeImageResId2 = getTypeImageResId(typeName2);
-                holder.binding.typeIcon2.setImageResource(typeImageResId2);
-                holder.binding.typeIcon2.setVisibility(View.VISIBLE);
+                typeIcon2.setImageResource(typeImageResId2);
+                typeIcon2.setVisibility(View.VISIBLE);
             } else {
-                holder.binding.typeIcon2.setVisibility(View.GONE);
+                typeIcon2.setVisibility(View.GONE);
             }
         } else {
-            holder.binding.typeIcon1.setVisibility(View.GONE);
-            holder.binding.typeIcon2.setVisibility(View.GONE);
+            typeIcon1.setVisibility(View.GONE);
+            typeIcon2.setVisibility(View.GONE);
         }
 
         // Configurar el evento de hover para mostrar los tipos del Pokémon.
         holder.itemView.setOnHoverListener((v, event) -> {
             if (event.getAction() == MotionEvent.ACTION_HOVER_ENTER) {
                 StringBuilder message = new StringBuilder("Tipo(s): ");
-                if (types != null && !types.isEmpty()) {
-                    for (PokemonDetails.Type type : types) {
-                        message.append(type.getType().getName()).append(" ");
+                if (typeCount > 0) {
+                    for (String typeName : pokemon.getTypeNames()) {
+                        message.append(typeName).append(" ");
                     }
                 } else {
                     message.append("Desconocido");
@@ -128,7 +201,8 @@ public class PokemonAdapter extends RecyclerView.Adapter<PokemonAdapter.PokemonV
         });
 
         // Cambiar la apariencia si el Pokémon está capturado.
-        if (pokemon.isCaptured()) {
+        boolean captured = capturedIds.contains(pokemon.getId());
+        if (captured) {
             holder.itemView.setEnabled(false);
             holder.itemView.setBackgroundColor(ContextCompat.getColor(holder.itemView.getContext(), R.color.RED));
         } else {
@@ -138,14 +212,10 @@ public class PokemonAdapter extends RecyclerView.Adapter<PokemonAdapter.PokemonV
 
         // Configurar el clic en el elemento.
         holder.itemView.setOnClickListener(v -> {
-            if (listener != null && !pokemon.isCaptured()) {
+            if (listener != null && !captured) {
+                // El listener marca la captura y la guarda en Firestore; aquí solo se actualiza la vista.
                 listener.onPokemonClick(pokemon);
-                pokemon.setCaptured(true);
                 notifyItemChanged(position);
-                capturadosRef.document(pokemon.getId())
-                        .set(pokemon)
-                        .addOnSuccessListener(aVoid -> Log.d("Firestore", "¡Pokémon capturado guardado con éxito!"))
-                        .addOnFailureListener(e -> Log.e("Firestore", "Error al guardar el Pokémon", e));
             }
         });
     }
@@ -0,0 +1,272 @@
+package com.lopezgagonuria_pmdm.u3;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Codificación binaria compacta de {@link PokemonDetails}, para la caché en disco y para pasar
+ * un Pokémon entre pantallas sin la reflexión de Gson ni de la serialización de Java.
+ *
+ * <p>Cada Pokémon se escribe como:
+ * <pre>
+ *   flags  : varint con los bits FLAG_* (qué campos opcionales siguen)
+ *   id     : varint
+ *   name   : cadena (FLAG_NAME)
+ *   weight, height : varint, en hectogramos y decímetros
+ *   types  : varint con el número de tipos y un byte por tipo con su código de {@link PokemonTypes}
+ *   spriteUrl : cadena solo si el sprite no es el del propio id (FLAG_CUSTOM_SPRITE)
+ * </pre>
+ * Las cadenas son un varint con la longitud en bytes seguido de los bytes en UTF-8. Los datos
+ * escritos por versiones anteriores pueden llevar además un ID como cadena (FLAG_ID_STRING),
+ * medidas como double (FLAG_DECIMAL_MEASURES), tipos desconocidos escritos como NONE seguido de
+ * su nombre, una URL propia (FLAG_CUSTOM_URL) y las marcas de captura; se siguen leyendo.
+ */
+public final class PokemonCodec {
+
+    // Versión del formato de las listas codificadas.
+    private static final int LIST_VERSION = 1;
+
+    private static final int FLAG_HAS_ID = 1;
+    private static final int FLAG_ID_STRING = 1 << 1;
+    private static final int FLAG_NAME = 1 << 2;
+    private static final int FLAG_TYPES = 1 << 3;
+    // Solo en datos antiguos: la captura ya no forma parte del modelo.
+    private static final int FLAG_CAPTURED = 1 << 4;
+    private static final int FLAG_CLICKED = 1 << 5;
+    private static final int FLAG_FULLY_LOADED = 1 << 6;
+    private static final int FLAG_DECIMAL_MEASURES = 1 << 7;
+    private static final int FLAG_CUSTOM_SPRITE = 1 << 8;
+    private static final int FLAG_CUSTOM_URL = 1 << 9;
+
+    private PokemonCodec() {
+        // Clase de utilidad, no se instancia.
+    }
+
+    /**
+     * Codifica un Pokémon.
+     *
+     * @param pokemon Pokémon a codificar.
+     * @return Bytes codificados.
+     */
+    public static byte[] encode(PokemonDetails pokemon) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(32);
+        try {
+            write(out, pokemon);
+        } catch (IOException e) {
+            throw new IllegalStateException(e); // No ocurre al escribir en memoria.
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Decodifica un Pokémon.
+     *
+     * @param bytes Bytes generados por {@link #encode(PokemonDetails)}.
+     * @return Pokémon decodificado.
+     * @throws IOException si los bytes están truncados o no son válidos.
+     */
+    public static PokemonDetails decode(byte[] bytes) throws IOException {
+        return read(new ByteArrayInputStream(bytes));
+    }
+
+    /**
+     * Escribe una lista de Pokémon precedida de la versión del formato y su tamaño.
+     *
+     * @param out Flujo de salida.
+     * @param pokemonList Lista de Pokémon.
+     * @throws IOException si falla la escritura.
+     */
+    public static void writeList(OutputStream out, List<PokemonDetails> pokemonList) throws IOException {
+        writeVarint(out, LIST_VERSION);
+        writeVarint(out, pokemonList.size());
+        for (PokemonDetails pokemon : pokemonList) {
+            write(out, pokemon);
+        }
+    }
+
+    /**
+     * Lee una lista escrita con {@link #writeList(OutputStream, List)}.
+     *
+     * @param in Flujo de entrada.
+     * @return Lista de Pokémon.
+     * @throws IOException si falla la lectura o la versión no es compatible.
+     */
+    public static List<PokemonDetails> readList(InputStream in) throws IOException {
+        int version = readVarint(in);
+        if (version != LIST_VERSION) {
+            throw new IOException("Versión de la lista no soportada: " + version);
+        }
+        int size = readVarint(in);
+        List<PokemonDetails> pokemonList = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            pokemonList.add(read(in));
+        }
+        return pokemonList;
+    }
+
+    /**
+     * Escribe un Pokémon en un flujo.
+     *
+     * @param out Flujo de salida.
+     * @param pokemon Pokémon a escribir.
+     * @throws IOException si falla la escritura.
+     */
+    public static void write(OutputStream out, PokemonDetails pokemon) throws IOException {
+        int id = pokemon.getNumber();
+        int typeCount = pokemon.getTypeCount();
+        boolean customSprite = pokemon.getSpriteId() != id;
+
+        int flags = FLAG_HAS_ID
+                | (pokemon.getName() != null ? FLAG_NAME : 0)
+                | (typeCount > 0 ? FLAG_TYPES | FLAG_FULLY_LOADED : 0)
+                | (customSprite ? FLAG_CUSTOM_SPRITE : 0);
+        writeVarint(out, flags);
+
+        writeVarint(out, id);
+        if (pokemon.getName() != null) {
+            writeString(out, pokemon.getName());
+        }
+        writeVarint(out, pokemon.getWeight());
+        writeVarint(out, pokemon.getHeight());
+        if (typeCount > 0) {
+            writeVarint(out, typeCount);
+            for (int i = 0; i < typeCount; i++) {
+                out.write(pokemon.getTypeCode(i));
+            }
+        }
+        if (customSprite) {
+            writeNullableString(out, pokemon.getSpriteUrl());
+        }
+    }
+
+    /**
+     * Lee un Pokémon de un flujo. También acepta lo escrito con el modelo anterior: las medidas
+     * con decimales se redondean, los tipos desconocidos se descartan y las marcas de captura y
+     * la URL se ignoran.
+     *
+     * @param in Flujo de entrada.
+     * @return Pokémon leído.
+     * @throws IOException si el flujo está truncado o no es válido, o el Pokémon no tiene un ID numérico.
+     */
+    public static PokemonDetails read(InputStream in) throws IOException {
+        int flags = readVarint(in);
+
+        int id = -1;
+        if ((flags & FLAG_ID_STRING) != 0) {
+            id = PokemonDetails.parseId(readString(in));
+        } else if ((flags & FLAG_HAS_ID) != 0) {
+            id = readVarint(in);
+        }
+        String name = (flags & FLAG_NAME) != 0 ? readString(in) : null;
+        int weight;
+        int height;
+        if ((flags & FLAG_DECIMAL_MEASURES) != 0) {
+            weight = (int) Math.round(Double.longBitsToDouble(readLong(in)));
+            height = (int) Math.round(Double.longBitsToDouble(readLong(in)));
+        } else {
+            weight = readVarint(in);
+            height = readVarint(in);
+        }
+        int[] codes = {PokemonTypes.NONE, PokemonTypes.NONE};
+        if ((flags & FLAG_TYPES) != 0) {
+            int count = readVarint(in);
+            int known = 0;
+            for (int i = 0; i < count; i++) {
+                int code = readByte(in);
+                if (code == PokemonTypes.NONE) {
+                    readString(in); // Tipo desconocido, solo en datos antiguos.
+                } else if (known < codes.length) {
+                    codes[known++] = code;
+                }
+            }
+        }
+        int spriteId = id;
+        if ((flags & FLAG_CUSTOM_SPRITE) != 0) {
+            int customSpriteId = PokemonDetails.parseSpriteId(readNullableString(in));
+            if (customSpriteId >= 0) {
+                spriteId = customSpriteId;
+            }
+        }
+        if ((flags & FLAG_CUSTOM_URL) != 0) {
+            readNullableString(in); // La URL se genera siempre a partir del ID.
+        }
+        if (id < 0) {
+            throw new IOException("Pokémon sin ID numérico");
+        }
+        return new PokemonDetails(id, name, weight, height, spriteId, codes[0], codes[1]);
+    }
+
+    private static void writeVarint(OutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static int readVarint(InputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = readByte(in);
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Varint demasiado largo");
+    }
+
+    private static long readLong(InputStream in) throws IOException {
+        long value = 0;
+        for (int i = 0; i < 8; i++) {
+            value = (value << 8) | readByte(in);
+        }
+        return value;
+    }
+
+    private static void writeString(OutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarint(out, bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(InputStream in) throws IOException {
+        byte[] bytes = new byte[readVarint(in)];
+        int read = 0;
+        while (read < bytes.length) {
+            int n = in.read(bytes, read, bytes.length - read);
+            if (n < 0) {
+                throw new EOFException();
+            }
+            read += n;
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // Las cadenas que pueden ser nulas llevan un byte delante: 0 nula, 1 presente.
+    private static void writeNullableString(OutputStream out, String value) throws IOException {
+        out.write(value != null ? 1 : 0);
+        if (value != null) {
+            writeString(out, value);
+        }
+    }
+
+    private static String readNullableString(InputStream in) throws IOException {
+        return readByte(in) != 0 ? readString(in) : null;
+    }
+
+    private static int readByte(InputStream in) throws IOException {
+        int b = in.read();
+        if (b < 0) {
+            throw new EOFException();
+        }
+        return b;
+    }
+}
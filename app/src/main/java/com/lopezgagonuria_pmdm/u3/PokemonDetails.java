@@ -1,360 +1,477 @@
 package com.lopezgagonuria_pmdm.u3;
 
+import com.google.gson.TypeAdapter;
+import com.google.gson.annotations.JsonAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import java.io.IOException;
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
-import java.util.stream.Collectors;
 
 /**
- * Clase que representa los detalles de un Pokémon, incluyendo su información básica,
- * tipos, estado de captura y otros atributos relacionados.
+ * Pokémon de la aplicación: un valor inmutable y compacto que comparten la Pokédex, los
+ * capturados, las cachés y las pantallas.
+ *
+ * <p>Para que miles de Pokémon en memoria ocupen poco:
+ * <ul>
+ *   <li>El ID, el peso y la altura son enteros, en las unidades de la API (hectogramos y
+ *   decímetros). Las cadenas del ID se comparten entre todas las instancias.</li>
+ *   <li>El nombre se guarda internado, así que las copias del mismo Pokémon (Pokédex,
+ *   capturados, cachés) comparten la cadena.</li>
+ *   <li>Los tipos son dos códigos de {@link PokemonTypes} de un byte.</li>
+ *   <li>Las URL del Pokémon y de su sprite no se guardan: se generan a partir del ID.</li>
+ * </ul>
+ * El estado de captura no forma parte del Pokémon: lo guardan las pantallas que lo muestran.
+ * Los detalles cargados más tarde se incorporan con {@link #withDetails(PokemonDetails)}, que
+ * devuelve un Pokémon nuevo.
  */
-public class PokemonDetails implements Serializable {
+@JsonAdapter(PokemonDetails.GsonAdapter.class)
+public final class PokemonDetails implements Serializable {
 
-    // ID único del Pokémon.
-    private String id;
+    private static final long serialVersionUID = 2L;
 
-    // Nombre del Pokémon.
-    private String name;
+    static final String SPRITE_PREFIX = "https://raw.githubusercontent.com/PokeAPI/sprites/master/sprites/pokemon/";
 
-    // Peso del Pokémon.
-    private double weight;
+    // Cadenas de los ID más habituales, compartidas por todas las instancias.
+    private static final String[] ID_STRINGS = new String[2048];
 
-    // Altura del Pokémon.
-    private double height;
+    // ID del Pokémon en la PokeAPI.
+    private final int id;
 
-    // URL del sprite del Pokémon.
-    private String spriteUrl;
+    // Nombre del Pokémon, internado.
+    private final String name;
 
-    // URL relacionada con la API del Pokémon.
-    private String url;
+    // Peso en hectogramos y altura en decímetros, o 0 si no se conocen.
+    private final int weight;
+    private final int height;
 
-    // Lista de tipos del Pokémon.
-    private List<Type> types;
+    // ID de la imagen del sprite; coincide con el ID salvo en algunas formas alternativas.
+    private final int spriteId;
 
-    // Indica si el Pokémon ha sido capturado.
-    private boolean captured;
-
-    // Indica si el Pokémon ha sido clicado en la interfaz.
-    private boolean clicked;
-
-    // Tipos formateados como cadena.
-    private String formattedTypes;
-
-    // Indica si el Pokémon tiene todos sus datos completamente cargados.
-    private boolean isFullyLoaded;
+    // Códigos de los tipos, o PokemonTypes.NONE.
+    private final byte type1;
+    private final byte type2;
 
     /**
-     * Constructor vacío requerido por Firebase.
-     */
-    public PokemonDetails() {
-        // Constructor vacío.
-    }
-
-    /**
-     * Constructor completo para inicializar los detalles del Pokémon.
+     * Constructor completo.
      *
-     * @param id ID único del Pokémon.
+     * @param id ID del Pokémon en la PokeAPI.
      * @param name Nombre del Pokémon.
-     * @param weight Peso del Pokémon.
-     * @param height Altura del Pokémon.
-     * @param spriteUrl URL del sprite del Pokémon.
-     * @param url URL relacionada con la API del Pokémon.
-     * @param types Lista de tipos del Pokémon.
-     * @param captured Estado de captura del Pokémon.
-     * @param clicked Estado de clicado en la interfaz.
+     * @param weight Peso en hectogramos, o 0 si no se conoce.
+     * @param height Altura en decímetros, o 0 si no se conoce.
+     * @param spriteId ID de la imagen del sprite.
+     * @param type1 Código del primer tipo, o {@link PokemonTypes#NONE} si no se conocen los tipos.
+     * @param type2 Código del segundo tipo, o {@link PokemonTypes#NONE}.
      */
-    public PokemonDetails(String id, String name, double weight, double height, String spriteUrl, String url,
-                          List<Type> types, boolean captured, boolean clicked) {
+    public PokemonDetails(int id, String name, int weight, int height, int spriteId, int type1, int type2) {
         this.id = id;
-        this.name = name;
+        this.name = name != null ? name.intern() : null;
         this.weight = weight;
         this.height = height;
-        this.spriteUrl = spriteUrl;
-        this.url = url;
-        this.types = types;
-        this.captured = captured;
-        this.clicked = clicked;
-        this.isFullyLoaded = false;
+        this.spriteId = spriteId;
+        if (type1 == PokemonTypes.NONE) {
+            // Un segundo tipo sin primero ocupa el primer hueco.
+            type1 = type2;
+            type2 = PokemonTypes.NONE;
+        }
+        this.type1 = (byte) type1;
+        this.type2 = (byte) type2;
     }
 
     /**
-     * Verifica si el Pokémon tiene todos sus datos cargados completamente.
+     * Crea un Pokémon del que todavía solo se conocen el ID y el nombre.
      *
-     * @return true si está completamente cargado, false en caso contrario.
+     * @param id ID del Pokémon.
+     * @param name Nombre del Pokémon.
+     * @return Pokémon sin detalles.
      */
-    public boolean isFullyLoaded() {
-        return isFullyLoaded;
+    public static PokemonDetails basic(int id, String name) {
+        return new PokemonDetails(id, name, 0, 0, id, PokemonTypes.NONE, PokemonTypes.NONE);
     }
 
     /**
-     * Establece si el Pokémon está completamente cargado.
+     * Crea un Pokémon a partir de los nombres de sus tipos. Solo se guardan los dos primeros
+     * tipos conocidos.
      *
-     * @param fullyLoaded Estado de carga completa.
+     * @param id ID del Pokémon.
+     * @param name Nombre del Pokémon.
+     * @param weight Peso en hectogramos.
+     * @param height Altura en decímetros.
+     * @param typeNames Nombres de los tipos en orden de slot, o null.
+     * @return Pokémon creado.
      */
-    public void setFullyLoaded(boolean fullyLoaded) {
-        isFullyLoaded = fullyLoaded;
+    public static PokemonDetails fromTypeNames(int id, String name, int weight, int height, List<String> typeNames) {
+        int[] codes = {PokemonTypes.NONE, PokemonTypes.NONE};
+        int count = 0;
+        if (typeNames != null) {
+            for (String typeName : typeNames) {
+                int code = PokemonTypes.codeOf(typeName);
+                if (code != PokemonTypes.NONE && count < codes.length) {
+                    codes[count++] = code;
+                }
+            }
+        }
+        return new PokemonDetails(id, name, weight, height, id, codes[0], codes[1]);
     }
 
     /**
-     * Obtiene los tipos formateados como cadena.
+     * Obtiene la cadena de un ID sin crear una nueva para los ID habituales.
      *
-     * @return Tipos formateados.
+     * @param id ID numérico.
+     * @return ID como cadena.
      */
-    public String getFormattedTypes() {
-        if (formattedTypes == null) {
-            setFormattedTypes(); // Genera `formattedTypes` si está vacío.
+    static String idToString(int id) {
+        if (id < 0 || id >= ID_STRINGS.length) {
+            return String.valueOf(id);
+        }
+        String value = ID_STRINGS[id];
+        if (value == null) {
+            // Una carrera solo crea la misma cadena dos veces.
+            value = String.valueOf(id);
+            ID_STRINGS[id] = value;
         }
-        return formattedTypes;
+        return value;
     }
 
     /**
-     * Genera la cadena formateada de los tipos del Pokémon.
+     * Devuelve un Pokémon con el peso, la altura y los tipos de otro, conservando el nombre y
+     * el sprite de este. Se usa al recibir los detalles de la API.
+     *
+     * @param details Pokémon con los detalles cargados.
+     * @return Pokémon nuevo con los detalles.
      */
-    private void setFormattedTypes() {
-        if (types != null && !types.isEmpty()) {
-            StringBuilder builder = new StringBuilder();
-            for (Type type : types) {
-                if (type != null && type.getType() != null && type.getType().getName() != null) {
-                    if (builder.length() > 0) {
-                        builder.append(", ");
-                    }
-                    builder.append(type.getType().getName());
-                }
-            }
-            formattedTypes = builder.toString();
-        } else {
-            formattedTypes = "Desconocido";
-        }
+    public PokemonDetails withDetails(PokemonDetails details) {
+        return new PokemonDetails(id, name != null ? name : details.name, details.weight, details.height,
+                spriteId, details.getTypeCode(0), details.getTypeCode(1));
     }
 
     /**
-     * Clase interna que representa los tipos del Pokémon.
+     * Indica si ya se conocen los detalles del Pokémon (sus tipos, peso y altura).
+     *
+     * @return true si están cargados.
      */
-    public static class Type {
-
-        // Número de slot del tipo.
-        private int slot;
-
-        // Objeto que contiene el nombre y la URL del tipo.
-        private NestedType type;
-
-        /**
-         * Constructor vacío requerido por Firebase.
-         */
-        public Type() {
-            // Constructor vacío.
-        }
-
-        /**
-         * Constructor para inicializar el tipo.
-         *
-         * @param slot Número de slot del tipo.
-         * @param type Objeto que contiene el nombre y URL del tipo.
-         */
-        public Type(int slot, NestedType type) {
-            this.slot = slot;
-            this.type = type;
-        }
-
-        /**
-         * Obtiene el número de slot del tipo.
-         *
-         * @return Número de slot.
-         */
-        public int getSlot() {
-            return slot;
-        }
-
-        /**
-         * Establece el número de slot del tipo.
-         *
-         * @param slot Número de slot.
-         */
-        public void setSlot(int slot) {
-            this.slot = slot;
-        }
-
-        /**
-         * Obtiene el objeto que contiene el nombre y la URL del tipo.
-         *
-         * @return Objeto NestedType.
-         */
-        public NestedType getType() {
-            return type;
-        }
-
-        /**
-         * Establece el objeto NestedType.
-         *
-         * @param type Objeto NestedType.
-         */
-        public void setType(NestedType type) {
-            this.type = type;
-        }
+    public boolean isFullyLoaded() {
+        return type1 != (byte) PokemonTypes.NONE;
     }
 
     /**
-     * Clase interna para manejar el nombre y URL dentro del tipo.
+     * Obtiene el ID como cadena, como lo usan la API y los documentos de Firestore.
+     *
+     * @return ID del Pokémon.
      */
-    public static class NestedType {
-
-        // Nombre del tipo.
-        private String name;
-
-        // URL del tipo.
-        private String url;
-
-        /**
-         * Constructor vacío requerido por Firebase.
-         */
-        public NestedType() {
-            // Constructor vacío.
-        }
-
-        /**
-         * Constructor para inicializar el NestedType.
-         *
-         * @param name Nombre del tipo.
-         * @param url URL del tipo.
-         */
-        public NestedType(String name, String url) {
-            this.name = name;
-            this.url = url;
-        }
-
-        /**
-         * Obtiene el nombre del tipo.
-         *
-         * @return Nombre del tipo.
-         */
-        public String getName() {
-            return name;
-        }
-
-        /**
-         * Establece el nombre del tipo.
-         *
-         * @param name Nombre del tipo.
-         */
-        public void setName(String name) {
-            this.name = name;
-        }
-
-        /**
-         * Obtiene la URL del tipo.
-         *
-         * @return URL del tipo.
-         */
-        public String getUrl() {
-            return url;
-        }
-
-        /**
-         * Establece la URL del tipo.
-         *
-         * @param url URL del tipo.
-         */
-        public void setUrl(String url) {
-            this.url = url;
-        }
-    }
-
-    // Getters y setters de los atributos principales.
-
     public String getId() {
-        return id;
+        return idToString(id);
     }
 
-    public void setId(String id) {
-        this.id = id;
+    /**
+     * Obtiene el ID numérico.
+     *
+     * @return ID del Pokémon.
+     */
+    public int getNumber() {
+        return id;
     }
 
     public String getName() {
         return name;
     }
 
-    public void setName(String name) {
-        this.name = name;
+    /**
+     * Obtiene el peso en las unidades de la API.
+     *
+     * @return Peso en hectogramos, o 0 si no se conoce.
+     */
+    public int getWeight() {
+        return weight;
     }
 
-    public double getWeight() {
-        return weight;
+    /**
+     * Obtiene la altura en las unidades de la API.
+     *
+     * @return Altura en decímetros, o 0 si no se conoce.
+     */
+    public int getHeight() {
+        return height;
     }
 
-    public void setWeight(double weight) {
-        this.weight = weight;
+    /**
+     * Obtiene el peso para mostrarlo.
+     *
+     * @return Peso en kilogramos.
+     */
+    public double getWeightKg() {
+        return weight / 10.0;
     }
 
-    public double getHeight() {
-        return height;
+    /**
+     * Obtiene la altura para mostrarla.
+     *
+     * @return Altura en metros.
+     */
+    public double getHeightMeters() {
+        return height / 10.0;
     }
 
-    public void setHeight(double height) {
-        this.height = height;
+    public int getSpriteId() {
+        return spriteId;
     }
 
+    /**
+     * Genera la URL del sprite del Pokémon.
+     *
+     * @return URL del sprite.
+     */
     public String getSpriteUrl() {
-        return spriteUrl;
+        return SPRITE_PREFIX + spriteId + ".png";
     }
 
-    public void setSpriteUrl(String spriteUrl) {
-        this.spriteUrl = spriteUrl;
+    /**
+     * Genera la URL del Pokémon en la API.
+     *
+     * @return URL del Pokémon.
+     */
+    public String getUrl() {
+        return RetrofitClient.BASE_URL + "pokemon/" + id + "/";
     }
 
-    public String getUrl() {
-        return url;
+    /**
+     * Obtiene el número de tipos conocidos.
+     *
+     * @return 0, 1 o 2.
+     */
+    public int getTypeCount() {
+        return type1 == (byte) PokemonTypes.NONE ? 0 : type2 == (byte) PokemonTypes.NONE ? 1 : 2;
     }
 
-    public void setUrl(String url) {
-        this.url = url;
+    /**
+     * Obtiene el código de uno de los tipos.
+     *
+     * @param index 0 para el primer tipo, 1 para el segundo.
+     * @return Código de {@link PokemonTypes}, o {@link PokemonTypes#NONE} si no lo tiene.
+     */
+    public int getTypeCode(int index) {
+        return (index == 0 ? type1 : index == 1 ? type2 : (byte) PokemonTypes.NONE) & 0xFF;
     }
 
-    public List<Type> getTypes() {
-        return types;
+    /**
+     * Obtiene los nombres de los tipos del Pokémon en orden de slot.
+     *
+     * @return Lista de nombres, vacía si no se conocen los tipos.
+     */
+    public List<String> getTypeNames() {
+        switch (getTypeCount()) {
+            case 0:
+                return Collections.emptyList();
+            case 1:
+                return Collections.singletonList(PokemonTypes.nameOf(getTypeCode(0)));
+            default:
+                return Arrays.asList(PokemonTypes.nameOf(getTypeCode(0)), PokemonTypes.nameOf(getTypeCode(1)));
+        }
     }
 
-    public void setTypes(List<Type> types) {
-        this.types = types;
+    /**
+     * Obtiene los tipos formateados como cadena.
+     *
+     * @return Tipos separados por comas, o "Desconocido".
+     */
+    public String getFormattedTypes() {
+        List<String> typeNames = getTypeNames();
+        return typeNames.isEmpty() ? "Desconocido" : String.join(", ", typeNames);
     }
 
-    public boolean isCaptured() {
-        return captured;
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof PokemonDetails)) {
+            return false;
+        }
+        PokemonDetails that = (PokemonDetails) other;
+        return id == that.id && weight == that.weight && height == that.height && spriteId == that.spriteId
+                && type1 == that.type1 && type2 == that.type2
+                && (name == null ? that.name == null : name.equals(that.name));
     }
 
-    public void setCaptured(boolean captured) {
-        this.captured = captured;
+    @Override
+    public int hashCode() {
+        int result = id;
+        result = 31 * result + (name != null ? name.hashCode() : 0);
+        result = 31 * result + weight;
+        result = 31 * result + height;
+        result = 31 * result + spriteId;
+        result = 31 * result + type1;
+        result = 31 * result + type2;
+        return result;
     }
 
-    public boolean isClicked() {
-        return clicked;
+    @Override
+    public String toString() {
+        return "PokemonDetails{id=" + id + ", name=" + name + ", types=" + getTypeNames() + "}";
     }
 
-    public void setClicked(boolean clicked) {
-        this.clicked = clicked;
+    /**
+     * Al deserializar se vuelve a pasar por el constructor para internar el nombre.
+     */
+    private Object readResolve() {
+        return new PokemonDetails(id, name, weight, height, spriteId, type1 & 0xFF, type2 & 0xFF);
     }
 
     /**
-     * Obtiene una lista de nombres de tipos del Pokémon.
+     * Conversión a JSON para Gson, que se aplica allí donde se usa Gson: las respuestas de
+     * la API (Retrofit) y los estados que se guardan en disco.
      *
-     * @return Lista de nombres de tipos.
+     * <p>Escribe {"id", "name", "weight", "height", "types": [nombres], "spriteId"} (este último
+     * solo si no coincide con el ID). Lee ese formato, el de la API ("types" como objetos
+     * {slot, type: {name, url}}) y el de los estados guardados con el modelo anterior (ID como
+     * cadena, medidas con decimales y "spriteUrl"). El resto de campos se ignoran.
      */
-    public List<String> getTypeNames() {
-        if (types != null) {
-            return types.stream()
-                    .map(type -> type.getType() != null ? type.getType().getName() : null)
-                    .collect(Collectors.toList());
+    static final class GsonAdapter extends TypeAdapter<PokemonDetails> {
+
+        @Override
+        public void write(JsonWriter out, PokemonDetails pokemon) throws IOException {
+            if (pokemon == null) {
+                out.nullValue();
+                return;
+            }
+            out.beginObject();
+            out.name("id").value(pokemon.id);
+            out.name("name").value(pokemon.name);
+            out.name("weight").value(pokemon.weight);
+            out.name("height").value(pokemon.height);
+            out.name("types").beginArray();
+            for (String typeName : pokemon.getTypeNames()) {
+                out.value(typeName);
+            }
+            out.endArray();
+            if (pokemon.spriteId != pokemon.id) {
+                out.name("spriteId").value(pokemon.spriteId);
+            }
+            out.endObject();
         }
-        return null;
+
+        @Override
+        public PokemonDetails read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+            int id = -1;
+            int spriteId = -1;
+            String name = null;
+            int weight = 0;
+            int height = 0;
+            List<String> typeNames = new ArrayList<>(2);
+
+            in.beginObject();
+            while (in.hasNext()) {
+                String field = in.nextName();
+                if (in.peek() == JsonToken.NULL) {
+                    in.nextNull();
+                    continue;
+                }
+                switch (field) {
+                    case "id":
+                        id = parseId(in.nextString());
+                        break;
+                    case "name":
+                        name = in.nextString();
+                        break;
+                    case "weight":
+                        weight = (int) Math.round(in.nextDouble());
+                        break;
+                    case "height":
+                        height = (int) Math.round(in.nextDouble());
+                        break;
+                    case "types":
+                        readTypeNames(in, typeNames);
+                        break;
+                    case "spriteId":
+                        spriteId = in.nextInt();
+                        break;
+                    case "spriteUrl":
+                        spriteId = parseSpriteId(in.nextString());
+                        break;
+                    default:
+                        in.skipValue();
+                        break;
+                }
+            }
+            in.endObject();
+
+            if (id < 0) {
+                throw new IOException("Pokémon sin ID numérico");
+            }
+            PokemonDetails pokemon = fromTypeNames(id, name, weight, height, typeNames);
+            return spriteId >= 0 && spriteId != id
+                    ? new PokemonDetails(id, name, weight, height, spriteId, pokemon.getTypeCode(0), pokemon.getTypeCode(1))
+                    : pokemon;
+        }
+
+        private static void readTypeNames(JsonReader in, List<String> typeNames) throws IOException {
+            in.beginArray();
+            while (in.hasNext()) {
+                if (in.peek() == JsonToken.STRING) {
+                    typeNames.add(in.nextString());
+                } else if (in.peek() == JsonToken.BEGIN_OBJECT) {
+                    // Formato de la API: {"slot": 1, "type": {"name": "grass", "url": "..."}}
+                    in.beginObject();
+                    while (in.hasNext()) {
+                        if ("type".equals(in.nextName()) && in.peek() == JsonToken.BEGIN_OBJECT) {
+                            in.beginObject();
+                            while (in.hasNext()) {
+                                if ("name".equals(in.nextName()) && in.peek() == JsonToken.STRING) {
+                                    typeNames.add(in.nextString());
+                                } else {
+                                    in.skipValue();
+                                }
+                            }
+                            in.endObject();
+                        } else {
+                            in.skipValue();
+                        }
+                    }
+                    in.endObject();
+                } else {
+                    in.skipValue();
+                }
+            }
+            in.endArray();
+        }
+    }
+
+    /**
+     * Convierte un ID de la API o de un documento en número.
+     *
+     * @param id ID como cadena.
+     * @return ID numérico, o -1 si no es un número.
+     */
+    static int parseId(String id) {
+        if (id == null || id.isEmpty() || id.length() > 9) {
+            return -1;
+        }
+        for (int i = 0; i < id.length(); i++) {
+            if (!Character.isDigit(id.charAt(i))) {
+                return -1;
+            }
+        }
+        return Integer.parseInt(id);
     }
 
     /**
-     * Genera la URL del sprite del Pokémon basándose en su ID.
+     * Obtiene el ID de la imagen de una URL de sprite de la PokeAPI.
+     *
+     * @param spriteUrl URL del sprite.
+     * @return ID de la imagen, o -1 si la URL no tiene el formato esperado.
      */
-    public void generateSpriteUrl() {
-        if (this.id != null && !this.id.isEmpty()) {
-            this.spriteUrl = "https://raw.githubusercontent.com/PokeAPI/sprites/master/sprites/pokemon/" + this.id + ".png";
-        } else {
-            this.spriteUrl = ""; // Asignar una cadena vacía si no hay ID.
+    static int parseSpriteId(String spriteUrl) {
+        if (spriteUrl == null || !spriteUrl.startsWith(SPRITE_PREFIX) || !spriteUrl.endsWith(".png")) {
+            return -1;
         }
+        return parseId(spriteUrl.substring(SPRITE_PREFIX.length(), spriteUrl.length() - ".png".length()));
     }
-}
\ No newline at end of file
+}
@@ -1,6 +1,7 @@
 package com.lopezgagonuria_pmdm.u3;
 
 import android.content.SharedPreferences;
+import android.graphics.Rect;
 import android.os.Bundle;
 import android.util.Log;
 import android.view.LayoutInflater;
@@ -9,15 +10,16 @@ import android.view.ViewGroup;
 import android.widget.Toast;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import androidx.core.widget.NestedScrollView;
 import androidx.fragment.app.Fragment;
 import androidx.preference.PreferenceManager;
 import com.bumptech.glide.Glide;
-import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.auth.FirebaseAuth;
+import com.google.firebase.auth.FirebaseUser;
 import com.lopezgagonuria_pmdm.u3.databinding.PokemonDetailFragmentBinding;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
-import retrofit2.Call;
-import retrofit2.Callback;
-import retrofit2.Response;
 
 /**
  * Fragmento que muestra los detalles de un Pokémon seleccionado, permite la edición de los datos
@@ -28,6 +30,14 @@ public class PokemonDetailsFragment extends Fragment {
     // View Binding para acceder a las vistas del diseño.
     private PokemonDetailFragmentBinding binding;
 
+    // Indican si ya se han pedido las secciones que se cargan al aparecer en pantalla.
+    private boolean speciesRequested;
+    private boolean evolutionRequested;
+    private boolean matchupRequested;
+
+    // Número de rivales sugeridos de la colección de capturados.
+    private static final int MAX_COUNTERS = 3;
+
     /**
      * Crea una nueva instancia del fragmento con los detalles de un Pokémon.
      *
@@ -37,7 +47,8 @@ public class PokemonDetailsFragment extends Fragment {
     public static PokemonDetailsFragment newInstance(PokemonDetails pokemonDetails) {
         PokemonDetailsFragment fragment = new PokemonDetailsFragment();
         Bundle args = new Bundle();
-        args.putSerializable("pokemonDetails", pokemonDetails);
+        // Se pasa codificado con PokemonCodec en lugar de con la serialización de Java.
+        args.putByteArray("pokemonDetails", PokemonCodec.encode(pokemonDetails));
         fragment.setArguments(args);
         return fragment;
     }
@@ -62,20 +73,20 @@ public class PokemonDetailsFragment extends Fragment {
         binding = PokemonDetailFragmentBinding.inflate(inflater, container, false);
 
         // Obtener el Pokémon desde los argumentos.
-        PokemonDetails pokemon = (PokemonDetails) getArguments().getSerializable("pokemonDetails");
+        PokemonDetails pokemon = readPokemonArgument();
 
         // Mostrar los detalles del Pokémon usando View Binding.
         if (pokemon != null) {
             updateDetails(pokemon);
-            binding.nameTextDetail.setText(pokemon.getName());
+            binding.nameTextDetail.setText(LocalizedSpeciesCache.getInstance(requireContext()).getName(pokemon));
             binding.idPokemon.setText("ID: " + pokemon.getId());
             binding.typeTextDetail.setText(getString(R.string.tipo) + pokemon.getFormattedTypes());
-            binding.weightTextDetail.setText(getString(R.string.peso) + pokemon.getWeight() + " kg");
-            binding.heightTextDetail.setText(getString(R.string.altura) + pokemon.getHeight() + " m");
+            binding.weightTextDetail.setText(getString(R.string.peso) + pokemon.getWeightKg() + " kg");
+            binding.heightTextDetail.setText(getString(R.string.altura) + pokemon.getHeightMeters() + " m");
 
             // Cargar la imagen del Pokémon usando Glide.
             Glide.with(requireContext())
-                    .load(pokemon.getSpriteUrl())
+                    .load(LoadingPolicy.getInstance(requireContext()).getImageUrl(pokemon.getSpriteUrl(), true))
                     .into(binding.imageCharacterDetail);
 
             // Si los datos no están completamente cargados, buscar los detalles desde la API.
@@ -84,6 +95,14 @@ public class PokemonDetailsFragment extends Fragment {
             }
         }
 
+        // Cargar las secciones de especie y evolución solo cuando se ven.
+        speciesRequested = false;
+        evolutionRequested = false;
+        matchupRequested = false;
+        binding.detailScroll.setOnScrollChangeListener((NestedScrollView.OnScrollChangeListener)
+                (v, scrollX, scrollY, oldScrollX, oldScrollY) -> loadVisibleSections(pokemon));
+        binding.detailScroll.post(() -> loadVisibleSections(pokemon));
+
         // Configurar el botón "Volver".
         binding.buttonBack.setOnClickListener(v -> requireActivity().getSupportFragmentManager().popBackStack());
 
@@ -106,36 +125,242 @@ public class PokemonDetailsFragment extends Fragment {
     }
 
     /**
-     * Elimina el Pokémon de Firestore y actualiza la lista en el fragmento padre.
+     * Encola la eliminación del Pokémon en Firestore y actualiza la lista en el fragmento padre
+     * de forma inmediata. Si Firestore la rechaza, la cola la deshace y avisa al usuario.
      *
      * @param pokemon Objeto PokemonDetails a eliminar.
      */
     private void deletePokemon(PokemonDetails pokemon) {
         if (pokemon != null) {
-            FirebaseFirestore.getInstance().collection("capturados")
-                    .document(pokemon.getId())
-                    .delete()
-                    .addOnSuccessListener(aVoid -> {
-                        Log.d("PokemonDetailsFragment", "Pokémon eliminado de Firestore: " + pokemon.getName());
-                        Fragment parentFragment = requireActivity().getSupportFragmentManager()
-                                .findFragmentById(R.id.nav_host_fragment);
-                        if (parentFragment != null && parentFragment.getChildFragmentManager() != null) {
-                            List<Fragment> fragments = parentFragment.getChildFragmentManager().getFragments();
-                            for (Fragment fragment : fragments) {
-                                if (fragment instanceof nav_capturados) {
-                                    Log.d("PokemonDetailsFragment", "Fragmento nav_capturados encontrado.");
-                                    ((nav_capturados) fragment).removePokemonFromList(pokemon);
-                                    break;
-                                }
-                            }
-                        } else {
-                            Log.e("PokemonDetailsFragment", "Fragmento nav_capturados no encontrado.");
-                        }
-                        requireActivity().getSupportFragmentManager().popBackStack();
-                    })
-                    .addOnFailureListener(e -> {
-                        Log.e("PokemonDetailsFragment", "Error al eliminar Pokémon: " + e.getMessage());
-                    });
+            CapturadosOutbox.getInstance(requireContext()).enqueueRelease(pokemon);
+            Log.d("PokemonDetailsFragment", "Eliminación encolada: " + pokemon.getName());
+            Fragment parentFragment = requireActivity().getSupportFragmentManager()
+                    .findFragmentById(R.id.nav_host_fragment);
+            if (parentFragment != null && parentFragment.getChildFragmentManager() != null) {
+                List<Fragment> fragments = parentFragment.getChildFragmentManager().getFragments();
+                for (Fragment fragment : fragments) {
+                    if (fragment instanceof nav_capturados) {
+                        Log.d("PokemonDetailsFragment", "Fragmento nav_capturados encontrado.");
+                        ((nav_capturados) fragment).removePokemonFromList(pokemon);
+                        break;
+                    }
+                }
+            } else {
+                Log.e("PokemonDetailsFragment", "Fragmento nav_capturados no encontrado.");
+            }
+            requireActivity().getSupportFragmentManager().popBackStack();
+        }
+    }
+
+    /**
+     * Pide la especie y la cadena evolutiva cuando su sección aparece en pantalla.
+     *
+     * @param pokemon Pokémon mostrado.
+     */
+    private void loadVisibleSections(PokemonDetails pokemon) {
+        if (binding == null || pokemon == null || pokemon.getNumber() <= 0) {
+            return;
+        }
+        int speciesId = pokemon.getNumber();
+        Rect visible = new Rect();
+        if (!speciesRequested && binding.speciesSection.getLocalVisibleRect(visible)) {
+            speciesRequested = true;
+            SpeciesRepository.getInstance().loadSpecies(speciesId, new SpeciesRepository.OnResourceLoadedListener<PokemonSpecies>() {
+                @Override
+                public void onLoaded(PokemonSpecies species) {
+                    showSpecies(species);
+                }
+
+                @Override
+                public void onError(String message) {
+                    if (binding != null) {
+                        binding.genusTextDetail.setText(R.string.dato_no_disponible);
+                    }
+                }
+            });
+        }
+        if (!evolutionRequested && binding.evolutionSection.getLocalVisibleRect(visible)) {
+            evolutionRequested = true;
+            SpeciesRepository.getInstance().loadEvolutionChain(speciesId, new SpeciesRepository.OnResourceLoadedListener<EvolutionChain>() {
+                @Override
+                public void onLoaded(EvolutionChain chain) {
+                    showEvolutionChain(chain);
+                }
+
+                @Override
+                public void onError(String message) {
+                    if (binding != null) {
+                        binding.evolutionTextDetail.setText(R.string.dato_no_disponible);
+                    }
+                }
+            });
+        }
+        if (!matchupRequested && binding.matchupSection.getLocalVisibleRect(visible)) {
+            matchupRequested = true;
+            TypeChartRepository.getInstance(requireContext()).load(new SpeciesRepository.OnResourceLoadedListener<TypeChart>() {
+                @Override
+                public void onLoaded(TypeChart chart) {
+                    showMatchup(chart, pokemon);
+                }
+
+                @Override
+                public void onError(String message) {
+                    if (binding != null) {
+                        binding.weaknessesTextDetail.setText(R.string.dato_no_disponible);
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Muestra las debilidades y resistencias del Pokémon y los mejores rivales de entre los
+     * capturados, calculados con la tabla de tipos sin ninguna petición a la red.
+     *
+     * @param chart Tabla de tipos.
+     * @param pokemon Pokémon mostrado.
+     */
+    private void showMatchup(TypeChart chart, PokemonDetails pokemon) {
+        if (binding == null) {
+            return;
+        }
+        int[] types = TypeChart.typeCodesOf(pokemon);
+        if (types.length == 0) {
+            binding.weaknessesTextDetail.setText(R.string.dato_no_disponible);
+            return;
+        }
+        TypeChart.Matchup matchup = chart.matchupOf(types);
+        binding.weaknessesTextDetail.setText(getString(R.string.debilidades) + formatTypes(chart, types, matchup.weaknesses));
+        String resistances = getString(R.string.resistencias) + formatTypes(chart, types, matchup.resistances);
+        if (!matchup.immunities.isEmpty()) {
+            resistances += "\n" + getString(R.string.inmunidades) + formatTypes(chart, types, matchup.immunities);
+        }
+        binding.resistancesTextDetail.setText(resistances);
+
+        // Rivales de entre los capturados, sin contar el propio Pokémon.
+        List<PokemonDetails> captured = CapturedSync.getInstance(requireContext()).getCached();
+        List<PokemonDetails> candidates = new ArrayList<>();
+        if (captured != null) {
+            for (PokemonDetails candidate : captured) {
+                if (!candidate.getId().equals(pokemon.getId())) {
+                    candidates.add(candidate);
+                }
+            }
+        }
+        long start = System.nanoTime();
+        int[][] candidateTypes = new int[candidates.size()][];
+        for (int i = 0; i < candidateTypes.length; i++) {
+            candidateTypes[i] = TypeChart.typeCodesOf(candidates.get(i));
+        }
+        int[] best = chart.rankCounters(types, candidateTypes, MAX_COUNTERS);
+        Log.d("PokemonDetailsFragment", "Rivales calculados entre " + candidates.size() + " capturados en "
+                + (System.nanoTime() - start) / 1000 + " µs");
+
+        if (best.length == 0) {
+            binding.countersTextDetail.setText(R.string.sin_rivales);
+            return;
+        }
+        StringBuilder counters = new StringBuilder(getString(R.string.mejores_rivales));
+        for (int i = 0; i < best.length; i++) {
+            if (i > 0) {
+                counters.append(", ");
+            }
+            counters.append(candidates.get(best[i]).getName());
+        }
+        binding.countersTextDetail.setText(counters.toString());
+    }
+
+    /**
+     * Formatea una lista de tipos de ataque con su multiplicador contra el Pokémon.
+     */
+    private String formatTypes(TypeChart chart, int[] defenseTypes, List<Integer> attackTypes) {
+        if (attackTypes.isEmpty()) {
+            return getString(R.string.ninguno);
+        }
+        StringBuilder text = new StringBuilder();
+        for (int attackType : attackTypes) {
+            if (text.length() > 0) {
+                text.append(", ");
+            }
+            float value = chart.multiplier(attackType, defenseTypes);
+            text.append(PokemonTypes.nameOf(attackType));
+            if (value != 0f) {
+                text.append(" x").append(value == (int) value ? String.valueOf((int) value) : String.valueOf(value));
+            }
+        }
+        return text.toString();
+    }
+
+    /**
+     * Muestra los datos de la especie en el idioma de la aplicación.
+     *
+     * @param species Especie del Pokémon.
+     */
+    private void showSpecies(PokemonSpecies species) {
+        if (binding == null) {
+            return;
+        }
+        // La especie trae los textos de todos los idiomas: se guardan para las listas.
+        LocalizedSpeciesCache.getInstance(requireContext()).remember(species);
+
+        String language = getResources().getConfiguration().getLocales().get(0).getLanguage();
+        String localizedName = species.getLocalizedName(language);
+        if (localizedName != null) {
+            binding.nameTextDetail.setText(localizedName);
+        }
+        String genus = species.getGenus(language);
+        String flavorText = species.getFlavorText(language);
+        binding.genusTextDetail.setText(genus != null ? genus : getString(R.string.dato_no_disponible));
+        binding.flavorTextDetail.setText(flavorText != null ? flavorText : "");
+        binding.habitatTextDetail.setText(getString(R.string.habitat) + (species.getHabitat() != null
+                ? species.getHabitat().getName() : getString(R.string.dato_no_disponible)));
+        binding.captureRateTextDetail.setText(getString(R.string.capture_rate) + species.getCaptureRate());
+    }
+
+    /**
+     * Muestra la cadena evolutiva por etapas, separando las evoluciones alternativas con "/".
+     *
+     * @param chain Cadena evolutiva del Pokémon.
+     */
+    private void showEvolutionChain(EvolutionChain chain) {
+        if (binding == null) {
+            return;
+        }
+        List<List<PokemonSpecies.NamedResource>> stages = chain.getStages();
+        if (stages.size() <= 1) {
+            binding.evolutionTextDetail.setText(R.string.sin_evoluciones);
+            return;
+        }
+        StringBuilder text = new StringBuilder();
+        for (List<PokemonSpecies.NamedResource> stage : stages) {
+            if (text.length() > 0) {
+                text.append(" → ");
+            }
+            for (int i = 0; i < stage.size(); i++) {
+                if (i > 0) {
+                    text.append(" / ");
+                }
+                text.append(stage.get(i).getName());
+            }
+        }
+        binding.evolutionTextDetail.setText(text.toString());
+    }
+
+    /**
+     * Decodifica el Pokémon recibido en los argumentos.
+     *
+     * @return El Pokémon, o null si no hay argumentos o no se puede decodificar.
+     */
+    private PokemonDetails readPokemonArgument() {
+        byte[] encoded = getArguments() != null ? getArguments().getByteArray("pokemonDetails") : null;
+        if (encoded == null) {
+            return null;
+        }
+        try {
+            return PokemonCodec.decode(encoded);
+        } catch (IOException e) {
+            Log.e("PokemonDetailsFragment", "No se pudo leer el Pokémon de los argumentos", e);
+            return null;
         }
     }
 
@@ -153,41 +378,41 @@ public class PokemonDetailsFragment extends Fragment {
         // Crear una instancia del servicio de la API.
         PokemonApiService apiService = RetrofitClient.getRetrofitInstance().create(PokemonApiService.class);
 
+        // Almacén y usuario, obtenidos antes de la llamada asíncrona.
+        CapturedStore capturedStore = CapturedStoreProvider.get(requireContext());
+        FirebaseUser user = FirebaseAuth.getInstance().getCurrentUser();
+
         // Llamada a la API para obtener detalles del Pokémon.
-        apiService.getPokemonDetails(pokemon.getId()).enqueue(new Callback<PokemonDetails>() {
-            @Override
-            public void onResponse(Call<PokemonDetails> call, Response<PokemonDetails> response) {
-                if (response.isSuccessful() && response.body() != null) {
-                    // Actualizar el Pokémon con los detalles obtenidos.
-                    PokemonDetails details = response.body();
-                    pokemon.setWeight(details.getWeight());
-                    pokemon.setHeight(details.getHeight());
-                    pokemon.setTypes(details.getTypes());
-                    pokemon.setId(details.getId());
-                    pokemon.setFullyLoaded(true);
-
-                    // Actualizar la UI con los nuevos datos.
-                    updateDetails(pokemon);
-
-                    // Guardar los detalles actualizados en Firebase.
-                    FirebaseFirestore.getInstance()
-                            .collection("capturados")
-                            .document(pokemon.getId())
-                            .set(pokemon)
-                            .addOnSuccessListener(aVoid -> Log.d("PokemonDetailsFragment", "Detalles actualizados en Firestore: " + pokemon.getName()))
-                            .addOnFailureListener(e -> Log.e("PokemonDetailsFragment", "Error al actualizar los detalles en Firestore: " + e.getMessage()));
-
-                    Log.d("PokemonDetailsFragment", "Detalles cargados correctamente para: " + pokemon.getName());
-                } else {
-                    Log.e("PokemonDetailsFragment", "Error en la respuesta: " + response.message());
-                }
+        PipelineTrace.beginAsync("fetch:details-screen", pokemon.getNumber());
+        apiService.getPokemonDetails(pokemon.getId()).whenCompleteAsync((details, error) -> {
+            PipelineTrace.endAsync("fetch:details-screen", pokemon.getNumber());
+            if (error != null) {
+                Log.e("PokemonDetailsFragment", "Error en la solicitud de detalles: " + Futures.unwrap(error).getMessage());
+                return;
             }
+            // El Pokémon es inmutable: se crea uno nuevo con los detalles obtenidos.
+            PokemonDetails loaded = pokemon.withDetails(details);
 
-            @Override
-            public void onFailure(Call<PokemonDetails> call, Throwable t) {
-                Log.e("PokemonDetailsFragment", "Error en la solicitud de detalles: " + t.getMessage());
+            // Actualizar la UI con los nuevos datos.
+            updateDetails(loaded);
+
+            // Guardar solo los campos nuevos en Firebase, sin reescribir el documento.
+            if (user != null) {
+                capturedStore.updateDetails(user.getUid(), loaded, new CapturedStore.Callback<Void>() {
+                    @Override
+                    public void onSuccess(Void result) {
+                        Log.d("PokemonDetailsFragment", "Detalles actualizados en Firestore: " + loaded.getName());
+                    }
+
+                    @Override
+                    public void onError(Exception e) {
+                        Log.e("PokemonDetailsFragment", "Error al actualizar los detalles en Firestore: " + e.getMessage());
+                    }
+                });
             }
-        });
+
+            Log.d("PokemonDetailsFragment", "Detalles cargados correctamente para: " + pokemon.getName());
+        }, Futures.MAIN);
     }
 
     /**
@@ -201,29 +426,26 @@ public class PokemonDetailsFragment extends Fragment {
         }
 
         // Actualizar nombre.
-        binding.nameTextDetail.setText(pokemon.getName() != null ? pokemon.getName() : getString(R.string.dato_no_disponible));
+        String name = LocalizedSpeciesCache.getInstance(requireContext()).getName(pokemon);
+        binding.nameTextDetail.setText(name != null ? name : getString(R.string.dato_no_disponible));
 
         // Actualizar tipo(s).
-        StringBuilder types = new StringBuilder();
-        if (pokemon.getTypes() != null && !pokemon.getTypes().isEmpty()) {
-            for (PokemonDetails.Type type : pokemon.getTypes()) {
-                types.append(type.getType().getName()).append(" ");
-            }
-            binding.typeTextDetail.setText(getString(R.string.tipo) + types.toString().trim());
+        if (pokemon.getTypeCount() > 0) {
+            binding.typeTextDetail.setText(getString(R.string.tipo) + String.join(" ", pokemon.getTypeNames()));
         } else {
             binding.typeTextDetail.setText(getString(R.string.tipo) + getString(R.string.dato_no_disponible));
         }
 
         // Actualizar peso.
         if (pokemon.getWeight() > 0) {
-            binding.weightTextDetail.setText(getString(R.string.peso) + pokemon.getWeight() + " kg");
+            binding.weightTextDetail.setText(getString(R.string.peso) + pokemon.getWeightKg() + " kg");
         } else {
             binding.weightTextDetail.setText(getString(R.string.peso) + getString(R.string.dato_no_disponible));
         }
 
         // Actualizar altura.
         if (pokemon.getHeight() > 0) {
-            binding.heightTextDetail.setText(getString(R.string.altura) + pokemon.getHeight() + " m");
+            binding.heightTextDetail.setText(getString(R.string.altura) + pokemon.getHeightMeters() + " m");
         } else {
             binding.heightTextDetail.setText(getString(R.string.altura) + getString(R.string.dato_no_disponible));
         }
@@ -231,7 +453,7 @@ public class PokemonDetailsFragment extends Fragment {
         // Actualizar imagen.
         if (pokemon.getSpriteUrl() != null && !pokemon.getSpriteUrl().isEmpty()) {
             Glide.with(requireContext())
-                    .load(pokemon.getSpriteUrl())
+                    .load(LoadingPolicy.getInstance(requireContext()).getImageUrl(pokemon.getSpriteUrl(), true))
                     .into(binding.imageCharacterDetail);
         }
     }
@@ -0,0 +1,27 @@
+package com.lopezgagonuria_pmdm.u3;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.RecyclerView;
+import com.lopezgagonuria_pmdm.u3.databinding.ItemPokemonGridBinding;
+
+/**
+ * ViewHolder de la celda de la cuadrícula. Lo usan tanto {@link PokemonAdapter} como
+ * {@link CapturadosAdapter}, de modo que las celdas de una lista se pueden reutilizar en la
+ * otra a través del {@link PokemonViewPool} compartido. Cada adaptador debe fijar en el
+ * enlace todo lo que muestra, porque la celda puede venir del otro.
+ */
+public class PokemonGridViewHolder extends RecyclerView.ViewHolder {
+
+    // Binding para acceder a las vistas del diseño.
+    final ItemPokemonGridBinding binding;
+
+    /**
+     * Constructor del ViewHolder.
+     *
+     * @param binding Binding del diseño.
+     */
+    public PokemonGridViewHolder(@NonNull ItemPokemonGridBinding binding) {
+        super(binding.getRoot());
+        this.binding = binding;
+    }
+}
@@ -1,10 +1,6 @@
 package com.lopezgagonuria_pmdm.u3;
 
-import android.util.Log;
 import java.util.List;
-import retrofit2.Call;
-import retrofit2.Callback;
-import retrofit2.Response;
 
 /**
  * Clase que representa la respuesta obtenida de la API de Pokémon.
@@ -81,63 +77,14 @@ public class PokemonResponse {
         }
 
         /**
-         * Convierte el resultado en un objeto PokemonDetails.
-         * Genera información básica, como el ID y la URL del sprite.
+         * Convierte el resultado en un objeto PokemonDetails sin pedir sus detalles a la API.
          *
-         * @return Objeto PokemonDetails con datos iniciales.
+         * @return Objeto PokemonDetails con el ID y el nombre.
          */
-        public PokemonDetails toPokemonDetails() {
+        public PokemonDetails toBasicPokemonDetails() {
             // Extrae el ID del Pokémon desde la URL.
             String[] parts = url.split("/");
-            String id = parts[parts.length - 1];
-
-            // Genera la URL del sprite usando el ID.
-            String spriteUrl = "https://raw.githubusercontent.com/PokeAPI/sprites/master/sprites/pokemon/" + id + ".png";
-
-            // Crea un objeto básico de PokemonDetails.
-            PokemonDetails pokemon = new PokemonDetails(
-                    id,
-                    name,
-                    0, // Peso predeterminado.
-                    0, // Altura predeterminada.
-                    spriteUrl, // URL del sprite generado.
-                    url,
-                    null, // Tipos no disponibles inicialmente.
-                    false, // No capturado inicialmente.
-                    false  // No clicado inicialmente.
-            );
-
-            // Realiza una solicitud secundaria para obtener los detalles del Pokémon (incluidos los tipos).
-            fetchPokemonDetails(id, pokemon);
-            return pokemon;
-        }
-
-        /**
-         * Realiza una solicitud a la API para obtener los detalles completos de un Pokémon.
-         *
-         * @param pokemonId ID del Pokémon para realizar la solicitud.
-         * @param pokemon Objeto PokemonDetails a actualizar con los datos obtenidos.
-         */
-        private void fetchPokemonDetails(String pokemonId, PokemonDetails pokemon) {
-            PokemonApiService apiService = RetrofitClient.getRetrofitInstance().create(PokemonApiService.class);
-            apiService.getPokemonDetails(pokemonId).enqueue(new Callback<PokemonDetails>() {
-                @Override
-                public void onResponse(Call<PokemonDetails> call, Response<PokemonDetails> response) {
-                    if (response.isSuccessful() && response.body() != null) {
-                        PokemonDetails details = response.body();
-
-                        // Actualiza los tipos del objeto PokemonDetails original.
-                        pokemon.setTypes(details.getTypes());
-                    } else {
-                        Log.e("PokemonResponse", "Error al obtener detalles: " + response.message());
-                    }
-                }
-
-                @Override
-                public void onFailure(Call<PokemonDetails> call, Throwable t) {
-                    Log.e("PokemonResponse", "Error al realizar la solicitud: " + t.getMessage());
-                }
-            });
+            return PokemonDetails.basic(PokemonDetails.parseId(parts[parts.length - 1]), name);
         }
     }
 }
\ No newline at end of file
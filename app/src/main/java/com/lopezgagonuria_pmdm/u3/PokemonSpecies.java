@@ -0,0 +1,217 @@
+package com.lopezgagonuria_pmdm.u3;
+
+import com.google.gson.annotations.SerializedName;
+import java.util.List;
+
+/**
+ * Clase que representa la especie de un Pokémon obtenida de la API (pokemon-species/{id}).
+ * Solo se leen los campos que se muestran en la pantalla de detalles.
+ */
+public class PokemonSpecies {
+
+    // ID de la especie (coincide con el del Pokémon en su forma por defecto).
+    private int id;
+
+    // Nombre de la especie.
+    private String name;
+
+    // Probabilidad base de captura (0-255).
+    @SerializedName("capture_rate")
+    private int captureRate;
+
+    // Hábitat de la especie, si lo tiene.
+    private NamedResource habitat;
+
+    // Cadena evolutiva a la que pertenece la especie.
+    @SerializedName("evolution_chain")
+    private NamedResource evolutionChain;
+
+    // Nombre de la especie en cada idioma.
+    private List<LocalizedName> names;
+
+    // Categoría de la especie en cada idioma (por ejemplo, "Seed Pokémon").
+    private List<Genus> genera;
+
+    // Descripciones de la Pokédex en cada idioma y versión del juego.
+    @SerializedName("flavor_text_entries")
+    private List<FlavorText> flavorTextEntries;
+
+    /**
+     * Clase interna que representa un recurso de la API con nombre y URL.
+     */
+    public static class NamedResource {
+
+        // Nombre del recurso.
+        private String name;
+
+        // URL del recurso.
+        private String url;
+
+        public String getName() {
+            return name;
+        }
+
+        public String getUrl() {
+            return url;
+        }
+
+        /**
+         * Obtiene el ID del recurso a partir de su URL (por ejemplo, ".../evolution-chain/1/").
+         *
+         * @return ID del recurso, o -1 si la URL no lo contiene.
+         */
+        public int getId() {
+            if (url == null) {
+                return -1;
+            }
+            String[] parts = url.split("/");
+            try {
+                return Integer.parseInt(parts[parts.length - 1]);
+            } catch (NumberFormatException e) {
+                return -1;
+            }
+        }
+    }
+
+    /**
+     * Clase interna que representa el nombre de la especie en un idioma.
+     */
+    public static class LocalizedName {
+
+        private String name;
+
+        private NamedResource language;
+
+        public String getName() {
+            return name;
+        }
+
+        public NamedResource getLanguage() {
+            return language;
+        }
+    }
+
+    /**
+     * Clase interna que representa la categoría de la especie en un idioma.
+     */
+    public static class Genus {
+
+        private String genus;
+
+        private NamedResource language;
+
+        public String getGenus() {
+            return genus;
+        }
+
+        public NamedResource getLanguage() {
+            return language;
+        }
+    }
+
+    /**
+     * Clase interna que representa una descripción de la Pokédex en un idioma.
+     */
+    public static class FlavorText {
+
+        @SerializedName("flavor_text")
+        private String flavorText;
+
+        private NamedResource language;
+
+        public String getFlavorText() {
+            return flavorText;
+        }
+
+        public NamedResource getLanguage() {
+            return language;
+        }
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getCaptureRate() {
+        return captureRate;
+    }
+
+    public NamedResource getHabitat() {
+        return habitat;
+    }
+
+    public NamedResource getEvolutionChain() {
+        return evolutionChain;
+    }
+
+    /**
+     * Obtiene el nombre de la especie en un idioma.
+     *
+     * @param language Código de idioma de la API (por ejemplo, "es" o "en").
+     * @return Nombre traducido, o null si la API no lo tiene en ese idioma.
+     */
+    public String getLocalizedName(String language) {
+        if (names == null) {
+            return null;
+        }
+        for (LocalizedName localizedName : names) {
+            if (localizedName.getLanguage() != null && language.equals(localizedName.getLanguage().getName())) {
+                return localizedName.getName();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Obtiene la categoría de la especie en un idioma, o en inglés si no existe en ese idioma.
+     *
+     * @param language Código de idioma de la API (por ejemplo, "es" o "en").
+     * @return Categoría de la especie, o null si no hay ninguna.
+     */
+    public String getGenus(String language) {
+        if (genera == null) {
+            return null;
+        }
+        String fallback = null;
+        for (Genus genus : genera) {
+            String entryLanguage = genus.getLanguage() != null ? genus.getLanguage().getName() : null;
+            if (language.equals(entryLanguage)) {
+                return genus.getGenus();
+            } else if ("en".equals(entryLanguage) && fallback == null) {
+                fallback = genus.getGenus();
+            }
+        }
+        return fallback;
+    }
+
+    /**
+     * Obtiene la primera descripción de la Pokédex en un idioma, o en inglés si no existe en
+     * ese idioma. Se eliminan los saltos de línea y de página que incluye la API.
+     *
+     * @param language Código de idioma de la API (por ejemplo, "es" o "en").
+     * @return Descripción de la especie, o null si no hay ninguna.
+     */
+    public String getFlavorText(String language) {
+        if (flavorTextEntries == null) {
+            return null;
+        }
+        String fallback = null;
+        for (FlavorText entry : flavorTextEntries) {
+            String entryLanguage = entry.getLanguage() != null ? entry.getLanguage().getName() : null;
+            if (language.equals(entryLanguage)) {
+                return clean(entry.getFlavorText());
+            } else if ("en".equals(entryLanguage) && fallback == null) {
+                fallback = clean(entry.getFlavorText());
+            }
+        }
+        return fallback;
+    }
+
+    private static String clean(String text) {
+        return text != null ? text.replaceAll("[\\n\\f\\r]+", " ").trim() : null;
+    }
+}
@@ -0,0 +1,60 @@
+package com.lopezgagonuria_pmdm.u3;
+
+import com.google.gson.annotations.SerializedName;
+import java.util.List;
+
+/**
+ * Clase que representa un tipo obtenido de la API (type/{id}). Solo se leen las relaciones de
+ * daño ofensivas, a partir de las cuales se construye la tabla de tipos completa.
+ */
+public class PokemonTypeDetails {
+
+    // ID del tipo en la API (código de PokemonTypes + 1).
+    private int id;
+
+    // Nombre del tipo.
+    private String name;
+
+    // Relaciones de daño del tipo con los demás.
+    @SerializedName("damage_relations")
+    private DamageRelations damageRelations;
+
+    /**
+     * Clase interna con los tipos a los que este tipo hace daño doble, la mitad o ninguno.
+     */
+    public static class DamageRelations {
+
+        @SerializedName("double_damage_to")
+        private List<PokemonSpecies.NamedResource> doubleDamageTo;
+
+        @SerializedName("half_damage_to")
+        private List<PokemonSpecies.NamedResource> halfDamageTo;
+
+        @SerializedName("no_damage_to")
+        private List<PokemonSpecies.NamedResource> noDamageTo;
+
+        public List<PokemonSpecies.NamedResource> getDoubleDamageTo() {
+            return doubleDamageTo;
+        }
+
+        public List<PokemonSpecies.NamedResource> getHalfDamageTo() {
+            return halfDamageTo;
+        }
+
+        public List<PokemonSpecies.NamedResource> getNoDamageTo() {
+            return noDamageTo;
+        }
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public DamageRelations getDamageRelations() {
+        return damageRelations;
+    }
+}
@@ -0,0 +1,52 @@
+package com.lopezgagonuria_pmdm.u3;
+
+/**
+ * Códigos numéricos de los 18 tipos de Pokémon, en el orden de sus IDs en la PokeAPI.
+ * Los formatos binarios guardan el código de un byte en lugar del nombre.
+ */
+public final class PokemonTypes {
+
+    // Código que indica que no hay tipo (por ejemplo, el segundo tipo de un Pokémon de un solo tipo).
+    public static final int NONE = 0xFF;
+
+    // Nombres de los tipos; el índice es el código.
+    private static final String[] NAMES = {
+            "normal", "fighting", "flying", "poison", "ground", "rock",
+            "bug", "ghost", "steel", "fire", "water", "grass",
+            "electric", "psychic", "ice", "dragon", "dark", "fairy"
+    };
+
+    // Número de tipos.
+    public static final int COUNT = NAMES.length;
+
+    private PokemonTypes() {
+        // Clase de utilidad, no se instancia.
+    }
+
+    /**
+     * Obtiene el código de un tipo a partir de su nombre.
+     *
+     * @param name Nombre del tipo en inglés, como lo devuelve la API.
+     * @return Código del tipo, o {@link #NONE} si el nombre es nulo o desconocido.
+     */
+    public static int codeOf(String name) {
+        if (name != null) {
+            for (int code = 0; code < NAMES.length; code++) {
+                if (NAMES[code].equalsIgnoreCase(name)) {
+                    return code;
+                }
+            }
+        }
+        return NONE;
+    }
+
+    /**
+     * Obtiene el nombre de un tipo a partir de su código.
+     *
+     * @param code Código del tipo.
+     * @return Nombre del tipo, o null si el código no es válido.
+     */
+    public static String nameOf(int code) {
+        return code >= 0 && code < NAMES.length ? NAMES[code] : null;
+    }
+}
@@ -0,0 +1,201 @@
+package com.lopezgagonuria_pmdm.u3;
+
+import android.app.Activity;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import androidx.annotation.LayoutRes;
+import androidx.asynclayoutinflater.view.AsyncLayoutInflater;
+import androidx.preference.PreferenceManager;
+import androidx.recyclerview.widget.GridLayoutManager;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Vistas compartidas por las listas de la Pokédex y de capturados de una actividad: un único
+ * RecycledViewPool (las celdas de la cuadrícula sirven a las dos listas) y las filas
+ * infladas por adelantado fuera del hilo principal, para que el primer desplazamiento rápido
+ * no tenga que inflar ninguna. Solo se debe usar desde el hilo principal.
+ */
+public final class PokemonViewPool {
+
+    // Preferencia con el modo de la lista: "list" o "grid".
+    static final String PREF_LIST_LAYOUT = "list_layout";
+
+    // Ancho mínimo de una celda de la cuadrícula; el número de columnas sale del ancho de pantalla.
+    private static final int GRID_CELL_MIN_WIDTH_DP = 150;
+
+    // Alto aproximado de una fila y de una celda, para calcular cuántas llenan una pantalla.
+    private static final int LIST_ROW_HEIGHT_DP = 130;
+    private static final int GRID_CELL_HEIGHT_DP = 180;
+
+    // Pantallas de filas que se inflan por adelantado y que se guardan en el pool.
+    private static final int PREINFLATED_SCREENS = 2;
+
+    private final Context context;
+    private final RecyclerView.RecycledViewPool recycledViewPool = new RecyclerView.RecycledViewPool();
+    private final AsyncLayoutInflater asyncInflater;
+
+    // Padre ficticio para que las vistas infladas por adelantado tengan sus LayoutParams.
+    private final RecyclerView inflateParent;
+
+    // Vistas ya infladas y todavía sin usar, por diseño.
+    private final Map<Integer, ArrayDeque<View>> preinflated = new HashMap<>();
+
+    // Diseños pendientes de inflar por adelantado, en orden.
+    private final ArrayDeque<Integer> pendingInflations = new ArrayDeque<>();
+
+    // Indica si la actividad se ha destruido y ya no se deben guardar vistas.
+    private boolean released;
+
+    /**
+     * Crea el pool de una actividad. Las vistas se inflan con el contexto de la actividad
+     * para que usen su tema.
+     *
+     * @param activity Actividad que contiene las listas.
+     */
+    public PokemonViewPool(Activity activity) {
+        this.context = activity;
+        this.asyncInflater = new AsyncLayoutInflater(activity);
+        this.inflateParent = new RecyclerView(activity);
+    }
+
+    /**
+     * Indica si el usuario ha elegido la cuadrícula.
+     *
+     * @param context Contexto.
+     * @return true para la cuadrícula, false para la lista.
+     */
+    public static boolean isGrid(Context context) {
+        return "grid".equals(PreferenceManager.getDefaultSharedPreferences(context).getString(PREF_LIST_LAYOUT, "list"));
+    }
+
+    /**
+     * Calcula el número de columnas de la cuadrícula según el ancho de la pantalla.
+     *
+     * @param context Contexto.
+     * @return Número de columnas (al menos 2).
+     */
+    public static int getSpanCount(Context context) {
+        Configuration configuration = context.getResources().getConfiguration();
+        return Math.max(2, configuration.screenWidthDp / GRID_CELL_MIN_WIDTH_DP);
+    }
+
+    /**
+     * Configura una lista con el modo elegido y el pool compartido. Al destruirse la vista de
+     * un fragmento sus filas vuelven al pool, listas para la otra pestaña.
+     *
+     * @param recyclerView Lista a configurar.
+     * @param grid true para la cuadrícula.
+     */
+    public void setUp(RecyclerView recyclerView, boolean grid) {
+        LinearLayoutManager layoutManager = grid
+                ? new GridLayoutManager(recyclerView.getContext(), getSpanCount(recyclerView.getContext()))
+                : new LinearLayoutManager(recyclerView.getContext());
+        layoutManager.setRecycleChildrenOnDetach(true);
+        recyclerView.setLayoutManager(layoutManager);
+        recyclerView.setRecycledViewPool(recycledViewPool);
+        recyclerView.setHasFixedSize(true);
+        // Sitio en el pool para las filas de las primeras pantallas, aunque se cambie de modo.
+        if (grid) {
+            recycledViewPool.setMaxRecycledViews(R.layout.item_pokemon_grid, PREINFLATED_SCREENS * itemsPerScreen(true));
+        } else {
+            recycledViewPool.setMaxRecycledViews(R.layout.item_pokemon, PREINFLATED_SCREENS * itemsPerScreen(false));
+            recycledViewPool.setMaxRecycledViews(R.layout.item_capturado, PREINFLATED_SCREENS * itemsPerScreen(false));
+        }
+    }
+
+    /**
+     * Infla por adelantado, fuera del hilo principal, las filas que llenan las primeras
+     * pantallas en el modo elegido, y reserva sitio en el pool para todas ellas.
+     */
+    public void preInflate() {
+        if (isGrid(context)) {
+            // Las celdas de la cuadrícula sirven a las dos listas.
+            preInflate(R.layout.item_pokemon_grid, PREINFLATED_SCREENS * itemsPerScreen(true));
+        } else {
+            preInflate(R.layout.item_pokemon, PREINFLATED_SCREENS * itemsPerScreen(false));
+            preInflate(R.layout.item_capturado, itemsPerScreen(false));
+        }
+    }
+
+    /**
+     * Calcula cuántas filas o celdas caben en una pantalla, redondeando hacia arriba.
+     */
+    private int itemsPerScreen(boolean grid) {
+        int screenHeightDp = context.getResources().getConfiguration().screenHeightDp;
+        if (grid) {
+            return (screenHeightDp / GRID_CELL_HEIGHT_DP + 1) * getSpanCount(context);
+        }
+        return screenHeightDp / LIST_ROW_HEIGHT_DP + 1;
+    }
+
+    private void preInflate(@LayoutRes int layoutRes, int count) {
+        recycledViewPool.setMaxRecycledViews(layoutRes, count);
+        boolean idle = pendingInflations.isEmpty();
+        for (int i = 0; i < count; i++) {
+            pendingInflations.add(layoutRes);
+        }
+        if (idle) {
+            inflateNext();
+        }
+    }
+
+    /**
+     * Pide la siguiente vista pendiente. Se piden de una en una porque la cola del inflador
+     * es pequeña y, llena, bloquearía el hilo principal.
+     */
+    private void inflateNext() {
+        Integer layoutRes = pendingInflations.peek();
+        if (layoutRes == null || released) {
+            return;
+        }
+        asyncInflater.inflate(layoutRes, inflateParent, (view, resid, parent) -> {
+            pendingInflations.poll();
+            if (!released) {
+                queue(resid).add(view);
+                inflateNext();
+            }
+        });
+    }
+
+    /**
+     * Obtiene una vista del diseño indicado: una de las infladas por adelantado si queda
+     * alguna o, si no, una nueva.
+     *
+     * @param layoutRes Diseño de la fila (también es el tipo de vista del adaptador).
+     * @param parent Lista en la que se mostrará.
+     * @return Vista sin enlazar.
+     */
+    public View obtain(@LayoutRes int layoutRes, ViewGroup parent) {
+        View view = queue(layoutRes).poll();
+        if (view != null) {
+            return view;
+        }
+        return LayoutInflater.from(parent.getContext()).inflate(layoutRes, parent, false);
+    }
+
+    /**
+     * Libera las vistas guardadas al destruir la actividad.
+     */
+    public void release() {
+        released = true;
+        pendingInflations.clear();
+        preinflated.clear();
+        recycledViewPool.clear();
+    }
+
+    private ArrayDeque<View> queue(int layoutRes) {
+        ArrayDeque<View> queue = preinflated.get(layoutRes);
+        if (queue == null) {
+            queue = new ArrayDeque<>();
+            preinflated.put(layoutRes, queue);
+        }
+        return queue;
+    }
+}
@@ -1,6 +1,13 @@
 package com.lopezgagonuria_pmdm.u3;
 
 //Primero, necesitamos un cliente de Retrofit para realizar las peticiones.
+import androidx.annotation.VisibleForTesting;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import okhttp3.OkHttpClient;
+import okhttp3.RequestBody;
+import okhttp3.ResponseBody;
+import retrofit2.Converter;
 import retrofit2.Retrofit;
 import retrofit2.converter.gson.GsonConverterFactory;
 
@@ -13,23 +20,107 @@ public class RetrofitClient {
     // Instancia singleton de Retrofit.
     private static Retrofit retrofit;
 
+    // Cliente HTTP compartido, para reutilizar las conexiones ya abiertas con la API.
+    private static OkHttpClient httpClient;
+
     // URL base de la API de Pokémon.
-    private static final String BASE_URL = "https://pokeapi.co/api/v2/";
+    static final String BASE_URL = "https://pokeapi.co/api/v2/";
+
+    // URL base a la que se hacen las peticiones; solo cambia en las pruebas de carga.
+    private static String baseUrl = BASE_URL;
 
     /**
      * Proporciona una instancia singleton de Retrofit para realizar solicitudes HTTP.
+     * Es sincronizado porque la instancia se crea en segundo plano durante el arranque.
      *
      * @return Instancia de Retrofit inicializada con la URL base y un convertidor JSON.
      */
-    public static Retrofit getRetrofitInstance() {
+    public static synchronized Retrofit getRetrofitInstance() {
         if (retrofit == null) {
-            // Configura Retrofit con la URL base y un convertidor JSON.
+            // Convertidor de JSON a objetos; en debug cada conversión es una sección de traza.
+            Converter.Factory converterFactory = GsonConverterFactory.create();
+            if (PipelineTrace.ENABLED) {
+                converterFactory = new TracedConverterFactory(converterFactory);
+            }
+            // Configura Retrofit con la URL base y el convertidor JSON.
             retrofit = new Retrofit.Builder()
-                    .baseUrl(BASE_URL) // URL base de la API.
-                    .addConverterFactory(GsonConverterFactory.create()) // Convertidor de JSON a objetos.
+                    .baseUrl(baseUrl) // URL base de la API.
+                    .client(getHttpClient()) // Cliente HTTP compartido.
+                    .addConverterFactory(converterFactory)
+                    .addCallAdapterFactory(FutureCallAdapterFactory.create()) // Respuestas como CompletableFuture.
                     .build();
         }
         return retrofit;
     }
-}
 
+    /**
+     * Proporciona el cliente HTTP compartido por Retrofit y por el precalentamiento de conexiones.
+     *
+     * @return Cliente OkHttp compartido.
+     */
+    public static synchronized OkHttpClient getHttpClient() {
+        if (httpClient == null) {
+            httpClient = new OkHttpClient.Builder()
+                    // Mide el rendimiento de las respuestas para la política de carga.
+                    .addNetworkInterceptor(LoadingPolicy.throughputInterceptor())
+                    .build();
+        }
+        return httpClient;
+    }
+
+    /**
+     * Obtiene la URL base a la que se hacen las peticiones.
+     *
+     * @return URL base de la API.
+     */
+    public static synchronized String getBaseUrl() {
+        return baseUrl;
+    }
+
+    /**
+     * Cambia la URL base de las peticiones, por ejemplo a un servidor local que imita la API.
+     * Los servicios ya creados siguen usando la anterior.
+     *
+     * @param url Nueva URL base, terminada en "/".
+     */
+    @VisibleForTesting
+    static synchronized void setBaseUrl(String url) {
+        baseUrl = url;
+        retrofit = null;
+    }
+
+    /**
+     * Envuelve los convertidores de las respuestas en una sección "parse:" con el tipo
+     * convertido, para distinguir en la traza el tiempo de Gson del de la red.
+     */
+    private static final class TracedConverterFactory extends Converter.Factory {
+        private final Converter.Factory delegate;
+
+        TracedConverterFactory(Converter.Factory delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public Converter<ResponseBody, ?> responseBodyConverter(Type type, Annotation[] annotations, Retrofit retrofit) {
+            Converter<ResponseBody, ?> converter = delegate.responseBodyConverter(type, annotations, retrofit);
+            if (converter == null) {
+                return null;
+            }
+            String typeName = type instanceof Class ? ((Class<?>) type).getSimpleName() : type.toString();
+            return body -> {
+                PipelineTrace.begin("parse:json", typeName);
+                try {
+                    return converter.convert(body);
+                } finally {
+                    PipelineTrace.end();
+                }
+            };
+        }
+
+        @Override
+        public Converter<?, RequestBody> requestBodyConverter(Type type, Annotation[] parameterAnnotations,
+                                                              Annotation[] methodAnnotations, Retrofit retrofit) {
+            return delegate.requestBodyConverter(type, parameterAnnotations, methodAnnotations, retrofit);
+        }
+    }
+}
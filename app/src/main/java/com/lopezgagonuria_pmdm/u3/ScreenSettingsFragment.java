@@ -2,19 +2,28 @@ package com.lopezgagonuria_pmdm.u3;
 
 import android.content.Context;
 import android.content.Intent;
-import android.content.res.Configuration;
 import android.os.Bundle;
 import android.util.Log;
+import android.view.View;
 import android.widget.Toast;
 
+import androidx.activity.result.ActivityResultLauncher;
+import androidx.activity.result.contract.ActivityResultContracts;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.appcompat.app.AlertDialog;
+import androidx.appcompat.app.AppCompatDelegate;
+import androidx.core.os.LocaleListCompat;
 import androidx.preference.ListPreference;
 import androidx.preference.Preference;
 import androidx.preference.PreferenceFragmentCompat;
 import androidx.preference.SwitchPreferenceCompat;
+import androidx.work.Data;
+import androidx.work.WorkInfo;
+import androidx.work.WorkManager;
 import com.firebase.ui.auth.AuthUI;
 
-import java.util.Locale;
+import java.util.List;
 
 /**
  * Fragmento de configuración que permite al usuario personalizar diversas opciones
@@ -22,6 +31,22 @@ import java.util.Locale;
  */
 public class ScreenSettingsFragment extends PreferenceFragmentCompat {
 
+    // Selector del fichero en el que se exportan los capturados.
+    private final ActivityResultLauncher<String> exportLauncher = registerForActivityResult(
+            new ActivityResultContracts.CreateDocument("application/gzip"), uri -> {
+                if (uri != null) {
+                    CapturedTransferWorker.startExport(requireContext(), uri);
+                }
+            });
+
+    // Selector del fichero desde el que se importan los capturados.
+    private final ActivityResultLauncher<String[]> importLauncher = registerForActivityResult(
+            new ActivityResultContracts.OpenDocument(), uri -> {
+                if (uri != null) {
+                    CapturedTransferWorker.startImport(requireContext(), uri);
+                }
+            });
+
     /**
      * Método llamado para inicializar las preferencias desde un recurso XML.
      *
@@ -32,6 +57,16 @@ public class ScreenSettingsFragment extends PreferenceFragmentCompat {
     public void onCreatePreferences(Bundle savedInstanceState, String rootKey) {
 
         Log.d("ScreenSettingsFragment", "Fragment instanciado correctamente");
+        bindPreferences(rootKey);
+    }
+
+    /**
+     * Carga las preferencias desde el XML y configura cada una. Se vuelve a llamar al cambiar
+     * de idioma para mostrar los textos traducidos sin recrear la actividad.
+     *
+     * @param rootKey Clave raíz de las preferencias.
+     */
+    private void bindPreferences(String rootKey) {
         setPreferencesFromResource(R.xml.preference_screen, rootKey);
 
         // Configurar la preferencia "about".
@@ -45,6 +80,112 @@ public class ScreenSettingsFragment extends PreferenceFragmentCompat {
 
         // Configurar la preferencia de idioma.
         configureLanguagePreference();
+
+        // Configurar la preferencia del intervalo de sincronización.
+        configureSyncIntervalPreference();
+
+        // Configurar la exportación e importación de capturados.
+        configureTransferPreferences();
+    }
+
+    /**
+     * Muestra en las preferencias de copia de seguridad el progreso de la exportación y de
+     * la importación, que siguen en segundo plano aunque se salga de esta pantalla.
+     *
+     * @param view Vista del fragmento.
+     * @param savedInstanceState Estado guardado del fragmento.
+     */
+    @Override
+    public void onViewCreated(@NonNull View view, @Nullable Bundle savedInstanceState) {
+        super.onViewCreated(view, savedInstanceState);
+        WorkManager workManager = WorkManager.getInstance(requireContext());
+        workManager.getWorkInfosForUniqueWorkLiveData(CapturedTransferWorker.MODE_EXPORT)
+                .observe(getViewLifecycleOwner(), infos -> showTransferState(CapturedTransferWorker.MODE_EXPORT, infos));
+        workManager.getWorkInfosForUniqueWorkLiveData(CapturedTransferWorker.MODE_IMPORT)
+                .observe(getViewLifecycleOwner(), infos -> showTransferState(CapturedTransferWorker.MODE_IMPORT, infos));
+    }
+
+    /**
+     * Configura las preferencias que exportan los capturados a un fichero y los importan
+     * desde uno.
+     */
+    private void configureTransferPreferences() {
+        Preference exportPreference = findPreference("export_captured");
+        if (exportPreference != null) {
+            exportPreference.setOnPreferenceClickListener(preference -> {
+                exportLauncher.launch("capturados.jsonl.gz");
+                return true;
+            });
+        }
+        Preference importPreference = findPreference("import_captured");
+        if (importPreference != null) {
+            importPreference.setOnPreferenceClickListener(preference -> {
+                importLauncher.launch(new String[]{"application/gzip", "application/x-gzip", "application/octet-stream"});
+                return true;
+            });
+        }
+    }
+
+    /**
+     * Muestra en el resumen de la preferencia el estado del último trabajo de exportación o
+     * de importación.
+     *
+     * @param mode Modo del trabajo.
+     * @param infos Estado del trabajo único de ese modo.
+     */
+    private void showTransferState(String mode, List<WorkInfo> infos) {
+        boolean export = CapturedTransferWorker.MODE_EXPORT.equals(mode);
+        Preference preference = findPreference(export ? "export_captured" : "import_captured");
+        if (preference == null || infos == null || infos.isEmpty()) {
+            return;
+        }
+        WorkInfo info = infos.get(0);
+        switch (info.getState()) {
+            case ENQUEUED:
+            case BLOCKED:
+                preference.setSummary(R.string.transfer_waiting);
+                break;
+            case RUNNING: {
+                Data progress = info.getProgress();
+                long done = progress.getLong(CapturedTransferWorker.KEY_DONE, 0);
+                if (export) {
+                    long total = progress.getLong(CapturedTransferWorker.KEY_TOTAL, 0);
+                    preference.setSummary(getString(R.string.export_progress, (int) done, (int) total));
+                } else {
+                    long percent = Math.max(0, progress.getLong(CapturedTransferWorker.KEY_PERCENT, 0));
+                    preference.setSummary(getString(R.string.import_progress, (int) done, (int) percent));
+                }
+                break;
+            }
+            case SUCCEEDED: {
+                int done = (int) info.getOutputData().getLong(CapturedTransferWorker.KEY_DONE, 0);
+                preference.setSummary(getString(export ? R.string.export_done : R.string.import_done, done));
+                break;
+            }
+            case FAILED:
+                preference.setSummary(R.string.transfer_failed);
+                break;
+            default:
+                preference.setSummary(export ? R.string.description_export_captured : R.string.description_import_captured);
+                break;
+        }
+    }
+
+    /**
+     * Configura la preferencia del intervalo de sincronización en segundo plano,
+     * reprogramando los trabajos cuando cambia.
+     */
+    private void configureSyncIntervalPreference() {
+        ListPreference syncIntervalPreference = findPreference(BackgroundSync.PREF_SYNC_INTERVAL_HOURS);
+        if (syncIntervalPreference != null) {
+            syncIntervalPreference.setOnPreferenceChangeListener((preference, newValue) -> {
+                // Se reprograma después de que la preferencia guarde el nuevo valor. El contexto
+                // de la aplicación se toma ya, porque el fragmento puede separarse antes.
+                Context appContext = requireContext().getApplicationContext();
+                getListView().post(() -> BackgroundSync.reschedule(appContext));
+                return true;
+            });
+        }
     }
 
     /**
@@ -71,6 +212,7 @@ public class ScreenSettingsFragment extends PreferenceFragmentCompat {
         Preference logoutPreference = findPreference("logout");
         if (logoutPreference != null) {
             logoutPreference.setOnPreferenceClickListener(preference -> {
+                CapturedSync.getInstance(requireContext()).clear();
                 AuthUI.getInstance().signOut(requireContext()).addOnCompleteListener(task -> {
                     Intent intent = new Intent(getActivity(), loginActivity.class);
                     intent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TASK);
@@ -144,18 +286,29 @@ public class ScreenSettingsFragment extends PreferenceFragmentCompat {
     }
 
     /**
-     * Actualiza el idioma de la aplicación y recarga la actividad para reflejar el cambio.
+     * Actualiza el idioma de la aplicación y vuelve a dibujar los textos sin recrear la
+     * actividad: los datos ya cargados se conservan y los nombres de los Pokémon se toman de
+     * la caché de textos traducidos. El idioma se aplica con AppCompat, y MainActivity declara
+     * que atiende ella misma el cambio de idioma, así que recibe la nueva configuración en vez
+     * de recrearse.
      *
      * @param languageCode Código del idioma seleccionado (por ejemplo, "es" para Español, "en" para Inglés).
      */
     private void updateLocale(String languageCode) {
-        Locale locale = new Locale(languageCode);
-        Locale.setDefault(locale);
-        Configuration config = new Configuration();
-        config.setLocale(locale);
-        getResources().updateConfiguration(config, getResources().getDisplayMetrics());
-
-        // Recargar la actividad para reflejar el cambio.
-        requireActivity().recreate();
+        AppCompatDelegate.setApplicationLocales(LocaleListCompat.forLanguageTags(languageCode));
+
+        LocalizedSpeciesCache.getInstance(requireContext()).setLanguage(languageCode,
+                PokedexRepository.getInstance(requireContext()).getCachedPokedex());
+
+        // Se vuelve a dibujar después de que la preferencia guarde el nuevo valor.
+        getListView().post(() -> {
+            if (!isAdded()) {
+                return;
+            }
+            bindPreferences(null);
+            if (requireActivity() instanceof MainActivity) {
+                ((MainActivity) requireActivity()).onLanguageChanged();
+            }
+        });
     }
 }
\ No newline at end of file
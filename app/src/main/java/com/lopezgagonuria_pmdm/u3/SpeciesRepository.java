@@ -0,0 +1,226 @@
+package com.lopezgagonuria_pmdm.u3;
+
+import android.util.Log;
+import android.util.LruCache;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.IntFunction;
+import retrofit2.HttpException;
+
+/**
+ * Caché de los recursos compartidos de la pantalla de detalles: especies y cadenas evolutivas.
+ * Cada recurso se guarda por su propio ID, de modo que una cadena evolutiva se descarga una sola
+ * vez y sirve a todas las especies que pertenecen a ella. Las peticiones de un recurso que ya se
+ * está descargando se unen a la que está en curso. Solo se debe usar desde el hilo principal.
+ */
+public final class SpeciesRepository {
+
+    /**
+     * Interfaz para recibir un recurso cargado.
+     *
+     * @param <T> Tipo del recurso.
+     */
+    public interface OnResourceLoadedListener<T> {
+        /**
+         * Método llamado con el recurso cargado.
+         *
+         * @param resource Recurso (compartido, no se debe modificar).
+         */
+        void onLoaded(T resource);
+
+        /**
+         * Método llamado si no se ha podido cargar el recurso.
+         *
+         * @param message Descripción del error.
+         */
+        void onError(String message);
+    }
+
+    // Número máximo de especies y de cadenas evolutivas guardadas en memoria.
+    private static final int MAX_SPECIES = 64;
+    private static final int MAX_CHAINS = 32;
+
+    private static final String TAG = "SpeciesRepository";
+
+    private static SpeciesRepository instance;
+
+    private final PokemonApiService apiService;
+
+    private final SharedResource<PokemonSpecies> species;
+    private final SharedResource<EvolutionChain> chains;
+
+    // Cadena evolutiva de cada especie ya conocida, para no esperar a la especie.
+    private final Map<Integer, Integer> chainIdBySpecies = new HashMap<>();
+
+    /**
+     * Obtiene la instancia única del repositorio.
+     *
+     * @return Instancia del repositorio.
+     */
+    public static synchronized SpeciesRepository getInstance() {
+        if (instance == null) {
+            instance = new SpeciesRepository();
+        }
+        return instance;
+    }
+
+    private SpeciesRepository() {
+        apiService = RetrofitClient.getRetrofitInstance().create(PokemonApiService.class);
+        species = new SharedResource<>("especie", MAX_SPECIES,
+                id -> apiService.getPokemonSpecies(String.valueOf(id)));
+        chains = new SharedResource<>("cadena evolutiva", MAX_CHAINS, apiService::getEvolutionChain);
+    }
+
+    /**
+     * Carga la especie de un Pokémon.
+     *
+     * @param speciesId ID de la especie.
+     * @param listener Listener que recibe la especie.
+     */
+    public void loadSpecies(int speciesId, OnResourceLoadedListener<PokemonSpecies> listener) {
+        species.load(speciesId, new OnResourceLoadedListener<PokemonSpecies>() {
+            @Override
+            public void onLoaded(PokemonSpecies resource) {
+                int chainId = resource.getEvolutionChain() != null ? resource.getEvolutionChain().getId() : -1;
+                if (chainId > 0) {
+                    chainIdBySpecies.put(speciesId, chainId);
+                }
+                listener.onLoaded(resource);
+            }
+
+            @Override
+            public void onError(String message) {
+                listener.onError(message);
+            }
+        });
+    }
+
+    /**
+     * Carga la cadena evolutiva de una especie. Si ya se conoce la cadena (porque se ha
+     * cargado la de otra especie de la misma cadena), no hace falta pedir la especie.
+     *
+     * @param speciesId ID de la especie.
+     * @param listener Listener que recibe la cadena evolutiva.
+     */
+    public void loadEvolutionChain(int speciesId, OnResourceLoadedListener<EvolutionChain> listener) {
+        Integer chainId = chainIdBySpecies.get(speciesId);
+        if (chainId != null) {
+            loadChain(chainId, listener);
+            return;
+        }
+        loadSpecies(speciesId, new OnResourceLoadedListener<PokemonSpecies>() {
+            @Override
+            public void onLoaded(PokemonSpecies resource) {
+                Integer knownChainId = chainIdBySpecies.get(speciesId);
+                if (knownChainId == null) {
+                    listener.onError("La especie " + speciesId + " no tiene cadena evolutiva");
+                    return;
+                }
+                loadChain(knownChainId, listener);
+            }
+
+            @Override
+            public void onError(String message) {
+                listener.onError(message);
+            }
+        });
+    }
+
+    private void loadChain(int chainId, OnResourceLoadedListener<EvolutionChain> listener) {
+        chains.load(chainId, new OnResourceLoadedListener<EvolutionChain>() {
+            @Override
+            public void onLoaded(EvolutionChain resource) {
+                // Todas las especies de la cadena quedan asociadas a ella.
+                for (List<PokemonSpecies.NamedResource> stage : resource.getStages()) {
+                    for (PokemonSpecies.NamedResource member : stage) {
+                        if (member != null && member.getId() > 0) {
+                            chainIdBySpecies.put(member.getId(), chainId);
+                        }
+                    }
+                }
+                listener.onLoaded(resource);
+            }
+
+            @Override
+            public void onError(String message) {
+                listener.onError(message);
+            }
+        });
+    }
+
+    /**
+     * Recurso de la API guardado por su ID, con las peticiones en curso agrupadas.
+     */
+    private static final class SharedResource<T> {
+
+        private final String name;
+
+        // Nombre de la sección de traza de cada petición.
+        private final String traceSection;
+
+        private final LruCache<Integer, T> cache;
+        private final IntFunction<CompletableFuture<T>> request;
+
+        // Listeners esperando a cada petición en curso.
+        private final Map<Integer, List<OnResourceLoadedListener<T>>> pending = new HashMap<>();
+
+        // Métricas: recursos servidos desde memoria y descargados.
+        private int hits;
+        private int downloads;
+
+        SharedResource(String name, int maxSize, IntFunction<CompletableFuture<T>> request) {
+            this.name = name;
+            this.traceSection = "fetch:" + name;
+            this.cache = new LruCache<>(maxSize);
+            this.request = request;
+        }
+
+        void load(int id, OnResourceLoadedListener<T> listener) {
+            T cached = cache.get(id);
+            if (cached != null) {
+                hits++;
+                listener.onLoaded(cached);
+                return;
+            }
+            List<OnResourceLoadedListener<T>> listeners = pending.get(id);
+            if (listeners != null) {
+                listeners.add(listener);
+                return;
+            }
+            listeners = new ArrayList<>();
+            listeners.add(listener);
+            pending.put(id, listeners);
+
+            downloads++;
+            Log.d(TAG, "Descargando " + name + " " + id + " (en memoria: " + hits + ", descargas: " + downloads + ")");
+            PipelineTrace.beginAsync(traceSection, id);
+            request.apply(id).whenCompleteAsync((resource, error) -> {
+                PipelineTrace.endAsync(traceSection, id);
+                List<OnResourceLoadedListener<T>> waiting = pending.remove(id);
+                if (error == null) {
+                    cache.put(id, resource);
+                    for (OnResourceLoadedListener<T> waitingListener : waiting) {
+                        waitingListener.onLoaded(resource);
+                    }
+                } else {
+                    Throwable cause = Futures.unwrap(error);
+                    if (cause instanceof HttpException) {
+                        deliverError(waiting, "Error al obtener la " + name + " " + id + ": " + ((HttpException) cause).message());
+                    } else {
+                        deliverError(waiting, "Error al conectar con la API: " + cause.getMessage());
+                    }
+                }
+            }, Futures.MAIN);
+        }
+
+        private void deliverError(List<OnResourceLoadedListener<T>> listeners, String message) {
+            Log.e(TAG, message);
+            for (OnResourceLoadedListener<T> listener : listeners) {
+                listener.onError(message);
+            }
+        }
+    }
+}
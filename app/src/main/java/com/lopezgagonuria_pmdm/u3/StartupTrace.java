@@ -0,0 +1,68 @@
+package com.lopezgagonuria_pmdm.u3;
+
+import android.app.Activity;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+import android.view.View;
+import android.view.ViewTreeObserver;
+
+/**
+ * Registra las fases del arranque de la aplicación. Cada fase se emite como sección de traza
+ * (visible en Perfetto/systrace) a través de {@link PipelineTrace}, y el tiempo hasta el primer
+ * frame se escribe en el log. Como el resto de las trazas, solo en las compilaciones debug.
+ */
+public final class StartupTrace {
+
+    private static final String TAG = "StartupTrace";
+
+    // Indica si ya se ha registrado el primer frame de la aplicación.
+    private static boolean firstFrameReported;
+
+    private StartupTrace() {
+        // Clase de utilidad, no se instancia.
+    }
+
+    /**
+     * Ejecuta una fase del arranque dentro de una sección de traza con su nombre.
+     *
+     * @param phase Nombre de la fase.
+     * @param work Trabajo de la fase.
+     */
+    public static void phase(String phase, Runnable work) {
+        PipelineTrace.begin("startup:", phase);
+        try {
+            work.run();
+        } finally {
+            PipelineTrace.end();
+        }
+    }
+
+    /**
+     * Registra el tiempo hasta el primer frame dibujado por la actividad. Solo se
+     * registra una vez por proceso, y solo en las compilaciones debug.
+     *
+     * @param activity Actividad cuya vista se va a dibujar.
+     */
+    public static void reportFirstFrame(Activity activity) {
+        if (!PipelineTrace.ENABLED || firstFrameReported) {
+            return;
+        }
+        firstFrameReported = true;
+        View decorView = activity.getWindow().getDecorView();
+        decorView.getViewTreeObserver().addOnPreDrawListener(new ViewTreeObserver.OnPreDrawListener() {
+            @Override
+            public boolean onPreDraw() {
+                decorView.getViewTreeObserver().removeOnPreDrawListener(this);
+                long now = SystemClock.elapsedRealtime();
+                Log.i(TAG, "Primer frame de " + activity.getClass().getSimpleName()
+                        + " a los " + sinceProcessStart(now) + " ms del inicio del proceso");
+                return true;
+            }
+        });
+    }
+
+    private static long sinceProcessStart(long now) {
+        return now - Process.getStartElapsedRealtime();
+    }
+}
@@ -0,0 +1,177 @@
+package com.lopezgagonuria_pmdm.u3;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tabla de eficacia de tipos: matriz densa de 18×18 multiplicadores de daño, indexada por
+ * los códigos de {@link PokemonTypes} (fila: tipo del ataque, columna: tipo del defensor).
+ * Los enfrentamientos y los mejores rivales se calculan solo con accesos a la matriz.
+ */
+public final class TypeChart {
+
+    // Tamaño en bytes de la tabla codificada: un byte por celda.
+    static final int ENCODED_SIZE = PokemonTypes.COUNT * PokemonTypes.COUNT;
+
+    // Multiplicadores por celda: fila * COUNT + columna.
+    private final float[] multipliers = new float[ENCODED_SIZE];
+
+    /**
+     * Resultado de un enfrentamiento contra una combinación de tipos.
+     */
+    public static class Matchup {
+
+        // Tipos que hacen más daño del normal (x2 o x4), de más a menos.
+        public final List<Integer> weaknesses = new ArrayList<>();
+
+        // Tipos que hacen menos daño del normal (x0.5 o x0.25).
+        public final List<Integer> resistances = new ArrayList<>();
+
+        // Tipos que no hacen daño (x0).
+        public final List<Integer> immunities = new ArrayList<>();
+    }
+
+    /**
+     * Construye la tabla a partir de su forma codificada: un byte por celda con el
+     * multiplicador por dos (0 = x0, 1 = x0.5, 2 = x1, 4 = x2).
+     *
+     * @param encoded Tabla codificada de {@link #ENCODED_SIZE} bytes.
+     */
+    public TypeChart(byte[] encoded) {
+        if (encoded.length != ENCODED_SIZE) {
+            throw new IllegalArgumentException("Tabla de tipos con tamaño incorrecto: " + encoded.length);
+        }
+        for (int i = 0; i < ENCODED_SIZE; i++) {
+            multipliers[i] = encoded[i] / 2f;
+        }
+    }
+
+    /**
+     * Obtiene el multiplicador de un tipo de ataque contra un tipo defensor.
+     *
+     * @param attackType Código del tipo del ataque.
+     * @param defenseType Código del tipo del defensor.
+     * @return Multiplicador de daño.
+     */
+    public float multiplier(int attackType, int defenseType) {
+        return multipliers[attackType * PokemonTypes.COUNT + defenseType];
+    }
+
+    /**
+     * Obtiene el multiplicador de un tipo de ataque contra un defensor de uno o dos tipos.
+     *
+     * @param attackType Código del tipo del ataque.
+     * @param defenseTypes Códigos de los tipos del defensor.
+     * @return Multiplicador de daño combinado.
+     */
+    public float multiplier(int attackType, int[] defenseTypes) {
+        float result = 1f;
+        int row = attackType * PokemonTypes.COUNT;
+        for (int defenseType : defenseTypes) {
+            result *= multipliers[row + defenseType];
+        }
+        return result;
+    }
+
+    /**
+     * Calcula las debilidades, resistencias e inmunidades de una combinación de tipos.
+     *
+     * @param defenseTypes Códigos de los tipos del defensor.
+     * @return Enfrentamiento con los tipos de ataque agrupados.
+     */
+    public Matchup matchupOf(int[] defenseTypes) {
+        Matchup matchup = new Matchup();
+        for (int attackType = 0; attackType < PokemonTypes.COUNT; attackType++) {
+            float value = multiplier(attackType, defenseTypes);
+            if (value == 0f) {
+                matchup.immunities.add(attackType);
+            } else if (value > 1f) {
+                matchup.weaknesses.add(attackType);
+            } else if (value < 1f) {
+                matchup.resistances.add(attackType);
+            }
+        }
+        // Las debilidades x4 primero.
+        matchup.weaknesses.sort((a, b) -> Float.compare(multiplier(b, defenseTypes), multiplier(a, defenseTypes)));
+        return matchup;
+    }
+
+    /**
+     * Ordena una colección de Pokémon según lo bien que se enfrentan a un rival: el mejor daño
+     * que hacen con sus propios tipos dividido entre el peor daño que reciben de los del rival.
+     *
+     * @param targetTypes Códigos de los tipos del rival.
+     * @param collectionTypes Códigos de los tipos de cada Pokémon de la colección
+     *                        (ver {@link #typeCodesOf(PokemonDetails)}).
+     * @param limit Número máximo de resultados.
+     * @return Posiciones en la colección de los mejores rivales, de mejor a peor.
+     */
+    public int[] rankCounters(int[] targetTypes, int[][] collectionTypes, int limit) {
+        int size = Math.min(limit, collectionTypes.length);
+        int[] best = new int[size];
+        float[] bestScores = new float[size];
+        int found = 0;
+
+        for (int index = 0; index < collectionTypes.length; index++) {
+            int[] candidateTypes = collectionTypes[index];
+            if (candidateTypes.length == 0) {
+                continue;
+            }
+            float offense = 0f;
+            for (int attackType : candidateTypes) {
+                offense = Math.max(offense, multiplier(attackType, targetTypes));
+            }
+            float defense = 0f;
+            for (int attackType : targetTypes) {
+                defense = Math.max(defense, multiplier(attackType, candidateTypes));
+            }
+            // Una inmunidad total cuenta como la mejor resistencia posible.
+            float score = offense / Math.max(defense, 0.125f);
+
+            // Inserción ordenada en el top, que es pequeño.
+            int position = found;
+            while (position > 0 && bestScores[position - 1] < score) {
+                position--;
+            }
+            if (position >= size) {
+                continue;
+            }
+            int last = Math.min(found, size - 1);
+            for (int i = last; i > position; i--) {
+                best[i] = best[i - 1];
+                bestScores[i] = bestScores[i - 1];
+            }
+            best[position] = index;
+            bestScores[position] = score;
+            found = Math.min(found + 1, size);
+        }
+
+        int[] result = new int[found];
+        System.arraycopy(best, 0, result, 0, found);
+        return result;
+    }
+
+    /**
+     * Obtiene los códigos de los tipos de un Pokémon, ignorando los desconocidos.
+     *
+     * @param pokemon Pokémon.
+     * @return Códigos de sus tipos (vacío si todavía no se conocen).
+     */
+    public static int[] typeCodesOf(PokemonDetails pokemon) {
+        List<String> names = pokemon.getTypeNames();
+        if (names == null) {
+            return new int[0];
+        }
+        int[] codes = new int[names.size()];
+        int count = 0;
+        for (String name : names) {
+            int code = PokemonTypes.codeOf(name);
+            if (code != PokemonTypes.NONE) {
+                codes[count++] = code;
+            }
+        }
+        int[] result = new int[count];
+        System.arraycopy(codes, 0, result, 0, count);
+        return result;
+    }
+}
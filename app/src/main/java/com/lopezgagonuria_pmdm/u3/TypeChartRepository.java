@@ -0,0 +1,187 @@
+package com.lopezgagonuria_pmdm.u3;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.AtomicFile;
+import android.util.Log;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Obtiene la tabla de tipos. Las relaciones de daño de los 18 tipos se descargan una sola vez,
+ * se convierten en la matriz densa de {@link TypeChart} y se guardan en disco (324 bytes), así
+ * que las siguientes veces no se hace ninguna petición. Solo se debe usar desde el hilo principal.
+ */
+public final class TypeChartRepository {
+
+    private static final String FILE_NAME = "type_chart.bin";
+    private static final String TAG = "TypeChartRepository";
+
+    // Tiempo máximo para descargar los 18 tipos, que se piden a la vez.
+    private static final long DOWNLOAD_TIMEOUT_SECONDS = 20;
+
+    private static TypeChartRepository instance;
+
+    private final AtomicFile file;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    // Tabla ya cargada, o null si todavía no se ha cargado.
+    private TypeChart chart;
+
+    // Listeners esperando a la carga en curso.
+    private final List<SpeciesRepository.OnResourceLoadedListener<TypeChart>> pendingListeners = new ArrayList<>();
+
+    /**
+     * Obtiene la instancia única del repositorio.
+     *
+     * @param context Contexto de la aplicación.
+     * @return Instancia del repositorio.
+     */
+    public static synchronized TypeChartRepository getInstance(Context context) {
+        if (instance == null) {
+            instance = new TypeChartRepository(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private TypeChartRepository(Context appContext) {
+        this.file = new AtomicFile(new File(appContext.getFilesDir(), FILE_NAME));
+    }
+
+    /**
+     * Carga la tabla de tipos: de memoria, de disco o, la primera vez, de la API.
+     *
+     * @param listener Listener que recibe la tabla.
+     */
+    public void load(SpeciesRepository.OnResourceLoadedListener<TypeChart> listener) {
+        if (chart != null) {
+            listener.onLoaded(chart);
+            return;
+        }
+        pendingListeners.add(listener);
+        if (pendingListeners.size() > 1) {
+            return; // Ya hay una carga en curso.
+        }
+        executor.execute(() -> {
+            byte[] encoded = null;
+            String error = null;
+            try {
+                encoded = read();
+                if (encoded == null) {
+                    encoded = download();
+                    write(encoded);
+                }
+            } catch (IOException | RuntimeException e) {
+                // Cualquier error se entrega: si no, los listeners pendientes esperarían para
+                // siempre y ninguna carga posterior volvería a intentarlo. HttpException también
+                // es una RuntimeException.
+                error = "Error al descargar la tabla de tipos: " + e.getMessage();
+            }
+            byte[] result = encoded;
+            String message = error;
+            mainHandler.post(() -> deliver(result, message));
+        });
+    }
+
+    private void deliver(byte[] encoded, String message) {
+        List<SpeciesRepository.OnResourceLoadedListener<TypeChart>> listeners = new ArrayList<>(pendingListeners);
+        pendingListeners.clear();
+        if (encoded != null) {
+            chart = new TypeChart(encoded);
+        } else {
+            Log.e(TAG, message);
+        }
+        for (SpeciesRepository.OnResourceLoadedListener<TypeChart> listener : listeners) {
+            if (chart != null) {
+                listener.onLoaded(chart);
+            } else {
+                listener.onError(message);
+            }
+        }
+    }
+
+    /**
+     * Descarga a la vez las relaciones de daño de todos los tipos y construye la tabla codificada.
+     */
+    private byte[] download() throws IOException {
+        PokemonApiService apiService = RetrofitClient.getRetrofitInstance().create(PokemonApiService.class);
+        List<CompletableFuture<PokemonTypeDetails>> requests = new ArrayList<>(PokemonTypes.COUNT);
+        for (int attackType = 0; attackType < PokemonTypes.COUNT; attackType++) {
+            requests.add(apiService.getType(attackType + 1));
+        }
+        List<PokemonTypeDetails> types = Futures.await(
+                Futures.withTimeout(Futures.allAsList(requests), DOWNLOAD_TIMEOUT_SECONDS, TimeUnit.SECONDS));
+
+        byte[] encoded = new byte[TypeChart.ENCODED_SIZE];
+        Arrays.fill(encoded, (byte) 2); // Daño normal por defecto.
+        for (int attackType = 0; attackType < PokemonTypes.COUNT; attackType++) {
+            PokemonTypeDetails.DamageRelations relations = types.get(attackType).getDamageRelations();
+            if (relations == null) {
+                throw new IOException("Tipo " + (attackType + 1) + " sin relaciones de daño");
+            }
+            fill(encoded, attackType, relations.getDoubleDamageTo(), 4);
+            fill(encoded, attackType, relations.getHalfDamageTo(), 1);
+            fill(encoded, attackType, relations.getNoDamageTo(), 0);
+        }
+        Log.d(TAG, "Tabla de tipos descargada");
+        return encoded;
+    }
+
+    private static void fill(byte[] encoded, int attackType, List<PokemonSpecies.NamedResource> targets, int value) {
+        if (targets == null) {
+            return;
+        }
+        for (PokemonSpecies.NamedResource target : targets) {
+            int defenseType = PokemonTypes.codeOf(target.getName());
+            if (defenseType != PokemonTypes.NONE) {
+                encoded[attackType * PokemonTypes.COUNT + defenseType] = (byte) value;
+            }
+        }
+    }
+
+    private byte[] read() {
+        if (!file.getBaseFile().exists()) {
+            return null;
+        }
+        try (FileInputStream in = file.openRead()) {
+            byte[] encoded = new byte[TypeChart.ENCODED_SIZE];
+            int read = 0;
+            while (read < encoded.length) {
+                int n = in.read(encoded, read, encoded.length - read);
+                if (n < 0) {
+                    return null; // Fichero incompleto: se vuelve a descargar.
+                }
+                read += n;
+            }
+            return encoded;
+        } catch (IOException e) {
+            Log.e(TAG, "Error al leer la tabla de tipos", e);
+            return null;
+        }
+    }
+
+    private void write(byte[] encoded) {
+        FileOutputStream out = null;
+        try {
+            out = file.startWrite();
+            out.write(encoded);
+            file.finishWrite(out);
+        } catch (IOException e) {
+            Log.e(TAG, "Error al guardar la tabla de tipos", e);
+            if (out != null) {
+                file.failWrite(out);
+            }
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package com.lopezgagonuria_pmdm.u3;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.auth.FirebaseAuth;
+import com.google.firebase.auth.FirebaseUser;
+import com.google.firebase.firestore.CollectionReference;
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FieldValue;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.WriteBatch;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Clase de utilidad que da acceso a la colección de Pokémon capturados del usuario autenticado.
+ * Cada usuario guarda sus capturas en "usuarios/{uid}/capturados", de modo que cada cliente
+ * solo consulta su propia partición.
+ */
+public final class UserCapturados {
+
+    // Colección raíz con un documento por usuario.
+    static final String USERS_COLLECTION = "usuarios";
+
+    // Subcolección con los Pokémon capturados de cada usuario.
+    static final String CAPTURADOS_COLLECTION = "capturados";
+
+    // Subcolección con un documento de contadores por mes para la línea temporal de capturas.
+    static final String TIMELINE_COLLECTION = "linea_temporal";
+
+    // Subcolección con las marcas de las operaciones ya contadas en la línea temporal.
+    static final String TIMELINE_MARKERS_COLLECTION = "linea_temporal_ops";
+
+    // Colección con las marcas de las migraciones globales y campos de la de capturados.
+    private static final String MIGRATIONS_COLLECTION = "migraciones";
+    private static final String FIELD_OWNER = "owner";
+    private static final String FIELD_CLAIMED_AT = "claimedAt";
+
+    // Preferencias donde se guarda qué usuarios ya migraron la colección antigua.
+    private static final String PREFS_NAME = "capturados_migration";
+
+    // Número máximo de operaciones permitidas por Firestore en un WriteBatch.
+    private static final int MAX_BATCH_SIZE = 500;
+
+    private static final String TAG = "UserCapturados";
+
+    // Migraciones en curso por usuario.
+    private static final Map<String, Task<Void>> migrations = new HashMap<>();
+
+    private UserCapturados() {
+        // Clase de utilidad, no se instancia.
+    }
+
+    /**
+     * Obtiene la referencia a la colección de capturados del usuario autenticado.
+     *
+     * @param firestore Instancia de Firestore.
+     * @return Referencia a "usuarios/{uid}/capturados".
+     * @throws IllegalStateException si no hay ningún usuario autenticado.
+     */
+    public static CollectionReference getCollection(FirebaseFirestore firestore) {
+        FirebaseUser user = FirebaseAuth.getInstance().getCurrentUser();
+        if (user == null) {
+            throw new IllegalStateException("No hay usuario autenticado para acceder a sus capturados.");
+        }
+        return getCollection(firestore, user.getUid());
+    }
+
+    /**
+     * Obtiene la referencia a la colección de capturados de un usuario concreto.
+     *
+     * @param firestore Instancia de Firestore.
+     * @param uid Identificador del usuario en Firebase Authentication.
+     * @return Referencia a "usuarios/{uid}/capturados".
+     */
+    public static CollectionReference getCollection(FirebaseFirestore firestore, String uid) {
+        return firestore.collection(USERS_COLLECTION)
+                .document(uid)
+                .collection(CAPTURADOS_COLLECTION);
+    }
+
+    /**
+     * Obtiene la referencia a la colección con los contadores mensuales de la línea temporal
+     * de capturas de un usuario.
+     *
+     * @param firestore Instancia de Firestore.
+     * @param uid Identificador del usuario en Firebase Authentication.
+     * @return Referencia a "usuarios/{uid}/linea_temporal".
+     */
+    public static CollectionReference getTimelineCollection(FirebaseFirestore firestore, String uid) {
+        return firestore.collection(USERS_COLLECTION)
+                .document(uid)
+                .collection(TIMELINE_COLLECTION);
+    }
+
+    /**
+     * Obtiene la referencia a la colección con las marcas de las operaciones que ya han sumado
+     * a la línea temporal de un usuario.
+     *
+     * @param firestore Instancia de Firestore.
+     * @param uid Identificador del usuario en Firebase Authentication.
+     * @return Referencia a "usuarios/{uid}/linea_temporal_ops".
+     */
+    public static CollectionReference getTimelineMarkers(FirebaseFirestore firestore, String uid) {
+        return firestore.collection(USERS_COLLECTION)
+                .document(uid)
+                .collection(TIMELINE_MARKERS_COLLECTION);
+    }
+
+    /**
+     * Copia una única vez los documentos de la antigua colección global "capturados" a la
+     * partición de su propietario. Los documentos antiguos no guardan propietario, así que la
+     * colección la reclama, con una transacción, el primer usuario que la migra; el resto de
+     * usuarios no copian nada. Cada documento se reescribe con el esquema actual (versión y hora
+     * del servidor) para que la sincronización por cambios lo vea.
+     *
+     * <p>Las llamadas para el mismo usuario mientras la migración está en curso devuelven la
+     * misma tarea, de modo que la lectura de capturados puede esperar a que termine.
+     *
+     * @param context Contexto para acceder a las preferencias.
+     * @param firestore Instancia de Firestore.
+     * @param uid Usuario que se va a sincronizar.
+     * @return Tarea que termina cuando la migración se ha hecho o no hace falta.
+     */
+    public static synchronized Task<Void> migrateLegacyCollection(Context context, FirebaseFirestore firestore, String uid) {
+        SharedPreferences prefs = context.getApplicationContext()
+                .getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        if (prefs.getBoolean(uid, false)) {
+            return Tasks.forResult(null); // La migración ya se hizo para este usuario.
+        }
+        Task<Void> running = migrations.get(uid);
+        if (running != null) {
+            return running;
+        }
+
+        CollectionReference target = getCollection(firestore, uid);
+        Task<Void> migration = claimLegacyCollection(firestore, uid)
+                .onSuccessTask(owner -> {
+                    if (!Boolean.TRUE.equals(owner)) {
+                        Log.d(TAG, "La colección antigua pertenece a otro usuario: no se copia.");
+                        return Tasks.<Void>forResult(null);
+                    }
+                    return firestore.collection(CAPTURADOS_COLLECTION).get()
+                            .onSuccessTask(result -> copyInBatches(firestore, target, result.getDocuments(), 0));
+                })
+                .addOnSuccessListener(ignored -> prefs.edit().putBoolean(uid, true).apply())
+                .addOnFailureListener(e -> Log.e(TAG, "Error al migrar la colección antigua de capturados", e))
+                .addOnCompleteListener(task -> {
+                    synchronized (UserCapturados.class) {
+                        migrations.remove(uid);
+                    }
+                });
+        migrations.put(uid, migration);
+        return migration;
+    }
+
+    /**
+     * Reclama la colección antigua para un usuario, si nadie lo ha hecho antes.
+     *
+     * @return Tarea con true si el usuario es el propietario de la colección antigua.
+     */
+    private static Task<Boolean> claimLegacyCollection(FirebaseFirestore firestore, String uid) {
+        DocumentReference claim = firestore.collection(MIGRATIONS_COLLECTION).document(CAPTURADOS_COLLECTION);
+        return firestore.runTransaction(transaction -> {
+            String owner = transaction.get(claim).getString(FIELD_OWNER);
+            if (owner == null) {
+                Map<String, Object> data = new HashMap<>();
+                data.put(FIELD_OWNER, uid);
+                data.put(FIELD_CLAIMED_AT, FieldValue.serverTimestamp());
+                transaction.set(claim, data);
+                return true;
+            }
+            return uid.equals(owner);
+        });
+    }
+
+    /**
+     * Copia los documentos en lotes consecutivos para respetar el límite de Firestore,
+     * reescribiéndolos con el esquema actual. Los que no se pueden leer se saltan.
+     */
+    private static Task<Void> copyInBatches(FirebaseFirestore firestore, CollectionReference target,
+                                            List<DocumentSnapshot> documents, int start) {
+        if (start >= documents.size()) {
+            Log.d(TAG, "Migrados " + documents.size() + " Pokémon a la partición del usuario.");
+            return Tasks.forResult(null);
+        }
+        int end = Math.min(start + MAX_BATCH_SIZE, documents.size());
+        WriteBatch batch = firestore.batch();
+        for (DocumentSnapshot document : documents.subList(start, end)) {
+            PokemonDetails pokemon = CapturedPokemonMapper.fromSnapshot(document);
+            if (pokemon != null) {
+                batch.set(target.document(document.getId()), CapturedPokemonMapper.toMap(pokemon));
+            }
+        }
+        return batch.commit().onSuccessTask(ignored -> copyInBatches(firestore, target, documents, end));
+    }
+}
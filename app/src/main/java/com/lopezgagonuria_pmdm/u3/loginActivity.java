@@ -22,15 +22,26 @@ import java.util.List;
 public class loginActivity extends AppCompatActivity {
 
     /**
-     * Método que se ejecuta al crear la actividad. Inicia el flujo de inicio de sesión.
+     * Método que se ejecuta al crear la actividad. Si el usuario ya está autenticado va
+     * directamente a la actividad principal; si no, inicia el flujo de inicio de sesión.
      *
      * @param savedInstanceState Estado guardado de la actividad.
      */
     @Override
     protected void onCreate(@Nullable Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
-        // Inicia el flujo de inicio de sesión al crearse la actividad
-        startSingin();
+        // Verifica si el usuario ya está autenticado, sin construir la interfaz de FirebaseUI
+        FirebaseUser user = FirebaseAuth.getInstance().getCurrentUser();
+        if (user != null) {
+            goToMainActivity();
+            return;
+        }
+        // Mientras el usuario escribe sus credenciales se precargan los datos de la Pokédex
+        PokedexRepository.getInstance(this).warmUp();
+        // Si la actividad se recrea, FirebaseUI ya está en marcha y no se vuelve a lanzar
+        if (savedInstanceState == null) {
+            StartupTrace.phase("loginActivity.startSignin", this::startSingin);
+        }
     }
 
     /**
@@ -83,8 +94,8 @@ public class loginActivity extends AppCompatActivity {
         IdpResponse response = result.getIdpResponse();
 
         if (result.getResultCode() == RESULT_OK) {
-            // Inicio de sesión exitoso
-            FirebaseUser user = FirebaseAuth.getInstance().getCurrentUser();
+            // Inicio de sesión exitoso: se empiezan a cargar ya los capturados del usuario
+            PokedexRepository.getInstance(this).prefetchCaptured();
             // Continúa hacia la actividad principal
             goToMainActivity();
         } else {
@@ -93,21 +104,6 @@ public class loginActivity extends AppCompatActivity {
         }
     }
 
-    /**
-     * Método que se ejecuta cuando la actividad pasa al estado de "inicio".
-     * Verifica si el usuario ya está autenticado.
-     */
-    @Override
-    protected void onStart() {
-        super.onStart();
-        // Verifica si el usuario ya está autenticado
-        FirebaseUser user = FirebaseAuth.getInstance().getCurrentUser();
-        if (user != null) {
-            // Si el usuario ya inició sesión, va a la actividad principal
-            goToMainActivity();
-        }
-    }
-
     /**
      * Navega a la actividad principal (MainActivity).
      */
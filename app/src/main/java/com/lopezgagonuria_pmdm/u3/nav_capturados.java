@@ -4,23 +4,29 @@ import static android.content.ContentValues.TAG;
 
 import android.content.SharedPreferences;
 import android.os.Bundle;
+import android.os.Parcelable;
 import android.util.Log;
 import android.view.LayoutInflater;
+import android.view.Menu;
+import android.view.MenuItem;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.Toast;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import androidx.appcompat.app.AlertDialog;
+import androidx.appcompat.app.AppCompatActivity;
+import androidx.appcompat.view.ActionMode;
 import androidx.fragment.app.Fragment;
+import androidx.lifecycle.ViewModelProvider;
 import androidx.preference.PreferenceManager;
 import androidx.recyclerview.widget.ItemTouchHelper;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
-import com.google.firebase.firestore.CollectionReference;
-import com.google.firebase.firestore.DocumentSnapshot;
-import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.android.material.snackbar.Snackbar;
 import com.lopezgagonuria_pmdm.u3.databinding.FragmentNavCapturadosBinding;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -34,12 +40,65 @@ public class nav_capturados extends Fragment {
     // Adaptador para el RecyclerView.
     private CapturadosAdapter adapter;
 
-    // Lista de Pokémon capturados.
-    private List<PokemonDetails> pokemonCapturadosList;
+    // Estado de la pantalla, conservado entre cambios de pestaña y de configuración.
+    private CapturadosViewModel viewModel;
 
-    // Instancias de Firebase Firestore para acceder a la base de datos.
-    private FirebaseFirestore firestore;
-    private CollectionReference capturadosRef;
+    // Cola persistente de capturas y liberaciones pendientes de enviar a Firestore.
+    private CapturadosOutbox outbox;
+
+    // Barra de acciones de la selección múltiple, o null fuera del modo de selección.
+    private ActionMode actionMode;
+
+    // Aviso con la opción de deshacer las últimas liberaciones.
+    private Snackbar undoSnackbar;
+
+    // Indica si la barra de selección se cierra porque se destruye la vista y no el usuario.
+    private boolean destroyingView;
+
+    // Acciones de la selección múltiple.
+    private final ActionMode.Callback selectionCallback = new ActionMode.Callback() {
+        @Override
+        public boolean onCreateActionMode(ActionMode mode, Menu menu) {
+            mode.getMenuInflater().inflate(R.menu.capturados_selection_menu, menu);
+            return true;
+        }
+
+        @Override
+        public boolean onPrepareActionMode(ActionMode mode, Menu menu) {
+            return false;
+        }
+
+        @Override
+        public boolean onActionItemClicked(ActionMode mode, MenuItem item) {
+            int itemId = item.getItemId();
+            if (itemId == R.id.action_release_selected) {
+                releasePokemon(viewModel.getSelected());
+                return true;
+            } else if (itemId == R.id.action_select_all) {
+                viewModel.selectAll();
+                return true;
+            } else if (itemId == R.id.action_select_by_type) {
+                showTypeChooser();
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public void onDestroyActionMode(ActionMode mode) {
+            actionMode = null;
+            if (!destroyingView) {
+                viewModel.clearSelection();
+            }
+        }
+    };
+
+    // Listener que vuelve a dibujar la lista al llegar nombres traducidos o cambiar el idioma.
+    private final LocalizedSpeciesCache.OnNamesChangedListener namesListener = () -> {
+        if (adapter != null) {
+            adapter.notifyDataSetChanged();
+        }
+    };
 
     /**
      * Método que se ejecuta al crear el fragmento.
@@ -65,12 +124,9 @@ public class nav_capturados extends Fragment {
         // Configurar View Binding para inflar el diseño de forma segura.
         binding = FragmentNavCapturadosBinding.inflate(inflater, container, false);
 
-        // Inicializar Firestore y la referencia a la colección "capturados".
-        firestore = FirebaseFirestore.getInstance();
-        capturadosRef = firestore.collection("capturados");
-
-        // Inicializar la lista de Pokémon capturados.
-        pokemonCapturadosList = new ArrayList<>();
+        outbox = CapturadosOutbox.getInstance(requireContext());
+        viewModel = new ViewModelProvider(this).get(CapturadosViewModel.class);
+        LocalizedSpeciesCache.getInstance(requireContext()).addOnNamesChangedListener(namesListener);
 
         // Verificar si se pasó un Pokémon a través del Bundle.
         Bundle bundle = getArguments();
@@ -85,9 +141,16 @@ public class nav_capturados extends Fragment {
         }
 
         // Configurar el adaptador para el RecyclerView.
-        adapter = new CapturadosAdapter(pokemonCapturadosList, new CapturadosAdapter.OnPokemonClickListener() {
+        List<PokemonDetails> shown = viewModel.getCaptured().getValue();
+        adapter = new CapturadosAdapter(shown != null ? shown : new ArrayList<>(), new CapturadosAdapter.OnPokemonClickListener() {
             @Override
             public void onPokemonClick(PokemonDetails pokemon) {
+                // En el modo de selección el clic selecciona en lugar de abrir los detalles.
+                if (viewModel.isSelecting()) {
+                    viewModel.toggleSelection(pokemon);
+                    return;
+                }
+
                 // Configurar visibilidad del contenedor de detalles.
                 View fragmentContainer = requireActivity().findViewById(R.id.fragment_container);
                 if (fragmentContainer != null && fragmentContainer.getVisibility() == View.INVISIBLE) {
@@ -103,14 +166,28 @@ public class nav_capturados extends Fragment {
                         .commit();
             }
 
+            @Override
+            public void onPokemonLongClick(PokemonDetails pokemon) {
+                viewModel.toggleSelection(pokemon);
+            }
+
             @Override
             public void onDeletePokemon(PokemonDetails pokemon) {
-                deletePokemonFromFirestore(pokemon);
+                releasePokemon(Collections.singletonList(pokemon));
             }
         });
+        adapter.setSelection(viewModel.getSelectedIds());
 
         // Configurar RecyclerView.
-        binding.recyclerCapturados.setLayoutManager(new LinearLayoutManager(getContext()));
+        // Lista o cuadrícula, con las vistas compartidas con la Pokédex.
+        boolean grid = PokemonViewPool.isGrid(requireContext());
+        PokemonViewPool viewPool = ((MainActivity) requireActivity()).getViewPool();
+        adapter.setLayout(viewPool, grid);
+        if (viewPool != null) {
+            viewPool.setUp(binding.recyclerCapturados, grid);
+        } else {
+            binding.recyclerCapturados.setLayoutManager(new LinearLayoutManager(getContext()));
+        }
         binding.recyclerCapturados.setAdapter(adapter);
 
         // Configurar deslizamiento para eliminar elementos.
@@ -122,29 +199,43 @@ public class nav_capturados extends Fragment {
 
             @Override
             public void onSwiped(@NonNull RecyclerView.ViewHolder viewHolder, int direction) {
-                SharedPreferences sharedPreferences = PreferenceManager.getDefaultSharedPreferences(requireContext());
-                boolean canDelete = sharedPreferences.getBoolean("allow_delete", true);
-                if (!canDelete) {
-                    adapter.notifyItemChanged(viewHolder.getAdapterPosition());
+                int position = viewHolder.getBindingAdapterPosition();
+                if (position == RecyclerView.NO_POSITION) {
+                    return;
+                }
+                if (!isDeleteAllowed()) {
+                    adapter.notifyItemChanged(position);
                     Toast.makeText(getContext(), R.string.habilitar_eliminar, Toast.LENGTH_SHORT).show();
                     return;
                 }
-
-                int position = viewHolder.getAdapterPosition();
-                PokemonDetails pokemon = pokemonCapturadosList.get(position);
-                deletePokemonFromFirestore(pokemon);
-                Toast.makeText(getContext(), "Se ha eliminado el Pokemon correctamente!!", Toast.LENGTH_SHORT).show();
+                releasePokemon(Collections.singletonList(adapter.getItem(position)));
             }
         };
 
         new ItemTouchHelper(simpleCallback).attachToRecyclerView(binding.recyclerCapturados);
 
-        // Mostrar el ProgressBar mientras se cargan los datos.
-        binding.progressBar.setVisibility(View.VISIBLE);
+        // Mostrar el ProgressBar mientras se cargan los datos por primera vez.
+        if (viewModel.getCaptured().getValue() == null) {
+            binding.progressBar.setVisibility(View.VISIBLE);
+        }
         binding.emptyView.setVisibility(View.GONE);
 
-        // Cargar los datos de Pokémon capturados desde Firestore.
-        loadCapturedPokemon();
+        viewModel.getCaptured().observe(getViewLifecycleOwner(), this::updateUI);
+        viewModel.getSelectionCount().observe(getViewLifecycleOwner(), this::updateSelection);
+        viewModel.getUndoableCount().observe(getViewLifecycleOwner(), this::updateUndo);
+        viewModel.getError().observe(getViewLifecycleOwner(), message -> {
+            if (message == null) {
+                return;
+            }
+            binding.progressBar.setVisibility(View.GONE);
+            if (adapter.getItemCount() == 0) {
+                binding.emptyView.setVisibility(View.VISIBLE);
+            }
+            viewModel.clearError();
+        });
+
+        // Cargar los capturados; si el estado en memoria está al día no se consulta Firestore.
+        viewModel.load();
 
         return binding.getRoot();
     }
@@ -159,8 +250,8 @@ public class nav_capturados extends Fragment {
             Log.e(TAG, "El campo spriteUrl está vacío o es nulo.");
             return;
         }
-        if (pokemon.getTypes() == null || pokemon.getTypes().isEmpty()) {
-            Log.e(TAG, "El campo types está vacío o es nulo.");
+        if (pokemon.getTypeCount() == 0) {
+            Log.e(TAG, "El Pokémon no tiene tipos.");
             return;
         }
         if (pokemon.getName() == null || pokemon.getName().isEmpty()) {
@@ -168,93 +259,107 @@ public class nav_capturados extends Fragment {
             return;
         }
 
-        for (PokemonDetails.Type type : pokemon.getTypes()) {
-            if (type == null || type.getType() == null || type.getType().getName() == null) {
-                Log.e(TAG, "Un tipo tiene datos incompletos o es nulo.");
-                return;
+        outbox.enqueueCapture(pokemon);
+    }
+
+    /**
+     * Actualiza el RecyclerView con la lista del ViewModel, notificando solo las filas que
+     * cambian, y recupera la posición de desplazamiento guardada, si la hay.
+     *
+     * @param captured Lista de Pokémon capturados.
+     */
+    private void updateUI(List<PokemonDetails> captured) {
+        binding.progressBar.setVisibility(View.GONE);
+        binding.emptyView.setVisibility(captured.isEmpty() ? View.VISIBLE : View.GONE);
+        adapter.submitList(captured);
+        Parcelable listState = viewModel.consumeListState();
+        if (listState != null && binding.recyclerCapturados.getLayoutManager() != null) {
+            binding.recyclerCapturados.getLayoutManager().onRestoreInstanceState(listState);
+        }
+    }
+
+    /**
+     * Muestra u oculta la barra de acciones de la selección múltiple y el resaltado de las filas.
+     *
+     * @param count Número de Pokémon seleccionados.
+     */
+    private void updateSelection(Integer count) {
+        adapter.notifySelectionChanged();
+        if (count != null && count > 0) {
+            if (actionMode == null) {
+                actionMode = ((AppCompatActivity) requireActivity()).startSupportActionMode(selectionCallback);
+            }
+            if (actionMode != null) {
+                actionMode.setTitle(getString(R.string.n_seleccionados, count));
             }
+        } else if (actionMode != null) {
+            actionMode.finish();
         }
+    }
 
-        firestore.collection("capturados")
-                .document(pokemon.getId())
-                .set(pokemon)
-                .addOnSuccessListener(aVoid -> Log.d(TAG, "¡Pokémon guardado correctamente en Firestore!"))
-                .addOnFailureListener(e -> Log.e(TAG, "Error al guardar el Pokémon en Firestore: " + e.getMessage()));
+    /**
+     * Muestra el aviso para deshacer las liberaciones que todavía no se han enviado.
+     *
+     * @param count Número de liberaciones que se pueden deshacer, o null si no hay ninguna.
+     */
+    private void updateUndo(Integer count) {
+        if (count == null) {
+            if (undoSnackbar != null) {
+                undoSnackbar.dismiss();
+                undoSnackbar = null;
+            }
+            return;
+        }
+        undoSnackbar = Snackbar.make(binding.getRoot(), getString(R.string.n_liberados, count),
+                        CapturadosViewModel.UNDO_WINDOW_MS)
+                .setAction(R.string.deshacer, v -> viewModel.undoRelease());
+        undoSnackbar.show();
     }
 
     /**
-     * Carga la lista de Pokémon capturados desde Firestore y actualiza el RecyclerView.
+     * Muestra los tipos presentes en la lista para seleccionar todos los Pokémon de uno.
      */
-    private void loadCapturedPokemon() {
-        capturadosRef.get()
-                .addOnSuccessListener(queryDocumentSnapshots -> {
-                    binding.progressBar.setVisibility(View.GONE);
-                    pokemonCapturadosList.clear();
-
-                    for (DocumentSnapshot document : queryDocumentSnapshots) {
-                        PokemonDetails capturedPokemon = document.toObject(PokemonDetails.class);
-                        if (capturedPokemon != null && capturedPokemon.getName() != null) {
-                            pokemonCapturadosList.add(capturedPokemon);
-                        }
-                    }
-
-                    if (pokemonCapturadosList.isEmpty()) {
-                        binding.emptyView.setVisibility(View.VISIBLE);
-                    } else {
-                        binding.emptyView.setVisibility(View.GONE);
-                    }
-
-                    adapter.notifyDataSetChanged();
-                })
-                .addOnFailureListener(e -> {
-                    Log.e(TAG, "Error al leer datos de Firestore", e);
-                    binding.progressBar.setVisibility(View.GONE);
-                    binding.emptyView.setVisibility(View.VISIBLE);
-                });
+    private void showTypeChooser() {
+        List<String> types = viewModel.getTypesInList();
+        if (types.isEmpty()) {
+            return;
+        }
+        new AlertDialog.Builder(requireContext())
+                .setTitle(R.string.seleccionar_por_tipo)
+                .setItems(types.toArray(new String[0]), (dialog, which) -> viewModel.selectByType(types.get(which)))
+                .show();
     }
 
     /**
-     * Elimina un Pokémon de la lista local y actualiza el RecyclerView.
+     * Elimina un Pokémon de la lista local cuando lo ha liberado otra pantalla.
      *
      * @param pokemon Objeto PokemonDetails a eliminar de la lista.
      */
     public void removePokemonFromList(PokemonDetails pokemon) {
-        Log.d(TAG, "Intentando eliminar: " + pokemon.getName());
-        if (pokemonCapturadosList != null && adapter != null) {
-            for (int i = 0; i < pokemonCapturadosList.size(); i++) {
-                if (pokemonCapturadosList.get(i).getId().equals(pokemon.getId())) {
-                    Log.d(TAG, "Pokémon encontrado en la lista: " + pokemon.getName());
-                    pokemonCapturadosList.remove(i);
-                    adapter.notifyDataSetChanged();
-                    return;
-                }
-            }
-            Log.d(TAG, "Pokémon no encontrado en la lista.");
+        Log.d(TAG, "Quitando de la lista: " + pokemon.getName());
+        if (viewModel != null) {
+            viewModel.removeFromList(pokemon);
         }
     }
 
     /**
-     * Elimina un Pokémon de Firestore y actualiza la lista local.
+     * Quita los Pokémon de la lista y programa su liberación, que se envía en un solo lote
+     * cuando termina el plazo para deshacerla.
      *
-     * @param pokemon Objeto PokemonDetails a eliminar de Firestore.
+     * @param pokemonList Pokémon a liberar.
      */
-    private void deletePokemonFromFirestore(PokemonDetails pokemon) {
-        SharedPreferences sharedPreferences = PreferenceManager.getDefaultSharedPreferences(requireContext());
-        boolean canDelete = sharedPreferences.getBoolean("allow_delete", true);
-        if (!canDelete) {
+    private void releasePokemon(List<PokemonDetails> pokemonList) {
+        if (!isDeleteAllowed()) {
             Log.d(TAG, "No está permitido eliminar Pokémon. Operación cancelada.");
             Toast.makeText(getContext(), "La opción eliminar está deshabilitada.", Toast.LENGTH_SHORT).show();
             return;
         }
+        viewModel.release(pokemonList);
+    }
 
-        capturadosRef.document(pokemon.getId())
-                .delete()
-                .addOnSuccessListener(aVoid -> {
-                    pokemonCapturadosList.removeIf(p -> p.getId().equals(pokemon.getId()));
-                    adapter.notifyDataSetChanged();
-                    Toast.makeText(getContext(), "El Pokemon se ha eliminado con éxito!!.", Toast.LENGTH_SHORT).show();
-                })
-                .addOnFailureListener(e -> Log.e(TAG, "Error al eliminar el Pokémon de Firestore: " + e.getMessage()));
+    private boolean isDeleteAllowed() {
+        SharedPreferences sharedPreferences = PreferenceManager.getDefaultSharedPreferences(requireContext());
+        return sharedPreferences.getBoolean("allow_delete", true);
     }
 
     /**
@@ -263,6 +368,17 @@ public class nav_capturados extends Fragment {
     @Override
     public void onDestroyView() {
         super.onDestroyView();
+        // La selección se conserva en el ViewModel para la próxima vista.
+        destroyingView = true;
+        if (actionMode != null) {
+            actionMode.finish();
+        }
+        destroyingView = false;
+        undoSnackbar = null;
+        if (binding.recyclerCapturados.getLayoutManager() != null) {
+            viewModel.setListState(binding.recyclerCapturados.getLayoutManager().onSaveInstanceState());
+        }
+        LocalizedSpeciesCache.getInstance(requireContext()).removeOnNamesChangedListener(namesListener);
         binding = null; // Liberar el binding para evitar fugas de memoria.
     }
 }
\ No newline at end of file
@@ -0,0 +1,82 @@
+package com.lopezgagonuria_pmdm.u3;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import org.junit.Test;
+
+/**
+ * Comprueba los contadores de {@link CaptureTimeline} escritos en el mismo lote que las
+ * capturas y liberaciones, sobre {@link InMemoryCapturedStore}.
+ */
+public class CaptureTimelineTest {
+
+    private static final String UID = "timeline-test";
+    private static final long SEED = 42;
+
+    // Siguiente número de secuencia de las operaciones de prueba.
+    private static long nextSeq;
+
+    @Test
+    public void timelineCountsCapturesAndReleases() throws Exception {
+        InMemoryCapturedStore store = new InMemoryCapturedStore(SEED, 0, 0, 0);
+        try {
+            Calendar calendar = Calendar.getInstance();
+            calendar.set(2026, Calendar.MARCH, 30, 12, 0, 0); // Lunes
+            long monday = calendar.getTimeInMillis();
+            calendar.add(Calendar.DAY_OF_MONTH, 3); // Jueves 2 de abril: otro mes, misma semana
+            long thursday = calendar.getTimeInMillis();
+
+            PokemonDetails fire = PokemonDetails.fromTypeNames(4, "charmander", 85, 6, Collections.singletonList("fire"));
+            PokemonDetails water = PokemonDetails.fromTypeNames(7, "squirtle", 90, 5, Collections.singletonList("water"));
+            PokemonDetails imported = PokemonDetails.fromTypeNames(1, "bulbasaur", 69, 7, Collections.singletonList("grass"));
+            List<CapturadosOutbox.Operation> batch = new ArrayList<>();
+            batch.add(operation(CapturadosOutbox.Type.CAPTURE, fire, monday));
+            batch.add(operation(CapturadosOutbox.Type.CAPTURE, water, thursday));
+            CapturadosOutbox.Operation releaseFire = operation(CapturadosOutbox.Type.RELEASE, fire, thursday);
+            releaseFire.capturedAt = monday;
+            batch.add(releaseFire);
+            batch.add(operation(CapturadosOutbox.Type.CAPTURE, imported, 0)); // Sin hora: no cuenta.
+            // Su captura no cuenta, así que su liberación tampoco.
+            batch.add(operation(CapturadosOutbox.Type.RELEASE, imported, thursday));
+            CapturedStore.<Void>await(callback -> store.commit(batch, callback));
+            // Un reintento del mismo lote no cuenta dos veces.
+            CapturedStore.<Void>await(callback -> store.commit(batch, callback));
+
+            long readBefore = store.getDocumentsRead();
+            CaptureTimeline timeline = CapturedStore.await(callback -> store.readTimeline(UID, callback));
+            assertEquals("Un documento por mes", 2, store.getDocumentsRead() - readBefore);
+
+            List<CaptureTimeline.Period> days = timeline.getDays(thursday, 4);
+            assertEquals(1, days.get(0).captures);
+            assertEquals(1, days.get(0).releases);
+            assertEquals(0, days.get(1).captures);
+            assertEquals(1, days.get(3).captures);
+
+            CaptureTimeline.Period week = timeline.getWeeks(thursday, 1).get(0);
+            assertEquals(2, week.captures);
+            assertEquals(1, week.releases);
+
+            Map<String, Long> firstByType = timeline.getFirstCaptureByType();
+            assertEquals(Arrays.asList("fire", "water"), new ArrayList<>(firstByType.keySet()));
+            assertEquals(CaptureTimeline.dayOfMonth(monday), CaptureTimeline.dayOfMonth(firstByType.get("fire")));
+        } finally {
+            store.shutdown();
+        }
+    }
+
+    private static CapturadosOutbox.Operation operation(CapturadosOutbox.Type type, PokemonDetails pokemon, long time) {
+        CapturadosOutbox.Operation operation = new CapturadosOutbox.Operation();
+        operation.seq = nextSeq++;
+        operation.type = type;
+        operation.uid = UID;
+        operation.pokemon = pokemon;
+        operation.time = time;
+        return operation;
+    }
+}
@@ -0,0 +1,272 @@
+package com.lopezgagonuria_pmdm.u3;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListUpdateCallback;
+import com.google.firebase.firestore.FirebaseFirestoreException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import org.junit.Test;
+
+/**
+ * Prueba de carga de las rutas de envío, sincronización por cambios y actualización de la lista
+ * de capturados sobre {@link InMemoryCapturedStore}, con 10 000, 50 000 y 100 000 capturas
+ * sintéticas y latencia y errores inyectados. Para cada operación se escriben en la salida
+ * estándar de la tarea de test la latencia (p50 y p99) y el rendimiento.
+ *
+ * <p>Las cargas tardan demasiado para cada compilación, así que solo se ejecutan con
+ * {@code ./gradlew test -PloadTests=true}; sin esa propiedad se dan por omitidas.
+ */
+public class CapturedStoreLoadTest {
+
+    private static final String UID = "load-test";
+    private static final long SEED = 42;
+
+    // Red simulada: 2 ms fijos más hasta 3 ms variables, y un 2 % de errores temporales.
+    private static final long LATENCY_MS = 2;
+    private static final long JITTER_MS = 3;
+    private static final double ERROR_RATE = 0.02;
+
+    // Parte de la colección que cambia entre dos sincronizaciones.
+    private static final double CHANGED_FRACTION = 0.01;
+
+    // Propiedad del sistema que activa las cargas, la pasa Gradle desde -PloadTests.
+    private static final String LOAD_TESTS_PROPERTY = "loadTests";
+
+    /**
+     * Latencias de una operación.
+     */
+    private static final class Stats {
+        final String name;
+        final List<Long> nanos = new ArrayList<>();
+        long items;
+
+        Stats(String name) {
+            this.name = name;
+        }
+
+        void add(long elapsedNanos, long itemCount) {
+            nanos.add(elapsedNanos);
+            items += itemCount;
+        }
+
+        void print(int size) {
+            List<Long> sorted = new ArrayList<>(nanos);
+            Collections.sort(sorted);
+            long total = 0;
+            for (long value : sorted) {
+                total += value;
+            }
+            System.out.printf("%7d  %-14s n=%-4d p50=%8.2f ms  p99=%8.2f ms  %,12.0f elementos/s%n",
+                    size, name, sorted.size(), percentile(sorted, 50) / 1e6, percentile(sorted, 99) / 1e6,
+                    total > 0 ? items * 1e9 / total : 0);
+        }
+
+        private static long percentile(List<Long> sorted, int percentile) {
+            int index = (int) Math.ceil(percentile / 100.0 * sorted.size()) - 1;
+            return sorted.get(Math.max(0, Math.min(sorted.size() - 1, index)));
+        }
+    }
+
+    @Test
+    public void loadWith10k() throws Exception {
+        run(10_000);
+    }
+
+    @Test
+    public void loadWith50k() throws Exception {
+        run(50_000);
+    }
+
+    @Test
+    public void loadWith100k() throws Exception {
+        run(100_000);
+    }
+
+    @Test
+    public void storeIsDeterministic() throws Exception {
+        assertEquals(snapshotIds(7), snapshotIds(7));
+    }
+
+    private void run(int size) throws Exception {
+        assumeTrue("Pruebas de carga desactivadas; actívalas con -PloadTests=true",
+                Boolean.getBoolean(LOAD_TESTS_PROPERTY));
+        InMemoryCapturedStore store = new InMemoryCapturedStore(SEED, LATENCY_MS, JITTER_MS, ERROR_RATE);
+        Random random = new Random(SEED);
+        try {
+            Stats commit = new Stats("commit");
+            Stats fullRead = new Stats("lectura");
+            Stats fullMerge = new Stats("merge");
+            Stats deltaRead = new Stats("lectura delta");
+            Stats deltaMerge = new Stats("merge delta");
+            Stats diff = new Stats("diff lista");
+
+            // Envío: capturas en lotes, como los vacía CapturadosOutbox.
+            List<PokemonDetails> captured = new ArrayList<>(size);
+            for (int i = 1; i <= size; i++) {
+                captured.add(synthetic(i, random));
+            }
+            commitAll(store, CapturadosOutbox.Type.CAPTURE, captured, commit);
+
+            // Sincronización completa.
+            CapturedSync.State local = new CapturedSync.State();
+            sync(store, local, fullRead, fullMerge);
+            assertEquals(size, local.captured.size());
+            List<PokemonDetails> before = new ArrayList<>(local.captured.values());
+
+            // Cambios: se libera la mitad de la fracción y se captura la otra mitad.
+            int changed = (int) (size * CHANGED_FRACTION);
+            List<PokemonDetails> released = new ArrayList<>(changed / 2);
+            for (int i = 0; i < changed / 2; i++) {
+                released.add(captured.get(random.nextInt(size)));
+            }
+            List<PokemonDetails> added = new ArrayList<>(changed - changed / 2);
+            for (int i = 1; i <= changed - changed / 2; i++) {
+                added.add(synthetic(size + i, random));
+            }
+            commitAll(store, CapturadosOutbox.Type.RELEASE, released, commit);
+            commitAll(store, CapturadosOutbox.Type.CAPTURE, added, commit);
+
+            // Sincronización por cambios: solo debe leer los documentos modificados.
+            long readBefore = store.getDocumentsRead();
+            sync(store, local, deltaRead, deltaMerge);
+            long deltaDocuments = store.getDocumentsRead() - readBefore;
+            assertTrue("La sincronización por cambios ha leído " + deltaDocuments + " documentos",
+                    deltaDocuments <= changed + CapturedStore.MAX_BATCH_SIZE);
+
+            // Actualización de la lista mostrada.
+            List<PokemonDetails> after = new ArrayList<>(local.captured.values());
+            int[] updates = new int[2];
+            long start = System.nanoTime();
+            DiffUtil.calculateDiff(new CapturadosAdapter.DiffCallback(before, after), false)
+                    .dispatchUpdatesTo(new ListUpdateCallback() {
+                        @Override
+                        public void onInserted(int position, int count) {
+                            updates[0] += count;
+                        }
+
+                        @Override
+                        public void onRemoved(int position, int count) {
+                            updates[1] += count;
+                        }
+
+                        @Override
+                        public void onMoved(int fromPosition, int toPosition) {
+                        }
+
+                        @Override
+                        public void onChanged(int position, int count, Object payload) {
+                        }
+                    });
+            diff.add(System.nanoTime() - start, after.size());
+            assertEquals(after.size() - before.size(), updates[0] - updates[1]);
+
+            for (Stats stats : new Stats[]{commit, fullRead, fullMerge, deltaRead, deltaMerge, diff}) {
+                stats.print(size);
+            }
+            System.out.printf("%7d  documentos leídos=%d escritos=%d errores inyectados=%d%n",
+                    size, store.getDocumentsRead(), store.getDocumentsWritten(), store.getInjectedErrors());
+        } finally {
+            store.shutdown();
+        }
+    }
+
+    /**
+     * Lee los cambios desde la marca de agua y los aplica al estado. Con el reloj lógico del
+     * almacén no hace falta el margen que {@link CapturedSync} resta a la marca de agua.
+     */
+    private static void sync(CapturedStore store, CapturedSync.State local, Stats read, Stats merge)
+            throws InterruptedException {
+        long start = System.nanoTime();
+        CapturedStore.ChangeSet changeSet = withRetry(
+                () -> CapturedStore.await(callback -> store.readChanges(UID, local.watermarkSeconds,
+                        local.watermarkNanos, true, callback)));
+        read.add(System.nanoTime() - start, changeSet.changes.size());
+
+        start = System.nanoTime();
+        CapturedSync.merge(local, changeSet);
+        merge.add(System.nanoTime() - start, changeSet.changes.size());
+    }
+
+    /**
+     * Envía las operaciones en lotes de {@link CapturedStore#MAX_BATCH_SIZE}, reintentando los
+     * errores temporales como hace {@link CapturadosOutbox}.
+     */
+    private static void commitAll(CapturedStore store, CapturadosOutbox.Type type, List<PokemonDetails> pokemonList,
+                                  Stats stats) throws InterruptedException {
+        for (int from = 0; from < pokemonList.size(); from += CapturedStore.MAX_BATCH_SIZE) {
+            List<CapturadosOutbox.Operation> batch = new ArrayList<>();
+            for (PokemonDetails pokemon : pokemonList.subList(from, Math.min(pokemonList.size(), from + CapturedStore.MAX_BATCH_SIZE))) {
+                CapturadosOutbox.Operation operation = new CapturadosOutbox.Operation();
+                operation.type = type;
+                operation.uid = UID;
+                operation.pokemon = pokemon;
+                batch.add(operation);
+            }
+            long start = System.nanoTime();
+            withRetry(() -> CapturedStore.<Void>await(callback -> store.commit(batch, callback)));
+            stats.add(System.nanoTime() - start, batch.size());
+        }
+    }
+
+    private interface Attempt<T> {
+        T run() throws ExecutionException, InterruptedException;
+    }
+
+    private static <T> T withRetry(Attempt<T> attempt) throws InterruptedException {
+        while (true) {
+            try {
+                return attempt.run();
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof FirebaseFirestoreException);
+                assertEquals(FirebaseFirestoreException.Code.UNAVAILABLE, ((FirebaseFirestoreException) e.getCause()).getCode());
+            }
+        }
+    }
+
+    /**
+     * Ejecuta dos veces la misma secuencia y devuelve los IDs en orden de modificación, que
+     * deben coincidir.
+     */
+    private static List<String> snapshotIds(long seed) throws Exception {
+        InMemoryCapturedStore store = new InMemoryCapturedStore(seed, 0, 0, 0.1);
+        Random random = new Random(seed);
+        try {
+            List<PokemonDetails> captured = new ArrayList<>();
+            for (int i = 1; i <= 2_000; i++) {
+                captured.add(synthetic(i, random));
+            }
+            commitAll(store, CapturadosOutbox.Type.CAPTURE, captured, new Stats("commit"));
+            commitAll(store, CapturadosOutbox.Type.RELEASE, captured.subList(0, 700), new Stats("commit"));
+            CapturedStore.ChangeSet changeSet = withRetry(
+                    () -> CapturedStore.await(callback -> store.readChanges(UID, 0, 0, true, callback)));
+            List<String> ids = new ArrayList<>();
+            for (CapturedStore.Change change : changeSet.changes) {
+                ids.add(change.id + (change.deleted ? "-" : "+") + change.updatedAtSeconds + "." + change.updatedAtNanos);
+            }
+            return ids;
+        } finally {
+            store.shutdown();
+        }
+    }
+
+    /**
+     * Genera un Pokémon capturado con tipos y medidas aleatorios.
+     */
+    private static PokemonDetails synthetic(int id, Random random) {
+        List<String> types = new ArrayList<>();
+        types.add(PokemonTypes.nameOf(random.nextInt(PokemonTypes.COUNT)));
+        if (random.nextBoolean()) {
+            types.add(PokemonTypes.nameOf(random.nextInt(PokemonTypes.COUNT)));
+        }
+        int weight = 1 + random.nextInt(9_999);
+        int height = 1 + random.nextInt(200);
+        return PokemonDetails.fromTypeNames(id, "pokemon-" + id, weight, height, types);
+    }
+}
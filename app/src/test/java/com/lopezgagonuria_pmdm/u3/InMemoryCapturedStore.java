@@ -0,0 +1,335 @@
+package com.lopezgagonuria_pmdm.u3;
+
+import com.google.firebase.firestore.FirebaseFirestoreException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Implementación de {@link CapturedStore} en memoria, sin red, para ejecutar las rutas de
+ * sincronización y de envío en la JVM con colecciones grandes. Solo la usan las pruebas; los
+ * errores se devuelven como {@link FirebaseFirestoreException}, igual que con Firestore, para
+ * que la cola los clasifique del mismo modo.
+ *
+ * <p>Es determinista: la hora de cada lote sale de un reloj lógico (cada lote avanza un
+ * milisegundo, y todos sus documentos comparten hora, como con la hora del servidor en una
+ * transacción), y la latencia y los errores inyectados salen de un generador con semilla. Cada
+ * operación se resuelve en un único hilo después de su latencia, de modo que con latencia
+ * variable las respuestas pueden llegar en otro orden, como en la red. Los documentos se
+ * guardan codificados con {@link PokemonCodec}, de modo que quien los lee recibe copias, como
+ * con un almacén real. Los contadores de la línea temporal se suman en el mismo paso que el
+ * lote, como en la transacción, y cada operación contada deja una marca para que reenviarla
+ * no la cuente dos veces.
+ */
+public final class InMemoryCapturedStore implements CapturedStore {
+
+    /**
+     * Documento guardado.
+     */
+    private static final class Document {
+        final String id;
+        final byte[] data; // null en las lápidas
+        final long updatedAtSeconds;
+        final int updatedAtNanos;
+        final long capturedAtMillis; // 0 si la captura no cuenta en la línea temporal
+
+        Document(String id, byte[] data, long updatedAtSeconds, int updatedAtNanos, long capturedAtMillis) {
+            this.id = id;
+            this.data = data;
+            this.updatedAtSeconds = updatedAtSeconds;
+            this.updatedAtNanos = updatedAtNanos;
+            this.capturedAtMillis = capturedAtMillis;
+        }
+    }
+
+    /**
+     * Colección de un usuario, con un índice por ID y otro por hora de modificación, y sus
+     * contadores de la línea temporal por mes y las marcas de las operaciones ya contadas.
+     */
+    private static final class UserCollection {
+        final TreeMap<String, Document> byId = new TreeMap<>();
+        final NavigableSet<Document> byTime = new TreeSet<>(BY_TIME);
+        final TreeMap<String, CaptureTimeline.Month> timeline = new TreeMap<>();
+        final Set<String> markers = new HashSet<>();
+    }
+
+    private static final Comparator<Document> BY_TIME = Comparator
+            .comparingLong((Document document) -> document.updatedAtSeconds)
+            .thenComparingInt(document -> document.updatedAtNanos)
+            .thenComparing(document -> document.id);
+
+    // Hora inicial del reloj lógico, en segundos.
+    private static final long CLOCK_START_SECONDS = 1_700_000_000L;
+
+    private final Map<String, UserCollection> collections = new HashMap<>();
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+    private final Random random;
+    private final long latencyMs;
+    private final long jitterMs;
+    private final double errorRate;
+
+    // Lotes confirmados, que hacen de reloj lógico.
+    private long commits;
+
+    // Métricas.
+    private final AtomicLong documentsRead = new AtomicLong();
+    private final AtomicLong documentsWritten = new AtomicLong();
+    private final AtomicLong injectedErrors = new AtomicLong();
+
+    /**
+     * Crea un almacén vacío sin latencia ni errores.
+     */
+    public InMemoryCapturedStore() {
+        this(0, 0, 0, 0);
+    }
+
+    /**
+     * Crea un almacén vacío que simula la red.
+     *
+     * @param seed Semilla de la latencia variable y de los errores.
+     * @param latencyMs Latencia fija de cada operación, en milisegundos.
+     * @param jitterMs Latencia variable máxima que se suma a la fija, en milisegundos.
+     * @param errorRate Probabilidad (0 a 1) de que una operación falle con un error temporal.
+     */
+    public InMemoryCapturedStore(long seed, long latencyMs, long jitterMs, double errorRate) {
+        this.random = new Random(seed);
+        this.latencyMs = latencyMs;
+        this.jitterMs = jitterMs;
+        this.errorRate = errorRate;
+    }
+
+    @Override
+    public void readChanges(String uid, long sinceSeconds, int sinceNanos, boolean serverOnly, Callback<ChangeSet> callback) {
+        submit(callback, () -> {
+            UserCollection collection = collection(uid);
+            Document from = new Document("", null, sinceSeconds, sinceNanos, 0);
+            List<Change> changes = new ArrayList<>();
+            for (Document document : collection.byTime.tailSet(from, true)) {
+                changes.add(toChange(document));
+            }
+            documentsRead.addAndGet(changes.size());
+            return new ChangeSet(changes, true);
+        });
+    }
+
+    @Override
+    public void readPage(String uid, String afterId, int limit, Callback<List<Change>> callback) {
+        submit(callback, () -> {
+            UserCollection collection = collection(uid);
+            Iterable<Document> documents = afterId != null
+                    ? collection.byId.tailMap(afterId, false).values()
+                    : collection.byId.values();
+            List<Change> page = new ArrayList<>(limit);
+            for (Document document : documents) {
+                if (page.size() == limit) {
+                    break;
+                }
+                page.add(toChange(document));
+            }
+            documentsRead.addAndGet(page.size());
+            return page;
+        });
+    }
+
+    @Override
+    public void count(String uid, Callback<Long> callback) {
+        submit(callback, () -> (long) collection(uid).byId.size());
+    }
+
+    @Override
+    public void commit(List<CapturadosOutbox.Operation> operations, Callback<Void> callback) {
+        List<CapturadosOutbox.Operation> counted = new ArrayList<>();
+        for (CapturadosOutbox.Operation operation : operations) {
+            if (CaptureTimeline.counts(operation)) {
+                counted.add(operation);
+            }
+        }
+        // Cota por lote igual que la del servidor: una marca por operación que cuenta y un mes
+        // por usuario, aunque al aplicarlo se salten las ya marcadas.
+        int timelineWrites = counted.size() + countMonths(CaptureTimeline.fromOperations(counted));
+        if (operations.size() + timelineWrites > MAX_BATCH_SIZE) {
+            callback.onError(new FirebaseFirestoreException("Demasiadas operaciones en el lote",
+                    FirebaseFirestoreException.Code.INVALID_ARGUMENT));
+            return;
+        }
+        // Se copian ahora, como hace la transacción al añadir cada escritura.
+        List<Document> documents = new ArrayList<>(operations.size());
+        List<String> uids = new ArrayList<>(operations.size());
+        for (CapturadosOutbox.Operation operation : operations) {
+            byte[] data = operation.type == CapturadosOutbox.Type.CAPTURE ? PokemonCodec.encode(operation.pokemon) : null;
+            documents.add(new Document(operation.pokemon.getId(), data, 0, 0,
+                    operation.type == CapturadosOutbox.Type.CAPTURE ? operation.time : 0));
+            uids.add(operation.uid);
+        }
+        submit(callback, () -> {
+            long tick = ++commits;
+            long seconds = CLOCK_START_SECONDS + tick / 1000;
+            int nanos = (int) (tick % 1000) * 1_000_000;
+            for (int i = 0; i < documents.size(); i++) {
+                Document document = documents.get(i);
+                UserCollection collection = collection(uids.get(i));
+                long capturedAtMillis = document.capturedAtMillis;
+                if (document.data != null && capturedAtMillis == 0) {
+                    // Captura sin hora: se combina con el documento y conserva su hora.
+                    Document previous = collection.byId.get(document.id);
+                    capturedAtMillis = previous != null && previous.data != null ? previous.capturedAtMillis : 0;
+                }
+                put(collection, new Document(document.id, document.data, seconds, nanos, capturedAtMillis));
+            }
+            // Como la transacción, solo suma las operaciones cuya marca aún no existe.
+            List<CapturadosOutbox.Operation> uncounted = new ArrayList<>();
+            for (CapturadosOutbox.Operation operation : counted) {
+                if (collection(operation.uid).markers.add(CaptureTimeline.operationKey(operation))) {
+                    uncounted.add(operation);
+                }
+            }
+            Map<String, Map<String, CaptureTimeline.Month>> timeline = CaptureTimeline.fromOperations(uncounted);
+            for (Map.Entry<String, Map<String, CaptureTimeline.Month>> user : timeline.entrySet()) {
+                Map<String, CaptureTimeline.Month> months = collection(user.getKey()).timeline;
+                for (CaptureTimeline.Month delta : user.getValue().values()) {
+                    CaptureTimeline.Month month = months.get(delta.id);
+                    if (month == null) {
+                        month = new CaptureTimeline.Month(delta.id);
+                        months.put(delta.id, month);
+                    }
+                    month.add(delta);
+                }
+            }
+            documentsWritten.addAndGet(documents.size() + timelineWrites);
+            return null;
+        });
+    }
+
+    @Override
+    public void updateDetails(String uid, PokemonDetails pokemon, Callback<Void> callback) {
+        byte[] data = PokemonCodec.encode(pokemon);
+        submit(callback, () -> {
+            // Como la escritura parcial de Firestore, conserva la hora de captura, y no resucita
+            // un Pokémon liberado: su lápida se queda como está.
+            Document previous = collection(uid).byId.get(pokemon.getId());
+            if (previous != null && previous.data == null) {
+                return null;
+            }
+            long tick = ++commits;
+            put(collection(uid), new Document(pokemon.getId(), data,
+                    CLOCK_START_SECONDS + tick / 1000, (int) (tick % 1000) * 1_000_000,
+                    previous != null ? previous.capturedAtMillis : 0));
+            documentsWritten.incrementAndGet();
+            return null;
+        });
+    }
+
+    @Override
+    public void readTimeline(String uid, Callback<CaptureTimeline> callback) {
+        submit(callback, () -> {
+            // Se devuelven copias, como los documentos leídos de un almacén real.
+            List<CaptureTimeline.Month> months = new ArrayList<>();
+            for (CaptureTimeline.Month month : collection(uid).timeline.values()) {
+                CaptureTimeline.Month copy = new CaptureTimeline.Month(month.id);
+                copy.add(month);
+                months.add(copy);
+            }
+            documentsRead.addAndGet(months.size());
+            return new CaptureTimeline(months);
+        });
+    }
+
+    /**
+     * Detiene el hilo del almacén. Las operaciones pendientes se descartan.
+     */
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    public long getDocumentsRead() {
+        return documentsRead.get();
+    }
+
+    public long getDocumentsWritten() {
+        return documentsWritten.get();
+    }
+
+    public long getInjectedErrors() {
+        return injectedErrors.get();
+    }
+
+    /**
+     * Operación que se ejecuta en el hilo del almacén.
+     */
+    private interface Operation<T> {
+        T run() throws IOException;
+    }
+
+    /**
+     * Programa una operación tras su latencia y entrega el resultado, o el error inyectado,
+     * en el hilo del almacén.
+     */
+    private <T> void submit(Callback<T> callback, Operation<T> operation) {
+        long delayMs;
+        boolean fail;
+        synchronized (random) {
+            delayMs = latencyMs + (jitterMs > 0 ? (long) (random.nextDouble() * (jitterMs + 1)) : 0);
+            fail = errorRate > 0 && random.nextDouble() < errorRate;
+        }
+        executor.schedule(() -> {
+            if (fail) {
+                injectedErrors.incrementAndGet();
+                callback.onError(new FirebaseFirestoreException("Error inyectado",
+                        FirebaseFirestoreException.Code.UNAVAILABLE));
+                return;
+            }
+            T result;
+            try {
+                result = operation.run();
+            } catch (IOException | RuntimeException e) {
+                callback.onError(e);
+                return;
+            }
+            callback.onSuccess(result);
+        }, delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    private UserCollection collection(String uid) {
+        UserCollection collection = collections.get(uid);
+        if (collection == null) {
+            collection = new UserCollection();
+            collections.put(uid, collection);
+        }
+        return collection;
+    }
+
+    private static int countMonths(Map<String, Map<String, CaptureTimeline.Month>> timeline) {
+        int count = 0;
+        for (Map<String, CaptureTimeline.Month> months : timeline.values()) {
+            count += months.size();
+        }
+        return count;
+    }
+
+    private static void put(UserCollection collection, Document document) {
+        Document previous = collection.byId.put(document.id, document);
+        if (previous != null) {
+            collection.byTime.remove(previous);
+        }
+        collection.byTime.add(document);
+    }
+
+    private static Change toChange(Document document) throws IOException {
+        PokemonDetails pokemon = document.data != null ? PokemonCodec.decode(document.data) : null;
+        return new Change(document.id, pokemon, document.data == null,
+                document.updatedAtSeconds, document.updatedAtNanos, true, document.capturedAtMillis);
+    }
+}
@@ -0,0 +1,168 @@
+package com.lopezgagonuria_pmdm.u3;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStreamReader;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Reader;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Compara el tamaño y los tiempos de codificación y decodificación de {@link PokemonCodec}
+ * con Gson y con la serialización de Java, sobre el catálogo de app/catalog/pokedex.json.
+ * Los resultados se escriben en la salida estándar de la tarea de test.
+ */
+public class PokemonCodecBenchmark {
+
+    private static final int WARMUP_ITERATIONS = 200;
+    private static final int MEASURED_ITERATIONS = 500;
+
+    private static final Type LIST_TYPE = new TypeToken<List<PokemonDetails>>() {}.getType();
+
+    private static List<PokemonDetails> fixtures;
+
+    /**
+     * Formato comparado.
+     */
+    private interface Format {
+        byte[] encode(List<PokemonDetails> pokemonList) throws Exception;
+
+        List<PokemonDetails> decode(byte[] bytes) throws Exception;
+    }
+
+    @BeforeClass
+    public static void loadFixtures() throws Exception {
+        File source = new File("catalog/pokedex.json");
+        if (!source.exists()) {
+            source = new File("app/catalog/pokedex.json"); // Ejecutado desde la raíz del proyecto.
+        }
+        List<Map<String, Object>> entries;
+        try (Reader reader = new InputStreamReader(new FileInputStream(source), StandardCharsets.UTF_8)) {
+            entries = new Gson().fromJson(reader, new TypeToken<List<Map<String, Object>>>() {}.getType());
+        }
+
+        fixtures = new ArrayList<>();
+        for (Map<String, Object> entry : entries) {
+            List<String> typeNames = new ArrayList<>();
+            for (Object typeName : (List<?>) entry.get("types")) {
+                typeNames.add((String) typeName);
+            }
+            fixtures.add(PokemonDetails.fromTypeNames(((Number) entry.get("id")).intValue(), (String) entry.get("name"),
+                    ((Number) entry.get("weight")).intValue(), ((Number) entry.get("height")).intValue(), typeNames));
+        }
+    }
+
+    @Test
+    public void codecRoundTripKeepsAllFields() throws Exception {
+        for (PokemonDetails pokemon : fixtures) {
+            PokemonDetails decoded = PokemonCodec.decode(PokemonCodec.encode(pokemon));
+            assertEquals(pokemon.getId(), decoded.getId());
+            assertEquals(pokemon.getName(), decoded.getName());
+            assertEquals(pokemon.getWeight(), decoded.getWeight());
+            assertEquals(pokemon.getHeight(), decoded.getHeight());
+            assertEquals(pokemon.getSpriteUrl(), decoded.getSpriteUrl());
+            assertEquals(pokemon.getUrl(), decoded.getUrl());
+            assertEquals(pokemon.getTypeNames(), decoded.getTypeNames());
+            assertEquals(pokemon.isFullyLoaded(), decoded.isFullyLoaded());
+            assertEquals(pokemon, decoded);
+        }
+    }
+
+    @Test
+    public void compareFormats() throws Exception {
+        Gson gson = new Gson();
+        Format json = new Format() {
+            @Override
+            public byte[] encode(List<PokemonDetails> pokemonList) {
+                return gson.toJson(pokemonList).getBytes(StandardCharsets.UTF_8);
+            }
+
+            @Override
+            public List<PokemonDetails> decode(byte[] bytes) {
+                return gson.fromJson(new String(bytes, StandardCharsets.UTF_8), LIST_TYPE);
+            }
+        };
+        Format javaSerialization = new Format() {
+            @Override
+            public byte[] encode(List<PokemonDetails> pokemonList) throws Exception {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+                    out.writeObject(new ArrayList<>(pokemonList));
+                }
+                return bytes.toByteArray();
+            }
+
+            @SuppressWarnings("unchecked")
+            @Override
+            public List<PokemonDetails> decode(byte[] bytes) throws Exception {
+                try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+                    return (List<PokemonDetails>) in.readObject();
+                }
+            }
+        };
+        Format codec = new Format() {
+            @Override
+            public byte[] encode(List<PokemonDetails> pokemonList) throws Exception {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                PokemonCodec.writeList(bytes, pokemonList);
+                return bytes.toByteArray();
+            }
+
+            @Override
+            public List<PokemonDetails> decode(byte[] bytes) throws Exception {
+                return PokemonCodec.readList(new ByteArrayInputStream(bytes));
+            }
+        };
+
+        System.out.println("Catálogo de " + fixtures.size() + " Pokémon, media de " + MEASURED_ITERATIONS + " iteraciones");
+        System.out.printf("%-20s %10s %14s %14s%n", "Formato", "Bytes", "Codificar µs", "Decodificar µs");
+        int jsonSize = measure("Gson", json);
+        measure("Serializable", javaSerialization);
+        int codecSize = measure("PokemonCodec", codec);
+
+        assertTrue("PokemonCodec debería ocupar menos que JSON", codecSize < jsonSize);
+    }
+
+    /**
+     * Mide un formato y escribe una fila de la tabla de resultados.
+     *
+     * @return Tamaño en bytes del catálogo codificado.
+     */
+    private static int measure(String name, Format format) throws Exception {
+        byte[] encoded = format.encode(fixtures);
+        assertEquals(fixtures.size(), format.decode(encoded).size());
+
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            format.decode(format.encode(fixtures));
+        }
+
+        long encodeNanos = 0;
+        long decodeNanos = 0;
+        for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+            long start = System.nanoTime();
+            byte[] bytes = format.encode(fixtures);
+            long middle = System.nanoTime();
+            format.decode(bytes);
+            decodeNanos += System.nanoTime() - middle;
+            encodeNanos += middle - start;
+        }
+
+        System.out.printf("%-20s %10d %14.1f %14.1f%n", name, encoded.length,
+                encodeNanos / 1000.0 / MEASURED_ITERATIONS, decodeNanos / 1000.0 / MEASURED_ITERATIONS);
+        return encoded.length;
+    }
+}
@@ -0,0 +1,27 @@
+package com.lopezgagonuria_pmdm.u3;
+
+import static org.junit.Assert.assertEquals;
+
+import com.google.gson.Gson;
+import java.util.Arrays;
+import org.junit.Test;
+
+/**
+ * Comprueba que {@link PokemonDetails} sigue leyendo con Gson el estado guardado por versiones
+ * anteriores de la aplicación.
+ */
+public class PokemonDetailsTest {
+
+    @Test
+    public void gsonReadsPreviousBeanFormat() {
+        // Estado guardado por versiones anteriores, con el bean completo serializado por reflexión.
+        String legacy = "{\"id\":\"6\",\"name\":\"charizard\",\"weight\":905.0,\"height\":17.0,"
+                + "\"spriteUrl\":\"https://raw.githubusercontent.com/PokeAPI/sprites/master/sprites/pokemon/6.png\","
+                + "\"url\":\"https://pokeapi.co/api/v2/pokemon/6/\",\"captured\":true,\"fullyLoaded\":true,"
+                + "\"types\":[{\"slot\":1,\"type\":{\"name\":\"fire\",\"url\":\"https://pokeapi.co/api/v2/type/10/\"}},"
+                + "{\"slot\":2,\"type\":{\"name\":\"flying\",\"url\":\"https://pokeapi.co/api/v2/type/3/\"}}]}";
+        PokemonDetails pokemon = new Gson().fromJson(legacy, PokemonDetails.class);
+        assertEquals(PokemonDetails.fromTypeNames(6, "charizard", 905, 17, Arrays.asList("fire", "flying")), pokemon);
+        assertEquals(pokemon, new Gson().fromJson(new Gson().toJson(pokemon), PokemonDetails.class));
+    }
+}